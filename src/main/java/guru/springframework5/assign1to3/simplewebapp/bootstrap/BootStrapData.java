@@ -11,12 +11,26 @@
  * 
  * Assignment 3 of 1-3 Combo: 
  * #A - Include dummy data associating Publisher with Book. 
+ *
+ * Scale: app.bootstrap.books=N adds N generated books (N/10 authors, 1-2 per
+ * book, and N/100 publishers in a few states and cities) for load tests.
+ * Generated from a fixed seed, so every run gets the same catalog.  Saved
+ * in chunks with the replica copies held back to a single one at the end.
  */
 package guru.springframework5.assign1to3.simplewebapp.bootstrap;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
+import guru.springframework5.assign1to3.simplewebapp.config.ReplicaSynchronizer;
 import guru.springframework5.assign1to3.simplewebapp.domain.Author;
 import guru.springframework5.assign1to3.simplewebapp.domain.Book;
 import guru.springframework5.assign1to3.simplewebapp.domain.Publisher;
@@ -29,6 +43,20 @@ import guru.springframework5.assign1to3.simplewebapp.repositories.IPublisherRepo
                 // #2 Implements CommandLineRunner.  When instance created, will invoke run(). 
 public class BootStrapData implements CommandLineRunner {
 
+	private static final Logger log = LoggerFactory.getLogger(BootStrapData.class);
+
+	// Generated data (app.bootstrap.books)
+	private static final int CHUNK = 1000;
+	private static final long SEED = 42;
+	private static final String[] FIRST_NAMES = { "Ada", "Alan", "Barbara", "Donald", "Edsger", "Grace",
+			"John", "Ken", "Leslie", "Margaret", "Niklaus", "Tony" };
+	private static final String[] LAST_NAMES = { "Backus", "Dijkstra", "Hoare", "Hopper", "Kay", "Knuth",
+			"Lamport", "Liskov", "Lovelace", "McCarthy", "Ritchie", "Thompson", "Turing", "Wirth" };
+	private static final String[][] CITIES = { { "CA", "Los Angeles" }, { "CA", "San Francisco" },
+			{ "NY", "New York" }, { "NY", "Buffalo" }, { "TX", "Austin" }, { "WA", "Seattle" } };
+	private static final String[] WORDS = { "Design", "Patterns", "Systems", "Java", "Data", "Spring",
+			"Concurrency", "Algorithms", "Networks", "Compilers", "Testing", "Performance" };
+
 	// -----------------------------------------------
 	// Attributes  
 	// -----------------------------------------------
@@ -41,6 +69,12 @@ public class BootStrapData implements CommandLineRunner {
 	private final IAuthorRepository authorRepository;
 	private final IBookRepository bookRepository;
 	private final IPublisherRepository publisherRepository;
+
+	// Holds back the replica copies while generated data is saved.
+	private final ReplicaSynchronizer replicaSynchronizer;
+
+	// Books to generate in addition to the sample data (0 = none).
+	private final int generatedBooks;
 	
 	// -----------------------------------------------
 	// #4 Constructor 
@@ -48,10 +82,14 @@ public class BootStrapData implements CommandLineRunner {
 	//    in constructor, tells Spring must inject instance of repositories when 
 	//    class is constructed.  
 	// -----------------------------------------------
-    public BootStrapData(IAuthorRepository aRepos, IBookRepository bRepos, IPublisherRepository pRepos) {
+    public BootStrapData(IAuthorRepository aRepos, IBookRepository bRepos, IPublisherRepository pRepos,
+                         ReplicaSynchronizer replicaSynchronizer,
+                         @Value("${app.bootstrap.books:0}") int generatedBooks) {
     	this.authorRepository = aRepos;
     	this.bookRepository = bRepos;
     	this.publisherRepository = pRepos;    
+    	this.replicaSynchronizer = replicaSynchronizer;
+    	this.generatedBooks = generatedBooks;
     }
     
 	// -----------------------------------------------
@@ -61,6 +99,12 @@ public class BootStrapData implements CommandLineRunner {
 	// #5 Override run() so when container creates instance, run() will create dummy data. 
 	@Override
 	public void run(String... args) throws Exception {
+		// Already saved by another application context on the same in-memory
+		// database (tests); the natural keys are unique, so it cannot be saved twice.
+		if (publisherRepository.existsByNameAndZip("Write Way Printing", "98765")) {
+			log.info("Bootstrap data already saved, skipped");
+			return;
+		}
 		
 		// --------------------------------------------
 		// Create instance of dummy data #1 - Author and Book
@@ -120,6 +164,61 @@ public class BootStrapData implements CommandLineRunner {
 		System.out.println("Number of Books: " + bookRepository.count());   // Will be 2 books!
 		System.out.println("Number of Publishers: " + publisherRepository.count());   // Will be 1 publisher!
 		System.out.println("Publisher number of books:  " + publisher1.getBooks().size());  // Will be 2 books. 
+
+		if (generatedBooks > 0) {
+			generate(generatedBooks);
+			log.info("Generated {} books, {} in total", generatedBooks, bookRepository.count());
+		}
 	}  // end run()
 
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Saves "books" generated books with their authors and publishers.
+	private void generate(int books) {
+		Random random = new Random(SEED);
+		ReplicaSynchronizer.Deferral deferral = replicaSynchronizer.defer();
+		try {
+			List<Publisher> publishers = new ArrayList<>();
+			for (int i = 0; i < Math.max(1, books / 100); i++) {
+				String[] city = CITIES[i % CITIES.length];
+				publishers.add(new Publisher("Publisher " + i, i + " Main Street", city[1], city[0],
+						String.format("%05d", 10000 + i)));
+			}
+			publishers = saveInChunks(publishers, publisherRepository::saveAll);
+
+			List<Author> authors = new ArrayList<>();
+			for (int i = 0; i < Math.max(1, books / 10); i++) {
+				authors.add(new Author(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+						LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " " + i));
+			}
+			authors = saveInChunks(authors, authorRepository::saveAll);
+
+			List<Book> generated = new ArrayList<>(books);
+			for (int i = 0; i < books; i++) {
+				Book book = new Book(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+						+ " Vol. " + i, String.format("978%010d", i));
+				book.setPublisher(publishers.get(random.nextInt(publishers.size())));
+				book.getAuthors().add(authors.get(random.nextInt(authors.size())));
+				if (random.nextBoolean()) {
+					book.getAuthors().add(authors.get(random.nextInt(authors.size())));
+				}
+				generated.add(book);
+			}
+			saveInChunks(generated, bookRepository::saveAll);
+		} finally {
+			deferral.close();   // One replica copy for everything saved above
+		}
+	}  // end generate()
+
+	// Saves CHUNK entities per transaction; returns them as saved.
+	private static <T> List<T> saveInChunks(List<T> entities, Function<List<T>, Iterable<T>> saveAll) {
+		List<T> saved = new ArrayList<>(entities.size());
+		for (int from = 0; from < entities.size(); from += CHUNK) {
+			saveAll.apply(entities.subList(from, Math.min(entities.size(), from + CHUNK))).forEach(saved::add);
+		}
+		return saved;
+	}
+
 }  // end IPublisherRepository
@@ -0,0 +1,313 @@
+// ***************************************************************************
+// Class:  CatalogChangeFeed
+//
+// Serves the catalog_change outbox as an ordered feed, two ways:
+//
+//    poll()      - long poll: returns the changes after sequence N, waiting
+//                  (without holding a request thread) until there are some
+//                  or the wait time is up.
+//    subscribe() - Server-Sent Events: sends the changes after N, then keeps
+//                  the connection open and sends new changes as they commit.
+//
+// After each commit that changed the catalog (once the replica has it), one
+// background "dispatch" thread checks every waiting client for new rows.
+//
+// Ordering: CatalogOutboxWriter numbers the rows in commit order without
+// gaps, so once the feed has sent N every change up to N has been sent, and
+// a change committing later can only get a number above N.  Consumers
+// therefore never miss a change, however long its transaction took.
+//
+// Old rows are deleted by CatalogOutboxPruner.  A consumer asking for changes
+// after a sequence number that was pruned would silently miss some, so it
+// gets ChangesPrunedException instead (410 Gone): it must reload the catalog
+// and continue after the sequence number the exception names.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.changefeed;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import guru.springframework5.assign1to3.simplewebapp.config.ReplicaSynchronizer;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogBulkChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChange;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.repositories.ICatalogChangeRepository;
+
+@Component
+public class CatalogChangeFeed {
+
+	public static final int MAX_BATCH = 500;
+	static final long SSE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final ICatalogChangeRepository changeRepository;
+	private final TransactionTemplate readOnlyTransaction;   // Reads the replica
+	private final ReplicaSynchronizer replicaSynchronizer;
+
+	private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "catalog-change-feed");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicBoolean dispatchPending = new AtomicBoolean();
+
+	// Highest sequence number deleted by CatalogOutboxPruner (0 = none).
+	private volatile long prunedThrough;
+
+	// Clients waiting for changes (long polls and SSE streams).
+	private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogChangeFeed(ICatalogChangeRepository changeRepository, PlatformTransactionManager transactionManager,
+	                         ReplicaSynchronizer replicaSynchronizer) {
+		this.changeRepository = changeRepository;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+		this.replicaSynchronizer = replicaSynchronizer;
+	}
+
+	// -----------------------------------------------
+	// Reading the feed
+	// -----------------------------------------------
+
+	/**
+	 * @return up to limit committed changes with sequence number > after, in order.
+	 * @throws ChangesPrunedException if changes after "after" were pruned
+	 */
+	public List<CatalogChange> changesAfter(long after, int limit) {
+		checkNotPruned(after);
+		return readOnlyTransaction.execute(status ->
+				changeRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, Math.min(limit, MAX_BATCH))));
+	}
+
+	/**
+	 * Long poll.
+	 *
+	 * @return result completed with the changes after "after" as soon as there
+	 *         are any, or with an empty list after waitMillis.
+	 * @throws ChangesPrunedException if changes after "after" were pruned
+	 */
+	public DeferredResult<List<CatalogChange>> poll(long after, int limit, long waitMillis) {
+		DeferredResult<List<CatalogChange>> result =
+				new DeferredResult<>(waitMillis, Collections.<CatalogChange>emptyList());
+
+		List<CatalogChange> changes = changesAfter(after, limit);
+		if (!changes.isEmpty() || waitMillis <= 0) {
+			result.setResult(changes);
+			return result;
+		}
+
+		LongPollSubscriber subscriber = new LongPollSubscriber(after, limit, result);
+		result.onCompletion(() -> subscribers.remove(subscriber));
+		subscribers.add(subscriber);
+		requestDispatch();   // In case a change committed while registering.
+		return result;
+	}
+
+	/**
+	 * Server-Sent Events stream of the changes after "after".  Each event's id
+	 * is the sequence number, so a reconnecting client can send Last-Event-ID.
+	 * A stream that falls behind the pruning gets a "resync" event (data: the
+	 * sequence number to continue after) and is closed.
+	 *
+	 * @throws ChangesPrunedException if changes after "after" were pruned
+	 */
+	public SseEmitter subscribe(long after) {
+		checkNotPruned(after);
+		SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+		SseSubscriber subscriber = new SseSubscriber(after, emitter);
+		emitter.onCompletion(() -> subscribers.remove(subscriber));
+		emitter.onTimeout(() -> subscribers.remove(subscriber));
+		emitter.onError(e -> subscribers.remove(subscriber));
+		subscribers.add(subscriber);
+		requestDispatch();   // Send the backlog.
+		return emitter;
+	}
+
+	// -----------------------------------------------
+	// Pruning (see CatalogOutboxPruner)
+	// -----------------------------------------------
+
+	/**
+	 * Called before rows up to "through" are deleted, so no consumer reads a
+	 * partly pruned range as complete.
+	 */
+	void markPruned(long through) {
+		if (through > prunedThrough) {
+			prunedThrough = through;
+		}
+	}
+
+	long getPrunedThrough() {
+		return prunedThrough;
+	}
+
+	private void checkNotPruned(long after) {
+		if (after < prunedThrough) {
+			Long latest = readOnlyTransaction.execute(status -> changeRepository.findLatestId());
+			throw new ChangesPrunedException(after, prunedThrough, (latest == null) ? prunedThrough : latest);
+		}
+	}
+
+	// -----------------------------------------------
+	// Dispatching new changes
+	// -----------------------------------------------
+
+	@TransactionalEventListener(classes = { CatalogChangeEvent.class, CatalogBulkChangeEvent.class }, fallbackExecution = true)
+	public void onCatalogChange() {
+		replicaSynchronizer.whenReplicated(this::requestDispatch);
+	}
+
+	// Ignores requests after shutdown() (e.g. a replica copy finishing while
+	// the application context closes).
+	private void requestDispatch() {
+		if (dispatchPending.compareAndSet(false, true)) {
+			try {
+				dispatcher.execute(this::dispatch);
+			} catch (RejectedExecutionException e) {
+				// Shut down - nobody left to dispatch to.
+			}
+		}
+	}
+
+	private void dispatch() {
+		dispatchPending.set(false);
+		for (Subscriber subscriber : subscribers) {
+			try {
+				if (!subscriber.deliver()) {
+					subscribers.remove(subscriber);
+				}
+			} catch (RuntimeException e) {
+				subscribers.remove(subscriber);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		dispatcher.shutdownNow();
+		for (Subscriber subscriber : subscribers) {
+			subscriber.close();
+		}
+	}
+
+	// -----------------------------------------------
+	// Helper classes - one per waiting client.
+	// -----------------------------------------------
+
+	private interface Subscriber {
+		// Sends whatever is new; false once the client is done.
+		boolean deliver();
+
+		void close();
+	}
+
+	private final class LongPollSubscriber implements Subscriber {
+		private final long after;
+		private final int limit;
+		private final DeferredResult<List<CatalogChange>> result;
+
+		LongPollSubscriber(long after, int limit, DeferredResult<List<CatalogChange>> result) {
+			this.after = after;
+			this.limit = limit;
+			this.result = result;
+		}
+
+		@Override
+		public boolean deliver() {
+			if (result.isSetOrExpired()) {
+				return false;
+			}
+			List<CatalogChange> changes;
+			try {
+				changes = changesAfter(after, limit);
+			} catch (ChangesPrunedException e) {
+				result.setErrorResult(e);
+				return false;
+			}
+			if (changes.isEmpty()) {
+				return true;
+			}
+			result.setResult(changes);
+			return false;
+		}
+
+		@Override
+		public void close() {
+			result.setResult(Collections.<CatalogChange>emptyList());
+		}
+	}
+
+	private final class SseSubscriber implements Subscriber {
+		private final SseEmitter emitter;
+		private long position;   // Last sequence number sent
+
+		SseSubscriber(long after, SseEmitter emitter) {
+			this.position = after;
+			this.emitter = emitter;
+		}
+
+		@Override
+		public boolean deliver() {
+			List<CatalogChange> changes;
+			do {
+				try {
+					changes = changesAfter(position, MAX_BATCH);
+				} catch (ChangesPrunedException e) {
+					resync(e.getResyncAfter());
+					return false;
+				}
+				for (CatalogChange change : changes) {
+					try {
+						emitter.send(SseEmitter.event()
+								.id(String.valueOf(change.getId()))
+								.name("catalog-change")
+								.data(change));
+					} catch (IOException e) {
+						emitter.completeWithError(e);   // Client went away.
+						return false;
+					}
+					position = change.getId();
+				}
+			} while (changes.size() == MAX_BATCH);
+			return true;
+		}
+
+		private void resync(long resyncAfter) {
+			try {
+				emitter.send(SseEmitter.event().name("resync").data(resyncAfter));
+				emitter.complete();
+			} catch (IOException e) {
+				emitter.completeWithError(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			emitter.complete();
+		}
+	}
+
+}  // end class CatalogChangeFeed
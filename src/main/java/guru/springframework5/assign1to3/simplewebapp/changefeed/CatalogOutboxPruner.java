@@ -0,0 +1,139 @@
+// ***************************************************************************
+// Class:  CatalogOutboxPruner
+//
+// Keeps the catalog_change outbox from growing forever: every
+// app.change-feed.prune-interval-ms it deletes the rows older than
+// app.change-feed.retention-hours, in batches of DELETE_BATCH rows (one
+// transaction each, so writers are never held up by one long delete).
+//
+// Rows are deleted by sequence number - everything up to the newest row
+// past the retention age - so what is left is always a contiguous tail.
+// CatalogChangeFeed is told first (markPruned), and answers consumers that
+// are further behind with 410 Gone instead of an incomplete feed.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.changefeed;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.repositories.ICatalogChangeRepository;
+
+@Component
+public class CatalogOutboxPruner {
+
+	private static final Logger log = LoggerFactory.getLogger(CatalogOutboxPruner.class);
+
+	static final int DELETE_BATCH = 10_000;
+	private static final String NEWEST_EXPIRED_SQL = "SELECT MAX(id) FROM catalog_change WHERE changed_at < ?";
+	private static final String DELETE_SQL = "DELETE FROM catalog_change WHERE id <= ? LIMIT " + DELETE_BATCH;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transaction;
+	private final TransactionTemplate readOnlyTransaction;   // Reads the replica
+	private final ICatalogChangeRepository changeRepository;
+	private final CatalogChangeFeed changeFeed;
+
+	private final Duration retention;
+	private final long intervalMillis;
+
+	private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "catalog-outbox-pruner");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogOutboxPruner(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+	                           ICatalogChangeRepository changeRepository, CatalogChangeFeed changeFeed,
+	                           @Value("${app.change-feed.retention-hours:168}") long retentionHours,
+	                           @Value("${app.change-feed.prune-interval-ms:3600000}") long intervalMillis) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+		this.changeRepository = changeRepository;
+		this.changeFeed = changeFeed;
+		this.retention = Duration.ofHours(retentionHours);
+		this.intervalMillis = intervalMillis;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * Starts the periodic pruning.  Rows missing below the oldest kept one
+	 * (pruned before a restart) count as pruned.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		Long oldest = readOnlyTransaction.execute(status -> changeRepository.findOldestId());
+		if (oldest != null) {
+			changeFeed.markPruned(oldest - 1);
+		}
+		worker.scheduleWithFixedDelay(this::pruneQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		worker.shutdownNow();
+	}
+
+	/**
+	 * Deletes the rows that changed before "cutoff".
+	 *
+	 * @return rows deleted.
+	 */
+	public int prune(Instant cutoff) {
+		Long through = jdbcTemplate.queryForObject(NEWEST_EXPIRED_SQL, Long.class, Timestamp.from(cutoff));
+		if (through == null) {
+			return 0;
+		}
+		changeFeed.markPruned(through);
+		int deleted = 0;
+		int batch;
+		do {
+			batch = transaction.execute(status -> jdbcTemplate.update(DELETE_SQL, through));
+			deleted += batch;
+		} while (batch == DELETE_BATCH);
+		return deleted;
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private void pruneQuietly() {
+		try {
+			int deleted = prune(Instant.now().minus(retention));
+			if (deleted > 0) {
+				log.info("Pruned {} catalog changes older than {}", deleted, retention);
+			}
+		} catch (RuntimeException e) {
+			log.warn("Pruning the catalog change outbox failed, will retry: {}", e.toString());
+		}
+	}
+
+}  // end class CatalogOutboxPruner
@@ -0,0 +1,108 @@
+// ***************************************************************************
+// Class:  CatalogOutboxWriter
+//
+// Writes a catalog_change "outbox" row for every CatalogChangeEvent (and for
+// each change in a CatalogBulkChangeEvent, as one JDBC batch).
+//
+// The event is published while Hibernate flushes, so this runs inside the
+// transaction that changed the catalog and JdbcTemplate uses that
+// transaction's connection: the outbox row commits (or rolls back) together
+// with the change itself.
+//
+// Plain SQL is used because JPA does not allow persisting new entities from
+// inside a flush callback.
+//
+// Rows are numbered in commit order, with no gaps: the numbers come from the
+// one row of catalog_change_counter, read with SELECT ... FOR UPDATE, so the
+// row stays locked until the transaction ends.  A concurrent writer waits for
+// that commit (or rollback) before it gets its numbers.  A consumer that has
+// seen number N has therefore seen every change numbered below N.  Only the
+// end of a writing transaction is serialized: entity events arrive with the
+// flush at commit, and imports publish their bulk event last.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.changefeed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogBulkChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent;
+
+@Component
+public class CatalogOutboxWriter {
+
+	private static final String LOCK_COUNTER_SQL = "SELECT last_id FROM catalog_change_counter WHERE id = 1 FOR UPDATE";
+	private static final String ADVANCE_COUNTER_SQL = "UPDATE catalog_change_counter SET last_id = ? WHERE id = 1";
+	private static final String INSERT_SQL =
+			"INSERT INTO catalog_change (id, entity_type, entity_id, change_type, changed_at) " +
+			"VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)";
+	private static final int BATCH_SIZE = 1000;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final JdbcTemplate jdbcTemplate;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogOutboxWriter(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	@EventListener
+	public void onCatalogChange(CatalogChangeEvent event) {
+		jdbcTemplate.update(INSERT_SQL,
+				reserve(1),
+				event.getEntityType().getSimpleName(),
+				event.getEntityId(),
+				event.getChangeType().name());
+	}
+
+	@EventListener
+	public void onCatalogBulkChange(CatalogBulkChangeEvent event) {
+		List<CatalogChangeEvent> changes = event.getChanges();
+		if (changes.isEmpty()) {
+			return;
+		}
+		long first = reserve(changes.size());
+		List<Object[]> rows = new ArrayList<>(changes.size());
+		for (int i = 0; i < changes.size(); i++) {
+			CatalogChangeEvent change = changes.get(i);
+			rows.add(new Object[] { first + i, change.getEntityType().getSimpleName(), change.getEntityId(),
+					change.getChangeType().name() });
+		}
+		jdbcTemplate.batchUpdate(INSERT_SQL, rows, BATCH_SIZE, (statement, row) -> {
+			statement.setLong(1, (Long) row[0]);
+			statement.setString(2, (String) row[1]);
+			statement.setLong(3, (Long) row[2]);
+			statement.setString(4, (String) row[3]);
+		});
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Takes the next "count" sequence numbers; the counter row stays locked
+	// until the transaction ends.
+	private long reserve(int count) {
+		if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new IllegalStateException("Catalog changes must be written inside the transaction that made them");
+		}
+		long last = jdbcTemplate.queryForObject(LOCK_COUNTER_SQL, Long.class);
+		jdbcTemplate.update(ADVANCE_COUNTER_SQL, last + count);
+		return last + 1;
+	}
+
+}  // end class CatalogOutboxWriter
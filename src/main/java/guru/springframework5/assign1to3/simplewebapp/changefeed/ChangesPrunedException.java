@@ -0,0 +1,58 @@
+// ***************************************************************************
+// Class:  ChangesPrunedException
+//
+// A consumer asked for the changes after a sequence number whose successors
+// were already deleted by CatalogOutboxPruner - it is too far behind to
+// catch up from the feed.
+//
+// Answered with 410 Gone and header Catalog-Resync-After: N.  The consumer
+// must reload the catalog (e.g. GET /books?size=0) and then continue the feed
+// with after=N.  N is read before the reload, so changes committed while it
+// reloads are sent again rather than missed.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.changefeed;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class ChangesPrunedException extends ResponseStatusException {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String RESYNC_AFTER_HEADER = "Catalog-Resync-After";
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final long resyncAfter;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public ChangesPrunedException(long after, long prunedThrough, long resyncAfter) {
+		super(HttpStatus.GONE, "Changes after " + after + " were pruned (up to " + prunedThrough
+				+ "); reload the catalog and continue after " + resyncAfter);
+		this.resyncAfter = resyncAfter;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * @return sequence number to continue the feed after, once reloaded.
+	 */
+	public long getResyncAfter() {
+		return resyncAfter;
+	}
+
+	@Override
+	public HttpHeaders getResponseHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(RESYNC_AFTER_HEADER, Long.toString(resyncAfter));
+		return headers;
+	}
+
+}  // end class ChangesPrunedException
@@ -0,0 +1,108 @@
+// ***************************************************************************
+// Class:  DataSourceConfig
+//
+// Java configuration for the read/write split.
+//
+// Two connection pools are created from application.properties:
+//    app.datasource.primary.*  - all writes (save, delete, BootStrapData)
+//    app.datasource.replica.*  - read-only transactions (list pages, etc.)
+//
+// The DataSource handed to JPA / Hibernate (marked @Primary) is a
+// LazyConnectionDataSourceProxy around a ReadWriteRoutingDataSource, so each
+// transaction is sent to the right database.  Mark a method
+// @Transactional(readOnly = true) to have it read from the replica.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@Configuration
+public class DataSourceConfig {
+
+	// -----------------------------------------------
+	// Connection settings (bound from application.properties)
+	// -----------------------------------------------
+
+	@Bean
+	@Primary
+	@ConfigurationProperties("app.datasource.primary")
+	public DataSourceProperties primaryDataSourceProperties() {
+		return new DataSourceProperties();
+	}
+
+	@Bean
+	@ConfigurationProperties("app.datasource.replica")
+	public DataSourceProperties replicaDataSourceProperties() {
+		return new DataSourceProperties();
+	}
+
+	// -----------------------------------------------
+	// Connection pools and routing
+	//
+	// NOTE: The pools are deliberately NOT beans of their own.  Spring Boot
+	// runs its DataSource initializer for every DataSource bean, and that
+	// initializer needs the @Primary "dataSource" below (circular reference).
+	// ReplicaSynchronizer owns the pools and closes them on shutdown.
+	// -----------------------------------------------
+
+	@Bean
+	public ReplicaSynchronizer replicaSynchronizer(
+			@Qualifier("primaryDataSourceProperties") DataSourceProperties primaryProperties,
+			@Qualifier("replicaDataSourceProperties") DataSourceProperties replicaProperties) {
+		return new ReplicaSynchronizer(createPool(primaryProperties, "primary"),
+		                               createPool(replicaProperties, "replica"),
+		                               createPool(primaryProperties, "primary-copy", 1));
+	}
+
+	/**
+	 * The DataSource used by JPA / Hibernate.
+	 *
+	 * @return routing DataSource wrapped so the real connection is only picked
+	 *         once Spring knows whether the transaction is read-only.
+	 */
+	@Bean
+	@Primary
+	public DataSource dataSource(ReplicaSynchronizer replicaSynchronizer) {
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(ReadWriteRoutingDataSource.PRIMARY, replicaSynchronizer.getPrimary());
+		targets.put(ReadWriteRoutingDataSource.REPLICA, replicaSynchronizer.getReplica());
+
+		ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(replicaSynchronizer);
+		routing.setTargetDataSources(targets);
+		routing.setDefaultTargetDataSource(replicaSynchronizer.getPrimary());
+		routing.afterPropertiesSet();
+
+		return new LazyConnectionDataSourceProxy(routing);
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static HikariDataSource createPool(DataSourceProperties properties, String poolName) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		dataSource.setPoolName(poolName);
+		return dataSource;
+	}
+
+	private static HikariDataSource createPool(DataSourceProperties properties, String poolName, int size) {
+		HikariDataSource dataSource = createPool(properties, poolName);
+		dataSource.setMaximumPoolSize(size);
+		dataSource.setMinimumIdle(size);
+		return dataSource;
+	}
+
+}  // end class DataSourceConfig
@@ -0,0 +1,64 @@
+// ***************************************************************************
+// Class:  ReadWriteRoutingDataSource
+//
+// DataSource that sends each connection request either to the primary
+// (read-write) database or to the read replica.
+//
+// Spring keeps track of whether the current transaction was started with
+// @Transactional(readOnly = true).  If so, the connection comes from the
+// replica; everything else (save, delete, schema creation, no transaction)
+// goes to the primary.
+//
+// NOTE: Spring only marks the transaction read-only AFTER it has asked for a
+// connection, so this DataSource must be wrapped in a
+// LazyConnectionDataSourceProxy (see DataSourceConfig) which waits until the
+// first SQL statement before picking the real connection.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+	// Lookup keys used in the target DataSource map.
+	public static final String PRIMARY = "primary";
+	public static final String REPLICA = "replica";
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	// Told about every read-write transaction so the replica is refreshed
+	// once that transaction commits.
+	private final ReplicaSynchronizer replicaSynchronizer;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public ReadWriteRoutingDataSource(ReplicaSynchronizer replicaSynchronizer) {
+		this.replicaSynchronizer = replicaSynchronizer;
+	}
+
+	// -----------------------------------------------
+	// Implementation of AbstractRoutingDataSource
+	// -----------------------------------------------
+
+	/**
+	 * Picks the DataSource for the connection being requested.
+	 *
+	 * @return REPLICA inside a read-only transaction; PRIMARY otherwise.
+	 */
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return REPLICA;
+		}
+
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			replicaSynchronizer.synchronizeAfterCommit();
+		}
+		return PRIMARY;
+	}
+
+}  // end class ReadWriteRoutingDataSource
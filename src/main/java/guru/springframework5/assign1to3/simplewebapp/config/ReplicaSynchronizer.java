@@ -0,0 +1,457 @@
+// ***************************************************************************
+// Class:  ReplicaSynchronizer
+//
+// Replication stand-in for local development.
+//
+// In production the replica is kept up to date by the database itself.
+// Locally both databases are H2 in-memory instances, so after committed
+// read-write transactions this class copies the tables that changed from
+// the primary into the replica, using H2's SCRIPT command (dump schema +
+// data as SQL) and replaying the dump on the replica.
+//
+// Only changed tables are copied: H2 keeps a LAST_MODIFICATION number per
+// table (INFORMATION_SCHEMA.TABLES), bumped by every write and commit, and a
+// table is copied when its number differs from the one it had at its last
+// copy.  A view count flush copies book_view, not the catalog.  H2 bumps the
+// number just BEFORE a commit becomes visible, so a table copied while a
+// read-write transaction was still open is copied again next time.
+//
+// Copies run on one background thread ("replica-synchronizer"), not on the
+// committing thread, and a burst of commits is coalesced into one copy -
+// writers never wait for the replica.  So, like a real replica, it lags
+// slightly behind the primary.  Code that reads the replica after a change
+// (read-side indexes, change feed) registers whenReplicated() callbacks,
+// which run once every transaction committed before the call is copied.
+//
+// The first copy (and any copy after the schema changed) drops and recreates
+// everything.  After that only the changed tables' rows are replaced, inside
+// one replica transaction, so readers keep seeing the previous data until it
+// commits.  Foreign keys are not checked on the replica - it only mirrors
+// the primary.
+//
+// Bulk loads that commit many transactions in a row can defer() the copies
+// and get a single copy at the end instead of one per commit.
+//
+// The copy reads the primary through its own one-connection pool, so it
+// never competes with request threads for pooled connections.
+//
+// Owns the connection pools (see DataSourceConfig) and closes them on
+// shutdown.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import guru.springframework5.assign1to3.simplewebapp.readmodel.CoalescingRebuilder;
+
+public class ReplicaSynchronizer {
+
+	private static final Logger log = LoggerFactory.getLogger(ReplicaSynchronizer.class);
+
+	private static final String TABLE_VERSIONS_SQL =
+			"SELECT TABLE_NAME, LAST_MODIFICATION FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC'";
+
+	// Version recorded for a table that must be copied again.
+	private static final long RECOPY = -1;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final DataSource primary;
+	private final DataSource replica;
+	private final DataSource copySource;   // Primary again, used only by copy()
+
+	private final CoalescingRebuilder copier = new CoalescingRebuilder("replica-synchronizer", this::copyQuietly);
+
+	// Guarded by "copyLock" (one copy at a time): schema last copied to the
+	// replica (null = nothing copied yet) and each table's LAST_MODIFICATION
+	// when it was last copied.
+	private final Object copyLock = new Object();
+	private List<String> appliedSchema;
+	private final Map<String, Long> copiedVersions = new HashMap<>();
+
+	// Guarded by "this":
+	//    committed / replicated - read-write transactions committed, and how
+	//                             many of them the replica has caught up with
+	//    openWriters            - read-write transactions not completed yet
+	//    deferrals              - open Deferrals (and whether a commit happened
+	//                             while there were any)
+	//    waiting                - whenReplicated() callbacks
+	private long committed;
+	private long replicated;
+	private int openWriters;
+	private int deferrals;
+	private boolean copyDeferred;
+	private final List<Waiting> waiting = new ArrayList<>();
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public ReplicaSynchronizer(DataSource primary, DataSource replica, DataSource copySource) {
+		this.primary = primary;
+		this.replica = replica;
+		this.copySource = copySource;
+	}
+
+	// -----------------------------------------------
+	// Getters
+	// -----------------------------------------------
+
+	public DataSource getPrimary() {
+		return primary;
+	}
+
+	public DataSource getReplica() {
+		return replica;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * Flyway creates the schema on the primary outside any Spring
+	 * transaction, so copy it over once the context is up (before
+	 * BootStrapData runs).
+	 */
+	@EventListener(ContextRefreshedEvent.class)
+	public void onContextRefreshed() {
+		copy();
+	}
+
+	/**
+	 * Brings the replica up to date before the read-side indexes load
+	 * themselves from it (their listeners run after this one).
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void onApplicationReady() {
+		copy();
+	}
+
+	/**
+	 * Registers (once per transaction) a callback that has the replica
+	 * updated after the current transaction commits.  Rolled back
+	 * transactions do not trigger a copy.
+	 */
+	public void synchronizeAfterCommit() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		for (TransactionSynchronization registered : TransactionSynchronizationManager.getSynchronizations()) {
+			if (registered instanceof AfterCommitSync) {
+				return;   // Already registered for this transaction.
+			}
+		}
+		TransactionSynchronizationManager.registerSynchronization(new AfterCommitSync());
+		synchronized (this) {
+			openWriters++;
+		}
+	}
+
+	/**
+	 * Runs the action once every transaction committed so far is on the
+	 * replica: right away if it already is, otherwise on the copy thread
+	 * after the copy (so it should be quick, e.g. request a rebuild).
+	 */
+	public void whenReplicated(Runnable action) {
+		synchronized (this) {
+			if (replicated < committed) {
+				waiting.add(new Waiting(committed, action));
+				return;
+			}
+		}
+		action.run();
+	}
+
+	/**
+	 * Holds back the after-commit copies until the returned Deferral is
+	 * closed; the replica then gets one copy covering all of them.  Readers
+	 * see the replica as it was before the deferral until then.
+	 */
+	public synchronized Deferral defer() {
+		deferrals++;
+		return new Deferral();
+	}
+
+	/**
+	 * Copies the tables changed since the last copy from the primary into
+	 * the replica, on the calling thread.
+	 */
+	public void copy() {
+		synchronized (copyLock) {
+			try (Connection source = copySource.getConnection();
+				 Connection target = replica.getConnection();
+				 Statement read = source.createStatement();
+				 Statement write = target.createStatement()) {
+
+				long upTo;
+				synchronized (this) {
+					upTo = committed;   // Each of these commits is visible to SCRIPT below.
+				}
+				Map<String, Long> versions = new LinkedHashMap<>();
+				try (ResultSet rs = read.executeQuery(TABLE_VERSIONS_SQL)) {
+					while (rs.next()) {
+						versions.put(rs.getString(1), rs.getLong(2));
+					}
+				}
+				boolean writersOpen;
+				synchronized (this) {
+					writersOpen = openWriters > 0;
+				}
+
+				List<String> schema = new ArrayList<>();
+				script(read, "SCRIPT NODATA", schema, null);
+				if (!schemaSignature(schema).equals(appliedSchema)) {
+					List<String> rows = new ArrayList<>();
+					schema.clear();
+					script(read, "SCRIPT", schema, rows);
+					recreate(write, schema, rows);
+					appliedSchema = schemaSignature(schema);
+					copiedVersions.clear();
+					record(versions.keySet(), versions, writersOpen);
+				} else {
+					List<String> changed = new ArrayList<>();
+					for (Map.Entry<String, Long> table : versions.entrySet()) {
+						if (!table.getValue().equals(copiedVersions.get(table.getKey()))) {
+							changed.add(table.getKey());
+						}
+					}
+					if (!changed.isEmpty()) {
+						List<String> rows = new ArrayList<>();
+						script(read, "SCRIPT TABLE " + tableList(changed), null, rows);
+						refreshRows(target, write, changed, rows);
+						record(changed, versions, writersOpen);
+					}
+				}
+				caughtUp(upTo);
+			} catch (SQLException e) {
+				throw new IllegalStateException("Could not copy primary database to replica", e);
+			}
+		}
+	}  // end copy()
+
+	/**
+	 * Closes the connection pools.  Called by Spring on shutdown.
+	 */
+	public void close() throws Exception {
+		copier.shutdown();
+		for (DataSource dataSource : new DataSource[] { copySource, primary, replica }) {
+			if (dataSource instanceof AutoCloseable) {
+				((AutoCloseable) dataSource).close();
+			}
+		}
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// On the copy thread: a failed copy is retried by the next one, and the
+	// callbacks waiting for it keep waiting until then.
+	private void copyQuietly() {
+		try {
+			copy();
+		} catch (RuntimeException e) {
+			log.warn("Could not copy primary database to replica, retrying with the next commit", e);
+		}
+	}
+
+	// Marks the commits up to "upTo" as replicated and runs the callbacks
+	// waiting for them.
+	private void caughtUp(long upTo) {
+		List<Runnable> ready = new ArrayList<>();
+		synchronized (this) {
+			replicated = Math.max(replicated, upTo);
+			for (Iterator<Waiting> it = waiting.iterator(); it.hasNext(); ) {
+				Waiting next = it.next();
+				if (next.commit <= replicated) {
+					ready.add(next.action);
+					it.remove();
+				}
+			}
+		}
+		for (Runnable action : ready) {
+			try {
+				action.run();
+			} catch (RuntimeException e) {
+				log.warn("Replica callback failed", e);
+			}
+		}
+	}
+
+	// Remembers the versions just copied - unless a transaction was open, whose
+	// commit may have bumped them before its rows became visible.
+	private void record(Iterable<String> tables, Map<String, Long> versions, boolean writersOpen) {
+		for (String table : tables) {
+			copiedVersions.put(table, writersOpen ? RECOPY : versions.get(table));
+		}
+	}
+
+	// Runs a SCRIPT command and splits the dump into schema statements and
+	// row inserts (either list may be null = not needed).
+	private static void script(Statement read, String command, List<String> schema, List<String> rows)
+			throws SQLException {
+		try (ResultSet rs = read.executeQuery(command)) {
+			while (rs.next()) {
+				String sql = rs.getString(1);
+				if (sql.startsWith("INSERT INTO")) {
+					if (rows != null) {
+						rows.add(sql);
+					}
+				} else if (!sql.startsWith("--") && schema != null) {
+					schema.add(sql);
+				}
+			}
+		}
+	}
+
+	// Drops everything on the replica and replays the whole dump.
+	private static void recreate(Statement write, List<String> schema, List<String> rows) throws SQLException {
+		write.execute("DROP ALL OBJECTS");
+		for (String sql : schema) {
+			write.execute(sql);
+		}
+		write.execute("SET REFERENTIAL_INTEGRITY FALSE");
+		for (String sql : rows) {
+			write.execute(sql);
+		}
+	}
+
+	// Replaces the rows of the given tables in a single replica transaction.
+	private static void refreshRows(Connection target, Statement write, List<String> tables, List<String> rows)
+			throws SQLException {
+		target.setAutoCommit(false);
+		try {
+			for (String table : tables) {
+				write.execute("DELETE FROM " + qualified(table));
+			}
+			for (String sql : rows) {
+				write.execute(sql);
+			}
+			target.commit();
+		} catch (SQLException e) {
+			target.rollback();
+			throw e;
+		} finally {
+			target.setAutoCommit(true);
+		}
+	}
+
+	private static String tableList(List<String> tables) {
+		StringBuilder list = new StringBuilder();
+		for (String table : tables) {
+			list.append(list.length() == 0 ? "" : ", ").append(qualified(table));
+		}
+		return list.toString();
+	}
+
+	private static String qualified(String table) {
+		return "\"PUBLIC\".\"" + table + '"';
+	}
+
+	// Schema statements minus sequences (their START WITH changes on every insert).
+	private static List<String> schemaSignature(List<String> schema) {
+		List<String> signature = new ArrayList<>();
+		for (String sql : schema) {
+			if (!sql.startsWith("CREATE SEQUENCE")) {
+				signature.add(sql);
+			}
+		}
+		return signature;
+	}
+
+	// -----------------------------------------------
+	// Helper classes
+	// -----------------------------------------------
+
+	// Ordered first, so "committed" already counts the transaction when the
+	// @TransactionalEventListeners it triggers call whenReplicated().
+	private class AfterCommitSync implements TransactionSynchronization, Ordered {
+		@Override
+		public int getOrder() {
+			return Ordered.HIGHEST_PRECEDENCE;
+		}
+
+		@Override
+		public void afterCommit() {
+			synchronized (ReplicaSynchronizer.this) {
+				committed++;
+				if (deferrals > 0) {
+					copyDeferred = true;
+					return;
+				}
+			}
+			copier.request();
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			synchronized (ReplicaSynchronizer.this) {
+				openWriters--;
+			}
+		}
+	}
+
+	private static final class Waiting {
+		final long commit;
+		final Runnable action;
+
+		Waiting(long commit, Runnable action) {
+			this.commit = commit;
+			this.action = action;
+		}
+	}
+
+	/**
+	 * Returned by defer(); close() ends the deferral and, if anything was
+	 * committed meanwhile, copies it on the closing thread.
+	 */
+	public final class Deferral implements AutoCloseable {
+		private boolean closed;
+
+		private Deferral() {
+		}
+
+		@Override
+		public void close() {
+			boolean copyNow;
+			synchronized (ReplicaSynchronizer.this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				copyNow = (--deferrals == 0 && copyDeferred);
+				if (copyNow) {
+					copyDeferred = false;
+				}
+			}
+			if (copyNow) {
+				copy();
+			}
+		}
+	}
+
+}  // end class ReplicaSynchronizer
@@ -0,0 +1,207 @@
+// ***************************************************************************
+// Class:  SchemaDriftCheck
+//
+// Fails startup when the entity mapping no longer matches the schema built
+// by the Flyway migrations (src/main/resources/db/migration).
+//
+// The schema is owned by the migrations; Hibernate no longer creates it
+// (spring.jpa.hibernate.ddl-auto=validate).  Hibernate's validation covers
+// tables, columns, column types and sequences but ignores indexes, so this
+// class checks those: every @Index declared on an entity (or @JoinTable)
+// must exist in the database with the same columns in the same order, and
+// be unique there if it is declared unique (natural keys).  An
+// index added to an entity without a migration - or a migration that drops
+// or changes one - stops the application instead of silently changing query
+// plans.
+//
+// Hibernate hands its mapping (Metadata) to Integrators while the
+// EntityManagerFactory is built; this class registers itself as one through
+// the "hibernate.integrator_provider" property and runs the check once all
+// singletons, including the EntityManagerFactory, exist.
+//
+// Turned off with app.schema.drift-check=false.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.config;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.Index;
+import org.hibernate.mapping.Table;
+import org.hibernate.mapping.UniqueKey;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SchemaDriftCheck implements HibernatePropertiesCustomizer, Integrator, SmartInitializingSingleton {
+
+	private static final Logger log = LoggerFactory.getLogger(SchemaDriftCheck.class);
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final DataSource dataSource;
+	private final boolean enabled;
+
+	// Hibernate's mapping, captured in integrate().
+	private volatile Metadata metadata;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public SchemaDriftCheck(DataSource dataSource, @Value("${app.schema.drift-check:true}") boolean enabled) {
+		this.dataSource = dataSource;
+		this.enabled = enabled;
+	}
+
+	// -----------------------------------------------
+	// Capturing the mapping
+	// -----------------------------------------------
+
+	@Override
+	public void customize(Map<String, Object> hibernateProperties) {
+		if (enabled) {
+			hibernateProperties.put("hibernate.integrator_provider", (IntegratorProvider) () -> Collections.singletonList(this));
+		}
+	}
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+	                      SessionFactoryServiceRegistry serviceRegistry) {
+		this.metadata = metadata;
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		// Nothing to release.
+	}
+
+	// -----------------------------------------------
+	// The check
+	// -----------------------------------------------
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		if (!enabled) {
+			return;
+		}
+		if (metadata == null) {
+			throw new IllegalStateException("Schema drift check: Hibernate mapping was not captured");
+		}
+		List<String> problems;
+		try {
+			problems = check();
+		} catch (SQLException e) {
+			throw new IllegalStateException("Schema drift check: could not read the database indexes", e);
+		}
+		if (!problems.isEmpty()) {
+			throw new IllegalStateException("Entity mapping does not match the migrated schema "
+					+ "(add a migration under db/migration or fix the mapping):\n  " + String.join("\n  ", problems));
+		}
+		log.info("Schema drift check passed");
+	}
+
+	/**
+	 * @return one message per mapped index that is missing or different in
+	 *         the database (empty = no drift).
+	 */
+	List<String> check() throws SQLException {
+		List<String> problems = new ArrayList<>();
+		try (Connection connection = dataSource.getConnection()) {
+			DatabaseMetaData databaseMetaData = connection.getMetaData();
+			for (Table table : metadata.collectTableMappings()) {
+				// @Index(unique = true) is mapped as a unique key, not an index.
+				if (!table.getIndexIterator().hasNext() && !table.getUniqueKeyIterator().hasNext()) {
+					continue;
+				}
+				Set<String> unique = new HashSet<>();
+				Map<String, List<String>> actual = indexColumns(databaseMetaData, table.getName(), unique);
+				for (Iterator<Index> indexes = table.getIndexIterator(); indexes.hasNext(); ) {
+					Index index = indexes.next();
+					check(table, index.getName(), index.getColumnIterator(), false, actual, unique, problems);
+				}
+				for (Iterator<UniqueKey> keys = table.getUniqueKeyIterator(); keys.hasNext(); ) {
+					UniqueKey key = keys.next();
+					check(table, key.getName(), key.getColumnIterator(), true, actual, unique, problems);
+				}
+			}
+		}
+		return problems;
+	}  // end check()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static void check(Table table, String name, Iterator<Column> columns, boolean mappedUnique,
+	                          Map<String, List<String>> actual, Set<String> unique, List<String> problems) {
+		List<String> expected = new ArrayList<>();
+		while (columns.hasNext()) {
+			expected.add(normalize(columns.next().getName()));
+		}
+		List<String> found = actual.get(normalize(name));
+		if (found == null) {
+			problems.add("index " + name + " on " + table.getName() + expected + " is missing");
+		} else if (!found.equals(expected)) {
+			problems.add("index " + name + " on " + table.getName() + " has columns " + found
+					+ ", mapping says " + expected);
+		} else if (mappedUnique && !unique.contains(normalize(name))) {
+			problems.add("index " + name + " on " + table.getName() + " is not unique, mapping says unique");
+		}
+	}
+
+	// Index name -> column names in index order, for one table; the names of
+	// its unique indexes are added to "unique".
+	private static Map<String, List<String>> indexColumns(DatabaseMetaData databaseMetaData, String table,
+	                                                      Set<String> unique) throws SQLException {
+		String name = databaseMetaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT)
+				: databaseMetaData.storesLowerCaseIdentifiers() ? table.toLowerCase(Locale.ROOT) : table;
+		Map<String, TreeMap<Short, String>> byPosition = new TreeMap<>();
+		try (ResultSet rs = databaseMetaData.getIndexInfo(null, null, name, false, false)) {
+			while (rs.next()) {
+				String index = rs.getString("INDEX_NAME");
+				String column = rs.getString("COLUMN_NAME");
+				if (index != null && column != null) {
+					byPosition.computeIfAbsent(normalize(index), key -> new TreeMap<>())
+							  .put(rs.getShort("ORDINAL_POSITION"), normalize(column));
+					if (!rs.getBoolean("NON_UNIQUE")) {
+						unique.add(normalize(index));
+					}
+				}
+			}
+		}
+		Map<String, List<String>> result = new TreeMap<>();
+		byPosition.forEach((index, columns) -> result.put(index, new ArrayList<>(columns.values())));
+		return result;
+	}
+
+	private static String normalize(String identifier) {
+		return identifier.toLowerCase(Locale.ROOT);
+	}
+
+}  // end class SchemaDriftCheck
@@ -0,0 +1,53 @@
+// ***************************************************************************
+// Class:  TrainingRun
+//
+// Training run of the application for the fast-startup build (see pom.xml):
+// the JVM writes the class-data-sharing archive (-XX:ArchiveClassesAtExit)
+// when it exits, with every class loaded so far.
+//
+// With app.training-run=true this class waits until the application is ready
+// (BootStrapData has run), requests each list page once - so serving them
+// (MVC, Thymeleaf, the list queries) is covered too - and shuts the
+// application down.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(prefix = "app", name = "training-run", havingValue = "true")
+public class TrainingRun {
+
+	private static final Logger log = LoggerFactory.getLogger(TrainingRun.class);
+
+	private static final String[] PAGES = { "/books", "/authors", "/publishers" };
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady(ApplicationReadyEvent event) throws IOException {
+		String port = event.getApplicationContext().getEnvironment().getProperty("local.server.port", "8080");
+		for (String page : PAGES) {
+			HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + page).openConnection();
+			try (InputStream body = connection.getInputStream()) {
+				long bytes = body.transferTo(OutputStream.nullOutputStream());
+				log.info("Training run: {} answered {} ({} bytes)", page, connection.getResponseCode(), bytes);
+			} finally {
+				connection.disconnect();
+			}
+		}
+		log.info("Training run complete, exiting");
+		System.exit(SpringApplication.exit(event.getApplicationContext()));
+	}
+
+}  // end class TrainingRun
@@ -0,0 +1,85 @@
+// ***************************************************************************
+// Class:  WebMvcConfig
+//
+// Spring MVC additions to Spring Boot's defaults: handler interceptors and
+// servlet filters.
+//
+//    web.LoopbackOnlyInterceptor         - /admin and the import feed only from this machine
+//                                          (app.loopback-only.paths)
+//    views.RenderMetrics                 - render time per view template
+//    profiling.FlightRecorderInterceptor - JFR events per request and render
+//    web.ConcurrencyLimitInterceptor     - adaptive concurrency limit / load shedding
+//                                          (app.concurrency-limit.enabled / .paths)
+//    web.RequestCoalescingFilter         - single-flight for the list pages
+//                                          (app.coalescing.enabled / .paths)
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.config;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import guru.springframework5.assign1to3.simplewebapp.profiling.FlightRecorderInterceptor;
+import guru.springframework5.assign1to3.simplewebapp.views.RenderMetrics;
+import guru.springframework5.assign1to3.simplewebapp.web.ConcurrencyLimitInterceptor;
+import guru.springframework5.assign1to3.simplewebapp.web.LoopbackOnlyInterceptor;
+import guru.springframework5.assign1to3.simplewebapp.web.RequestCoalescingFilter;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+	private final RenderMetrics renderMetrics;
+	private final ConcurrencyLimitInterceptor concurrencyLimit;
+	private final boolean concurrencyLimitEnabled;
+	private final FlightRecorderInterceptor flightRecorder;
+	private final LoopbackOnlyInterceptor loopbackOnly;
+
+	public WebMvcConfig(RenderMetrics renderMetrics, ConcurrencyLimitInterceptor concurrencyLimit,
+	                    @Value("${app.concurrency-limit.enabled:true}") boolean concurrencyLimitEnabled,
+	                    FlightRecorderInterceptor flightRecorder, LoopbackOnlyInterceptor loopbackOnly) {
+		this.loopbackOnly = loopbackOnly;
+		this.renderMetrics = renderMetrics;
+		this.flightRecorder = flightRecorder;
+		this.concurrencyLimit = concurrencyLimit;
+		this.concurrencyLimitEnabled = concurrencyLimitEnabled;
+	}
+
+	// Filters (coalescing) run before these, so only requests that actually
+	// run the controller count against the concurrency limit.
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(loopbackOnly).addPathPatterns(loopbackOnly.getPaths());   // First: refuse before anything runs
+		if (concurrencyLimitEnabled) {
+			registry.addInterceptor(concurrencyLimit).addPathPatterns(concurrencyLimit.getPaths());
+		}
+		registry.addInterceptor(renderMetrics);
+		registry.addInterceptor(flightRecorder);
+	}
+
+	// Precompresses shared pages by the same rules as server.compression.
+	@Bean
+	public RequestCoalescingFilter requestCoalescingFilter(ServerProperties serverProperties,
+			@Value("${app.coalescing.max-wait-ms:5000}") long maxWaitMillis,
+			@Value("${app.coalescing.cache-ttl-ms:0}") long cacheTtlMillis) {
+		return new RequestCoalescingFilter(serverProperties.getCompression(), maxWaitMillis, cacheTtlMillis);
+	}
+
+	// Registered for the list pages only (a filter bean alone would get /*).
+	@Bean
+	public FilterRegistrationBean<RequestCoalescingFilter> requestCoalescingFilterRegistration(
+			RequestCoalescingFilter filter,
+			@Value("${app.coalescing.enabled:true}") boolean enabled,
+			@Value("${app.coalescing.paths:/books,/authors}") String[] paths) {
+		FilterRegistrationBean<RequestCoalescingFilter> registration = new FilterRegistrationBean<>(filter);
+		registration.setUrlPatterns(Arrays.asList(paths));
+		registration.setEnabled(enabled);
+		return registration;
+	}
+
+}  // end class WebMvcConfig
@@ -0,0 +1,67 @@
+// ***************************************************************************
+// Class:  AdjacencyController
+//
+// JSON endpoints over CatalogAdjacencyIndex.  Return only ids (no entities
+// are loaded) plus a summary of the index size and memory usage.
+//
+// @RestController = @Controller + @ResponseBody, so the return values are
+// written as JSON instead of being treated as view names.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import guru.springframework5.assign1to3.simplewebapp.readmodel.CatalogAdjacencyIndex;
+
+@RestController
+public class AdjacencyController {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final CatalogAdjacencyIndex adjacencyIndex;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public AdjacencyController(CatalogAdjacencyIndex adjacencyIndex) {
+		this.adjacencyIndex = adjacencyIndex;
+	}
+
+	// -----------------------------------------------
+	// Controller Methods
+	// -----------------------------------------------
+
+	@GetMapping("/api/authors/{id}/book-ids")
+	public long[] getBookIdsOfAuthor(@PathVariable long id) {
+		return adjacencyIndex.bookIdsOfAuthor(id);
+	}
+
+	@GetMapping("/api/books/{id}/author-ids")
+	public long[] getAuthorIdsOfBook(@PathVariable long id) {
+		return adjacencyIndex.authorIdsOfBook(id);
+	}
+
+	@GetMapping("/api/publishers/{id}/book-ids")
+	public long[] getBookIdsOfPublisher(@PathVariable long id) {
+		return adjacencyIndex.bookIdsOfPublisher(id);
+	}
+
+	/**
+	 * @return memory used by the index, in bytes.
+	 */
+	@GetMapping("/api/adjacency-index")
+	public Map<String, Object> getIndexStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("memoryBytes", adjacencyIndex.memoryBytes());
+		stats.put("summary", adjacencyIndex.toString());
+		return stats;
+	}
+
+}  // end class AdjacencyController
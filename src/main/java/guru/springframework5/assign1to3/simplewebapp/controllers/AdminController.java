@@ -0,0 +1,253 @@
+// ***************************************************************************
+// Class:  AdminController
+//
+// Operational endpoints under /admin (JSON, not pages).  Only answered for
+// clients on this machine (web.LoopbackOnlyInterceptor).
+//
+//    POST /admin/catalog-snapshot       - write the read model to its snapshot file
+//    POST /admin/catalog-import?file=F  - import the JSON Lines file F (a path
+//                                         relative to app.import.directory on
+//                                         this server) in parallel
+//    GET  /admin/render-metrics         - render time per view template
+//    GET  /admin/coalescing             - list requests executed vs. coalesced
+//    GET  /admin/concurrency-limits     - concurrency limit and requests shed per page
+//    GET  /admin/book-views             - books counted and views not yet flushed
+//    GET  /admin/jfr                    - Flight Recorder recording status
+//    POST /admin/jfr/start?settings=S   - start a recording (S = default | profile)
+//    POST /admin/jfr/dump               - write the recording so far to a file
+//    POST /admin/jfr/stop               - stop the recording and write it to a file
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import guru.springframework5.assign1to3.simplewebapp.imports.ImportReport;
+import guru.springframework5.assign1to3.simplewebapp.imports.ParallelCatalogImporter;
+import guru.springframework5.assign1to3.simplewebapp.popularity.BookViewCounter;
+import guru.springframework5.assign1to3.simplewebapp.profiling.FlightRecordings;
+import guru.springframework5.assign1to3.simplewebapp.readmodel.CatalogColumns;
+import guru.springframework5.assign1to3.simplewebapp.readmodel.CatalogReadModel;
+import guru.springframework5.assign1to3.simplewebapp.views.RenderMetrics;
+import guru.springframework5.assign1to3.simplewebapp.web.ConcurrencyLimitInterceptor;
+import guru.springframework5.assign1to3.simplewebapp.web.RequestCoalescingFilter;
+
+@RestController
+public class AdminController {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	// Only exists when app.read-model.enabled=true.
+	private final ObjectProvider<CatalogReadModel> readModel;
+	private final ParallelCatalogImporter importer;
+	private final RenderMetrics renderMetrics;
+	private final RequestCoalescingFilter coalescingFilter;
+	private final ConcurrencyLimitInterceptor concurrencyLimit;
+	private final BookViewCounter viewCounter;
+	private final FlightRecordings flightRecordings;
+
+	// The only directory catalog-import reads from (empty = imports off).
+	private final String importDirectory;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public AdminController(ObjectProvider<CatalogReadModel> readModel, ParallelCatalogImporter importer,
+	                       RenderMetrics renderMetrics, RequestCoalescingFilter coalescingFilter,
+	                       ConcurrencyLimitInterceptor concurrencyLimit, BookViewCounter viewCounter,
+	                       FlightRecordings flightRecordings,
+	                       @Value("${app.import.directory:}") String importDirectory) {
+		this.readModel = readModel;
+		this.importer = importer;
+		this.renderMetrics = renderMetrics;
+		this.coalescingFilter = coalescingFilter;
+		this.concurrencyLimit = concurrencyLimit;
+		this.viewCounter = viewCounter;
+		this.flightRecordings = flightRecordings;
+		this.importDirectory = importDirectory;
+	}
+
+	// -----------------------------------------------
+	// Controller Methods
+	// -----------------------------------------------
+
+	/**
+	 * Writes the catalog snapshot now (it is also written on shutdown).
+	 *
+	 * @return file written and row counts.
+	 */
+	@PostMapping("/admin/catalog-snapshot")
+	public Map<String, Object> writeCatalogSnapshot() {
+		CatalogReadModel catalog = readModel.getIfAvailable();
+		if (catalog == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Read model is not enabled");
+		}
+
+		try {
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("file", catalog.writeSnapshot().toString());
+			CatalogColumns columns = catalog.getColumns();
+			result.put("books", columns.bookCount());
+			result.put("authors", columns.authorCount());
+			result.put("publishers", columns.publisherCount());
+			return result;
+		} catch (IllegalStateException e) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Imports a JSON Lines file that is already on this server, in
+	 * app.import.directory (see imports.ImportLine for the format).
+	 *
+	 * @param file path relative to app.import.directory; a path leading
+	 *             outside it is refused whether or not the file exists.
+	 * @return throughput per stage and outcome counts.
+	 */
+	@PostMapping("/admin/catalog-import")
+	public ImportReport importCatalog(@RequestParam String file) {
+		Path path = resolveImportFile(file);
+
+		try {
+			return importer.importFile(path);
+		} catch (IOException e) {
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not read " + file, e);
+		} catch (IllegalStateException e) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return renders, errors and first / mean / max render time of every
+	 *         template rendered since startup (see views.RenderMetrics).
+	 */
+	@GetMapping("/admin/render-metrics")
+	public List<RenderMetrics.TemplateStats> renderMetrics() {
+		return renderMetrics.getTemplates();
+	}
+
+	/**
+	 * @return list page requests that ran vs. were sent a concurrent
+	 *         identical request's page (see web.RequestCoalescingFilter).
+	 */
+	@GetMapping("/admin/coalescing")
+	public Map<String, Long> coalescing() {
+		return coalescingFilter.getMetrics();
+	}
+
+	/**
+	 * @return current limit, in-flight, accepted and rejected (503) requests
+	 *         and latencies per page (see web.ConcurrencyLimitInterceptor).
+	 */
+	@GetMapping("/admin/concurrency-limits")
+	public Map<String, Map<String, Object>> concurrencyLimits() {
+		return concurrencyLimit.getMetrics();
+	}
+
+	/**
+	 * @return books with a view count, views not yet flushed to the database
+	 *         and books in the ranking (see popularity.BookViewCounter).
+	 */
+	@GetMapping("/admin/book-views")
+	public Map<String, Long> bookViews() {
+		return viewCounter.getMetrics();
+	}
+
+	/**
+	 * @return whether a JFR recording runs, its size and where files go.
+	 */
+	@GetMapping("/admin/jfr")
+	public Map<String, Object> flightRecording() {
+		return flightRecordings.status();
+	}
+
+	/**
+	 * Starts a JFR recording including the application's events (see
+	 * profiling.FlightRecordings).
+	 */
+	@PostMapping("/admin/jfr/start")
+	public Map<String, Object> startFlightRecording(@RequestParam(defaultValue = "default") String settings) {
+		try {
+			return flightRecordings.start(settings);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		} catch (IllegalStateException e) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+		} catch (IOException e) {
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not start recording", e);
+		}
+	}
+
+	/**
+	 * @return file (on this server) the running recording was written to.
+	 */
+	@PostMapping("/admin/jfr/dump")
+	public Map<String, Object> dumpFlightRecording() {
+		return writeFlightRecording(false);
+	}
+
+	/**
+	 * @return file (on this server) the stopped recording was written to.
+	 */
+	@PostMapping("/admin/jfr/stop")
+	public Map<String, Object> stopFlightRecording() {
+		return writeFlightRecording(true);
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// The file inside the import directory, following links; 400 if there
+	// is no such file there.
+	private Path resolveImportFile(String file) {
+		if (importDirectory.isEmpty()) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Imports are not enabled (app.import.directory)");
+		}
+		try {
+			Path directory = Paths.get(importDirectory).toRealPath();
+			Path path = directory.resolve(file).normalize();
+			if (path.startsWith(directory) && Files.isRegularFile(path)) {
+				path = path.toRealPath();
+				if (path.startsWith(directory)) {
+					return path;
+				}
+			}
+		} catch (IOException | InvalidPathException e) {
+			// Same answer as for a missing file.
+		}
+		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No such file in the import directory: " + file);
+	}
+
+	private Map<String, Object> writeFlightRecording(boolean stop) {
+		try {
+			Path file = stop ? flightRecordings.stop() : flightRecordings.dump();
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("file", file.toString());
+			result.put("bytes", Files.size(file));
+			return result;
+		} catch (IllegalStateException e) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+		} catch (IOException e) {
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not write recording", e);
+		}
+	}
+
+}  // end class AdminController
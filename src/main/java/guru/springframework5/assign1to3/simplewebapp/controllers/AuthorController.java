@@ -19,14 +19,34 @@
 //*************************************************************************** 
 package guru.springframework5.assign1to3.simplewebapp.controllers;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import guru.springframework5.assign1to3.simplewebapp.domain.Author;
+import guru.springframework5.assign1to3.simplewebapp.readmodel.CatalogReadModel;
 import guru.springframework5.assign1to3.simplewebapp.repositories.IAuthorRepository;
 
 @Controller        // #1 - Tell Spring this is a Spring MVC Controller 
 public class AuthorController {
 
+	// "sort" parameter names -> Author properties (index idx_author_last_first).
+	static final Map<String, String> SORTS = new LinkedHashMap<>();
+	static {
+		SORTS.put("lastName", "lastName");
+		SORTS.put("firstName", "firstName");
+	}
+
 	// -----------------------------------------------
 	// #3 Attributes  
 	// -----------------------------------------------
@@ -37,6 +57,10 @@ public class AuthorController {
 	// This repository will write/read the H2 in-memory database.  
 	private final IAuthorRepository authorRepository;
 
+	// CatalogReadModel - Only exists when app.read-model.enabled=true, so
+	// ask for it through an ObjectProvider (null when not configured).
+	private final ObjectProvider<CatalogReadModel> readModel;
+
 	// -----------------------------------------------
 	// #3 Constructor - To force DI of AuthorRepository 
 	//    
@@ -44,8 +68,9 @@ public class AuthorController {
 	//    When Spring creates the instance, it will inject an instance 
 	//    of AuthorRepository in the class attribute. 
 	// -----------------------------------------------
-	public AuthorController(IAuthorRepository aRepos) {
+	public AuthorController(IAuthorRepository aRepos, ObjectProvider<CatalogReadModel> readModel) {
 		this.authorRepository = aRepos;   
+		this.readModel = readModel;
 	}
 
 	// -----------------------------------------------
@@ -60,15 +85,47 @@ public class AuthorController {
 	 * changes are seen by the calling component (i.e., DispatcherServlet).  The 
 	 * return value is the view to use (see below).       
 	 *  
+	 * sort (see SortParameter - lastName, firstName), page (0-based) and size
+	 * (0 = all authors) order and page the list.
+	 *  
 	 * @return  authors/list (since using Thymeleaf, will show list.html within books
 	 *          folder under resources ("resources/templates/authors/list.html").  
 	 *          Recall when JSP, ViewResolver put pre/suffix around core name. 
 	 */
 	@RequestMapping("/authors")    // #2 - Map method to handle localhost:8080/authors. 
-	public String getAuthors(Model model) {
-		// Recall AuthorRepository interface extends CrudRepository which provides findAll.
-		// Since AuthorRepository was defined as <Author, Long>, find all returns ALL Authors. 
-		model.addAttribute("authors", authorRepository.findAll());
+	@Transactional(readOnly = true, timeout = ViewTransactions.TIMEOUT_SECONDS)   // Read-only, so served by the replica database.
+	public String getAuthors(Model model, @RequestParam MultiValueMap<String, String> params,
+			@RequestParam(defaultValue = "") String sort,
+			@RequestParam(defaultValue = "0") int page,
+			@RequestParam(defaultValue = "0") int size) {
+		Sort order = SortParameter.parse(sort, SORTS);
+		model.addAttribute("links", new ListLinks("/authors", params));
+		model.addAttribute("page", Math.max(0, page));
+		model.addAttribute("size", Math.max(0, size));
+
+		// Render from the in-memory read model when it is enabled and loaded.
+		CatalogReadModel catalog = readModel.getIfAvailable();
+		if (catalog != null && catalog.isLoaded()) {
+			model.addAttribute("authors", catalog.authors(order, page, size));
+			model.addAttribute("total", catalog.getColumns().authorCount());
+			return "authors/list";
+		}
+
+		// Recall AuthorRepository interface extends PagingAndSortingRepository which 
+		// provides findAll (all Authors), findAll(Sort) and findAll(Pageable).
+		// The view lists each author's books, so load them here (100 authors per
+		// query, see Author.books) - the page renders after this transaction ends.
+		if (size > 0) {
+			Page<Author> authors = authorRepository.findAll(PageRequest.of(Math.max(0, page), size, order));
+			authors.forEach(author -> Hibernate.initialize(author.getBooks()));
+			model.addAttribute("authors", authors);
+			model.addAttribute("total", authors.getTotalElements());
+			return "authors/list";
+		}
+		Iterable<Author> authors = authorRepository.findAll(order);
+		authors.forEach(author -> Hibernate.initialize(author.getBooks()));
+		model.addAttribute("authors", authors);
+		model.addAttribute("total", authorRepository.count());
 		return "authors/list";  
 	}
 
@@ -16,17 +16,74 @@
 //   Annotate - See #1-2 (@Controller, @RequestMapping) 
 //   DI of Repository for access model - See #3
 //   Controller methods - #4
+//
+// Faceted browsing: /books?publisher=..&state=..&city=..&author=.. filters the
+// list and shows the number of books behind every option (see
+// readmodel.CatalogFacets).  Until the facets are loaded (at startup) a
+// filtered list is answered with 503 and Retry-After - never with the
+// unfiltered list.
+//
+// Popularity: POST /books/{id}/view counts a view of a book (sent by whatever
+// shows the book); /books/popular lists the most viewed books (see
+// popularity.BookViewCounter).
 // *************************************************************************** 
 package guru.springframework5.assign1to3.simplewebapp.controllers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.popularity.BookViewCounter;
+import guru.springframework5.assign1to3.simplewebapp.popularity.BookViews;
+import guru.springframework5.assign1to3.simplewebapp.readmodel.BookView;
+import guru.springframework5.assign1to3.simplewebapp.readmodel.CatalogFacets;
+import guru.springframework5.assign1to3.simplewebapp.readmodel.CatalogReadModel;
+import guru.springframework5.assign1to3.simplewebapp.readmodel.FacetResult;
+import guru.springframework5.assign1to3.simplewebapp.readmodel.FacetSelection;
 import guru.springframework5.assign1to3.simplewebapp.repositories.IBookRepository;
 
 @Controller            // #1 - Tell Spring this is a Spring MVC Controller that can be invoked 
 public class BookController {
 
+	// "sort" parameter names -> Book properties.  Each has an index, so the
+	// database can sort and page with them: idx_book_title, idx_book_isbn,
+	// idx_publisher_name_zip.
+	static final Map<String, String> SORTS = new LinkedHashMap<>();
+	static {
+		SORTS.put("title", "title");
+		SORTS.put("isbn", "isbn");
+		SORTS.put("publisher", "publisher.name");
+	}
+
+	// Plus sorting by the (alphabetically) first author's last name.  Only the
+	// read model has that as a column (CatalogColumns); in the database it
+	// would be a correlated subquery per book, which no index can serve.
+	static final Map<String, String> READ_MODEL_SORTS = new LinkedHashMap<>(SORTS);
+	static {
+		READ_MODEL_SORTS.put("author", "firstAuthorLastName");
+	}
+
 	// -----------------------------------------------
 	// #3 Attributes  
 	// -----------------------------------------------
@@ -36,6 +93,16 @@ public class BookController {
 	// instance of them when class is constructed.  
 	// This repository will write/read the H2 in-memory database.  
 	private final IBookRepository bookRepository;
+
+	// CatalogReadModel - Only exists when app.read-model.enabled=true, so
+	// ask for it through an ObjectProvider (null when not configured).
+	private final ObjectProvider<CatalogReadModel> readModel;
+
+	// CatalogFacets - In-memory facet counts for filtering the list.
+	private final CatalogFacets facets;
+
+	// BookViewCounter - In-memory view counts and the most viewed ranking.
+	private final BookViewCounter viewCounter;
 	
 	// -----------------------------------------------
 	// #3 Constructor 
@@ -44,8 +111,12 @@ public class BookController {
 	//    When Spring creates the instance, it will inject an instance 
 	//    of BookRepository in the class attribute. 
 	// -----------------------------------------------
-    public BookController(IBookRepository bRepos) {
+    public BookController(IBookRepository bRepos, ObjectProvider<CatalogReadModel> readModel, CatalogFacets facets,
+                          BookViewCounter viewCounter) {
     	this.bookRepository = bRepos;   
+    	this.readModel = readModel;
+    	this.facets = facets;
+    	this.viewCounter = viewCounter;
     }
 
 	// -----------------------------------------------
@@ -55,6 +126,16 @@ public class BookController {
 
 	/**
 	 * Request the set of all books and return to "books/list" view to be displayed.
+	 *
+	 * Facet parameters (publisher, state, city, author) narrow the list; the 
+	 * facets and their counts are always added to the Model ("facets"), along 
+	 * with the current selection ("selection") and "links" for the page.
+	 * While the facets are still loading, a request with facet parameters
+	 * gets 503 with Retry-After.
+	 *
+	 * sort (see SortParameter - title, isbn, publisher; author only while the
+	 * read model serves the list), page (0-based) and size (0 = all books)
+	 * order and page the list.  The sort names available are in "sorts".
 	 *  
 	 * The Model that is a parameter of method is updated to hold Set of Books and 
 	 * changes are seen by the calling component (i.e., DispatcherServlet).  The 
@@ -65,10 +146,111 @@ public class BookController {
 	 *          Recall when JSP, ViewResolver put pre/suffix around core name. 
 	 */
 	@RequestMapping("/books")    // #2 - Map method to handle URL ending with path /books. 
-	public String getBooks(Model model) {
-		// Recall BookRepository interface extends CrudRepository which provides findAll.
-		// Since BookRepository was defined as <Book, Long>, find all returns ALL Books. 
-		model.addAttribute("books", bookRepository.findAll());
+	@Transactional(readOnly = true, timeout = ViewTransactions.TIMEOUT_SECONDS)   // Read-only, so served by the replica database.
+	public String getBooks(Model model, @RequestParam MultiValueMap<String, String> params,
+			@RequestParam(defaultValue = "") String sort,
+			@RequestParam(defaultValue = "0") int page,
+			@RequestParam(defaultValue = "0") int size) {
+		CatalogReadModel catalog = readModel.getIfAvailable();
+		boolean fromReadModel = catalog != null && catalog.isLoaded();
+		Map<String, String> sorts = fromReadModel ? READ_MODEL_SORTS : SORTS;
+		Sort order = SortParameter.parse(sort, sorts);
+		FacetSelection selection = FacetSelection.from(params);
+		FacetResult result = facets.query(selection);   // null until the facets are loaded
+		if (result == null && !selection.isEmpty()) {
+			throw new FacetsLoadingException();
+		}
+		long[] ids = selection.isEmpty() ? null : result.getBookIds();
+		model.addAttribute("selection", selection);
+		model.addAttribute("facets", (result == null) ? Collections.emptyList() : result.getFacets());
+		model.addAttribute("links", new ListLinks("/books", params));
+		model.addAttribute("page", Math.max(0, page));
+		model.addAttribute("size", Math.max(0, size));
+		model.addAttribute("sorts", sorts.keySet());
+
+		// Render from the in-memory read model when it is enabled and loaded.
+		// Only the requested page is put in order (see readmodel.TopK).
+		if (fromReadModel) {
+			BookView books = catalog.books(ids, order, page, size);
+			model.addAttribute("books", books);
+			model.addAttribute("total", (ids == null) ? catalog.getColumns().bookCount() : ids.length);
+			return "books/list";
+		}
+
+		// Otherwise let the database sort and page (ORDER BY ... LIMIT on indexed
+		// columns) - either all books or just the ones matching the facets.
+		List<Long> idList = (ids == null) ? null : Arrays.stream(ids).boxed().collect(Collectors.toList());
+		if (size > 0) {
+			PageRequest request = PageRequest.of(Math.max(0, page), size, order);
+			Page<Book> books = (ids == null) ? bookRepository.findAll(request) : bookRepository.findByIdIn(idList, request);
+			model.addAttribute("books", books);
+			model.addAttribute("total", books.getTotalElements());
+			return "books/list";
+		}
+		List<Book> books = new ArrayList<>();
+		(ids == null ? bookRepository.findAll(order) : bookRepository.findByIdIn(idList, order)).forEach(books::add);
+		model.addAttribute("books", books);
+		model.addAttribute("total", books.size());
 		return "books/list";  
 	}
+
+	/**
+	 * Counts a view of the book - in memory only, the counts reach the
+	 * database in periodic batches.
+	 */
+	@PostMapping("/books/{id}/view")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	@Transactional(readOnly = true, timeout = ViewTransactions.TIMEOUT_SECONDS)
+	public void viewBook(@PathVariable long id) {
+		CatalogReadModel catalog = readModel.getIfAvailable();
+		boolean exists = (catalog != null && catalog.isLoaded())
+				? catalog.getColumns().bookOrdinal(id) >= 0
+				: bookRepository.existsById(id);
+		if (!exists) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No book " + id);
+		}
+		viewCounter.record(id);
+	}
+
+	/**
+	 * Most viewed books, most viewed first ("popular": their view counts,
+	 * "books": the books by id).  The ranking is kept up to date by
+	 * BookViewCounter, so only its books are looked up here.
+	 *
+	 * @return books/popular
+	 */
+	@RequestMapping("/books/popular")
+	@Transactional(readOnly = true, timeout = ViewTransactions.TIMEOUT_SECONDS)
+	public String getPopularBooks(Model model) {
+		List<BookViews> popular = viewCounter.getTop();
+		List<Long> ids = popular.stream().map(BookViews::getBookId).collect(Collectors.toList());
+		Map<Long, Book> books = new LinkedHashMap<>();
+		bookRepository.findAllById(ids).forEach(book -> books.put(book.getId(), book));
+		model.addAttribute("popular", popular);
+		model.addAttribute("books", books);
+		return "books/popular";
+	}
+
+	// -----------------------------------------------
+	// Helper class - 503 while the facets load, with Retry-After.
+	// -----------------------------------------------
+
+	private static final class FacetsLoadingException extends ResponseStatusException {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final String RETRY_AFTER_SECONDS = "2";
+
+		FacetsLoadingException() {
+			super(HttpStatus.SERVICE_UNAVAILABLE, "Facets are loading, retry shortly");
+		}
+
+		@Override
+		public HttpHeaders getResponseHeaders() {
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+			return headers;
+		}
+	}
+
 }  // end BookController 
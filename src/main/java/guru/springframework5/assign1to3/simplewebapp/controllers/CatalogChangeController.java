@@ -0,0 +1,79 @@
+// ***************************************************************************
+// Class:  CatalogChangeController
+//
+// HTTP endpoints for the catalog change feed (see changefeed.CatalogChangeFeed).
+//
+//    GET /api/changes?after=N[&limit=100][&waitSeconds=25]
+//        Long poll - JSON array of the changes after sequence N.  Waits up
+//        to waitSeconds for a change if there are none yet.
+//
+//    GET /api/changes/stream?after=N   (or header Last-Event-ID: N)
+//        Server-Sent Events - one "catalog-change" event per change, kept
+//        open to push new changes as they are committed.
+//
+// Consumers remember the last sequence number they processed and pass it as
+// "after" next time, so they only ever see what changed.
+//
+// Changes are kept for app.change-feed.retention-hours (see
+// changefeed.CatalogOutboxPruner).  A consumer whose "after" is older than
+// that gets 410 Gone with header Catalog-Resync-After: M - it must reload the
+// catalog and then continue with after=M.  An open stream that falls that
+// far behind gets a "resync" event with M as data, and is closed.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import guru.springframework5.assign1to3.simplewebapp.changefeed.CatalogChangeFeed;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChange;
+
+@RestController
+public class CatalogChangeController {
+
+	// Longest a long poll may wait.
+	private static final int MAX_WAIT_SECONDS = 60;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final CatalogChangeFeed changeFeed;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogChangeController(CatalogChangeFeed changeFeed) {
+		this.changeFeed = changeFeed;
+	}
+
+	// -----------------------------------------------
+	// Controller Methods
+	// -----------------------------------------------
+
+	@GetMapping("/api/changes")
+	public DeferredResult<List<CatalogChange>> getChanges(
+			@RequestParam(defaultValue = "0") long after,
+			@RequestParam(defaultValue = "100") int limit,
+			@RequestParam(defaultValue = "25") int waitSeconds) {
+		long waitMillis = TimeUnit.SECONDS.toMillis(Math.max(0, Math.min(waitSeconds, MAX_WAIT_SECONDS)));
+		return changeFeed.poll(after, Math.max(1, limit), waitMillis);
+	}
+
+	@GetMapping(path = "/api/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamChanges(
+			@RequestParam(required = false) Long after,
+			@RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+		long position = (after != null) ? after : (lastEventId != null) ? lastEventId : 0;
+		return changeFeed.subscribe(position);
+	}
+
+}  // end class CatalogChangeController
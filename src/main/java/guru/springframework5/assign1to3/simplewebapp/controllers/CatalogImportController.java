@@ -0,0 +1,48 @@
+// ***************************************************************************
+// Class:  CatalogImportController
+//
+// HTTP endpoint for the import feed.  Only answered for clients on this
+// machine (web.LoopbackOnlyInterceptor).
+//
+//    POST /api/catalog/upsert
+//        Body: { "publishers": [...], "authors": [...], "books": [...] }
+//        Inserts or updates every record by natural key (publisher name+zip,
+//        author name, book ISBN) in one transaction and returns the outcome
+//        of each record (see imports.CatalogUpsertService).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import guru.springframework5.assign1to3.simplewebapp.imports.CatalogUpsertRequest;
+import guru.springframework5.assign1to3.simplewebapp.imports.CatalogUpsertResponse;
+import guru.springframework5.assign1to3.simplewebapp.imports.CatalogUpsertService;
+
+@RestController
+public class CatalogImportController {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final CatalogUpsertService upsertService;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogImportController(CatalogUpsertService upsertService) {
+		this.upsertService = upsertService;
+	}
+
+	// -----------------------------------------------
+	// Controller Methods
+	// -----------------------------------------------
+
+	@PostMapping("/api/catalog/upsert")
+	public CatalogUpsertResponse upsert(@RequestBody CatalogUpsertRequest request) {
+		return upsertService.upsert(request);
+	}
+
+}  // end class CatalogImportController
@@ -0,0 +1,97 @@
+// ***************************************************************************
+// Class:  ListLinks
+//
+// Builds the links of a list page (sort headers, facet options, paging) from
+// the current request parameters, so every link keeps the other settings -
+// re-sorting keeps the facet filters and vice versa.
+//
+// Used from the templates, e.g.  th:href="@{${links.sortBy('title')}}".
+// Any link that changes what is listed goes back to the first page.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+public final class ListLinks {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final String path;
+	private final MultiValueMap<String, String> params;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public ListLinks(String path, MultiValueMap<String, String> params) {
+		this.path = path;
+		this.params = new LinkedMultiValueMap<>(params);
+	}
+
+	// -----------------------------------------------
+	// Links
+	// -----------------------------------------------
+
+	/**
+	 * @return link sorted by "name" - descending if already sorted by it ascending.
+	 */
+	public String sortBy(String name) {
+		MultiValueMap<String, String> changed = copyWithoutPage();
+		changed.set("sort", name.equals(params.getFirst("sort")) ? "-" + name : name);
+		return build(changed);
+	}
+
+	/**
+	 * @return link with "value" added to or removed from parameter "name".
+	 */
+	public String toggle(String name, String value) {
+		MultiValueMap<String, String> changed = copyWithoutPage();
+		List<String> values = new ArrayList<>(changed.getOrDefault(name, new ArrayList<>()));
+		if (!values.remove(value)) {
+			values.add(value);
+		}
+		changed.put(name, values);
+		return build(changed);
+	}
+
+	/**
+	 * @return link to the 0-based page.
+	 */
+	public String page(int page) {
+		MultiValueMap<String, String> changed = new LinkedMultiValueMap<>(params);
+		changed.set("page", Integer.toString(page));
+		return build(changed);
+	}
+
+	/**
+	 * @return link without the given parameters (e.g. "clear filters").
+	 */
+	public String without(String... names) {
+		MultiValueMap<String, String> changed = copyWithoutPage();
+		for (String name : names) {
+			changed.remove(name);
+		}
+		return build(changed);
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private MultiValueMap<String, String> copyWithoutPage() {
+		MultiValueMap<String, String> copy = new LinkedMultiValueMap<>(params);
+		copy.remove("page");
+		return copy;
+	}
+
+	private String build(MultiValueMap<String, String> query) {
+		return UriComponentsBuilder.fromPath(path).queryParams(query).encode().build().toUriString();
+	}
+
+}  // end class ListLinks
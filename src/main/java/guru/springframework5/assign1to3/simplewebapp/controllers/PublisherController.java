@@ -0,0 +1,67 @@
+// ***************************************************************************
+// Class:  PublisherController 
+// 
+// Controller for the Publisher catalog page (/publishers).
+//
+// Each publisher is shown with its book count and author count.  The counts
+// are computed by an aggregate query (IPublisherRepository.findSummaries), 
+// never by loading Publisher.books, and the list is paged so the page stays
+// small however many publishers there are.
+//
+//   /publishers                  first page, DEFAULT_PAGE_SIZE rows
+//   /publishers?page=2&size=50   third page (page is 0-based), 50 rows
+// *************************************************************************** 
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import guru.springframework5.assign1to3.simplewebapp.domain.PublisherSummary;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IPublisherRepository;
+
+@Controller
+public class PublisherController {
+
+	static final int DEFAULT_PAGE_SIZE = 20;
+	static final int MAX_PAGE_SIZE = 100;
+
+	// -----------------------------------------------
+	// Attributes  
+	// -----------------------------------------------
+
+	private final IPublisherRepository publisherRepository;
+
+	// -----------------------------------------------
+	// Constructor 
+	// -----------------------------------------------
+	public PublisherController(IPublisherRepository pRepos) {
+		this.publisherRepository = pRepos;
+	}
+
+	// -----------------------------------------------
+	// Controller Methods  
+	// -----------------------------------------------
+
+	/**
+	 * Request one page of publishers with their book and author counts and 
+	 * return to "publishers/list" view to be displayed.
+	 *
+	 * @param page  0-based page number (negative treated as 0)
+	 * @param size  rows per page, limited to 1..MAX_PAGE_SIZE
+	 * @return  publishers/list (resources/templates/publishers/list.html)
+	 */
+	@RequestMapping("/publishers")
+	@Transactional(readOnly = true, timeout = ViewTransactions.TIMEOUT_SECONDS)   // Read-only, so served by the replica database.
+	public String getPublishers(Model model,
+			@RequestParam(defaultValue = "0") int page,
+			@RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+		PageRequest request = PageRequest.of(Math.max(0, page), Math.min(MAX_PAGE_SIZE, Math.max(1, size)));
+		Page<PublisherSummary> publishers = publisherRepository.findSummaries(request);
+		model.addAttribute("publishers", publishers);
+		return "publishers/list";
+	}
+}  // end PublisherController 
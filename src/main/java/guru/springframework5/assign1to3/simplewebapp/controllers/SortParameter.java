@@ -0,0 +1,55 @@
+// ***************************************************************************
+// Class:  SortParameter
+//
+// Parses the "sort" request parameter of the list pages into a Spring Data
+// Sort:
+//
+//    sort=title              by title
+//    sort=-title             by title, descending
+//    sort=publisher,title    by publisher name, then title
+//
+// Each page maps its parameter names to entity properties (e.g. publisher ->
+// publisher.name), so the same Sort drives the database query and the read
+// model.  The id is always added last so pages are stable.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+import java.util.Map;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+final class SortParameter {
+
+	private SortParameter() {
+		// Static helpers only.
+	}
+
+	/**
+	 * @param param      the "sort" parameter (blank = unsorted)
+	 * @param properties parameter name -> entity property
+	 * @throws ResponseStatusException (400) for a name not in properties.
+	 */
+	static Sort parse(String param, Map<String, String> properties) {
+		Sort sort = Sort.unsorted();
+		for (String token : param.split(",")) {
+			String name = token.trim();
+			if (name.isEmpty()) {
+				continue;
+			}
+			boolean descending = name.startsWith("-");
+			if (descending) {
+				name = name.substring(1);
+			}
+			String property = properties.get(name);
+			if (property == null) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+						"Cannot sort by " + name + " (use " + String.join(", ", properties.keySet()) + ")");
+			}
+			sort = sort.and(Sort.by(descending ? Sort.Direction.DESC : Sort.Direction.ASC, property));
+		}
+		return sort.isSorted() ? sort.and(Sort.by("id")) : sort;
+	}  // end parse()
+
+}  // end class SortParameter
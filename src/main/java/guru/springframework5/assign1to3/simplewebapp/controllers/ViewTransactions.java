@@ -0,0 +1,28 @@
+// ***************************************************************************
+// Class:  ViewTransactions
+//
+// How the page controllers use the database now that open-in-view is off
+// (spring.jpa.open-in-view=false):
+//
+//    - The controller method is the transaction: @Transactional(readOnly = true,
+//      timeout = TIMEOUT_SECONDS).  Everything the template will show is
+//      loaded - lazy collections included - before the method returns.
+//    - The transaction then commits and its JDBC connection goes back to the
+//      pool BEFORE Thymeleaf renders, so a slow render (or a slow client)
+//      never holds a connection.
+//    - Touching a lazy association in a template therefore fails with
+//      LazyInitializationException instead of quietly running a query;
+//      ViewRenderingLazyLoadTest checks the pages for it.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+final class ViewTransactions {
+
+	// Upper bound on preparing one page's data (queries are cancelled after it).
+	static final int TIMEOUT_SECONDS = 5;
+
+	private ViewTransactions() {
+		// Constants only.
+	}
+
+}  // end class ViewTransactions
@@ -12,15 +12,29 @@
 package guru.springframework5.assign1to3.simplewebapp.domain;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToMany;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.BatchSize;
 
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 @Entity 		// #1 - Annotate with @Entity to identify as JPA entity for DB  
+@EntityListeners(CatalogEntityListener.class)   // Publish CatalogChangeEvent on insert/update/delete
+@Table(indexes = {
+		@Index(name = "idx_author_name_key", columnList = "nameKey", unique = true),  // Natural key for imports
+		@Index(name = "idx_author_last_first", columnList = "lastName, firstName")   // Sort by name
+})
 public class Author {
 
 	// -----------------------------------------------
@@ -30,9 +44,17 @@ public class Author {
 	@Id             // #2 - Annotate with @Id to identify as key for Author class
 	@GeneratedValue(strategy = GenerationType.AUTO)  // #3 - DB will generate key 
 	private Long id;		
+
+	@Version         // Optimistic locking - Hibernate checks and increments it on every update
+	private Long version;
 	
 	private String firstName;
 	private String lastName;
+
+	// Normalized "first|last" name (see nameKey()), kept in step with the names
+	// before every insert/update.  Lets imports find an existing author by name
+	// with one indexed column instead of comparing two free-text columns.
+	private String nameKey;
 	
 	// #4-Author Side - Create a Many-Many mapping of Authors-Books / Books-Authors
 	//    This uses three DB tables - authors, books, and author-books (association table)
@@ -41,7 +63,10 @@ public class Author {
 	//                        back to Author class so a Book can have many Authors.
 	//                        Therefore many-many. 
 	//    Need to finish many-many setup on Book side within Book class
+	//    @BatchSize - when a list of authors has its books initialized (see 
+	//    AuthorController), load them for 100 authors per query, not one each.
 	@ManyToMany(mappedBy = "authors")  
+	@BatchSize(size = 100)
 	private Set<Book> books = new HashSet<Book>();           
 
 	// -----------------------------------------------
@@ -82,6 +107,11 @@ public class Author {
 		this.id = id;
 	}
 
+	// Row version - maintained by Hibernate, no setter.
+	public Long getVersion() {
+		return version;
+	}
+
 	// First Name
 	public String getFirstName() {
 		return firstName;
@@ -100,6 +130,11 @@ public class Author {
 		this.lastName = lastName;
 	}
 
+	// Normalized name - maintained by updateNameKey(), no setter.
+	public String getNameKey() {
+		return nameKey;
+	}
+
 	// Set of Books written by this Author. 
 	public Set<Book> getBooks() {
 		return books;
@@ -109,6 +144,28 @@ public class Author {
 		this.books = books;
 	}
 
+	// -----------------------------------------------
+	// Natural key
+	// -----------------------------------------------
+
+	/**
+	 * Normalizes an author's name so "Eric  Evans" and "eric evans" are the same
+	 * author: trimmed, inner whitespace collapsed, lower case, "first|last".
+	 */
+	public static String nameKey(String firstName, String lastName) {
+		return normalize(firstName) + "|" + normalize(lastName);
+	}
+
+	private static String normalize(String name) {
+		return (name == null) ? "" : name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+
+	@PrePersist
+	@PreUpdate
+	void updateNameKey() {
+		this.nameKey = nameKey(firstName, lastName);
+	}
+
 	// -----------------------------------------------
 	// #5 Methods that override Java default functionality.  
 	// -----------------------------------------------
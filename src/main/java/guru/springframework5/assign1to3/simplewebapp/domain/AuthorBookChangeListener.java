@@ -0,0 +1,122 @@
+// ***************************************************************************
+// Class:  AuthorBookChangeListener
+//
+// Hibernate event listener for changes to the author_book join table.
+//
+// Adding or removing an author from Book.authors only changes author_book
+// rows - the book row itself is untouched, so JPA's @PostUpdate never fires.
+// Hibernate does report it as a "collection" event, so this listener is
+// registered for those and publishes a CatalogChangeEvent of type
+// AUTHORS_CHANGED for the owning Book.
+//
+// Book.authors is the owning side (Author.books is mappedBy), so only its
+// events matter.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.domain;
+
+import java.io.Serializable;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.CollectionEntry;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent.ChangeType;
+
+@Component
+public class AuthorBookChangeListener implements PostCollectionRecreateEventListener,
+		PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	// Hibernate's name for the Book.authors collection.
+	private static final String BOOK_AUTHORS_ROLE = Book.class.getName() + ".authors";
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final transient EntityManagerFactory entityManagerFactory;
+	private final transient ApplicationEventPublisher publisher;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public AuthorBookChangeListener(EntityManagerFactory entityManagerFactory, ApplicationEventPublisher publisher) {
+		this.entityManagerFactory = entityManagerFactory;
+		this.publisher = publisher;
+	}
+
+	/**
+	 * Adds this listener to Hibernate's event listener registry.
+	 */
+	@PostConstruct
+	public void register() {
+		EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+				.getServiceRegistry().getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+	}
+
+	// -----------------------------------------------
+	// Hibernate callbacks
+	// -----------------------------------------------
+
+	@Override
+	public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+		// A new (or replaced) collection - only interesting if it has rows.
+		if (!event.getCollection().empty()) {
+			publish(event);
+		}
+	}
+
+	@Override
+	public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+		publish(event);
+	}
+
+	@Override
+	public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+		publish(event);
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private void publish(AbstractCollectionEvent event) {
+		if (!BOOK_AUTHORS_ROLE.equals(roleOf(event))) {
+			return;
+		}
+		Serializable bookId = event.getAffectedOwnerIdOrNull();
+		if (bookId instanceof Long) {
+			publisher.publishEvent(new CatalogChangeEvent(Book.class, (Long) bookId, ChangeType.AUTHORS_CHANGED));
+		}
+	}
+
+	// A collection that was just created has no role of its own yet; the
+	// persistence context's entry for it does.
+	private static String roleOf(AbstractCollectionEvent event) {
+		PersistentCollection collection = event.getCollection();
+		if (collection.getRole() != null) {
+			return collection.getRole();
+		}
+		CollectionEntry entry = event.getSession().getPersistenceContext().getCollectionEntry(collection);
+		return (entry == null) ? null : entry.getRole();
+	}
+
+}  // end class AuthorBookChangeListener
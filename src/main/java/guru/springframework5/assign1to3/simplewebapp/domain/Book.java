@@ -20,18 +20,33 @@
 package guru.springframework5.assign1to3.simplewebapp.domain;
 
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinTable;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
 
 @Entity 		// #1 - Annotate with @Entity to identify as JPA entity for DB
+@EntityListeners(CatalogEntityListener.class)   // Publish CatalogChangeEvent on insert/update/delete
+@Table(indexes = {
+		@Index(name = "idx_book_isbn_key", columnList = "isbnKey", unique = true),   // Natural key for imports
+		@Index(name = "idx_book_isbn", columnList = "isbn"),     // Sort by ISBN
+		@Index(name = "idx_book_title", columnList = "title"),   // Sort by title
+		@Index(name = "idx_book_publisher", columnList = "publisher_id")   // Books of a publisher
+})
 public class Book {
 	// -----------------------------------------------
 	// Attributes  
@@ -40,9 +55,18 @@ public class Book {
 	@Id               // #2 - Annotate with @Id to identify as key for Book class
 	@GeneratedValue(strategy = GenerationType.AUTO)  // #3 - DB will generate key
 	private Long id;  // Primary Key 
+
+	@Version         // Optimistic locking - Hibernate checks and increments it on every update
+	private Long version;
 	
 	private String title;
 	private String isbn;
+
+	// Normalized ISBN (see isbnKey()), kept in step with "isbn" before every
+	// insert/update.  "isbn" keeps the hyphens it was entered with; imports
+	// find a book by this column, so "0-321-12521-5" and "0321125215" are one book.
+	private String isbnKey;
+
 	
 	// #4-Book/2nd Side - Create a Many-Many mapping of Authors-Books / Books-Authors
 	//    This uses three DB tables - 
@@ -56,7 +80,8 @@ public class Book {
 	@ManyToMany 
 	@JoinTable(name = "author_book", 
 	           joinColumns = @JoinColumn(name = "book_id"), // In Book class so owning is book_id
-	           inverseJoinColumns = @JoinColumn(name = "author_id"))  // non-owning 
+	           inverseJoinColumns = @JoinColumn(name = "author_id"),  // non-owning 
+	           indexes = @Index(name = "idx_author_book_author", columnList = "author_id, book_id"))  // author -> books
 	private Set<Author> authors = new HashSet<Author>();  // All authors that contributed to this book
 	                                                      // Create empty Hashtable so run() getBooks does not return null
 
@@ -100,6 +125,11 @@ public class Book {
 	public void setId(Long id) {
 		this.id = id;
 	}
+
+	// Row version - maintained by Hibernate, no setter.
+	public Long getVersion() {
+		return version;
+	}
 	
 	// Book title
 	public String getTitle() {
@@ -119,6 +149,11 @@ public class Book {
 		this.isbn = isbn;
 	}
 
+	// Normalized ISBN - maintained by updateIsbnKey(), no setter.
+	public String getIsbnKey() {
+		return isbnKey;
+	}
+
 	public Set<Author> getAuthors() {
 		return authors;
 	}
@@ -130,10 +165,35 @@ public class Book {
 	public Publisher getPublisher() {
 		return publisher;
 	}
+
 	
 	public void setPublisher(Publisher publisher) {
 		this.publisher = publisher;
 	}
+
+	// -----------------------------------------------
+	// Natural key
+	// -----------------------------------------------
+
+	/**
+	 * ISBNs arrive as "978-0-321-12521-7", "0321125215 " etc.  Keeps only the
+	 * digits (and a trailing check character X), upper case.
+	 *
+	 * @return normalized ISBN, or null if nothing is left.
+	 */
+	public static String isbnKey(String isbn) {
+		if (isbn == null) {
+			return null;
+		}
+		String normalized = isbn.replaceAll("[^0-9Xx]", "").toUpperCase(Locale.ROOT);
+		return normalized.isEmpty() ? null : normalized;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void updateIsbnKey() {
+		this.isbnKey = isbnKey(isbn);
+	}
 	
 	
 	// -----------------------------------------------
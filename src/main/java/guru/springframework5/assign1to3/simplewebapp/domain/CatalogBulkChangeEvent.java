@@ -0,0 +1,48 @@
+// ***************************************************************************
+// Class:  CatalogBulkChangeEvent
+//
+// Spring application event for a set-based change that bypassed Hibernate
+// (e.g. imports.CatalogUpsertService), so no per-row CatalogChangeEvent was
+// published by the entity listeners.
+//
+// Carries the same CatalogChangeEvents the entity listeners would have
+// published, as one event, so listeners can handle the whole batch at once
+// (one batched outbox insert, one read-model rebuild request).
+//
+// Like CatalogChangeEvent it is published inside the transaction making the
+// change.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.domain;
+
+import java.util.Collections;
+import java.util.List;
+
+public class CatalogBulkChangeEvent {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final List<CatalogChangeEvent> changes;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogBulkChangeEvent(List<CatalogChangeEvent> changes) {
+		this.changes = Collections.unmodifiableList(changes);
+	}
+
+	// -----------------------------------------------
+	// Getters
+	// -----------------------------------------------
+
+	public List<CatalogChangeEvent> getChanges() {
+		return changes;
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogBulkChangeEvent{changes=" + changes.size() + "}";
+	}  // end toString()
+
+}  // end class CatalogBulkChangeEvent
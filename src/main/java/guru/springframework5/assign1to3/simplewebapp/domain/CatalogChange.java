@@ -0,0 +1,123 @@
+// ***************************************************************************
+// Class:  CatalogChange
+//
+// JPA entity for one row of the catalog_change "outbox" table.
+//
+// A row is written in the SAME transaction as every insert / update / delete
+// of an Author, Book or Publisher, and whenever the author_book rows of a
+// Book change (see changefeed.CatalogOutboxWriter).  Rows are numbered in
+// commit order, so consumers can ask for "everything after number N" instead
+// of re-reading the whole catalog with findAll().
+//
+// Rows are only written with SQL by CatalogOutboxWriter; this entity is used
+// to read them (ICatalogChangeRepository) and as JSON for the change feed.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.domain;
+
+import java.time.Instant;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "catalog_change")
+public class CatalogChange {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	@Id   // Sequence number - defines the order of the feed (assigned by CatalogOutboxWriter).
+	private Long id;
+
+	private String entityType;   // "Author", "Book" or "Publisher"
+	private Long entityId;
+	private String changeType;   // CatalogChangeEvent.ChangeType name
+	private Instant changedAt;
+
+	// -----------------------------------------------
+	// Constructors
+	// -----------------------------------------------
+
+	// Default constructor (required by JPA entity objects)
+	public CatalogChange() {
+		super();
+	}
+
+	// -----------------------------------------------
+	// Getters / Setters
+	// -----------------------------------------------
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getEntityType() {
+		return entityType;
+	}
+
+	public void setEntityType(String entityType) {
+		this.entityType = entityType;
+	}
+
+	public Long getEntityId() {
+		return entityId;
+	}
+
+	public void setEntityId(Long entityId) {
+		this.entityId = entityId;
+	}
+
+	public String getChangeType() {
+		return changeType;
+	}
+
+	public void setChangeType(String changeType) {
+		this.changeType = changeType;
+	}
+
+	public Instant getChangedAt() {
+		return changedAt;
+	}
+
+	public void setChangedAt(Instant changedAt) {
+		this.changedAt = changedAt;
+	}
+
+	// -----------------------------------------------
+	// Methods that override Java default functionality.
+	// -----------------------------------------------
+
+	@Override
+	public String toString() {
+		return "CatalogChange{" +
+			   "id=" + id +
+			   ", entityType=" + entityType +
+			   ", entityId=" + entityId +
+			   ", changeType=" + changeType +
+			   ", changedAt=" + changedAt +
+			   "}";
+	}  // end toString()
+
+	// Rows are immutable once written, so the sequence number identifies them.
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ( !(o instanceof CatalogChange) )
+			return false;
+		CatalogChange co = (CatalogChange) o;
+		return (id != null) && id.equals(co.id);
+	}  // end equals(Object)
+
+	@Override
+	public int hashCode() {
+		return (id == null) ? 0 : id.hashCode();
+	}  // end hashCode()
+
+}  // end class CatalogChange
@@ -0,0 +1,64 @@
+// ***************************************************************************
+// Class:  CatalogChangeEvent
+//
+// Spring application event published whenever an Author, Book or Publisher
+// row is inserted, updated or deleted (see CatalogEntityListener), or the
+// author_book rows of a Book change (see AuthorBookChangeListener).
+//
+// The event is published synchronously while Hibernate flushes, inside the
+// transaction making the change.
+//
+// Listeners that only care about committed data should use
+// @TransactionalEventListener (default phase is AFTER_COMMIT).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.domain;
+
+public class CatalogChangeEvent {
+
+	// Kind of change made to the row.
+	// AUTHORS_CHANGED - the author_book rows of the Book (entityId) changed.
+	public enum ChangeType { CREATED, UPDATED, DELETED, AUTHORS_CHANGED }
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final Class<?> entityType;   // Author.class, Book.class or Publisher.class
+	private final Long entityId;
+	private final ChangeType changeType;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogChangeEvent(Class<?> entityType, Long entityId, ChangeType changeType) {
+		this.entityType = entityType;
+		this.entityId = entityId;
+		this.changeType = changeType;
+	}
+
+	// -----------------------------------------------
+	// Getters
+	// -----------------------------------------------
+
+	public Class<?> getEntityType() {
+		return entityType;
+	}
+
+	public Long getEntityId() {
+		return entityId;
+	}
+
+	public ChangeType getChangeType() {
+		return changeType;
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogChangeEvent{" +
+			   "entityType=" + entityType.getSimpleName() +
+			   ", entityId=" + entityId +
+			   ", changeType=" + changeType +
+			   "}";
+	}  // end toString()
+
+}  // end class CatalogChangeEvent
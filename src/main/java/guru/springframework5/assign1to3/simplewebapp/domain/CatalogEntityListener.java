@@ -0,0 +1,70 @@
+// ***************************************************************************
+// Class:  CatalogEntityListener
+//
+// JPA entity listener attached (with @EntityListeners) to Author, Book and
+// Publisher.  After Hibernate writes a row it publishes a CatalogChangeEvent
+// so caches / read models can refresh themselves.
+//
+// Hibernate asks Spring to create this listener, so the
+// ApplicationEventPublisher is injected through the constructor like any
+// other Spring bean.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.domain;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent.ChangeType;
+
+public class CatalogEntityListener {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final ApplicationEventPublisher publisher;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogEntityListener(ApplicationEventPublisher publisher) {
+		this.publisher = publisher;
+	}
+
+	// -----------------------------------------------
+	// JPA callbacks
+	// -----------------------------------------------
+
+	@PostPersist
+	public void afterInsert(Object entity) {
+		publish(entity, ChangeType.CREATED);
+	}
+
+	@PostUpdate
+	public void afterUpdate(Object entity) {
+		publish(entity, ChangeType.UPDATED);
+	}
+
+	@PostRemove
+	public void afterDelete(Object entity) {
+		publish(entity, ChangeType.DELETED);
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private void publish(Object entity, ChangeType changeType) {
+		if (entity instanceof Book) {
+			publisher.publishEvent(new CatalogChangeEvent(Book.class, ((Book) entity).getId(), changeType));
+		} else if (entity instanceof Author) {
+			publisher.publishEvent(new CatalogChangeEvent(Author.class, ((Author) entity).getId(), changeType));
+		} else if (entity instanceof Publisher) {
+			publisher.publishEvent(new CatalogChangeEvent(Publisher.class, ((Publisher) entity).getId(), changeType));
+		}
+	}
+
+}  // end class CatalogEntityListener
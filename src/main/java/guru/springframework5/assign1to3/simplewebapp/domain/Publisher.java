@@ -26,13 +26,19 @@ import java.util.HashSet;
 import java.util.Set;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 @Entity         // #1 - Annotate with @Entity to identify as JPA entity for DB
+@EntityListeners(CatalogEntityListener.class)   // Publish CatalogChangeEvent on insert/update/delete
+@Table(indexes = @Index(name = "idx_publisher_name_zip", columnList = "name, zip", unique = true))   // Natural key for imports
 public class Publisher {
 
 	// -----------------------------------------------
@@ -43,6 +49,9 @@ public class Publisher {
 	@GeneratedValue(strategy = GenerationType.AUTO)  // #3 - DB will generate key 
 	private Long id;		
 
+	@Version         // Optimistic locking - Hibernate checks and increments it on every update
+	private Long version;
+
 	private String name;
 	private String addressLine1;
 	private String city;
@@ -94,6 +103,11 @@ public class Publisher {
 		this.id = id;
 	}
 
+	// Row version - maintained by Hibernate, no setter.
+	public Long getVersion() {
+		return version;
+	}
+
 	public String getName() {
 		return name;
 	}
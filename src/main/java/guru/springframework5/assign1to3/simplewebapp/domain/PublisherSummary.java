@@ -0,0 +1,83 @@
+// ***************************************************************************
+// Class:  PublisherSummary
+//
+// One row of the publisher list page: a Publisher's own columns plus how many
+// books it publishes and how many distinct authors wrote them.
+//
+// Not an entity - built by the aggregate query in IPublisherRepository
+// (JPQL "SELECT new ..."), so the counts come from the database and no
+// Publisher.books collection is ever loaded.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.domain;
+
+public class PublisherSummary {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final Long id;
+	private final String name;
+	private final String city;
+	private final String state;
+	private final String zip;
+	private final long bookCount;
+	private final long authorCount;
+
+	// -----------------------------------------------
+	// Constructor (called by the JPQL query)
+	// -----------------------------------------------
+	public PublisherSummary(Long id, String name, String city, String state, String zip,
+	                        long bookCount, long authorCount) {
+		this.id = id;
+		this.name = name;
+		this.city = city;
+		this.state = state;
+		this.zip = zip;
+		this.bookCount = bookCount;
+		this.authorCount = authorCount;
+	}
+
+	// -----------------------------------------------
+	// Getters
+	// -----------------------------------------------
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getCity() {
+		return city;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public String getZip() {
+		return zip;
+	}
+
+	public long getBookCount() {
+		return bookCount;
+	}
+
+	public long getAuthorCount() {
+		return authorCount;
+	}
+
+	@Override
+	public String toString() {
+		return "PublisherSummary{" +
+			   "id=" + id +
+			   ", name=" + name +
+			   ", bookCount=" + bookCount +
+			   ", authorCount=" + authorCount +
+			   "}";
+	}  // end toString()
+
+}  // end class PublisherSummary
@@ -0,0 +1,49 @@
+// ***************************************************************************
+// Class:  AuthorRecord
+//
+// One author in a batch upsert (JSON from the import feed), also used to
+// list a book's authors.  Natural key: Author.nameKey(firstName, lastName).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.Author;
+
+public class AuthorRecord {
+
+	private String firstName;
+	private String lastName;
+
+	public AuthorRecord() {
+		super();
+	}
+
+	public AuthorRecord(String firstName, String lastName) {
+		this.firstName = firstName;
+		this.lastName = lastName;
+	}
+
+	/**
+	 * @return normalized name key, or null if both names are missing.
+	 */
+	public String key() {
+		String key = Author.nameKey(firstName, lastName);
+		return key.equals("|") ? null : key;
+	}
+
+	public String getFirstName() {
+		return firstName;
+	}
+
+	public void setFirstName(String firstName) {
+		this.firstName = firstName;
+	}
+
+	public String getLastName() {
+		return lastName;
+	}
+
+	public void setLastName(String lastName) {
+		this.lastName = lastName;
+	}
+
+}  // end class AuthorRecord
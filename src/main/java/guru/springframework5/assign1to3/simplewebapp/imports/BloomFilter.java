@@ -0,0 +1,138 @@
+// ***************************************************************************
+// Class:  BloomFilter
+//
+// Compact set of strings that can answer "definitely not present" without
+// looking anywhere else.
+//
+// mightContain() is false only for keys that were never put(); for keys that
+// were it is always true, and for others true with probability about the
+// false-positive rate it was created with.  Used by imports to skip the
+// database lookup for natural keys that cannot exist yet (see KnownKeys).
+//
+// Sizing (n = expected entries, p = false-positive rate):
+//    bits   m = -n ln(p) / (ln 2)^2      (about 9.6 bits per entry at 1%)
+//    hashes k = (m / n) ln 2
+// The k bit positions come from two 64-bit hashes (h1 + i * h2).
+//
+// put() and mightContain() may be called from several threads at once.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class BloomFilter {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final AtomicLongArray words;
+	private final long bitCount;
+	private final int hashCount;
+
+	// Statistics for the import report.
+	private final LongAdder entries = new LongAdder();
+	private final LongAdder checks = new LongAdder();
+	private final LongAdder definitelyAbsent = new LongAdder();
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	private BloomFilter(long bitCount, int hashCount) {
+		int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bitCount + 63) / 64);
+		this.words = new AtomicLongArray(wordCount);
+		this.bitCount = (long) wordCount * 64;
+		this.hashCount = hashCount;
+	}
+
+	/**
+	 * @param expectedEntries   number of keys that will be put()
+	 * @param falsePositiveRate wanted chance that mightContain() is true for
+	 *                          a key that was not put(), e.g. 0.01
+	 */
+	public static BloomFilter create(long expectedEntries, double falsePositiveRate) {
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+		}
+		long n = Math.max(1, expectedEntries);
+		long bits = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+		int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+		return new BloomFilter(bits, hashes);
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	public void put(String key) {
+		long h1 = hash(key);
+		long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+			long mask = 1L << bit;
+			int word = (int) (bit >>> 6);
+			if ((words.get(word) & mask) == 0) {
+				words.getAndAccumulate(word, mask, (current, m) -> current | m);
+			}
+		}
+		entries.increment();
+	}
+
+	/**
+	 * @return false if key was definitely never put()
+	 */
+	public boolean mightContain(String key) {
+		checks.increment();
+		long h1 = hash(key);
+		long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+			if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				definitelyAbsent.increment();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long memoryBytes() {
+		return bitCount / 8;
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// FNV-1a over the characters, then mixed so all 64 bits depend on the key.
+	private static long hash(String key) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		return mix(h);
+	}
+
+	// MurmurHash3's 64-bit finalizer.
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	@Override
+	public String toString() {
+		return "BloomFilter{" +
+			   "entries=" + entries.sum() +
+			   ", bits=" + bitCount +
+			   ", hashes=" + hashCount +
+			   ", checks=" + checks.sum() +
+			   ", definitelyAbsent=" + definitelyAbsent.sum() +
+			   "}";
+	}  // end toString()
+
+}  // end class BloomFilter
@@ -0,0 +1,85 @@
+// ***************************************************************************
+// Class:  BookRecord
+//
+// One book in a batch upsert (JSON from the import feed).  Natural key: ISBN
+// (see normalizeIsbn()), stored as book.isbn_key.
+//
+// The publisher is referenced by name + zip and the authors by name; they
+// must already exist or be part of the same batch.  If "authors" is given
+// the book's author list is replaced by it; if it is null the authors are
+// left alone.  Likewise a title or publisher left out keeps the stored one.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import java.util.List;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+
+public class BookRecord {
+
+	private String isbn;
+	private String title;
+	private String publisherName;
+	private String publisherZip;
+	private List<AuthorRecord> authors;
+
+	public BookRecord() {
+		super();
+	}
+
+	public BookRecord(String isbn, String title, String publisherName, String publisherZip, List<AuthorRecord> authors) {
+		this.isbn = isbn;
+		this.title = title;
+		this.publisherName = publisherName;
+		this.publisherZip = publisherZip;
+		this.authors = authors;
+	}
+
+	/**
+	 * @return normalized ISBN (see Book.isbnKey()), or null if nothing is left.
+	 */
+	public static String normalizeIsbn(String isbn) {
+		return Book.isbnKey(isbn);
+	}
+
+	public String getIsbn() {
+		return isbn;
+	}
+
+	public void setIsbn(String isbn) {
+		this.isbn = isbn;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public String getPublisherName() {
+		return publisherName;
+	}
+
+	public void setPublisherName(String publisherName) {
+		this.publisherName = publisherName;
+	}
+
+	public String getPublisherZip() {
+		return publisherZip;
+	}
+
+	public void setPublisherZip(String publisherZip) {
+		this.publisherZip = publisherZip;
+	}
+
+	public List<AuthorRecord> getAuthors() {
+		return authors;
+	}
+
+	public void setAuthors(List<AuthorRecord> authors) {
+		this.authors = authors;
+	}
+
+}  // end class BookRecord
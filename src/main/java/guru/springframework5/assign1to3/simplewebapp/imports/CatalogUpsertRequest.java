@@ -0,0 +1,43 @@
+// ***************************************************************************
+// Class:  CatalogUpsertRequest
+//
+// Body of POST /api/catalog/upsert - one batch (delta) from the import feed.
+// Any of the lists may be missing.  Books may reference publishers and
+// authors from the same batch.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CatalogUpsertRequest {
+
+	private List<PublisherRecord> publishers = new ArrayList<>();
+	private List<AuthorRecord> authors = new ArrayList<>();
+	private List<BookRecord> books = new ArrayList<>();
+
+	public List<PublisherRecord> getPublishers() {
+		return publishers;
+	}
+
+	public void setPublishers(List<PublisherRecord> publishers) {
+		this.publishers = (publishers == null) ? new ArrayList<>() : publishers;
+	}
+
+	public List<AuthorRecord> getAuthors() {
+		return authors;
+	}
+
+	public void setAuthors(List<AuthorRecord> authors) {
+		this.authors = (authors == null) ? new ArrayList<>() : authors;
+	}
+
+	public List<BookRecord> getBooks() {
+		return books;
+	}
+
+	public void setBooks(List<BookRecord> books) {
+		this.books = (books == null) ? new ArrayList<>() : books;
+	}
+
+}  // end class CatalogUpsertRequest
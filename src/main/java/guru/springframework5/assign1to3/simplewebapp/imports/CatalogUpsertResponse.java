@@ -0,0 +1,56 @@
+// ***************************************************************************
+// Class:  CatalogUpsertResponse
+//
+// Result of a batch upsert: one UpsertResult per record sent, in the order
+// sent, plus how many records had each outcome.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import guru.springframework5.assign1to3.simplewebapp.imports.UpsertResult.Outcome;
+
+public class CatalogUpsertResponse {
+
+	private final List<UpsertResult> publishers;
+	private final List<UpsertResult> authors;
+	private final List<UpsertResult> books;
+
+	public CatalogUpsertResponse(UpsertResult[] publishers, UpsertResult[] authors, UpsertResult[] books) {
+		this.publishers = Arrays.asList(publishers);
+		this.authors = Arrays.asList(authors);
+		this.books = Arrays.asList(books);
+	}
+
+	public List<UpsertResult> getPublishers() {
+		return publishers;
+	}
+
+	public List<UpsertResult> getAuthors() {
+		return authors;
+	}
+
+	public List<UpsertResult> getBooks() {
+		return books;
+	}
+
+	/**
+	 * @return number of records (of all kinds) per outcome
+	 */
+	public Map<Outcome, Integer> getTotals() {
+		Map<Outcome, Integer> totals = new EnumMap<>(Outcome.class);
+		for (Outcome outcome : Outcome.values()) {
+			totals.put(outcome, 0);
+		}
+		for (List<UpsertResult> results : Arrays.asList(publishers, authors, books)) {
+			for (UpsertResult result : results) {
+				totals.merge(result.getOutcome(), 1, Integer::sum);
+			}
+		}
+		return totals;
+	}  // end getTotals()
+
+}  // end class CatalogUpsertResponse
@@ -0,0 +1,239 @@
+// ***************************************************************************
+// Class:  CatalogUpsertService
+//
+// Applies a batch from the import feed: publishers, then authors, then books,
+// each inserted or updated by natural key (see CatalogUpsertRepository), all
+// in one transaction.
+//
+// Per record the result says INSERTED, UPDATED, UNCHANGED or REJECTED:
+//    - a record without its natural key is rejected;
+//    - if a key appears more than once in a list the last record wins and
+//      the earlier ones are rejected;
+//    - a book referencing a publisher or author that is neither in the batch
+//      nor in the database is rejected.
+// Rejected records do not stop the rest of the batch.
+//
+// Imports pass KnownKeys (Bloom filters of the keys already stored) so keys
+// that are definitely new are not looked up.
+//
+// The repository bypasses Hibernate, so this publishes one
+// CatalogBulkChangeEvent with the changes the entity listeners would have
+// reported (outbox rows, read-model rebuilds etc. follow from it).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.Author;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogBulkChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent.ChangeType;
+import guru.springframework5.assign1to3.simplewebapp.domain.Publisher;
+import guru.springframework5.assign1to3.simplewebapp.imports.UpsertResult.Outcome;
+import guru.springframework5.assign1to3.simplewebapp.repositories.CatalogUpsertRepository;
+import guru.springframework5.assign1to3.simplewebapp.repositories.CatalogUpsertRepository.Row;
+
+@Service
+public class CatalogUpsertService {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final CatalogUpsertRepository upsertRepository;
+	private final ApplicationEventPublisher publisher;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogUpsertService(CatalogUpsertRepository upsertRepository, ApplicationEventPublisher publisher) {
+		this.upsertRepository = upsertRepository;
+		this.publisher = publisher;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	@Transactional
+	public CatalogUpsertResponse upsert(CatalogUpsertRequest request) {
+		return upsert(request, KnownKeys.NONE);
+	}
+
+	@Transactional
+	public CatalogUpsertResponse upsert(CatalogUpsertRequest request, KnownKeys knownKeys) {
+		List<CatalogChangeEvent> changes = new ArrayList<>();
+
+		// Publishers
+		List<PublisherRecord> publisherRecords = request.getPublishers();
+		UpsertResult[] publisherResults = new UpsertResult[publisherRecords.size()];
+		Map<String, Integer> publisherIndexes = dedupe(publisherRecords,
+				record -> PublisherRecord.key(record.getName(), record.getZip()), "name is required", publisherResults);
+		Map<String, Row> publisherRows = upsertRepository.upsertPublishers(recordsByKey(publisherRecords, publisherIndexes));
+		Map<String, Long> publisherIds = record(publisherIndexes, publisherRows, publisherResults, Publisher.class, changes);
+
+		// Authors
+		List<AuthorRecord> authorRecords = request.getAuthors();
+		UpsertResult[] authorResults = new UpsertResult[authorRecords.size()];
+		Map<String, Integer> authorIndexes = dedupe(authorRecords,
+				AuthorRecord::key, "firstName or lastName is required", authorResults);
+		Map<String, Row> authorRows = upsertRepository.upsertAuthors(recordsByKey(authorRecords, authorIndexes),
+				knownKeys.getAuthorNameKeys());
+		Map<String, Long> authorIds = record(authorIndexes, authorRows, authorResults, Author.class, changes);
+
+		// Books - first make sure everything they reference exists.
+		List<BookRecord> bookRecords = request.getBooks();
+		UpsertResult[] bookResults = new UpsertResult[bookRecords.size()];
+		Map<String, Integer> bookIndexes = dedupe(bookRecords,
+				record -> BookRecord.normalizeIsbn(record.getIsbn()), "isbn is required", bookResults);
+		resolveReferences(bookRecords, bookIndexes, publisherIds, authorIds, knownKeys);
+		rejectUnresolved(bookRecords, bookIndexes, publisherIds, authorIds, bookResults);
+
+		Map<String, Row> bookRows = upsertRepository.upsertBooks(recordsByKey(bookRecords, bookIndexes), publisherIds,
+				knownKeys.getIsbns());
+		record(bookIndexes, bookRows, bookResults, Book.class, changes);
+
+		// ... then their authors, where given.
+		Map<Long, Set<Long>> authorIdsByBook = new LinkedHashMap<>();
+		bookIndexes.forEach((isbn, index) -> {
+			List<AuthorRecord> authors = bookRecords.get(index).getAuthors();
+			if (authors != null) {
+				Set<Long> ids = new LinkedHashSet<>();
+				for (AuthorRecord author : authors) {
+					ids.add(authorIds.get(author.key()));
+				}
+				authorIdsByBook.put(bookRows.get(isbn).getId(), ids);
+			}
+		});
+		Set<Long> authorsChanged = upsertRepository.replaceBookAuthors(authorIdsByBook);
+		for (int i = 0; i < bookResults.length; i++) {
+			UpsertResult result = bookResults[i];
+			if (result.getId() != null && authorsChanged.contains(result.getId())) {
+				changes.add(new CatalogChangeEvent(Book.class, result.getId(), ChangeType.AUTHORS_CHANGED));
+				if (result.getOutcome() == Outcome.UNCHANGED) {
+					bookResults[i] = new UpsertResult(i, result.getKey(), result.getId(), Outcome.UPDATED, null);
+				}
+			}
+		}
+
+		if (!changes.isEmpty()) {
+			publisher.publishEvent(new CatalogBulkChangeEvent(changes));
+		}
+		return new CatalogUpsertResponse(publisherResults, authorResults, bookResults);
+	}  // end upsert()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Natural key -> index of the record to apply, in request order.  Records
+	// without a key, and all but the last record for each key, are rejected.
+	private static <T> Map<String, Integer> dedupe(List<T> records, Function<T, String> keyOf,
+			String missingKeyMessage, UpsertResult[] results) {
+		Map<String, Integer> indexes = new LinkedHashMap<>(records.size() * 2);
+		for (int i = 0; i < records.size(); i++) {
+			String key = (records.get(i) == null) ? null : keyOf.apply(records.get(i));
+			if (key == null) {
+				results[i] = UpsertResult.rejected(i, null, missingKeyMessage);
+				continue;
+			}
+			Integer earlier = indexes.remove(key);
+			if (earlier != null) {
+				results[earlier] = UpsertResult.rejected(earlier, key, "superseded by record " + i);
+			}
+			indexes.put(key, i);
+		}
+		return indexes;
+	}  // end dedupe()
+
+	private static <T> Map<String, T> recordsByKey(List<T> records, Map<String, Integer> indexes) {
+		Map<String, T> byKey = new LinkedHashMap<>(indexes.size() * 2);
+		indexes.forEach((key, index) -> byKey.put(key, records.get(index)));
+		return byKey;
+	}
+
+	// Fills in the results for the upserted rows, adds their change events
+	// and returns natural key -> id.
+	private static Map<String, Long> record(Map<String, Integer> indexes, Map<String, Row> rows,
+			UpsertResult[] results, Class<?> entityType, List<CatalogChangeEvent> changes) {
+		Map<String, Long> ids = new HashMap<>(rows.size() * 2);
+		indexes.forEach((key, index) -> {
+			Row row = rows.get(key);
+			results[index] = new UpsertResult(index, key, row.getId(), row.getOutcome(), null);
+			ids.put(key, row.getId());
+			if (row.getOutcome() == Outcome.INSERTED) {
+				changes.add(new CatalogChangeEvent(entityType, row.getId(), ChangeType.CREATED));
+			} else if (row.getOutcome() == Outcome.UPDATED) {
+				changes.add(new CatalogChangeEvent(entityType, row.getId(), ChangeType.UPDATED));
+			}
+		});
+		return ids;
+	}  // end record()
+
+	// Adds the ids of referenced publishers and authors that are not in the
+	// batch but already in the database.
+	private void resolveReferences(List<BookRecord> books, Map<String, Integer> indexes,
+			Map<String, Long> publisherIds, Map<String, Long> authorIds, KnownKeys knownKeys) {
+		Map<String, PublisherRecord> missingPublishers = new HashMap<>();
+		Set<String> missingAuthors = new LinkedHashSet<>();
+		for (int index : indexes.values()) {
+			BookRecord book = books.get(index);
+			String publisherKey = PublisherRecord.key(book.getPublisherName(), book.getPublisherZip());
+			if (publisherKey != null && !publisherIds.containsKey(publisherKey)) {
+				missingPublishers.put(publisherKey, new PublisherRecord(book.getPublisherName(), null, null, null, book.getPublisherZip()));
+			}
+			if (book.getAuthors() != null) {
+				for (AuthorRecord author : book.getAuthors()) {
+					String authorKey = (author == null) ? null : author.key();
+					if (authorKey != null && !authorIds.containsKey(authorKey)) {
+						missingAuthors.add(authorKey);
+					}
+				}
+			}
+		}
+		if (!missingPublishers.isEmpty()) {
+			publisherIds.putAll(upsertRepository.findPublisherIds(missingPublishers.values()));
+		}
+		if (!missingAuthors.isEmpty()) {
+			authorIds.putAll(upsertRepository.findAuthorIds(missingAuthors, knownKeys.getAuthorNameKeys()));
+		}
+	}  // end resolveReferences()
+
+	private static void rejectUnresolved(List<BookRecord> books, Map<String, Integer> indexes,
+			Map<String, Long> publisherIds, Map<String, Long> authorIds, UpsertResult[] results) {
+		indexes.entrySet().removeIf(entry -> {
+			BookRecord book = books.get(entry.getValue());
+			String message = null;
+			String publisherKey = PublisherRecord.key(book.getPublisherName(), book.getPublisherZip());
+			if (publisherKey != null && !publisherIds.containsKey(publisherKey)) {
+				message = "unknown publisher " + publisherKey;
+			} else if (book.getAuthors() != null) {
+				for (AuthorRecord author : book.getAuthors()) {
+					String authorKey = (author == null) ? null : author.key();
+					if (authorKey == null || !authorIds.containsKey(authorKey)) {
+						message = "unknown author " + authorKey;
+						break;
+					}
+				}
+			}
+			if (message == null) {
+				return false;
+			}
+			results[entry.getValue()] = UpsertResult.rejected(entry.getValue(), entry.getKey(), message);
+			return true;
+		});
+	}  // end rejectUnresolved()
+
+}  // end class CatalogUpsertService
@@ -0,0 +1,142 @@
+// ***************************************************************************
+// Class:  FilePartition
+//
+// A byte range [start, end) of a line-oriented file, so several threads can
+// read one file at once, each its own range.
+//
+// Ranges are cut at fixed byte offsets, which usually fall inside a line.
+// A line belongs to the partition its first byte is in: a reader skips the
+// partial line at its start (the previous partition reads it) and finishes
+// the line that crosses its end.  Every line is read exactly once.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class FilePartition {
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final long start;
+	private final long end;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	FilePartition(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Cuts a file of fileSize bytes into (at most) count ranges of about the
+	 * same size.
+	 */
+	public static List<FilePartition> split(long fileSize, int count) {
+		int partitions = (int) Math.max(1, Math.min(count, fileSize));
+		List<FilePartition> result = new ArrayList<>(partitions);
+		for (int i = 0; i < partitions; i++) {
+			result.add(new FilePartition(fileSize * i / partitions, fileSize * (i + 1) / partitions));
+		}
+		return result;
+	}
+
+	// -----------------------------------------------
+	// Getters
+	// -----------------------------------------------
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * Reads the lines (UTF-8) that start in this partition and passes each
+	 * non-blank one to the consumer with the byte offset it starts at.
+	 */
+	public void forEachLine(Path file, LineConsumer consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// Start one byte early: if that byte ends a line, our first line
+			// starts exactly at "start" and is ours.
+			long position = (start == 0) ? 0 : start - 1;
+			boolean skipping = (start > 0);
+
+			ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+			long lineStart = position;
+			buffer.flip();
+
+			while (true) {
+				if (!buffer.hasRemaining()) {
+					if (!skipping && lineStart >= end) {
+						return;
+					}
+					buffer.clear();
+					if (channel.read(buffer, position) <= 0) {
+						break;   // End of file
+					}
+					buffer.flip();
+				}
+				byte b = buffer.get();
+				position++;
+				if (b == '\n') {
+					if (!skipping) {
+						emit(line, lineStart, consumer);
+					}
+					skipping = false;
+					line.reset();
+					lineStart = position;
+					if (lineStart >= end) {
+						return;
+					}
+				} else if (!skipping) {
+					line.write(b);
+				}
+			}
+			if (!skipping && lineStart < end) {
+				emit(line, lineStart, consumer);   // Last line without a newline
+			}
+		}
+	}  // end forEachLine()
+
+	private static void emit(ByteArrayOutputStream line, long lineStart, LineConsumer consumer) {
+		String text = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+		if (!text.isEmpty()) {
+			consumer.accept(lineStart, text);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FilePartition{" + start + ".." + end + "}";
+	}  // end toString()
+
+	// -----------------------------------------------
+	// Helper interface
+	// -----------------------------------------------
+
+	@FunctionalInterface
+	public interface LineConsumer {
+		void accept(long offset, String line);
+	}
+
+}  // end class FilePartition
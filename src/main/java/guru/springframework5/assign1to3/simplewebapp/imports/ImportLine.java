@@ -0,0 +1,43 @@
+// ***************************************************************************
+// Class:  ImportLine
+//
+// One line of an import file (JSON Lines - one JSON object per line).  Each
+// line holds exactly one of publisher, author or book, e.g.
+//
+//    {"publisher": {"name": "Addison-Wesley", "zip": "01867", ...}}
+//    {"author": {"firstName": "Eric", "lastName": "Evans"}}
+//    {"book": {"isbn": "9780321125217", "title": "...", "publisherName": ...}}
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+public class ImportLine {
+
+	private PublisherRecord publisher;
+	private AuthorRecord author;
+	private BookRecord book;
+
+	public PublisherRecord getPublisher() {
+		return publisher;
+	}
+
+	public void setPublisher(PublisherRecord publisher) {
+		this.publisher = publisher;
+	}
+
+	public AuthorRecord getAuthor() {
+		return author;
+	}
+
+	public void setAuthor(AuthorRecord author) {
+		this.author = author;
+	}
+
+	public BookRecord getBook() {
+		return book;
+	}
+
+	public void setBook(BookRecord book) {
+		this.book = book;
+	}
+
+}  // end class ImportLine
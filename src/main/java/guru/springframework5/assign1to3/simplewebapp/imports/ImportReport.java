@@ -0,0 +1,165 @@
+// ***************************************************************************
+// Class:  ImportReport
+//
+// What a file import did: how the work was split, the time and throughput of
+// each stage, how many records had each outcome, and the first few errors.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import guru.springframework5.assign1to3.simplewebapp.imports.UpsertResult.Outcome;
+
+public class ImportReport {
+
+	// Errors kept for the report; the rest are only counted.
+	static final int MAX_ERRORS = 50;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final String file;
+	private final long bytes;
+	private final int partitions;
+	private final int parallelism;
+	private final int writers;
+	private final List<Stage> stages = new ArrayList<>();
+	private final Map<Outcome, Long> totals = new EnumMap<>(Outcome.class);
+	private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+	private String knownKeys;   // Bloom filter statistics
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public ImportReport(String file, long bytes, int partitions, int parallelism, int writers) {
+		this.file = file;
+		this.bytes = bytes;
+		this.partitions = partitions;
+		this.parallelism = parallelism;
+		this.writers = writers;
+		for (Outcome outcome : Outcome.values()) {
+			totals.put(outcome, 0L);
+		}
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	void addStage(String name, long records, long nanos) {
+		stages.add(new Stage(name, records, nanos));
+	}
+
+	void count(Outcome outcome, long records) {
+		totals.merge(outcome, records, Long::sum);
+	}
+
+	void setKnownKeys(String knownKeys) {
+		this.knownKeys = knownKeys;
+	}
+
+	void error(String message) {
+		synchronized (errors) {
+			if (errors.size() < MAX_ERRORS) {
+				errors.add(message);
+			}
+		}
+	}
+
+	// -----------------------------------------------
+	// Getters
+	// -----------------------------------------------
+
+	public String getFile() {
+		return file;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public int getPartitions() {
+		return partitions;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public int getWriters() {
+		return writers;
+	}
+
+	public List<Stage> getStages() {
+		return stages;
+	}
+
+	public Map<Outcome, Long> getTotals() {
+		return totals;
+	}
+
+	public String getKnownKeys() {
+		return knownKeys;
+	}
+
+	public List<String> getErrors() {
+		return errors;
+	}
+
+	@Override
+	public String toString() {
+		return "ImportReport{" +
+			   "file=" + file +
+			   ", stages=" + stages +
+			   ", totals=" + totals +
+			   "}";
+	}  // end toString()
+
+	// -----------------------------------------------
+	// Helper class
+	// -----------------------------------------------
+
+	/**
+	 * One stage of the import and its throughput.
+	 */
+	public static final class Stage {
+		private final String name;
+		private final long records;
+		private final long millis;
+		private final long recordsPerSecond;
+
+		Stage(String name, long records, long nanos) {
+			this.name = name;
+			this.records = records;
+			this.millis = nanos / 1_000_000;
+			this.recordsPerSecond = (nanos == 0) ? 0 : records * 1_000_000_000L / nanos;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getRecords() {
+			return records;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public long getRecordsPerSecond() {
+			return recordsPerSecond;
+		}
+
+		@Override
+		public String toString() {
+			return name + ": " + records + " in " + millis + " ms (" + recordsPerSecond + "/s)";
+		}
+	}
+
+}  // end class ImportReport
@@ -0,0 +1,57 @@
+// ***************************************************************************
+// Class:  KnownKeys
+//
+// Bloom filters over the natural keys already in the database - book ISBNs
+// and author name keys - for one import.
+//
+// Built at the start of an import (see ParallelCatalogImporter) and handed
+// to CatalogUpsertService with every batch.  Before looking a key up, the
+// upsert asks the filter; a key the filter has never seen is new, so the
+// SELECT is skipped and the row goes straight to the INSERT batch.  Keys
+// inserted by the import are added as they are written, so the filters stay
+// complete while the import runs.
+//
+// NONE (no filters) means "look everything up" - used for API batches.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+public final class KnownKeys {
+
+	public static final KnownKeys NONE = new KnownKeys(null, null);
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final BloomFilter isbns;            // BookRecord.normalizeIsbn() values
+	private final BloomFilter authorNameKeys;   // Author.nameKey() values
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public KnownKeys(BloomFilter isbns, BloomFilter authorNameKeys) {
+		this.isbns = isbns;
+		this.authorNameKeys = authorNameKeys;
+	}
+
+	// -----------------------------------------------
+	// Getters - null when there is no filter
+	// -----------------------------------------------
+
+	public BloomFilter getIsbns() {
+		return isbns;
+	}
+
+	public BloomFilter getAuthorNameKeys() {
+		return authorNameKeys;
+	}
+
+	@Override
+	public String toString() {
+		return "KnownKeys{" +
+			   "isbns=" + isbns +
+			   ", authorNameKeys=" + authorNameKeys +
+			   "}";
+	}  // end toString()
+
+}  // end class KnownKeys
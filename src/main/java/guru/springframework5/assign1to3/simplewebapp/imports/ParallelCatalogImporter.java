@@ -0,0 +1,358 @@
+// ***************************************************************************
+// Class:  ParallelCatalogImporter
+//
+// Imports a local JSON Lines file (see ImportLine) using all cores.
+//
+// Stages (each timed - see ImportReport):
+//    parse      - the file is cut into byte-range partitions (FilePartition)
+//                 that a ForkJoinPool parses in parallel.  Records go into
+//                 concurrent maps keyed by natural key, so the same
+//                 publisher / author / book seen in several partitions ends
+//                 up as one record (the one furthest down the file wins,
+//                 like a later record in an upsert batch).
+//    known-keys - Bloom filters over the ISBNs and author name keys already
+//                 stored (see KnownKeys), sized from the repository counts
+//                 plus the records parsed.  The writers consult them before
+//                 any lookup, so new keys never hit the database until they
+//                 are inserted.
+//    publishers, authors, books
+//               - the distinct records are cut into batches and upserted by
+//                 several writer threads, one transaction per batch (see
+//                 CatalogUpsertService).  Publishers and authors are written
+//                 before the books that reference them; within a stage no
+//                 two batches share a key, so writers never collide.
+//    replica    - the replica copy is held back while writing (every commit
+//                 would copy the whole database) and done once at the end.
+//
+// Settings (application.properties):
+//    app.import.parallelism - parser threads (0 = all cores)
+//    app.import.writers     - writer transactions at once (each holds a
+//                             pooled connection, so keep well under the
+//                             pool size)
+//    app.import.batch-size  - records per writer transaction
+//    app.import.bloom-filter.enabled             - build KnownKeys (default true)
+//    app.import.bloom-filter.false-positive-rate - e.g. 0.01
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import guru.springframework5.assign1to3.simplewebapp.config.ReplicaSynchronizer;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogBulkChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.imports.UpsertResult.Outcome;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IAuthorRepository;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IBookRepository;
+
+@Service
+public class ParallelCatalogImporter {
+
+	private static final Logger log = LoggerFactory.getLogger(ParallelCatalogImporter.class);
+
+	// Partitions per parser thread, so a thread that finishes early can take
+	// more work instead of idling.
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final CatalogUpsertService upsertService;
+	private final IBookRepository bookRepository;
+	private final IAuthorRepository authorRepository;
+	private final JdbcTemplate jdbcTemplate;
+	private final ReplicaSynchronizer replicaSynchronizer;
+	private final ApplicationEventPublisher publisher;
+	private final ObjectMapper objectMapper;
+	private final int parallelism;
+	private final int writers;
+	private final int batchSize;
+	private final boolean bloomFilters;
+	private final double falsePositiveRate;
+
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public ParallelCatalogImporter(CatalogUpsertService upsertService, IBookRepository bookRepository,
+	                               IAuthorRepository authorRepository, JdbcTemplate jdbcTemplate,
+	                               ReplicaSynchronizer replicaSynchronizer,
+	                               ApplicationEventPublisher publisher, ObjectMapper objectMapper,
+	                               @Value("${app.import.parallelism:0}") int parallelism,
+	                               @Value("${app.import.writers:4}") int writers,
+	                               @Value("${app.import.batch-size:5000}") int batchSize,
+	                               @Value("${app.import.bloom-filter.enabled:true}") boolean bloomFilters,
+	                               @Value("${app.import.bloom-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+		this.upsertService = upsertService;
+		this.bookRepository = bookRepository;
+		this.authorRepository = authorRepository;
+		this.jdbcTemplate = jdbcTemplate;
+		this.replicaSynchronizer = replicaSynchronizer;
+		this.publisher = publisher;
+		this.objectMapper = objectMapper;
+		this.parallelism = (parallelism > 0) ? parallelism : Runtime.getRuntime().availableProcessors();
+		this.writers = Math.max(1, writers);
+		this.batchSize = Math.max(1, batchSize);
+		this.bloomFilters = bloomFilters;
+		this.falsePositiveRate = falsePositiveRate;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * Imports the file.  Only one import runs at a time.
+	 *
+	 * @throws IllegalStateException if an import is already running
+	 */
+	public ImportReport importFile(Path file) throws IOException {
+		if (!running.compareAndSet(false, true)) {
+			throw new IllegalStateException("An import is already running");
+		}
+		try {
+			return doImport(file);
+		} finally {
+			running.set(false);
+		}
+	}
+
+	private ImportReport doImport(Path file) throws IOException {
+		List<FilePartition> partitions = FilePartition.split(Files.size(file), parallelism * PARTITIONS_PER_THREAD);
+		ImportReport report = new ImportReport(file.toString(), Files.size(file), partitions.size(), parallelism, writers);
+
+		// Parse
+		long started = System.nanoTime();
+		ParsedRecords parsed = parse(file, partitions, report);
+		report.addStage("parse", parsed.lines.sum(), System.nanoTime() - started);
+
+		// Known keys
+		KnownKeys knownKeys = KnownKeys.NONE;
+		if (bloomFilters) {
+			started = System.nanoTime();
+			knownKeys = loadKnownKeys(parsed);
+			report.addStage("known-keys", bookRepository.count() + authorRepository.count(), System.nanoTime() - started);
+		}
+
+		// Write
+		ReplicaSynchronizer.Deferral deferral = replicaSynchronizer.defer();
+		try {
+			write("publishers", parsed.publishers, CatalogUpsertRequest::setPublishers,
+					CatalogUpsertResponse::getPublishers, knownKeys, report);
+			write("authors", parsed.authors, CatalogUpsertRequest::setAuthors,
+					CatalogUpsertResponse::getAuthors, knownKeys, report);
+			write("books", parsed.books, CatalogUpsertRequest::setBooks,
+					CatalogUpsertResponse::getBooks, knownKeys, report);
+			started = System.nanoTime();
+		} finally {
+			deferral.close();   // Copies the replica.
+		}
+		report.addStage("replica", parsed.distinct(), System.nanoTime() - started);
+		report.setKnownKeys(knownKeys.toString());
+
+		// The read side was rebuilt from the replica while it was held back;
+		// now that it is current, let it catch up.
+		publisher.publishEvent(new CatalogBulkChangeEvent(new ArrayList<>()));
+
+		log.info("Imported {}", report);
+		return report;
+	}  // end doImport()
+
+	// -----------------------------------------------
+	// Parse stage
+	// -----------------------------------------------
+
+	private ParsedRecords parse(Path file, List<FilePartition> partitions, ImportReport report) throws IOException {
+		ParsedRecords parsed = new ParsedRecords();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions.size());
+			for (FilePartition partition : partitions) {
+				tasks.add(pool.submit(() -> parsePartition(file, partition, parsed, report)));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+		report.count(Outcome.REJECTED, parsed.rejected.sum());
+		return parsed;
+	}  // end parse()
+
+	private void parsePartition(Path file, FilePartition partition, ParsedRecords parsed, ImportReport report) {
+		try {
+			partition.forEachLine(file, (offset, text) -> {
+				parsed.lines.increment();
+				try {
+					ImportLine line = objectMapper.readValue(text, ImportLine.class);
+					if (!parsed.add(offset, line)) {
+						reject(parsed, report, offset, "no publisher, author or book, or its key is missing");
+					}
+				} catch (JsonProcessingException e) {
+					reject(parsed, report, offset, e.getOriginalMessage());
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void reject(ParsedRecords parsed, ImportReport report, long offset, String message) {
+		parsed.rejected.increment();
+		report.error("byte " + offset + ": " + message);
+	}
+
+	// -----------------------------------------------
+	// Known-keys stage
+	// -----------------------------------------------
+
+	// Reads the stored ISBNs and name keys from the primary (the replica may
+	// lag, and a key missing from the filter would be inserted twice).
+	private KnownKeys loadKnownKeys(ParsedRecords parsed) {
+		BloomFilter isbns = BloomFilter.create(bookRepository.count() + parsed.books.size(), falsePositiveRate);
+		jdbcTemplate.query("SELECT isbn_key FROM book WHERE isbn_key IS NOT NULL",
+				resultSet -> {
+					isbns.put(resultSet.getString(1));
+				});
+
+		BloomFilter nameKeys = BloomFilter.create(authorRepository.count() + parsed.authors.size(), falsePositiveRate);
+		jdbcTemplate.query("SELECT name_key FROM author WHERE name_key IS NOT NULL",
+				resultSet -> {
+					nameKeys.put(resultSet.getString(1));
+				});
+		return new KnownKeys(isbns, nameKeys);
+	}  // end loadKnownKeys()
+
+	// -----------------------------------------------
+	// Write stages
+	// -----------------------------------------------
+
+	// Upserts the records in file order, batchSize per transaction, on
+	// "writers" threads.
+	private <T> void write(String stage, Map<String, Positioned<T>> records,
+			BiConsumer<CatalogUpsertRequest, List<T>> setRecords,
+			Function<CatalogUpsertResponse, List<UpsertResult>> getResults, KnownKeys knownKeys,
+			ImportReport report) {
+		long started = System.nanoTime();
+		List<Positioned<T>> ordered = new ArrayList<>(records.values());
+		ordered.sort(Comparator.comparingLong(positioned -> positioned.offset));
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(writers,
+				runnable -> new Thread(runnable, "catalog-import-writer-" + threadNumber.incrementAndGet()));
+		try {
+			List<Future<CatalogUpsertResponse>> batches = new ArrayList<>();
+			for (int from = 0; from < ordered.size(); from += batchSize) {
+				List<T> batch = new ArrayList<>(batchSize);
+				for (Positioned<T> positioned : ordered.subList(from, Math.min(from + batchSize, ordered.size()))) {
+					batch.add(positioned.record);
+				}
+				CatalogUpsertRequest request = new CatalogUpsertRequest();
+				setRecords.accept(request, batch);
+				batches.add(executor.submit(() -> upsertService.upsert(request, knownKeys)));
+			}
+			for (Future<CatalogUpsertResponse> batch : batches) {
+				for (UpsertResult result : getResults.apply(batch.get())) {
+					report.count(result.getOutcome(), 1);
+					if (result.getOutcome() == Outcome.REJECTED) {
+						report.error(stage + " " + result.getKey() + ": " + result.getMessage());
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Import interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Import of " + stage + " failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		report.addStage(stage, ordered.size(), System.nanoTime() - started);
+	}  // end write()
+
+	// -----------------------------------------------
+	// Helper classes
+	// -----------------------------------------------
+
+	// A record and the byte offset of its line.
+	private static final class Positioned<T> {
+		final long offset;
+		final T record;
+
+		Positioned(long offset, T record) {
+			this.offset = offset;
+			this.record = record;
+		}
+
+		// The record further down the file wins.
+		static <T> Positioned<T> later(Positioned<T> a, Positioned<T> b) {
+			return (a.offset > b.offset) ? a : b;
+		}
+	}
+
+	// Distinct records by natural key, filled by all parser threads at once.
+	private static final class ParsedRecords {
+		final Map<String, Positioned<PublisherRecord>> publishers = new ConcurrentHashMap<>();
+		final Map<String, Positioned<AuthorRecord>> authors = new ConcurrentHashMap<>();
+		final Map<String, Positioned<BookRecord>> books = new ConcurrentHashMap<>();
+		final LongAdder lines = new LongAdder();
+		final LongAdder rejected = new LongAdder();
+
+		// False if the line has no record with a natural key.
+		boolean add(long offset, ImportLine line) {
+			if (line.getPublisher() != null) {
+				String key = PublisherRecord.key(line.getPublisher().getName(), line.getPublisher().getZip());
+				return key != null
+						&& publishers.merge(key, new Positioned<>(offset, line.getPublisher()), Positioned::later) != null;
+			}
+			if (line.getAuthor() != null) {
+				String key = line.getAuthor().key();
+				return key != null
+						&& authors.merge(key, new Positioned<>(offset, line.getAuthor()), Positioned::later) != null;
+			}
+			if (line.getBook() != null) {
+				String key = BookRecord.normalizeIsbn(line.getBook().getIsbn());
+				return key != null
+						&& books.merge(key, new Positioned<>(offset, line.getBook()), Positioned::later) != null;
+			}
+			return false;
+		}
+
+		long distinct() {
+			return (long) publishers.size() + authors.size() + books.size();
+		}
+	}
+
+}  // end class ParallelCatalogImporter
@@ -0,0 +1,79 @@
+// ***************************************************************************
+// Class:  PublisherRecord
+//
+// One publisher in a batch upsert (JSON from the import feed).
+// Natural key: name + zip.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+public class PublisherRecord {
+
+	private String name;
+	private String addressLine1;
+	private String city;
+	private String state;
+	private String zip;
+
+	public PublisherRecord() {
+		super();
+	}
+
+	public PublisherRecord(String name, String addressLine1, String city, String state, String zip) {
+		this.name = name;
+		this.addressLine1 = addressLine1;
+		this.city = city;
+		this.state = state;
+		this.zip = zip;
+	}
+
+	/**
+	 * @return natural key "name|zip" (trimmed), or null if the name is missing.
+	 */
+	public static String key(String name, String zip) {
+		if (name == null || name.trim().isEmpty()) {
+			return null;
+		}
+		return name.trim() + "|" + ((zip == null) ? "" : zip.trim());
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getAddressLine1() {
+		return addressLine1;
+	}
+
+	public void setAddressLine1(String addressLine1) {
+		this.addressLine1 = addressLine1;
+	}
+
+	public String getCity() {
+		return city;
+	}
+
+	public void setCity(String city) {
+		this.city = city;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+	public String getZip() {
+		return zip;
+	}
+
+	public void setZip(String zip) {
+		this.zip = zip;
+	}
+
+}  // end class PublisherRecord
@@ -0,0 +1,62 @@
+// ***************************************************************************
+// Class:  UpsertResult
+//
+// Outcome of one record of a batch upsert.  "index" is the record's position
+// in the request list, so callers can match results to what they sent.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+public class UpsertResult {
+
+	public enum Outcome { INSERTED, UPDATED, UNCHANGED, REJECTED }
+
+	private final int index;
+	private final String key;       // Normalized natural key (null if missing)
+	private final Long id;          // Database id (null if rejected)
+	private final Outcome outcome;
+	private final String message;   // Why it was rejected (null otherwise)
+
+	public UpsertResult(int index, String key, Long id, Outcome outcome, String message) {
+		this.index = index;
+		this.key = key;
+		this.id = id;
+		this.outcome = outcome;
+		this.message = message;
+	}
+
+	public static UpsertResult rejected(int index, String key, String message) {
+		return new UpsertResult(index, key, null, Outcome.REJECTED, message);
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return "UpsertResult{" +
+			   "index=" + index +
+			   ", key=" + key +
+			   ", id=" + id +
+			   ", outcome=" + outcome +
+			   (message == null ? "" : ", message=" + message) +
+			   "}";
+	}  // end toString()
+
+}  // end class UpsertResult
@@ -0,0 +1,269 @@
+// ***************************************************************************
+// Class:  BookViewCounter
+//
+// Counts views per book in memory and keeps the "most viewed" ranking.
+//
+//    record(id)  - one LongAdder per book, so concurrent views of the same
+//                  (popular) book do not contend on one counter, and no
+//                  database write happens per view.
+//    flush       - every app.book-views.flush-interval-ms the views counted
+//                  since the last flush are added to table book_view in one
+//                  JDBC batch and transaction.  A failed flush is retried
+//                  with the next one; views since the last flush are lost if
+//                  the JVM dies (a clean shutdown flushes).
+//    ranking     - every app.book-views.rank-interval-ms the top
+//                  app.book-views.top-size books are recomputed from the
+//                  previous ranking plus the books viewed since (counts only
+//                  grow, so no other book can have entered it) and published
+//                  as an immutable list: getTop() is a volatile read, nothing
+//                  is sorted per request.
+//
+// Counts include views not flushed yet.  Loaded from book_view at startup.
+// Flushing and ranking run on one background thread, which alone updates
+// Counter.flushed and the ranking.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.popularity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Component
+public class BookViewCounter {
+
+	private static final Logger log = LoggerFactory.getLogger(BookViewCounter.class);
+
+	private static final String SELECT_SQL = "SELECT book_id, views FROM book_view";
+	private static final String MERGE_SQL =
+			"MERGE INTO book_view t USING (SELECT CAST(? AS BIGINT) AS book_id, CAST(? AS BIGINT) AS views) s " +
+			"ON t.book_id = s.book_id " +
+			"WHEN MATCHED THEN UPDATE SET t.views = t.views + s.views " +
+			"WHEN NOT MATCHED THEN INSERT (book_id, views) VALUES (s.book_id, s.views)";
+	private static final int BATCH_SIZE = 1000;
+
+	// Most viewed first; ties by book id.
+	private static final Comparator<BookViews> RANKING =
+			Comparator.comparingLong(BookViews::getViews).reversed().thenComparingLong(BookViews::getBookId);
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transaction;
+	private final long flushIntervalMillis;
+	private final long rankIntervalMillis;
+	private final int topSize;
+
+	private final ConcurrentMap<Long, Counter> counters = new ConcurrentHashMap<>();
+
+	// Counters viewed since the last ranking (each queued once, see Counter.ranked).
+	private final Queue<Counter> viewedSinceRanking = new ConcurrentLinkedQueue<>();
+
+	private volatile List<BookViews> top = Collections.emptyList();
+
+	private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "book-view-counter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public BookViewCounter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+	                       @Value("${app.book-views.flush-interval-ms:30000}") long flushIntervalMillis,
+	                       @Value("${app.book-views.rank-interval-ms:1000}") long rankIntervalMillis,
+	                       @Value("${app.book-views.top-size:20}") int topSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transaction = new TransactionTemplate(transactionManager);
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.rankIntervalMillis = rankIntervalMillis;
+		this.topSize = topSize;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * Counts one view of the book.  Lock-free once the book has a counter.
+	 */
+	public void record(long bookId) {
+		Counter counter = counter(bookId);
+		counter.views.increment();
+		if (counter.ranked.get() && counter.ranked.compareAndSet(true, false)) {
+			viewedSinceRanking.add(counter);
+		}
+	}
+
+	/**
+	 * @return views of the book (including views not flushed yet).
+	 */
+	public long views(long bookId) {
+		Counter counter = counters.get(bookId);
+		return (counter == null) ? 0 : counter.views.sum();
+	}
+
+	/**
+	 * @return the most viewed books, most viewed first, as of the last
+	 *         ranking (at most app.book-views.top-size).
+	 */
+	public List<BookViews> getTop() {
+		return top;
+	}
+
+	/**
+	 * @return books counted, views not flushed yet and size of the ranking.
+	 */
+	public Map<String, Long> getMetrics() {
+		long unflushed = 0;
+		for (Counter counter : counters.values()) {
+			unflushed += counter.views.sum() - counter.flushed;
+		}
+		Map<String, Long> metrics = new LinkedHashMap<>();
+		metrics.put("books", (long) counters.size());
+		metrics.put("unflushed", unflushed);
+		metrics.put("ranked", (long) top.size());
+		return metrics;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		worker.execute(this::load);
+		worker.scheduleWithFixedDelay(this::rank, rankIntervalMillis, rankIntervalMillis, TimeUnit.MILLISECONDS);
+		worker.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the background thread and flushes what is left.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		worker.shutdown();   // Cancels the periodic tasks, lets a running one finish
+		if (worker.awaitTermination(10, TimeUnit.SECONDS)) {
+			flushQuietly();
+		}
+	}
+
+	// -----------------------------------------------
+	// Helper methods - all but counter() run on the worker thread.
+	// -----------------------------------------------
+
+	private Counter counter(long bookId) {
+		Counter counter = counters.get(bookId);   // No locking when it exists
+		return (counter != null) ? counter : counters.computeIfAbsent(bookId, Counter::new);
+	}
+
+	// Adds the stored counts - to counters that may already hold views
+	// recorded since startup.
+	private void load() {
+		jdbcTemplate.query(SELECT_SQL, rs -> {
+			Counter counter = counter(rs.getLong(1));
+			long views = rs.getLong(2);
+			counter.views.add(views);
+			counter.flushed += views;
+			if (counter.ranked.compareAndSet(true, false)) {
+				viewedSinceRanking.add(counter);
+			}
+		});
+		rank();
+	}
+
+	private void rank() {
+		Map<Long, BookViews> candidates = new LinkedHashMap<>();
+		for (BookViews ranked : top) {
+			candidates.put(ranked.getBookId(), new BookViews(ranked.getBookId(), views(ranked.getBookId())));
+		}
+		Counter counter;
+		while ((counter = viewedSinceRanking.poll()) != null) {
+			counter.ranked.set(true);   // Before reading, so a later view queues it again
+			candidates.put(counter.bookId, new BookViews(counter.bookId, counter.views.sum()));
+		}
+
+		List<BookViews> ranking = new ArrayList<>(candidates.values());
+		ranking.sort(RANKING);
+		top = Collections.unmodifiableList(new ArrayList<>(ranking.subList(0, Math.min(topSize, ranking.size()))));
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			log.warn("Could not flush book views, retrying with the next flush", e);
+		}
+	}
+
+	private void flush() {
+		List<Counter> changed = new ArrayList<>();
+		List<Long> deltas = new ArrayList<>();
+		for (Counter counter : counters.values()) {
+			long delta = counter.views.sum() - counter.flushed;
+			if (delta > 0) {
+				changed.add(counter);
+				deltas.add(delta);
+			}
+		}
+		if (changed.isEmpty()) {
+			return;   // No write - and no replica copy - while nobody views books.
+		}
+
+		transaction.executeWithoutResult(status -> {
+			List<Object[]> rows = new ArrayList<>(changed.size());
+			for (int i = 0; i < changed.size(); i++) {
+				rows.add(new Object[] { changed.get(i).bookId, deltas.get(i) });
+			}
+			jdbcTemplate.batchUpdate(MERGE_SQL, rows, BATCH_SIZE, (statement, row) -> {
+				statement.setLong(1, (Long) row[0]);
+				statement.setLong(2, (Long) row[1]);
+			});
+		});
+		for (int i = 0; i < changed.size(); i++) {
+			changed.get(i).flushed += deltas.get(i);
+		}
+	}  // end flush()
+
+	// -----------------------------------------------
+	// Helper class - the views of one book.
+	// -----------------------------------------------
+
+	private static final class Counter {
+		final long bookId;
+		final LongAdder views = new LongAdder();
+
+		// Views already in book_view.  Worker thread only (read by getMetrics).
+		volatile long flushed;
+
+		// False while queued in viewedSinceRanking.
+		final AtomicBoolean ranked = new AtomicBoolean(true);
+
+		Counter(long bookId) {
+			this.bookId = bookId;
+		}
+	}
+
+}  // end class BookViewCounter
@@ -0,0 +1,43 @@
+// ***************************************************************************
+// Class:  BookViews
+//
+// One entry of the "most viewed" ranking: a book id and its view count at
+// the time of ranking (see BookViewCounter).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.popularity;
+
+public final class BookViews {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final long bookId;
+	private final long views;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public BookViews(long bookId, long views) {
+		this.bookId = bookId;
+		this.views = views;
+	}
+
+	// -----------------------------------------------
+	// Getters
+	// -----------------------------------------------
+
+	public long getBookId() {
+		return bookId;
+	}
+
+	public long getViews() {
+		return views;
+	}
+
+	@Override
+	public String toString() {
+		return "BookViews [bookId=" + bookId + ", views=" + views + "]";
+	}
+
+}  // end class BookViews
@@ -0,0 +1,63 @@
+// ***************************************************************************
+// Class:  ControllerRequestEvent
+//
+// JFR event: one request handled by a controller method, from before the
+// controller runs until the response is complete (view rendered) - see
+// FlightRecorderInterceptor.  Also totals the repository calls the request
+// made and the rows they returned.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("simplewebapp.ControllerRequest")
+@Label("Controller Request")
+@Category({ "Simplewebapp", "Web" })
+@StackTrace(false)
+class ControllerRequestEvent extends Event {
+
+	// Event of the request running on this thread, while one is being recorded.
+	private static final ThreadLocal<ControllerRequestEvent> current = new ThreadLocal<>();
+
+	@Label("HTTP Method")
+	String httpMethod;
+
+	@Label("URI")
+	String uri;
+
+	@Label("Handler")
+	String handler;
+
+	@Label("Status")
+	int status;
+
+	@Label("Repository Calls")
+	int repositoryCalls;
+
+	@Label("Repository Rows")
+	long repositoryRows;
+
+	@Label("Failed")
+	boolean failed;
+
+	// -----------------------------------------------
+	// Request in progress on this thread
+	// -----------------------------------------------
+
+	static ControllerRequestEvent current() {
+		return current.get();
+	}
+
+	static void setCurrent(ControllerRequestEvent event) {
+		if (event == null) {
+			current.remove();
+		} else {
+			current.set(event);
+		}
+	}
+
+}  // end class ControllerRequestEvent
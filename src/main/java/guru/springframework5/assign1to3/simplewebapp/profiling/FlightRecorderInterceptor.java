@@ -0,0 +1,112 @@
+// ***************************************************************************
+// Class:  FlightRecorderInterceptor
+//
+// Emits a ControllerRequestEvent for every request handled by a controller
+// (preHandle to afterCompletion) and a TemplateRenderEvent for every view
+// rendered (postHandle to afterCompletion).  Registered in
+// config.WebMvcConfig.
+//
+// Events are only created while a recording has them enabled, so without
+// one this costs a flag check per request.  While the request runs its
+// event is the thread's ControllerRequestEvent.current(), which repository
+// calls add to.  Async requests (long polls, SSE) get one event per dispatch.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.profiling;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.view.UrlBasedViewResolver;
+
+import jdk.jfr.EventType;
+
+@Component
+public class FlightRecorderInterceptor implements AsyncHandlerInterceptor {
+
+	// Request attribute carrying the render event from postHandle to afterCompletion.
+	private static final String RENDER = FlightRecorderInterceptor.class.getName() + ".render";
+
+	private static final EventType REQUEST_TYPE = EventType.getEventType(ControllerRequestEvent.class);
+	private static final EventType RENDER_TYPE = EventType.getEventType(TemplateRenderEvent.class);
+
+	// -----------------------------------------------
+	// HandlerInterceptor
+	// -----------------------------------------------
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (REQUEST_TYPE.isEnabled()) {
+			ControllerRequestEvent event = new ControllerRequestEvent();
+			event.begin();
+			ControllerRequestEvent.setCurrent(event);
+		}
+		return true;
+	}
+
+	@Override
+	public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+	                       ModelAndView modelAndView) {
+		String template = (modelAndView == null) ? null : modelAndView.getViewName();
+		if (template == null || !RENDER_TYPE.isEnabled()
+				|| template.startsWith(UrlBasedViewResolver.REDIRECT_URL_PREFIX)
+				|| template.startsWith(UrlBasedViewResolver.FORWARD_URL_PREFIX)) {
+			return;
+		}
+		TemplateRenderEvent event = new TemplateRenderEvent();
+		event.template = template;
+		event.begin();
+		request.setAttribute(RENDER, event);
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+	                            Exception ex) {
+		TemplateRenderEvent render = (TemplateRenderEvent) request.getAttribute(RENDER);
+		if (render != null) {
+			request.removeAttribute(RENDER);
+			render.end();
+			if (render.shouldCommit()) {
+				render.failed = (ex != null);
+				render.commit();
+			}
+		}
+
+		ControllerRequestEvent event = ControllerRequestEvent.current();
+		if (event != null) {
+			ControllerRequestEvent.setCurrent(null);
+			event.end();
+			if (event.shouldCommit()) {
+				event.httpMethod = request.getMethod();
+				event.uri = request.getRequestURI();
+				event.handler = handlerName(handler);
+				event.status = response.getStatus();
+				event.failed = (ex != null);
+				event.commit();
+			}
+		}
+	}
+
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+	                                           Object handler) {
+		ControllerRequestEvent.setCurrent(null);   // Continues on another thread and dispatch
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// e.g. "BookController.getBooks"
+	private static String handlerName(Object handler) {
+		if (handler instanceof HandlerMethod) {
+			HandlerMethod method = (HandlerMethod) handler;
+			return method.getBeanType().getSimpleName() + '.' + method.getMethod().getName();
+		}
+		return handler.getClass().getSimpleName();
+	}
+
+}  // end class FlightRecorderInterceptor
@@ -0,0 +1,168 @@
+// ***************************************************************************
+// Class:  FlightRecordings
+//
+// Starts, dumps and stops a JDK Flight Recorder recording on demand (see
+// AdminController, /admin/jfr/...), so a running server can be profiled
+// without a restart or command-line access.
+//
+// At most one recording at a time.  It uses one of the JDK's settings
+// ("default" - about 1% overhead, always-on safe - or "profile", more
+// detail), plus this application's events (simplewebapp.*, enabled by
+// default).  Recordings are written to app.jfr.directory on this server
+// and never sent over HTTP; open them with JDK Mission Control.  A running
+// recording is kept to app.jfr.max-age, so an idle one does not grow
+// without bound.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.profiling;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+@Component
+public class FlightRecordings {
+
+	// Settings files shipped with the JDK.
+	public static final List<String> SETTINGS = Arrays.asList("default", "profile");
+
+	private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final Path directory;
+	private final Duration maxAge;
+
+	// Guarded by "this".
+	private Recording recording;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public FlightRecordings(@Value("${app.jfr.directory:${java.io.tmpdir}}") String directory,
+	                        @Value("${app.jfr.max-age:PT30M}") Duration maxAge) {
+		this.directory = Paths.get(directory);
+		this.maxAge = maxAge;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * Starts a recording with the JDK's "default" or "profile" settings.
+	 *
+	 * @throws IllegalStateException    if a recording is already running
+	 * @throws IllegalArgumentException if there are no such settings
+	 */
+	public synchronized Map<String, Object> start(String settings) throws IOException {
+		if (!SETTINGS.contains(settings)) {
+			throw new IllegalArgumentException("JFR settings must be one of " + SETTINGS);
+		}
+		if (recording != null) {
+			throw new IllegalStateException("A recording is already running");
+		}
+		Configuration configuration;
+		try {
+			configuration = Configuration.getConfiguration(settings);
+		} catch (ParseException e) {
+			throw new IOException("Could not read JFR settings " + settings, e);
+		}
+
+		Recording started = new Recording(configuration);
+		started.setName("simplewebapp-" + settings);
+		started.setMaxAge(maxAge);
+		started.setToDisk(true);
+		started.start();
+		recording = started;
+		return status();
+	}
+
+	/**
+	 * Writes what the running recording holds so far to a new file; the
+	 * recording goes on.
+	 *
+	 * @return the file written
+	 * @throws IllegalStateException if no recording is running
+	 */
+	public synchronized Path dump() throws IOException {
+		return write(running());
+	}
+
+	/**
+	 * Stops the recording and writes it to a new file.
+	 *
+	 * @return the file written
+	 * @throws IllegalStateException if no recording is running
+	 */
+	public synchronized Path stop() throws IOException {
+		Recording stopped = running();
+		try {
+			stopped.stop();
+			return write(stopped);
+		} finally {
+			stopped.close();
+			recording = null;
+		}
+	}
+
+	/**
+	 * @return whether a recording runs, and its name, start time and size.
+	 */
+	public synchronized Map<String, Object> status() {
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("running", recording != null);
+		if (recording != null) {
+			status.put("name", recording.getName());
+			status.put("started", String.valueOf(recording.getStartTime()));
+			status.put("bytes", recording.getSize());
+		}
+		status.put("directory", directory.toAbsolutePath().toString());
+		return status;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (recording != null) {
+			recording.close();   // Not written - dump or stop first to keep it
+			recording = null;
+		}
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private Recording running() {
+		if (recording == null) {
+			throw new IllegalStateException("No recording is running");
+		}
+		return recording;
+	}
+
+	private Path write(Recording from) throws IOException {
+		Files.createDirectories(directory);
+		Path file = directory.resolve(from.getName() + '-' + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+		from.dump(file);
+		return file.toAbsolutePath();
+	}
+
+}  // end class FlightRecordings
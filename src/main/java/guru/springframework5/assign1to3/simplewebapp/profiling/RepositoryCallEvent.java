@@ -0,0 +1,36 @@
+// ***************************************************************************
+// Class:  RepositoryCallEvent
+//
+// JFR event: one call of a Spring Data repository method (findAll, save,
+// count, ...) - see RepositoryEventsPostProcessor.  Emitted only while a
+// recording has it enabled; no stack trace, to keep it cheap.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("simplewebapp.RepositoryCall")
+@Label("Repository Call")
+@Category({ "Simplewebapp", "Data" })
+@StackTrace(false)
+class RepositoryCallEvent extends Event {
+
+	@Label("Repository")
+	String repository;
+
+	@Label("Method")
+	String method;
+
+	@Label("Rows")
+	@Description("Entities returned or saved; the result of count(); -1 if not known")
+	long rows;
+
+	@Label("Failed")
+	boolean failed;
+
+}  // end class RepositoryCallEvent
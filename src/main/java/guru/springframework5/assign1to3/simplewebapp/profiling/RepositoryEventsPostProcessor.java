@@ -0,0 +1,123 @@
+// ***************************************************************************
+// Class:  RepositoryEventsPostProcessor
+//
+// Emits a RepositoryCallEvent for every call of a Spring Data repository
+// method, and adds it to the ControllerRequestEvent of the request making it.
+//
+// Spring Data repositories are AOP proxies; this BeanPostProcessor puts one
+// more MethodInterceptor in front of each (outside the transaction advice,
+// so the time includes commit).  With no recording running an event is
+// begun and dropped - JFR makes that close to free.
+//
+// Rows: size of a returned collection, page or slice, 0 or 1 for Optional,
+// null or a single entity, the value of a returned count, the number of
+// entities passed to saveAll / deleteAll; -1 when that is not known.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.profiling;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RepositoryEventsPostProcessor implements BeanPostProcessor {
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof Repository && bean instanceof Advised && !((Advised) bean).isFrozen()) {
+			Advised proxy = (Advised) bean;
+			proxy.addAdvice(0, new EventInterceptor(repositoryName(proxy, beanName)));
+		}
+		return bean;
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Name of the repository interface (e.g. IBookRepository).
+	private static String repositoryName(Advised proxy, String beanName) {
+		for (Class<?> type : proxy.getProxiedInterfaces()) {
+			if (Repository.class.isAssignableFrom(type)) {
+				return type.getSimpleName();
+			}
+		}
+		return beanName;
+	}
+
+	private static long rows(Object result, Object[] arguments) {
+		if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		}
+		if (result instanceof Slice) {
+			return ((Slice<?>) result).getNumberOfElements();
+		}
+		if (result instanceof Optional) {
+			return ((Optional<?>) result).isPresent() ? 1 : 0;
+		}
+		if (result instanceof Number) {
+			return ((Number) result).longValue();
+		}
+		if (result instanceof Boolean || result instanceof Iterable) {
+			return -1;
+		}
+		if (result == null) {
+			// void (delete...) - count what was passed in
+			return (arguments.length == 1 && arguments[0] instanceof Collection)
+					? ((Collection<?>) arguments[0]).size()
+					: 0;
+		}
+		return 1;   // An entity (save, getOne)
+	}
+
+	// -----------------------------------------------
+	// Helper class - the advice added to each repository.
+	// -----------------------------------------------
+
+	private static final class EventInterceptor implements MethodInterceptor {
+		private final String repository;
+
+		EventInterceptor(String repository) {
+			this.repository = repository;
+		}
+
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			RepositoryCallEvent event = new RepositoryCallEvent();
+			event.begin();
+			Object result = null;
+			boolean failed = true;
+			try {
+				result = invocation.proceed();
+				failed = false;
+				return result;
+			} finally {
+				event.end();
+				boolean commit = event.shouldCommit();
+				ControllerRequestEvent request = ControllerRequestEvent.current();
+				if (commit || request != null) {
+					long rows = failed ? 0 : rows(result, invocation.getArguments());
+					if (commit) {
+						event.repository = repository;
+						event.method = invocation.getMethod().getName();
+						event.rows = rows;
+						event.failed = failed;
+						event.commit();
+					}
+					if (request != null) {
+						request.repositoryCalls++;
+						request.repositoryRows += Math.max(0, rows);
+					}
+				}
+			}
+		}
+	}
+
+}  // end class RepositoryEventsPostProcessor
@@ -0,0 +1,28 @@
+// ***************************************************************************
+// Class:  TemplateRenderEvent
+//
+// JFR event: rendering of one view template, from after the controller
+// returned until the response is complete - see FlightRecorderInterceptor
+// (the same span as views.RenderMetrics measures).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("simplewebapp.TemplateRender")
+@Label("Template Render")
+@Category({ "Simplewebapp", "Web" })
+@StackTrace(false)
+class TemplateRenderEvent extends Event {
+
+	@Label("Template")
+	String template;
+
+	@Label("Failed")
+	boolean failed;
+
+}  // end class TemplateRenderEvent
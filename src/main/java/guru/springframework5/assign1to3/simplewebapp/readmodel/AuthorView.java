@@ -0,0 +1,102 @@
+// ***************************************************************************
+// Class:  AuthorView
+//
+// Flyweight cursor over author rows of CatalogColumns (see BookView for how
+// the cursor works).  getBooks() repositions one shared BookView over the
+// author's slice of the author_book CSR arrays, so the nested th:each in
+// authors/list.html allocates nothing per row either.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public final class AuthorView implements Iterable<AuthorView>, Iterator<AuthorView> {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final CatalogColumns columns;
+	private final BookView books;
+
+	private int[] ordinals;   // Rows to visit; null means every author in order.
+	private int from;         // First position to visit
+	private int to;           // Last position + 1
+	private int next;         // Next position to visit
+	private int current;      // Author ordinal of the row currently shown
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	AuthorView(CatalogColumns columns) {
+		this.columns = columns;
+		this.books = new BookView(columns);
+		select(null, 0, columns.authorCount());
+	}
+
+	/**
+	 * Limits the cursor to ordinals[from .. to-1] (or author ordinals from .. to-1
+	 * when ordinals is null) and rewinds it.
+	 */
+	AuthorView select(int[] ordinals, int from, int to) {
+		this.ordinals = ordinals;
+		this.from = from;
+		this.to = to;
+		this.next = from;
+		return this;
+	}
+
+	/**
+	 * @return number of authors this view will visit.
+	 */
+	public int size() {
+		return to - from;
+	}
+
+	// -----------------------------------------------
+	// Iterable / Iterator
+	// -----------------------------------------------
+
+	@Override
+	public Iterator<AuthorView> iterator() {
+		next = from;
+		return this;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next < to;
+	}
+
+	@Override
+	public AuthorView next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		current = (ordinals == null) ? next : ordinals[next];
+		next++;
+		return this;
+	}
+
+	// -----------------------------------------------
+	// Getters (same names as the Author entity)
+	// -----------------------------------------------
+
+	public long getId() {
+		return columns.authorId(current);
+	}
+
+	public String getFirstName() {
+		return columns.authorFirstName(current);
+	}
+
+	public String getLastName() {
+		return columns.authorLastName(current);
+	}
+
+	public BookView getBooks() {
+		return books.select(columns.authorBookTargets(), columns.authorBooksFrom(current), columns.authorBooksTo(current));
+	}
+
+}  // end class AuthorView
@@ -0,0 +1,108 @@
+// ***************************************************************************
+// Class:  BookView
+//
+// Flyweight cursor over book rows of CatalogColumns.
+//
+// It is both the Iterable handed to the template and the "row" returned by
+// each step of the iteration: next() just moves the cursor and returns this.
+// That way th:each over thousands of books allocates no Book objects.
+//
+// NOTE: Because the same object is reused, it must not be iterated by two
+//       loops at the same time or kept after the loop moves on.  Create one
+//       per request (CatalogReadModel.books()).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public final class BookView implements Iterable<BookView>, Iterator<BookView> {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final CatalogColumns columns;
+	private final PublisherView publisher;
+
+	private int[] ordinals;   // Rows to visit; null means every book in order.
+	private int from;         // First position to visit
+	private int to;           // Last position + 1
+	private int next;         // Next position to visit
+	private int current;      // Book ordinal of the row currently shown
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	BookView(CatalogColumns columns) {
+		this.columns = columns;
+		this.publisher = new PublisherView(columns);
+		select(null, 0, columns.bookCount());
+	}
+
+	/**
+	 * Limits the cursor to ordinals[from .. to-1] (or book ordinals from .. to-1
+	 * when ordinals is null) and rewinds it.
+	 */
+	BookView select(int[] ordinals, int from, int to) {
+		this.ordinals = ordinals;
+		this.from = from;
+		this.to = to;
+		this.next = from;
+		return this;
+	}
+
+	/**
+	 * @return number of books this view will visit.
+	 */
+	public int size() {
+		return to - from;
+	}
+
+	// -----------------------------------------------
+	// Iterable / Iterator
+	// -----------------------------------------------
+
+	@Override
+	public Iterator<BookView> iterator() {
+		next = from;
+		return this;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next < to;
+	}
+
+	@Override
+	public BookView next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		current = (ordinals == null) ? next : ordinals[next];
+		next++;
+		return this;
+	}
+
+	// -----------------------------------------------
+	// Getters (same names as the Book entity)
+	// -----------------------------------------------
+
+	public long getId() {
+		return columns.bookId(current);
+	}
+
+	public String getTitle() {
+		return columns.bookTitle(current);
+	}
+
+	public String getIsbn() {
+		return columns.bookIsbn(current);
+	}
+
+	public PublisherView getPublisher() {
+		int p = columns.bookPublisher(current);
+		return (p == CatalogColumns.NO_PUBLISHER) ? null : publisher.moveTo(p);
+	}
+
+}  // end class BookView
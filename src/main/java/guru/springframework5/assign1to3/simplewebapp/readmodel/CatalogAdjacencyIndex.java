@@ -0,0 +1,172 @@
+// ***************************************************************************
+// Class:  CatalogAdjacencyIndex
+//
+// Answers "books of author X", "authors of book Y" and "books by publisher Z"
+// with ids only, without loading any Author / Book / Publisher entity.
+//
+// Author.books, Book.authors and Publisher.books are HashSets of entities,
+// so walking them loads every entity and hashes it (hashCode() walks the
+// String fields).  This index instead reads just the id columns of the
+// author_book join table and book.publisher_id with plain JDBC and keeps
+// them in LongAdjacency arrays.
+//
+// Built when the application is ready and rebuilt (coalesced, in the
+// background) after committed catalog changes - same as CatalogReadModel.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.config.ReplicaSynchronizer;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogBulkChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent;
+
+@Component
+public class CatalogAdjacencyIndex {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final JdbcTemplate jdbcTemplate;
+
+	// Read-only, so rebuilds read from the replica - once it has the change.
+	private final TransactionTemplate readOnlyTransaction;
+	private final ReplicaSynchronizer replicaSynchronizer;
+
+	private final CoalescingRebuilder rebuilder = new CoalescingRebuilder("catalog-adjacency-index", this::rebuild);
+
+	// Replaced as a whole on rebuild, so readers always see a consistent set.
+	private volatile Snapshot snapshot = new Snapshot(new LongAdjacency.Builder().build(),
+	                                                  new LongAdjacency.Builder().build(),
+	                                                  new LongAdjacency.Builder().build());
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogAdjacencyIndex(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+	                             ReplicaSynchronizer replicaSynchronizer) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+		this.replicaSynchronizer = replicaSynchronizer;
+	}
+
+	// -----------------------------------------------
+	// Keeping the index current
+	// -----------------------------------------------
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		rebuild();
+	}
+
+	@TransactionalEventListener(classes = { CatalogChangeEvent.class, CatalogBulkChangeEvent.class }, fallbackExecution = true)
+	public void onCatalogChange() {
+		replicaSynchronizer.whenReplicated(rebuilder::request);
+	}
+
+	/**
+	 * Re-reads the id columns and swaps in new adjacency arrays.
+	 */
+	public void rebuild() {
+		snapshot = readOnlyTransaction.execute(status -> {
+			LongAdjacency.Builder authorToBooks = new LongAdjacency.Builder();
+			LongAdjacency.Builder bookToAuthors = new LongAdjacency.Builder();
+			LongAdjacency.Builder publisherToBooks = new LongAdjacency.Builder();
+
+			jdbcTemplate.query("SELECT author_id, book_id FROM author_book", rs -> {
+				long authorId = rs.getLong(1);
+				long bookId = rs.getLong(2);
+				authorToBooks.add(authorId, bookId);
+				bookToAuthors.add(bookId, authorId);
+			});
+			jdbcTemplate.query("SELECT publisher_id, id FROM book WHERE publisher_id IS NOT NULL", rs -> {
+				publisherToBooks.add(rs.getLong(1), rs.getLong(2));
+			});
+
+			return new Snapshot(authorToBooks.build(), bookToAuthors.build(), publisherToBooks.build());
+		});
+	}  // end rebuild()
+
+	@PreDestroy
+	public void shutdown() {
+		rebuilder.shutdown();
+	}
+
+	// -----------------------------------------------
+	// Queries
+	// -----------------------------------------------
+
+	public long[] bookIdsOfAuthor(long authorId) {
+		return snapshot.authorToBooks.targetsOf(authorId);
+	}
+
+	public long[] authorIdsOfBook(long bookId) {
+		return snapshot.bookToAuthors.targetsOf(bookId);
+	}
+
+	public long[] bookIdsOfPublisher(long publisherId) {
+		return snapshot.publisherToBooks.targetsOf(publisherId);
+	}
+
+	public int bookCountOfAuthor(long authorId) {
+		return snapshot.authorToBooks.countOf(authorId);
+	}
+
+	public int bookCountOfPublisher(long publisherId) {
+		return snapshot.publisherToBooks.countOf(publisherId);
+	}
+
+	// -----------------------------------------------
+	// Memory usage
+	// -----------------------------------------------
+
+	/**
+	 * @return approximate heap used by the three adjacency lists, in bytes.
+	 */
+	public long memoryBytes() {
+		Snapshot current = snapshot;
+		return current.authorToBooks.memoryBytes()
+			 + current.bookToAuthors.memoryBytes()
+			 + current.publisherToBooks.memoryBytes();
+	}
+
+	/**
+	 * @return reader friendly summary of edge counts and memory usage.
+	 */
+	@Override
+	public String toString() {
+		Snapshot current = snapshot;
+		return "CatalogAdjacencyIndex{" +
+			   "authorBookEdges=" + current.authorToBooks.edgeCount() +
+			   ", publisherBookEdges=" + current.publisherToBooks.edgeCount() +
+			   ", memoryBytes=" + memoryBytes() +
+			   "}";
+	}  // end toString()
+
+	// -----------------------------------------------
+	// Helper class - the three lists, swapped together.
+	// -----------------------------------------------
+
+	private static final class Snapshot {
+		final LongAdjacency authorToBooks;
+		final LongAdjacency bookToAuthors;
+		final LongAdjacency publisherToBooks;
+
+		Snapshot(LongAdjacency authorToBooks, LongAdjacency bookToAuthors, LongAdjacency publisherToBooks) {
+			this.authorToBooks = authorToBooks;
+			this.bookToAuthors = bookToAuthors;
+			this.publisherToBooks = publisherToBooks;
+		}
+	}
+
+}  // end class CatalogAdjacencyIndex
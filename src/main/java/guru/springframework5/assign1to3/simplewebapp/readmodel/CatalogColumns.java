@@ -0,0 +1,567 @@
+// ***************************************************************************
+// Class:  CatalogColumns
+//
+// Immutable, column-oriented copy of the whole catalog.
+//
+// Instead of one object per row, each attribute is a primitive array indexed
+// by the row's "ordinal" (0..n-1, rows sorted by id):
+//
+//    Publisher:  publisherIds[], publisherNames[]
+//    Book:       bookIds[], bookTitles[], bookIsbns[], bookPublishers[]
+//    Author:     authorIds[], authorFirstNames[], authorLastNames[]
+//
+// String columns hold codes into a shared StringDictionary.
+// bookPublishers[] holds the publisher's ordinal (-1 if none).
+//
+// The author_book association is stored CSR style (compressed sparse row):
+// the books of author "a" are the book ordinals
+//    authorBookTargets[authorBookOffsets[a] .. authorBookOffsets[a + 1] - 1]
+//
+// Never modified: a change makes a new instance - patch() copies the arrays
+// with the changed rows replaced, build() starts over - so readers never see
+// a half-updated copy.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+import org.springframework.data.domain.Sort;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.Author;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.domain.Publisher;
+
+public final class CatalogColumns {
+
+	// Ordinal used when a book has no publisher.
+	public static final int NO_PUBLISHER = -1;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final StringDictionary strings;
+
+	private final long[] publisherIds;
+	private final int[] publisherNames;
+
+	private final long[] bookIds;
+	private final int[] bookTitles;
+	private final int[] bookIsbns;
+	private final int[] bookPublishers;
+
+	private final long[] authorIds;
+	private final int[] authorFirstNames;
+	private final int[] authorLastNames;
+
+	private final int[] authorBookOffsets;   // length = authors + 1
+	private final int[] authorBookTargets;   // book ordinals
+
+	// Per book: code of its authors' alphabetically first last name.  Derived
+	// from the columns above on first use (see bookOrder()).
+	private volatile int[] bookFirstAuthorLastNames;
+
+	// -----------------------------------------------
+	// Constructor - use build() (or CatalogSnapshot.read())
+	// -----------------------------------------------
+	CatalogColumns(StringDictionary strings,
+	                       long[] publisherIds, int[] publisherNames,
+	                       long[] bookIds, int[] bookTitles, int[] bookIsbns, int[] bookPublishers,
+	                       long[] authorIds, int[] authorFirstNames, int[] authorLastNames,
+	                       int[] authorBookOffsets, int[] authorBookTargets) {
+		this.strings = strings;
+		this.publisherIds = publisherIds;
+		this.publisherNames = publisherNames;
+		this.bookIds = bookIds;
+		this.bookTitles = bookTitles;
+		this.bookIsbns = bookIsbns;
+		this.bookPublishers = bookPublishers;
+		this.authorIds = authorIds;
+		this.authorFirstNames = authorFirstNames;
+		this.authorLastNames = authorLastNames;
+		this.authorBookOffsets = authorBookOffsets;
+		this.authorBookTargets = authorBookTargets;
+	}
+
+	/**
+	 * Builds the columns from the entities loaded by the repositories.
+	 *
+	 * Must be called inside a transaction, since Author.books is loaded lazily.
+	 *
+	 * @param offHeapStrings true to keep the strings in an OffHeapStringStore.
+	 */
+	public static CatalogColumns build(Iterable<Publisher> publishers, Iterable<Book> books, Iterable<Author> authors,
+	                                   boolean offHeapStrings) {
+		StringDictionary.Builder strings = new StringDictionary.Builder(offHeapStrings);
+
+		// Publishers
+		List<Publisher> publisherRows = sortedById(publishers, Publisher::getId);
+		Map<Long, Integer> publisherOrdinals = new HashMap<>();
+		long[] publisherIds = new long[publisherRows.size()];
+		int[] publisherNames = new int[publisherRows.size()];
+		for (int p = 0; p < publisherRows.size(); p++) {
+			Publisher publisher = publisherRows.get(p);
+			publisherIds[p] = publisher.getId();
+			publisherNames[p] = strings.encode(publisher.getName());
+			publisherOrdinals.put(publisher.getId(), p);
+		}
+
+		// Books
+		List<Book> bookRows = sortedById(books, Book::getId);
+		Map<Long, Integer> bookOrdinals = new HashMap<>();
+		long[] bookIds = new long[bookRows.size()];
+		int[] bookTitles = new int[bookRows.size()];
+		int[] bookIsbns = new int[bookRows.size()];
+		int[] bookPublishers = new int[bookRows.size()];
+		for (int b = 0; b < bookRows.size(); b++) {
+			Book book = bookRows.get(b);
+			bookIds[b] = book.getId();
+			bookTitles[b] = strings.encode(book.getTitle());
+			bookIsbns[b] = strings.encode(book.getIsbn());
+			bookPublishers[b] = (book.getPublisher() == null)
+					? NO_PUBLISHER : publisherOrdinals.getOrDefault(book.getPublisher().getId(), NO_PUBLISHER);
+			bookOrdinals.put(book.getId(), b);
+		}
+
+		// Authors and the author_book association (CSR)
+		List<Author> authorRows = sortedById(authors, Author::getId);
+		long[] authorIds = new long[authorRows.size()];
+		int[] authorFirstNames = new int[authorRows.size()];
+		int[] authorLastNames = new int[authorRows.size()];
+		int[] authorBookOffsets = new int[authorRows.size() + 1];
+		int[][] booksPerAuthor = new int[authorRows.size()][];
+		for (int a = 0; a < authorRows.size(); a++) {
+			Author author = authorRows.get(a);
+			authorIds[a] = author.getId();
+			authorFirstNames[a] = strings.encode(author.getFirstName());
+			authorLastNames[a] = strings.encode(author.getLastName());
+
+			int[] targets = author.getBooks().stream()
+					.map(book -> bookOrdinals.get(book.getId()))
+					.filter(ordinal -> ordinal != null)
+					.mapToInt(Integer::intValue)
+					.sorted()
+					.toArray();
+			booksPerAuthor[a] = targets;
+			authorBookOffsets[a + 1] = authorBookOffsets[a] + targets.length;
+		}
+		int[] authorBookTargets = new int[authorBookOffsets[authorRows.size()]];
+		for (int a = 0; a < authorRows.size(); a++) {
+			System.arraycopy(booksPerAuthor[a], 0, authorBookTargets, authorBookOffsets[a], booksPerAuthor[a].length);
+		}
+
+		return new CatalogColumns(strings.build(),
+		                          publisherIds, publisherNames,
+		                          bookIds, bookTitles, bookIsbns, bookPublishers,
+		                          authorIds, authorFirstNames, authorLastNames,
+		                          authorBookOffsets, authorBookTargets);
+	}  // end build()
+
+	/**
+	 * Copy-on-write update: returns new columns with the patch's rows added,
+	 * replaced or removed.  Unchanged rows keep their values (and string
+	 * codes), only moving to their new ordinal; no other row is re-read.
+	 */
+	public CatalogColumns patch(CatalogPatch patch) {
+		PatchedStringDictionary.Builder patchedStrings = new PatchedStringDictionary.Builder(strings);
+
+		// Publishers
+		RowMerge publishers = new RowMerge(publisherIds, patch.publishers.keySet(), patch.removedPublishers);
+		int[] newPublisherNames = new int[publishers.ids.length];
+		for (int p = 0; p < publishers.ids.length; p++) {
+			int old = publishers.fromOld[p];
+			newPublisherNames[p] = (old >= 0)
+					? publisherNames[old] : patchedStrings.encode(patch.publishers.get(publishers.ids[p]));
+		}
+
+		// Books
+		RowMerge books = new RowMerge(bookIds, patch.books.keySet(), patch.removedBooks);
+		int[] newBookTitles = new int[books.ids.length];
+		int[] newBookIsbns = new int[books.ids.length];
+		int[] newBookPublishers = new int[books.ids.length];
+		for (int b = 0; b < books.ids.length; b++) {
+			int old = books.fromOld[b];
+			if (old >= 0) {
+				newBookTitles[b] = bookTitles[old];
+				newBookIsbns[b] = bookIsbns[old];
+				newBookPublishers[b] = (bookPublishers[old] == NO_PUBLISHER)
+						? NO_PUBLISHER : publishers.toNew[bookPublishers[old]];
+			} else {
+				CatalogPatch.BookRow row = patch.books.get(books.ids[b]);
+				newBookTitles[b] = patchedStrings.encode(row.title);
+				newBookIsbns[b] = patchedStrings.encode(row.isbn);
+				int publisher = (row.publisherId == null) ? -1 : Arrays.binarySearch(publishers.ids, row.publisherId);
+				newBookPublishers[b] = (publisher < 0) ? NO_PUBLISHER : publisher;
+			}
+		}
+
+		// Authors
+		RowMerge authors = new RowMerge(authorIds, patch.authors.keySet(), patch.removedAuthors);
+		int[] newAuthorFirstNames = new int[authors.ids.length];
+		int[] newAuthorLastNames = new int[authors.ids.length];
+		for (int a = 0; a < authors.ids.length; a++) {
+			int old = authors.fromOld[a];
+			if (old >= 0) {
+				newAuthorFirstNames[a] = authorFirstNames[old];
+				newAuthorLastNames[a] = authorLastNames[old];
+			} else {
+				CatalogPatch.AuthorRow row = patch.authors.get(authors.ids[a]);
+				newAuthorFirstNames[a] = patchedStrings.encode(row.firstName);
+				newAuthorLastNames[a] = patchedStrings.encode(row.lastName);
+			}
+		}
+
+		// author_book: old links (renumbered) except those replaced, plus the patch's links
+		Map<Long, List<Long>> addedLinks = new HashMap<>();
+		for (long[] link : patch.links) {
+			addedLinks.computeIfAbsent(link[0], id -> new ArrayList<>()).add(link[1]);
+		}
+		int[] newOffsets = new int[authors.ids.length + 1];
+		int[][] booksPerAuthor = new int[authors.ids.length][];
+		for (int a = 0; a < authors.ids.length; a++) {
+			long authorId = authors.ids[a];
+			int old = authors.oldOrdinal(authorId, authorIds);
+			int[] targets = new int[(old < 0) ? 0 : authorBookOffsets[old + 1] - authorBookOffsets[old]];
+			int count = 0;
+			if (old >= 0 && !patch.linkedAuthors.contains(authorId)) {
+				for (int i = authorBookOffsets[old]; i < authorBookOffsets[old + 1]; i++) {
+					int book = books.toNew[authorBookTargets[i]];
+					if (book >= 0 && !patch.linkedBooks.contains(bookIds[authorBookTargets[i]])) {
+						targets[count++] = book;
+					}
+				}
+			}
+			for (long bookId : addedLinks.getOrDefault(authorId, Collections.emptyList())) {
+				int book = Arrays.binarySearch(books.ids, bookId);
+				if (book >= 0) {
+					if (count == targets.length) {
+						targets = Arrays.copyOf(targets, count + 4);
+					}
+					targets[count++] = book;
+				}
+			}
+			targets = Arrays.copyOf(targets, count);
+			Arrays.sort(targets);
+			booksPerAuthor[a] = targets;
+			newOffsets[a + 1] = newOffsets[a] + count;
+		}
+		int[] newTargets = new int[newOffsets[authors.ids.length]];
+		for (int a = 0; a < authors.ids.length; a++) {
+			System.arraycopy(booksPerAuthor[a], 0, newTargets, newOffsets[a], booksPerAuthor[a].length);
+		}
+
+		return new CatalogColumns(patchedStrings.build(),
+		                          publishers.ids, newPublisherNames,
+		                          books.ids, newBookTitles, newBookIsbns, newBookPublishers,
+		                          authors.ids, newAuthorFirstNames, newAuthorLastNames,
+		                          newOffsets, newTargets);
+	}  // end patch()
+
+	// -----------------------------------------------
+	// Row counts
+	// -----------------------------------------------
+
+	public int publisherCount() {
+		return publisherIds.length;
+	}
+
+	public int bookCount() {
+		return bookIds.length;
+	}
+
+	public int authorCount() {
+		return authorIds.length;
+	}
+
+	// Dictionary holding every title, ISBN and name.
+	public StringDictionary strings() {
+		return strings;
+	}
+
+	// -----------------------------------------------
+	// Column access by ordinal
+	// -----------------------------------------------
+
+	public long publisherId(int p) {
+		return publisherIds[p];
+	}
+
+	public String publisherName(int p) {
+		return strings.get(publisherNames[p]);
+	}
+
+	/**
+	 * @return ordinal of the book with this id, or -1 if it is not in this copy.
+	 */
+	public int bookOrdinal(long id) {
+		int b = Arrays.binarySearch(bookIds, id);
+		return (b < 0) ? -1 : b;
+	}
+
+	public long bookId(int b) {
+		return bookIds[b];
+	}
+
+	public String bookTitle(int b) {
+		return strings.get(bookTitles[b]);
+	}
+
+	public String bookIsbn(int b) {
+		return strings.get(bookIsbns[b]);
+	}
+
+	public int bookPublisher(int b) {
+		return bookPublishers[b];
+	}
+
+	public long authorId(int a) {
+		return authorIds[a];
+	}
+
+	public String authorFirstName(int a) {
+		return strings.get(authorFirstNames[a]);
+	}
+
+	public String authorLastName(int a) {
+		return strings.get(authorLastNames[a]);
+	}
+
+	// First / last+1 position of author "a" within authorBookTargets().
+	public int authorBooksFrom(int a) {
+		return authorBookOffsets[a];
+	}
+
+	public int authorBooksTo(int a) {
+		return authorBookOffsets[a + 1];
+	}
+
+	// -----------------------------------------------
+	// Sort orders (for TopK)
+	// -----------------------------------------------
+
+	/**
+	 * @return order of book ordinals for the sort.  Properties are those of
+	 *         the Book entity - title, isbn, publisher.name and id - plus
+	 *         firstAuthorLastName (see bookFirstAuthorLastNames()).  Nulls
+	 *         sort first, as in the database.
+	 * @throws IllegalArgumentException for any other property.
+	 */
+	public TopK.OrdinalOrder bookOrder(Sort sort) {
+		TopK.OrdinalOrder order = (a, b) -> 0;
+		for (Sort.Order property : sort) {
+			TopK.OrdinalOrder column;
+			switch (property.getProperty()) {
+				case "title":
+					column = byString(b -> bookTitles[b]);
+					break;
+				case "isbn":
+					column = byString(b -> bookIsbns[b]);
+					break;
+				case "publisher.name":
+					column = byString(b -> (bookPublishers[b] == NO_PUBLISHER)
+							? StringDictionary.NULL_CODE : publisherNames[bookPublishers[b]]);
+					break;
+				case "firstAuthorLastName":
+					int[] lastNames = bookFirstAuthorLastNames();
+					column = byString(b -> lastNames[b]);
+					break;
+				case "id":
+					column = (a, b) -> Long.compare(bookIds[a], bookIds[b]);
+					break;
+				default:
+					throw new IllegalArgumentException("Cannot sort books by " + property.getProperty());
+			}
+			order = then(order, property.isAscending() ? column : (a, b) -> column.compare(b, a));
+		}
+		return order;
+	}  // end bookOrder()
+
+	/**
+	 * @return order of author ordinals for the sort.  Properties are those of
+	 *         the Author entity: lastName, firstName and id.
+	 * @throws IllegalArgumentException for any other property.
+	 */
+	public TopK.OrdinalOrder authorOrder(Sort sort) {
+		TopK.OrdinalOrder order = (a, b) -> 0;
+		for (Sort.Order property : sort) {
+			TopK.OrdinalOrder column;
+			switch (property.getProperty()) {
+				case "lastName":
+					column = byString(a -> authorLastNames[a]);
+					break;
+				case "firstName":
+					column = byString(a -> authorFirstNames[a]);
+					break;
+				case "id":
+					column = (a, b) -> Long.compare(authorIds[a], authorIds[b]);
+					break;
+				default:
+					throw new IllegalArgumentException("Cannot sort authors by " + property.getProperty());
+			}
+			order = then(order, property.isAscending() ? column : (a, b) -> column.compare(b, a));
+		}
+		return order;
+	}  // end authorOrder()
+
+	// -----------------------------------------------
+	// Raw arrays - shared, callers must not modify them.
+	// -----------------------------------------------
+
+	int[] authorBookTargets() {
+		return authorBookTargets;
+	}
+
+	long[] publisherIds() {
+		return publisherIds;
+	}
+
+	int[] publisherNames() {
+		return publisherNames;
+	}
+
+	long[] bookIds() {
+		return bookIds;
+	}
+
+	int[] bookTitles() {
+		return bookTitles;
+	}
+
+	int[] bookIsbns() {
+		return bookIsbns;
+	}
+
+	int[] bookPublishers() {
+		return bookPublishers;
+	}
+
+	long[] authorIds() {
+		return authorIds;
+	}
+
+	int[] authorFirstNames() {
+		return authorFirstNames;
+	}
+
+	int[] authorLastNames() {
+		return authorLastNames;
+	}
+
+	int[] authorBookOffsets() {
+		return authorBookOffsets;
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Compares the strings behind the codes (equal codes = equal strings, null first).
+	private TopK.OrdinalOrder byString(IntUnaryOperator codeOf) {
+		return (a, b) -> {
+			int codeA = codeOf.applyAsInt(a);
+			int codeB = codeOf.applyAsInt(b);
+			if (codeA == codeB) {
+				return 0;
+			}
+			if (codeA == StringDictionary.NULL_CODE || codeB == StringDictionary.NULL_CODE) {
+				return (codeA == StringDictionary.NULL_CODE) ? -1 : 1;
+			}
+			return strings.get(codeA).compareTo(strings.get(codeB));
+		};
+	}
+
+	private static TopK.OrdinalOrder then(TopK.OrdinalOrder first, TopK.OrdinalOrder second) {
+		return (a, b) -> {
+			int result = first.compare(a, b);
+			return (result != 0) ? result : second.compare(a, b);
+		};
+	}
+
+	// Last name of each book's first author: MIN(last_name) over its authors.
+	private int[] bookFirstAuthorLastNames() {
+		int[] codes = bookFirstAuthorLastNames;
+		if (codes == null) {
+			codes = new int[bookIds.length];
+			Arrays.fill(codes, StringDictionary.NULL_CODE);
+			for (int a = 0; a < authorIds.length; a++) {
+				int code = authorLastNames[a];
+				if (code == StringDictionary.NULL_CODE) {
+					continue;
+				}
+				String lastName = strings.get(code);
+				for (int i = authorBookOffsets[a]; i < authorBookOffsets[a + 1]; i++) {
+					int b = authorBookTargets[i];
+					if (codes[b] == StringDictionary.NULL_CODE || lastName.compareTo(strings.get(codes[b])) < 0) {
+						codes[b] = code;
+					}
+				}
+			}
+			bookFirstAuthorLastNames = codes;
+		}
+		return codes;
+	}  // end bookFirstAuthorLastNames()
+
+	private static <T> List<T> sortedById(Iterable<T> rows, Function<T, Long> id) {
+		List<T> list = new ArrayList<>();
+		rows.forEach(list::add);
+		list.sort(Comparator.comparing(id));
+		return list;
+	}
+
+	// -----------------------------------------------
+	// Helper class - new ordinals of one entity's rows after a patch.
+	// -----------------------------------------------
+
+	private static final class RowMerge {
+		final long[] ids;       // New ids, sorted
+		final int[] fromOld;    // New ordinal -> old ordinal to copy, -1 = row from the patch
+		final int[] toNew;      // Old ordinal -> new ordinal, -1 = removed
+
+		// Merges the old ids (sorted) with the patched ones: a patched id
+		// replaces the old row, a removed one drops it.
+		RowMerge(long[] oldIds, Set<Long> patched, Set<Long> removed) {
+			long[] added = patched.stream().mapToLong(Long::longValue).sorted().toArray();
+			long[] merged = new long[oldIds.length + added.length];
+			int[] source = new int[merged.length];
+			toNew = new int[oldIds.length];
+			int n = 0;
+			int o = 0;
+			int p = 0;
+			while (o < oldIds.length || p < added.length) {
+				if (p == added.length || (o < oldIds.length && oldIds[o] < added[p])) {
+					boolean kept = !removed.contains(oldIds[o]);
+					toNew[o] = kept ? n : -1;
+					if (kept) {
+						merged[n] = oldIds[o];
+						source[n++] = o;
+					}
+					o++;
+				} else {
+					if (o < oldIds.length && oldIds[o] == added[p]) {
+						toNew[o++] = n;   // Replaced in place
+					}
+					merged[n] = added[p++];
+					source[n++] = -1;
+				}
+			}
+			ids = Arrays.copyOf(merged, n);
+			fromOld = Arrays.copyOf(source, n);
+		}
+
+		// Old ordinal of a row still in the result (replaced rows included), or -1.
+		int oldOrdinal(long id, long[] oldIds) {
+			int old = Arrays.binarySearch(oldIds, id);
+			return (old >= 0 && toNew[old] >= 0) ? old : -1;
+		}
+	}
+
+}  // end class CatalogColumns
@@ -0,0 +1,545 @@
+// ***************************************************************************
+// Class:  CatalogFacets
+//
+// Faceted browsing for the book list: filter by publisher, publisher state,
+// publisher city and author, with the number of matching books shown next
+// to every option.
+//
+// Counting with GROUP BY on every request is too slow for a large catalog,
+// so the counts are kept in memory (one FacetIndex per facet) and updated
+// incrementally:
+//
+//    - Every book gets an "ordinal" (0, 1, 2 ... in the order it was first
+//      seen).  Each facet value holds the ordinals of its books, and the
+//      "live" BitSet holds the ordinals of books that still exist.
+//    - After a committed change only the affected books are re-read (by id,
+//      with plain JDBC) and moved between facet values; the counts follow.
+//      Changes are applied on one background thread and bursts are
+//      coalesced, like the other read-side indexes.  Very large bursts
+//      (more than RELOAD_AT books) and the catch-up event sent after a file
+//      import reload everything instead.
+//
+// A query intersects the selected values' book sets in memory.  Each facet's
+// counts are taken over the books matching the OTHER facets' selections, so
+// picking "CA" still shows how many books "NY" has.  With nothing selected in
+// the other facets the maintained counts are used as they are.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.config.ReplicaSynchronizer;
+import guru.springframework5.assign1to3.simplewebapp.domain.Author;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogBulkChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.Publisher;
+
+@Component
+public class CatalogFacets {
+
+	private static final Logger log = LoggerFactory.getLogger(CatalogFacets.class);
+
+	// Facet names - also the request parameter names on /books.
+	public static final String PUBLISHER = "publisher";
+	public static final String STATE = "state";
+	public static final String CITY = "city";
+	public static final String AUTHOR = "author";
+	public static final List<String> FACETS = Collections.unmodifiableList(Arrays.asList(PUBLISHER, STATE, CITY, AUTHOR));
+	private static final List<String> TITLES = Arrays.asList("Publisher", "State", "City", "Author");
+
+	// Pending books above which re-reading everything is cheaper.
+	static final int RELOAD_AT = 10_000;
+
+	// Ids per "IN (...)" query.
+	private static final int CHUNK_SIZE = 1000;
+
+	private static final String BOOK_SQL = "SELECT b.id, p.id, p.name, p.state, p.city "
+			+ "FROM book b LEFT JOIN publisher p ON p.id = b.publisher_id";
+	private static final String AUTHOR_SQL = "SELECT ab.book_id, a.id, a.first_name, a.last_name "
+			+ "FROM author_book ab JOIN author a ON a.id = ab.author_id";
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final JdbcTemplate jdbcTemplate;
+
+	// Read-only, so loads read from the replica - once it has the change.
+	private final TransactionTemplate readOnlyTransaction;
+	private final ReplicaSynchronizer replicaSynchronizer;
+
+	// Values shown per facet (selected values are always shown as well).
+	private final int maxValues;
+
+	private final CoalescingRebuilder updater = new CoalescingRebuilder("catalog-facets", this::applyPending);
+
+	// Guards "index": queries read under the read lock, updates write under the write lock.
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile Index index;   // null until first loaded
+
+	// Changes not applied yet (guarded by "this").
+	private Set<Long> pendingBooks = new HashSet<>();
+	private Set<Long> pendingPublishers = new HashSet<>();
+	private Set<Long> pendingAuthors = new HashSet<>();
+	private boolean pendingReload;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogFacets(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+	                     ReplicaSynchronizer replicaSynchronizer,
+	                     @Value("${app.facets.max-values:20}") int maxValues) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+		this.replicaSynchronizer = replicaSynchronizer;
+		this.maxValues = maxValues;
+	}
+
+	// -----------------------------------------------
+	// Keeping the counts current
+	// -----------------------------------------------
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		reload();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onCatalogChange(CatalogChangeEvent event) {
+		synchronized (this) {
+			addPending(event);
+		}
+		replicaSynchronizer.whenReplicated(updater::request);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onCatalogBulkChange(CatalogBulkChangeEvent event) {
+		synchronized (this) {
+			if (event.getChanges().isEmpty()) {
+				pendingReload = true;   // "catch up" after an import (see ParallelCatalogImporter)
+			}
+			for (CatalogChangeEvent change : event.getChanges()) {
+				addPending(change);
+			}
+		}
+		replicaSynchronizer.whenReplicated(updater::request);
+	}
+
+	/**
+	 * Re-reads every book and swaps in a new index.
+	 */
+	public void reload() {
+		Index loaded = new Index();
+		readOnlyTransaction.executeWithoutResult(status -> {
+			for (BookRow row : readBooks(null)) {
+				loaded.put(row);
+			}
+		});
+		lock.writeLock().lock();
+		try {
+			index = loaded;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		log.info("Loaded catalog facets: {}", this);
+	}
+
+	// Applies everything queued since the last run (on the updater's thread).
+	void applyPending() {
+		Set<Long> books;
+		Set<Long> publishers;
+		Set<Long> authors;
+		boolean reload;
+		synchronized (this) {
+			books = pendingBooks;
+			publishers = pendingPublishers;
+			authors = pendingAuthors;
+			reload = pendingReload;
+			pendingBooks = new HashSet<>();
+			pendingPublishers = new HashSet<>();
+			pendingAuthors = new HashSet<>();
+			pendingReload = false;
+		}
+		try {
+			if (reload || index == null || books.size() > RELOAD_AT) {
+				reload();
+				return;
+			}
+
+			// Books of changed publishers and authors must be re-read too: their
+			// city / state / name may have changed, or they may be gone.
+			lock.readLock().lock();
+			try {
+				books.addAll(index.booksOf(PUBLISHER, publishers));
+				books.addAll(index.booksOf(AUTHOR, authors));
+			} finally {
+				lock.readLock().unlock();
+			}
+			List<BookRow> rows = readOnlyTransaction.execute(status -> {
+				if (!publishers.isEmpty()) {
+					books.addAll(queryIds("SELECT id FROM book", "publisher_id", publishers));
+				}
+				if (!authors.isEmpty()) {
+					books.addAll(queryIds("SELECT book_id FROM author_book", "author_id", authors));
+				}
+				return readBooks(books);
+			});
+
+			lock.writeLock().lock();
+			try {
+				Set<Long> missing = new HashSet<>(books);
+				for (BookRow row : rows) {
+					index.put(row);
+					missing.remove(row.id);
+				}
+				for (Long id : missing) {
+					index.remove(id);
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		} catch (RuntimeException e) {
+			// The changes taken above are not applied: reload everything on the
+			// retry (see CoalescingRebuilder) rather than lose them.
+			synchronized (this) {
+				pendingReload = true;
+			}
+			throw e;
+		}
+	}  // end applyPending()
+
+	@PreDestroy
+	public void shutdown() {
+		updater.shutdown();
+	}
+
+	// -----------------------------------------------
+	// Queries
+	// -----------------------------------------------
+
+	/**
+	 * @return true once the index has been loaded.
+	 */
+	public boolean isLoaded() {
+		lock.readLock().lock();
+		try {
+			return index != null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return books matching the selection and the facet counts, or null if
+	 *         the index is not loaded yet.
+	 */
+	public FacetResult query(FacetSelection selection) {
+		lock.readLock().lock();
+		try {
+			if (index == null) {
+				return null;
+			}
+
+			// Books matching each facet's selection (null = facet not filtered).
+			BitSet[] filters = new BitSet[FACETS.size()];
+			for (int f = 0; f < filters.length; f++) {
+				List<String> keys = selection.get(FACETS.get(f));
+				if (!keys.isEmpty()) {
+					filters[f] = index.facets[f].booksWithAny(index.facets[f].indexesOf(keys));
+				}
+			}
+
+			List<FacetResult.Facet> facets = new ArrayList<>(filters.length);
+			for (int f = 0; f < filters.length; f++) {
+				BitSet others = matching(filters, f);
+				int[] counts = (others == null) ? null : index.facets[f].tally(others);
+				facets.add(new FacetResult.Facet(FACETS.get(f), TITLES.get(f),
+						topValues(index.facets[f], counts, selection.get(FACETS.get(f)))));
+			}
+
+			BitSet matches = matching(filters, -1);
+			if (matches == null) {
+				matches = index.live;
+			}
+			long[] ids = new long[matches.cardinality()];
+			int i = 0;
+			for (int b = matches.nextSetBit(0); b >= 0; b = matches.nextSetBit(b + 1)) {
+				ids[i++] = index.ids[b];
+			}
+			Arrays.sort(ids);
+			return new FacetResult(ids, facets);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}  // end query()
+
+	/**
+	 * @return reader friendly summary of book and value counts and memory usage.
+	 */
+	@Override
+	public String toString() {
+		lock.readLock().lock();
+		try {
+			if (index == null) {
+				return "CatalogFacets{not loaded}";
+			}
+			return "CatalogFacets{" +
+				   "books=" + index.live.cardinality() +
+				   ", facets=" + Arrays.toString(index.facets) +
+				   "}";
+		} finally {
+			lock.readLock().unlock();
+		}
+	}  // end toString()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private void addPending(CatalogChangeEvent change) {
+		if (change.getEntityType() == Book.class) {
+			pendingBooks.add(change.getEntityId());
+		} else if (change.getEntityType() == Publisher.class) {
+			pendingPublishers.add(change.getEntityId());
+		} else if (change.getEntityType() == Author.class) {
+			pendingAuthors.add(change.getEntityId());
+		}
+	}
+
+	// Live books matching every filter except filters[skip]; null if there is
+	// no such filter (i.e. all live books).
+	private BitSet matching(BitSet[] filters, int skip) {
+		BitSet result = null;
+		for (int f = 0; f < filters.length; f++) {
+			if (f != skip && filters[f] != null) {
+				if (result == null) {
+					result = (BitSet) index.live.clone();
+				}
+				result.and(filters[f]);
+			}
+		}
+		return result;
+	}
+
+	// The maxValues values with the most books (ties by label), then any
+	// selected value not among them.  counts null = use the maintained counts.
+	private List<FacetResult.Value> topValues(FacetIndex facet, int[] counts, List<String> selected) {
+		Comparator<Integer> byCount = Comparator.<Integer>comparingInt(v -> count(facet, counts, v))
+				.thenComparing(facet::label, Comparator.reverseOrder());
+		PriorityQueue<Integer> top = new PriorityQueue<>(maxValues + 1, byCount);   // smallest first
+		for (int v = 0; v < facet.valueCount(); v++) {
+			if (count(facet, counts, v) > 0) {
+				top.add(v);
+				if (top.size() > maxValues) {
+					top.poll();
+				}
+			}
+		}
+		List<Integer> shown = new ArrayList<>(top);
+		shown.sort(byCount.reversed());
+		for (String key : selected) {
+			int v = facet.indexOf(key);
+			if (v >= 0 && !shown.contains(v)) {
+				shown.add(v);
+			}
+		}
+
+		List<FacetResult.Value> values = new ArrayList<>(shown.size() + selected.size());
+		for (int v : shown) {
+			values.add(new FacetResult.Value(facet.key(v), facet.label(v), count(facet, counts, v), selected.contains(facet.key(v))));
+		}
+		for (String key : selected) {
+			if (facet.indexOf(key) < 0) {
+				values.add(new FacetResult.Value(key, key, 0, true));   // e.g. a stale link
+			}
+		}
+		return values;
+	}  // end topValues()
+
+	private static int count(FacetIndex facet, int[] counts, int value) {
+		return (counts == null) ? facet.count(value) : counts[value];
+	}
+
+	// Reads the facet columns of the given books (null = all books).
+	private List<BookRow> readBooks(Collection<Long> bookIds) {
+		Map<Long, BookRow> rows = new LinkedHashMap<>();
+		forEachChunk("b.id", bookIds, (where, args) -> jdbcTemplate.query(BOOK_SQL + where, rs -> {
+			long publisherId = rs.getLong(2);
+			rows.put(rs.getLong(1), new BookRow(rs.getLong(1), rs.wasNull() ? null : publisherId,
+					rs.getString(3), rs.getString(4), rs.getString(5)));
+		}, args));
+		forEachChunk("ab.book_id", bookIds, (where, args) -> jdbcTemplate.query(AUTHOR_SQL + where, rs -> {
+			BookRow row = rows.get(rs.getLong(1));
+			if (row != null) {
+				row.authorIds.add(rs.getLong(2));
+				row.authorLabels.add(authorLabel(rs.getString(3), rs.getString(4)));
+			}
+		}, args));
+		return new ArrayList<>(rows.values());
+	}  // end readBooks()
+
+	private List<Long> queryIds(String select, String column, Collection<Long> ids) {
+		List<Long> result = new ArrayList<>();
+		forEachChunk(column, ids, (where, args) -> jdbcTemplate.query(select + where, rs -> {
+			result.add(rs.getLong(1));
+		}, args));
+		return result;
+	}
+
+	// Runs the query once per CHUNK_SIZE ids with " WHERE column IN (?, ...)",
+	// or once with no WHERE clause when ids is null.  Also used by CatalogReadModel.
+	static void forEachChunk(String column, Collection<Long> ids, ChunkQuery query) {
+		if (ids == null) {
+			query.run("", new Object[0]);
+			return;
+		}
+		List<Long> list = new ArrayList<>(ids);
+		for (int from = 0; from < list.size(); from += CHUNK_SIZE) {
+			List<Long> chunk = list.subList(from, Math.min(from + CHUNK_SIZE, list.size()));
+			query.run(" WHERE " + column + " IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")",
+					chunk.toArray());
+		}
+	}
+
+	private static String authorLabel(String firstName, String lastName) {
+		String first = (firstName == null) ? "" : firstName.trim();
+		String last = (lastName == null) ? "" : lastName.trim();
+		return (first + " " + last).trim();
+	}
+
+	private static String nullIfBlank(String value) {
+		return (value == null || value.trim().isEmpty()) ? null : value.trim();
+	}
+
+	// -----------------------------------------------
+	// Helper classes
+	// -----------------------------------------------
+
+	@FunctionalInterface
+	interface ChunkQuery {
+		void run(String where, Object[] args);
+	}
+
+	// Facet columns of one book, as read from the database.
+	private static final class BookRow {
+		final long id;
+		final Long publisherId;
+		final String publisherName;
+		final String state;
+		final String city;
+		final List<Long> authorIds = new ArrayList<>();
+		final List<String> authorLabels = new ArrayList<>();
+
+		BookRow(long id, Long publisherId, String publisherName, String state, String city) {
+			this.id = id;
+			this.publisherId = publisherId;
+			this.publisherName = publisherName;
+			this.state = nullIfBlank(state);
+			this.city = nullIfBlank(city);
+		}
+	}
+
+	// Book ordinals and the four facets.  Replaced as a whole on reload.
+	private static final class Index {
+		final Map<Long, Integer> ordinals = new HashMap<>();
+		long[] ids = new long[1024];   // by ordinal
+		final BitSet live = new BitSet();
+		final FacetIndex[] facets = new FacetIndex[FACETS.size()];
+
+		Index() {
+			for (int f = 0; f < facets.length; f++) {
+				facets[f] = new FacetIndex(FACETS.get(f));
+			}
+		}
+
+		void put(BookRow row) {
+			Integer ordinal = ordinals.get(row.id);
+			if (ordinal == null) {
+				ordinal = ordinals.size();
+				ordinals.put(row.id, ordinal);
+				if (ordinal == ids.length) {
+					ids = Arrays.copyOf(ids, ids.length * 2);
+				}
+				ids[ordinal] = row.id;
+			}
+			live.set(ordinal);
+
+			FacetIndex publisher = facets[0];
+			FacetIndex state = facets[1];
+			FacetIndex city = facets[2];
+			FacetIndex author = facets[3];
+			publisher.set(ordinal, (row.publisherId == null) ? new int[0]
+					: new int[] { publisher.value(row.publisherId.toString(), row.publisherName) });
+			state.set(ordinal, (row.state == null) ? new int[0] : new int[] { state.value(row.state, row.state) });
+			if (row.city == null) {
+				city.set(ordinal, new int[0]);
+			} else {
+				String cityKey = (row.state == null) ? row.city : row.city + ", " + row.state;
+				city.set(ordinal, new int[] { city.value(cityKey, cityKey) });
+			}
+			int[] authorValues = new int[row.authorIds.size()];
+			for (int i = 0; i < authorValues.length; i++) {
+				authorValues[i] = author.value(row.authorIds.get(i).toString(), row.authorLabels.get(i));
+			}
+			author.set(ordinal, authorValues);
+		}  // end put()
+
+		// Ordinals are never reused; a removed book just leaves a gap until the next reload.
+		void remove(long id) {
+			Integer ordinal = ordinals.get(id);
+			if (ordinal != null && live.get(ordinal)) {
+				live.clear(ordinal);
+				for (FacetIndex facet : facets) {
+					facet.clear(ordinal);
+				}
+			}
+		}
+
+		// Ids of the books currently having any of the values (keyed by id) of the facet.
+		List<Long> booksOf(String facetName, Set<Long> valueIds) {
+			List<Long> result = new ArrayList<>();
+			if (valueIds.isEmpty()) {
+				return result;
+			}
+			FacetIndex facet = facets[FACETS.indexOf(facetName)];
+			List<String> keys = new ArrayList<>(valueIds.size());
+			valueIds.forEach(id -> keys.add(id.toString()));
+			BitSet books = facet.booksWithAny(facet.indexesOf(keys));
+			for (int b = books.nextSetBit(0); b >= 0; b = books.nextSetBit(b + 1)) {
+				result.add(ids[b]);
+			}
+			return result;
+		}
+	}
+
+}  // end class CatalogFacets
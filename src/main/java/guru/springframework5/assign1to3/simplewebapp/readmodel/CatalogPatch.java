@@ -0,0 +1,120 @@
+// ***************************************************************************
+// Class:  CatalogPatch
+//
+// The rows of a committed change, as CatalogColumns.patch() applies them:
+// new values for added or changed publishers, books and authors, the ids
+// of deleted ones, and the full author_book links of the books and authors
+// whose links are replaced.
+//
+// Filled by CatalogReadModel from the rows it re-reads after a change.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public final class CatalogPatch {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	final Map<Long, String> publishers = new HashMap<>();   // id -> name
+	final Set<Long> removedPublishers = new HashSet<>();
+
+	final Map<Long, BookRow> books = new HashMap<>();
+	final Set<Long> removedBooks = new HashSet<>();
+
+	final Map<Long, AuthorRow> authors = new HashMap<>();
+	final Set<Long> removedAuthors = new HashSet<>();
+
+	// Books and authors whose links are replaced by "links" ({author id, book id}).
+	final Set<Long> linkedBooks = new HashSet<>();
+	final Set<Long> linkedAuthors = new HashSet<>();
+	final List<long[]> links = new ArrayList<>();
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	public void putPublisher(long id, String name) {
+		publishers.put(id, name);
+	}
+
+	public void removePublisher(long id) {
+		removedPublishers.add(id);
+	}
+
+	/**
+	 * @param publisherId null if the book has none.
+	 */
+	public void putBook(long id, String title, String isbn, Long publisherId) {
+		books.put(id, new BookRow(title, isbn, publisherId));
+	}
+
+	public void removeBook(long id) {
+		removedBooks.add(id);
+	}
+
+	public void putAuthor(long id, String firstName, String lastName) {
+		authors.put(id, new AuthorRow(firstName, lastName));
+	}
+
+	public void removeAuthor(long id) {
+		removedAuthors.add(id);
+	}
+
+	/**
+	 * Marks the links of these books and authors as replaced: they keep only
+	 * the links added with addLink().
+	 */
+	public void replaceLinks(Set<Long> bookIds, Set<Long> authorIds) {
+		linkedBooks.addAll(bookIds);
+		linkedAuthors.addAll(authorIds);
+	}
+
+	public void addLink(long authorId, long bookId) {
+		links.add(new long[] { authorId, bookId });
+	}
+
+	/**
+	 * @return true if the patch changes nothing.
+	 */
+	public boolean isEmpty() {
+		return publishers.isEmpty() && removedPublishers.isEmpty()
+				&& books.isEmpty() && removedBooks.isEmpty()
+				&& authors.isEmpty() && removedAuthors.isEmpty()
+				&& linkedBooks.isEmpty() && linkedAuthors.isEmpty();
+	}
+
+	// -----------------------------------------------
+	// Helper classes - new values of one row.
+	// -----------------------------------------------
+
+	static final class BookRow {
+		final String title;
+		final String isbn;
+		final Long publisherId;
+
+		BookRow(String title, String isbn, Long publisherId) {
+			this.title = title;
+			this.isbn = isbn;
+			this.publisherId = publisherId;
+		}
+	}
+
+	static final class AuthorRow {
+		final String firstName;
+		final String lastName;
+
+		AuthorRow(String firstName, String lastName) {
+			this.firstName = firstName;
+			this.lastName = lastName;
+		}
+	}
+
+}  // end class CatalogPatch
@@ -0,0 +1,489 @@
+// ***************************************************************************
+// Class:  CatalogReadModel
+//
+// Optional in-memory read model for the /books and /authors list pages.
+// Turned on with app.read-model.enabled=true (application.properties; off by
+// default).
+//
+// Holds the whole catalog as CatalogColumns (primitive arrays + dictionary
+// encoded strings).  The controllers render from BookView / AuthorView
+// cursors over those arrays, so a list page needs no SQL round trip, no
+// Hibernate hydration and no per-row objects.
+//
+// With app.read-model.off-heap-strings=true the titles and names are kept
+// off the Java heap (OffHeapStringStore) to cut GC pressure.  Off by default:
+// each read then decodes a String, so it only pays for catalogs large enough
+// (millions of books) that their strings crowd the old generation - see
+// StringStoreBenchmark.
+//
+// Keeping it current:
+//    - If app.read-model.snapshot-file names an existing snapshot (see
+//      CatalogSnapshot), it is mapped as soon as this bean is created, so the
+//      list pages are served before the catalog tables have been read.  Only
+//      a snapshot of this database as it is now is served: its last change
+//      (catalog_change id) and row counts must match the primary's.  Once the
+//      application is ready the database copy is loaded in the background
+//      and replaces it.  The snapshot is re-written on shutdown and on demand
+//      (POST /admin/catalog-snapshot), but not while changes are pending.
+//    - Otherwise built once the application is ready (after BootStrapData has run).
+//    - Patched after every committed change to an Author, Book or Publisher
+//      (CatalogChangeEvent): only the changed rows and their author_book
+//      links are re-read (plain JDBC, by id) and CatalogColumns.patch()
+//      makes a copy of the columns with them replaced.  Patches run on one
+//      background thread and bursts of changes are coalesced into one.
+//    - Rebuilt from scratch only at startup, for the catch-up event sent
+//      after a file import, for very large bursts (more than RELOAD_AT rows)
+//      and once patches have piled up many strings (see
+//      PatchedStringDictionary).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.config.ReplicaSynchronizer;
+import guru.springframework5.assign1to3.simplewebapp.domain.Author;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogBulkChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.Publisher;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IAuthorRepository;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IBookRepository;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IPublisherRepository;
+
+@Component
+@ConditionalOnProperty(prefix = "app.read-model", name = "enabled", havingValue = "true")
+public class CatalogReadModel {
+
+	private static final Logger log = LoggerFactory.getLogger(CatalogReadModel.class);
+
+	// Changed rows above which re-reading everything is cheaper.
+	static final int RELOAD_AT = 10_000;
+
+	private static final String PUBLISHER_SQL = "SELECT id, name FROM publisher";
+	private static final String BOOK_SQL = "SELECT id, title, isbn, publisher_id FROM book";
+	private static final String AUTHOR_SQL = "SELECT id, first_name, last_name FROM author";
+	private static final String LINK_SQL = "SELECT author_id, book_id FROM author_book";
+	private static final String LAST_CHANGE_SQL = "SELECT last_id FROM catalog_change_counter WHERE id = 1";
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final IAuthorRepository authorRepository;
+	private final IBookRepository bookRepository;
+	private final IPublisherRepository publisherRepository;
+	private final JdbcTemplate jdbcTemplate;
+
+	// Read-only, so rebuilds read from the replica like any other list query
+	// - once it has the change.
+	private final TransactionTemplate readOnlyTransaction;
+	private final ReplicaSynchronizer replicaSynchronizer;
+
+	// true = titles / names stored off heap (see OffHeapStringStore).
+	private final boolean offHeapStrings;
+
+	// Snapshot file (null = snapshots turned off).
+	private final Path snapshotFile;
+	private volatile boolean servingSnapshot;
+
+	private final CoalescingRebuilder rebuilder = new CoalescingRebuilder("catalog-read-model", this::applyPending);
+
+	// Held while "columns" is rebuilt or patched, so a patch never replaces
+	// a newer rebuild (at startup both can run at once).
+	private final Object updateLock = new Object();
+
+	// Changes not applied yet (guarded by "this").
+	private Set<Long> pendingBooks = new HashSet<>();
+	private Set<Long> pendingPublishers = new HashSet<>();
+	private Set<Long> pendingAuthors = new HashSet<>();
+	private boolean pendingReload;
+
+	// Current copy of the catalog (null until first built).  Replaced, never modified.
+	private volatile CatalogColumns columns;
+
+	// Highest catalog_change id included in "columns" (guarded by updateLock).
+	// Read before the rows, so it may be lower than what they hold, never higher.
+	private long columnsLastChangeId;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogReadModel(IAuthorRepository aRepos, IBookRepository bRepos, IPublisherRepository pRepos,
+	                        JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, ReplicaSynchronizer replicaSynchronizer,
+	                        @Value("${app.read-model.off-heap-strings:false}") boolean offHeapStrings,
+	                        @Value("${app.read-model.snapshot-file:}") String snapshotFile) {
+		this.authorRepository = aRepos;
+		this.bookRepository = bRepos;
+		this.publisherRepository = pRepos;
+		this.jdbcTemplate = jdbcTemplate;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+		this.replicaSynchronizer = replicaSynchronizer;
+		this.offHeapStrings = offHeapStrings;
+		this.snapshotFile = snapshotFile.isEmpty() ? null : Paths.get(snapshotFile);
+	}
+
+	// -----------------------------------------------
+	// Keeping the read model current
+	// -----------------------------------------------
+
+	/**
+	 * Maps the snapshot file (if any) so reads can be served right away.
+	 * A missing, unreadable or out of date snapshot just means we wait for
+	 * the database.
+	 */
+	@PostConstruct
+	public void loadSnapshot() {
+		if (snapshotFile == null) {
+			return;
+		}
+		try {
+			long lastChangeId = jdbcTemplate.queryForObject(LAST_CHANGE_SQL, Long.class);   // Primary
+			CatalogColumns snapshot = CatalogSnapshot.read(snapshotFile, lastChangeId);
+			if (snapshot == null || !sameRowCounts(snapshot)) {
+				log.info("Not serving catalog snapshot {}: missing, another format or out of date", snapshotFile);
+				return;
+			}
+			synchronized (updateLock) {
+				columns = snapshot;
+				columnsLastChangeId = lastChangeId;
+				servingSnapshot = true;
+			}
+			log.info("Serving catalog snapshot {} ({} books, {} authors) until the database is loaded",
+					snapshotFile, snapshot.bookCount(), snapshot.authorCount());
+		} catch (IOException | RuntimeException e) {
+			log.warn("Ignoring unreadable catalog snapshot {}", snapshotFile, e);
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		if (servingSnapshot) {
+			rebuilder.request();   // Validate against the database in the background.
+		} else {
+			rebuild();
+		}
+	}
+
+	// Runs after the transaction that made the change commits.
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onCatalogChange(CatalogChangeEvent event) {
+		synchronized (this) {
+			addPending(event);
+		}
+		replicaSynchronizer.whenReplicated(rebuilder::request);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onCatalogBulkChange(CatalogBulkChangeEvent event) {
+		synchronized (this) {
+			if (event.getChanges().isEmpty()) {
+				pendingReload = true;   // "catch up" after an import (see ParallelCatalogImporter)
+			}
+			for (CatalogChangeEvent change : event.getChanges()) {
+				addPending(change);
+			}
+		}
+		replicaSynchronizer.whenReplicated(rebuilder::request);
+	}
+
+	/**
+	 * Reloads the whole catalog from the repositories and swaps it in.
+	 */
+	public void rebuild() {
+		synchronized (updateLock) {
+			long[] lastChangeId = new long[1];
+			CatalogColumns loaded = readOnlyTransaction.execute(status -> {
+				lastChangeId[0] = jdbcTemplate.queryForObject(LAST_CHANGE_SQL, Long.class);
+				return CatalogColumns.build(
+						publisherRepository.findAll(), bookRepository.findAll(), authorRepository.findAll(), offHeapStrings);
+			});
+
+			if (servingSnapshot) {
+				CatalogColumns snapshot = columns;
+				log.info("Replaced catalog snapshot with database copy (books {} -> {}, authors {} -> {})",
+						snapshot.bookCount(), loaded.bookCount(), snapshot.authorCount(), loaded.authorCount());
+				servingSnapshot = false;
+			}
+			columns = loaded;
+			columnsLastChangeId = lastChangeId[0];
+		}
+	}
+
+	// Applies everything queued since the last run (on the rebuilder's thread).
+	void applyPending() {
+		Set<Long> books;
+		Set<Long> publishers;
+		Set<Long> authors;
+		boolean reload;
+		synchronized (this) {
+			books = pendingBooks;
+			publishers = pendingPublishers;
+			authors = pendingAuthors;
+			reload = pendingReload;
+			pendingBooks = new HashSet<>();
+			pendingPublishers = new HashSet<>();
+			pendingAuthors = new HashSet<>();
+			pendingReload = false;
+		}
+		try {
+			synchronized (updateLock) {
+				CatalogColumns current = columns;
+				if (reload || current == null || servingSnapshot
+						|| books.size() + publishers.size() + authors.size() > RELOAD_AT || tooManyPatchedStrings(current)) {
+					rebuild();
+					return;
+				}
+
+				long[] lastChangeId = new long[1];
+				CatalogPatch patch = readOnlyTransaction.execute(status -> {
+					lastChangeId[0] = jdbcTemplate.queryForObject(LAST_CHANGE_SQL, Long.class);
+					return readPatch(books, publishers, authors);
+				});
+				if (!patch.isEmpty()) {
+					columns = current.patch(patch);
+				}
+				columnsLastChangeId = lastChangeId[0];
+			}
+		} catch (RuntimeException e) {
+			// The changes taken above are not applied: reload everything on the
+			// retry (see CoalescingRebuilder) rather than lose them.
+			synchronized (this) {
+				pendingReload = true;
+			}
+			throw e;
+		}
+	}  // end applyPending()
+
+	/**
+	 * Writes the current catalog to the snapshot file.
+	 *
+	 * @return the file written.
+	 * @throws IllegalStateException if there is no catalog yet or changes
+	 *         are still waiting to be applied.
+	 */
+	public Path writeSnapshot() {
+		if (snapshotFile == null) {
+			throw new IllegalStateException("app.read-model.snapshot-file is not set");
+		}
+		synchronized (updateLock) {
+			CatalogColumns current = columns;
+			if (current == null) {
+				throw new IllegalStateException("Catalog not loaded yet");
+			}
+			synchronized (this) {
+				// A pending change may already be counted in columnsLastChangeId.
+				if (pendingReload || !pendingBooks.isEmpty() || !pendingPublishers.isEmpty() || !pendingAuthors.isEmpty()) {
+					throw new IllegalStateException("Catalog changes are still being applied");
+				}
+			}
+			try {
+				CatalogSnapshot.write(current, columnsLastChangeId, snapshotFile);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not write catalog snapshot " + snapshotFile, e);
+			}
+		}
+		return snapshotFile;
+	}
+
+	/**
+	 * Stops background rebuilds and saves a snapshot for the next startup.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		rebuilder.shutdown();
+		if (snapshotFile != null && columns != null) {
+			try {
+				writeSnapshot();
+			} catch (RuntimeException e) {
+				log.warn("Could not save catalog snapshot on shutdown", e);
+			}
+		}
+	}
+
+	// -----------------------------------------------
+	// Reading
+	// -----------------------------------------------
+
+	/**
+	 * @return true once the catalog has been loaded at least once.
+	 */
+	public boolean isLoaded() {
+		return columns != null;
+	}
+
+	/**
+	 * @return current columns (may be null before the first build).
+	 */
+	public CatalogColumns getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return new cursor over all books (one per request - see BookView).
+	 */
+	public BookView books() {
+		return new BookView(columns);
+	}
+
+	/**
+	 * @return new cursor over one page of books.
+	 *
+	 * @param ids  books to list (null = all); ids not in the current copy
+	 *             (e.g. just added) are skipped
+	 * @param sort order - properties of the Book entity (see
+	 *             CatalogColumns.bookOrder); unsorted = by id
+	 * @param page 0-based page number
+	 * @param size rows per page (0 = all rows)
+	 */
+	public BookView books(long[] ids, Sort sort, int page, int size) {
+		CatalogColumns current = columns;
+		int[] candidates = null;
+		int count = current.bookCount();
+		if (ids != null) {
+			candidates = new int[ids.length];
+			count = 0;
+			for (long id : ids) {
+				int b = current.bookOrdinal(id);
+				if (b >= 0) {
+					candidates[count++] = b;
+				}
+			}
+		}
+		TopK.OrdinalOrder order = sort.isSorted() ? current.bookOrder(sort) : null;
+		int[] range = pageRange(count, page, size);
+		if (order != null) {
+			candidates = TopK.first(candidates, count, range[1], order);
+		}
+		return new BookView(current).select(candidates, range[0], range[1]);
+	}  // end books()
+
+	/**
+	 * @return new cursor over all authors (one per request - see AuthorView).
+	 */
+	public AuthorView authors() {
+		return new AuthorView(columns);
+	}
+
+	/**
+	 * @return new cursor over one page of authors (see books(long[], Sort, int, int)).
+	 */
+	public AuthorView authors(Sort sort, int page, int size) {
+		CatalogColumns current = columns;
+		int count = current.authorCount();
+		int[] range = pageRange(count, page, size);
+		int[] ordinals = sort.isSorted() ? TopK.first(null, count, range[1], current.authorOrder(sort)) : null;
+		return new AuthorView(current).select(ordinals, range[0], range[1]);
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private void addPending(CatalogChangeEvent change) {
+		if (change.getEntityType() == Book.class) {
+			pendingBooks.add(change.getEntityId());
+		} else if (change.getEntityType() == Publisher.class) {
+			pendingPublishers.add(change.getEntityId());
+		} else if (change.getEntityType() == Author.class) {
+			pendingAuthors.add(change.getEntityId());
+		}
+	}
+
+	// Re-reads the changed rows and their author_book links; ids not found
+	// were deleted.
+	private CatalogPatch readPatch(Set<Long> books, Set<Long> publishers, Set<Long> authors) {
+		CatalogPatch patch = new CatalogPatch();
+
+		Set<Long> missing = new HashSet<>(publishers);
+		CatalogFacets.forEachChunk("id", publishers, (where, args) -> jdbcTemplate.query(PUBLISHER_SQL + where, rs -> {
+			patch.putPublisher(rs.getLong(1), rs.getString(2));
+			missing.remove(rs.getLong(1));
+		}, args));
+		missing.forEach(patch::removePublisher);
+
+		missing.clear();
+		missing.addAll(books);
+		CatalogFacets.forEachChunk("id", books, (where, args) -> jdbcTemplate.query(BOOK_SQL + where, rs -> {
+			long publisherId = rs.getLong(4);
+			patch.putBook(rs.getLong(1), rs.getString(2), rs.getString(3), rs.wasNull() ? null : publisherId);
+			missing.remove(rs.getLong(1));
+		}, args));
+		missing.forEach(patch::removeBook);
+
+		missing.clear();
+		missing.addAll(authors);
+		CatalogFacets.forEachChunk("id", authors, (where, args) -> jdbcTemplate.query(AUTHOR_SQL + where, rs -> {
+			patch.putAuthor(rs.getLong(1), rs.getString(2), rs.getString(3));
+			missing.remove(rs.getLong(1));
+		}, args));
+		missing.forEach(patch::removeAuthor);
+
+		// Every link of the changed authors, and of the changed books (once).
+		patch.replaceLinks(books, authors);
+		CatalogFacets.forEachChunk("author_id", authors, (where, args) -> jdbcTemplate.query(LINK_SQL + where, rs -> {
+			patch.addLink(rs.getLong(1), rs.getLong(2));
+		}, args));
+		CatalogFacets.forEachChunk("book_id", books, (where, args) -> jdbcTemplate.query(LINK_SQL + where, rs -> {
+			if (!authors.contains(rs.getLong(1))) {
+				patch.addLink(rs.getLong(1), rs.getLong(2));
+			}
+		}, args));
+		return patch;
+	}  // end readPatch()
+
+	// Whether the primary holds as many rows as the snapshot - catches what
+	// the last change id cannot, e.g. rows added by a file import.
+	private boolean sameRowCounts(CatalogColumns snapshot) {
+		return snapshot.publisherCount() == countRows("publisher")
+				&& snapshot.bookCount() == countRows("book")
+				&& snapshot.authorCount() == countRows("author");
+	}
+
+	private int countRows(String table) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+	}
+
+	// Strings of replaced rows are only dropped by a rebuild.
+	private static boolean tooManyPatchedStrings(CatalogColumns current) {
+		if (!(current.strings() instanceof PatchedStringDictionary)) {
+			return false;
+		}
+		int added = ((PatchedStringDictionary) current.strings()).addedCount();
+		return added > Math.max(RELOAD_AT, current.strings().size() / 4);
+	}
+
+	// {from, to} positions of the page within "count" rows.  Only rows before
+	// "to" have to be put in order, so TopK is asked for "to" rows.
+	private static int[] pageRange(int count, int page, int size) {
+		if (size <= 0) {
+			return new int[] { 0, count };
+		}
+		long from = Math.min(count, (long) Math.max(0, page) * size);
+		long to = Math.min(count, from + size);
+		return new int[] { (int) from, (int) to };
+	}
+
+}  // end class CatalogReadModel
@@ -0,0 +1,215 @@
+// ***************************************************************************
+// Class:  CatalogSnapshot
+//
+// Saves CatalogColumns to a file and loads it back with a memory mapping,
+// so the read model is ready at startup without reading the catalog tables.
+//
+// File layout (big endian, as written by DataOutputStream):
+//
+//    int   MAGIC ("CATS")       int   FORMAT_VERSION     long  written at (epoch ms)
+//    long  last change          (highest catalog_change id the columns include)
+//    int   publishers           long[] ids   int[] names
+//    int   books                long[] ids   int[] titles  int[] isbns  int[] publishers
+//    int   authors              long[] ids   int[] firstNames  int[] lastNames
+//    int[] authorBookOffsets (authors + 1)
+//    int   edges                int[] authorBookTargets
+//    int   strings   int bytes  UTF-8 string store (OffHeapStringStore layout)
+//
+// String codes in the file are always OffHeapStringStore offsets.  On load the
+// string store is NOT copied: it stays a slice of the mapped file, so the OS
+// pages titles in only as they are rendered.
+//
+// A file with the wrong MAGIC or FORMAT_VERSION, or written at another last
+// change than the caller expects, is ignored (read returns null).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class CatalogSnapshot {
+
+	public static final int MAGIC = 0x43415453;   // "CATS"
+	public static final int FORMAT_VERSION = 2;
+
+	private CatalogSnapshot() {
+		// Static helpers only.
+	}
+
+	// -----------------------------------------------
+	// Writing
+	// -----------------------------------------------
+
+	/**
+	 * Writes the columns to the file.  Written to a temporary file first and
+	 * then moved into place, so a crash never leaves a half-written snapshot.
+	 *
+	 * @param lastChangeId highest catalog_change id the columns include
+	 */
+	public static void write(CatalogColumns columns, long lastChangeId, Path file) throws IOException {
+		// Re-encode every string into an off-heap store so codes become offsets.
+		OffHeapStringStore.Writer stringWriter = new OffHeapStringStore.Writer();
+		Map<Integer, Integer> recoded = new HashMap<>();
+		int[] publisherNames = recode(columns.publisherNames(), columns.strings(), stringWriter, recoded);
+		int[] bookTitles = recode(columns.bookTitles(), columns.strings(), stringWriter, recoded);
+		int[] bookIsbns = recode(columns.bookIsbns(), columns.strings(), stringWriter, recoded);
+		int[] authorFirstNames = recode(columns.authorFirstNames(), columns.strings(), stringWriter, recoded);
+		int[] authorLastNames = recode(columns.authorLastNames(), columns.strings(), stringWriter, recoded);
+		OffHeapStringStore strings = stringWriter.build();
+
+		Path parent = file.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(System.currentTimeMillis());
+			out.writeLong(lastChangeId);
+
+			out.writeInt(columns.publisherCount());
+			writeLongs(out, columns.publisherIds());
+			writeInts(out, publisherNames);
+
+			out.writeInt(columns.bookCount());
+			writeLongs(out, columns.bookIds());
+			writeInts(out, bookTitles);
+			writeInts(out, bookIsbns);
+			writeInts(out, columns.bookPublishers());
+
+			out.writeInt(columns.authorCount());
+			writeLongs(out, columns.authorIds());
+			writeInts(out, authorFirstNames);
+			writeInts(out, authorLastNames);
+			writeInts(out, columns.authorBookOffsets());
+			out.writeInt(columns.authorBookTargets().length);
+			writeInts(out, columns.authorBookTargets());
+
+			ByteBuffer bytes = strings.bytes();
+			out.writeInt(strings.size());
+			out.writeInt(bytes.remaining());
+			writeBytes(out, bytes);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}  // end write()
+
+	// -----------------------------------------------
+	// Reading
+	// -----------------------------------------------
+
+	/**
+	 * Maps the file and rebuilds the columns from it.
+	 *
+	 * @param lastChangeId highest catalog_change id in the database now
+	 * @return the columns, or null if the file is missing, has a different
+	 *         format version or was written at another last change.
+	 */
+	public static CatalogColumns read(Path file, long lastChangeId) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+
+		MappedByteBuffer in;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());   // Stays valid after close.
+		}
+		if (in.remaining() < 24 || in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+			return null;
+		}
+		in.getLong();   // Written at - informational only.
+		if (in.getLong() != lastChangeId) {
+			return null;
+		}
+
+		int publishers = in.getInt();
+		long[] publisherIds = readLongs(in, publishers);
+		int[] publisherNames = readInts(in, publishers);
+
+		int books = in.getInt();
+		long[] bookIds = readLongs(in, books);
+		int[] bookTitles = readInts(in, books);
+		int[] bookIsbns = readInts(in, books);
+		int[] bookPublishers = readInts(in, books);
+
+		int authors = in.getInt();
+		long[] authorIds = readLongs(in, authors);
+		int[] authorFirstNames = readInts(in, authors);
+		int[] authorLastNames = readInts(in, authors);
+		int[] authorBookOffsets = readInts(in, authors + 1);
+		int edges = in.getInt();
+		int[] authorBookTargets = readInts(in, edges);
+
+		int stringCount = in.getInt();
+		int stringBytes = in.getInt();
+		ByteBuffer stringRegion = in.slice();
+		stringRegion.limit(stringBytes);
+
+		return new CatalogColumns(new OffHeapStringStore(stringRegion, stringCount),
+		                          publisherIds, publisherNames,
+		                          bookIds, bookTitles, bookIsbns, bookPublishers,
+		                          authorIds, authorFirstNames, authorLastNames,
+		                          authorBookOffsets, authorBookTargets);
+	}  // end read()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static int[] recode(int[] codes, StringDictionary from, OffHeapStringStore.Writer to,
+	                            Map<Integer, Integer> recoded) {
+		int[] result = new int[codes.length];
+		for (int i = 0; i < codes.length; i++) {
+			int code = codes[i];
+			result[i] = (code == StringDictionary.NULL_CODE)
+					? StringDictionary.NULL_CODE
+					: recoded.computeIfAbsent(code, c -> to.append(from.get(c)));
+		}
+		return result;
+	}
+
+	private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+		for (long value : values) {
+			out.writeLong(value);
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	private static void writeBytes(OutputStream out, ByteBuffer bytes) throws IOException {
+		byte[] chunk = new byte[1 << 16];
+		while (bytes.hasRemaining()) {
+			int n = Math.min(chunk.length, bytes.remaining());
+			bytes.get(chunk, 0, n);
+			out.write(chunk, 0, n);
+		}
+	}
+
+	private static long[] readLongs(ByteBuffer in, int count) {
+		long[] values = new long[count];
+		in.asLongBuffer().get(values);
+		in.position(in.position() + 8 * count);
+		return values;
+	}
+
+	private static int[] readInts(ByteBuffer in, int count) {
+		int[] values = new int[count];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + 4 * count);
+		return values;
+	}
+
+}  // end class CatalogSnapshot
@@ -0,0 +1,104 @@
+// ***************************************************************************
+// Class:  CoalescingRebuilder
+//
+// Runs a "rebuild" task on its own background thread.
+//
+// request() queues the task unless it is already queued, so a burst of
+// catalog changes (e.g. an import) causes one rebuild, not one per row.
+// A request that arrives while the task is running queues one more run, so
+// the last change is never missed.  Requests after shutdown() are ignored
+// (e.g. a commit while the application context closes).
+//
+// A run that throws is logged and queued again after RETRY_DELAY, so a
+// database hiccup delays the read side instead of leaving it stale until
+// the next change.  The task must keep whatever it had not applied yet (see
+// CatalogReadModel.applyPending()), so the retry has it to apply.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class CoalescingRebuilder {
+
+	private static final Logger log = LoggerFactory.getLogger(CoalescingRebuilder.class);
+
+	static final long RETRY_DELAY_MILLIS = 5_000;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final String name;
+	private final Runnable task;
+	private final long retryDelayMillis;
+	private final ScheduledExecutorService executor;
+	private final AtomicBoolean pending = new AtomicBoolean();
+
+	// -----------------------------------------------
+	// Constructors
+	// -----------------------------------------------
+	public CoalescingRebuilder(String threadName, Runnable task) {
+		this(threadName, task, RETRY_DELAY_MILLIS);
+	}
+
+	CoalescingRebuilder(String threadName, Runnable task, long retryDelayMillis) {
+		this.name = threadName;
+		this.task = task;
+		this.retryDelayMillis = retryDelayMillis;
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, threadName);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * Queues the task unless a run is already queued.
+	 */
+	public void request() {
+		queue(0);
+	}
+
+	/**
+	 * Stops the background thread.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private void queue(long delayMillis) {
+		if (pending.compareAndSet(false, true)) {
+			try {
+				executor.schedule(this::run, delayMillis, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				// Shut down - nothing left to rebuild for.
+			}
+		}
+	}
+
+	private void run() {
+		pending.set(false);
+		try {
+			task.run();
+		} catch (RuntimeException e) {
+			log.warn("{} failed, retrying in {} ms", name, retryDelayMillis, e);
+			queue(retryDelayMillis);
+		}
+	}
+
+}  // end class CoalescingRebuilder
@@ -0,0 +1,269 @@
+// ***************************************************************************
+// Class:  FacetIndex
+//
+// One facet of the book list (e.g. "publisher state"): its values, and for
+// every value the set of books that have it, over book ordinals (see
+// CatalogFacets for how ordinals are assigned).
+//
+//    values     key -> value index, plus each value's label
+//    books[v]   book ordinals having value v
+//    counts[v]  size of books[v], kept up to date on every change
+//    of[b]      value indexes of book b (so a change can clear the old entries)
+//
+// A book may have several values of one facet (a book's authors), or none.
+//
+// books[v] starts as a sorted int array and turns into a BitSet once it holds
+// more than DENSE_AT books.  A facet like "author" has many values with a
+// handful of books each; a BitSet for each would cost (highest ordinal / 8)
+// bytes per value, while a busy value like a state is cheapest as bits.
+//
+// Not thread safe - CatalogFacets guards it with a read/write lock.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class FacetIndex {
+
+	private static final int[] NONE = new int[0];
+
+	// Size at which a value's books switch from a sorted int[] to a BitSet.
+	static final int DENSE_AT = 1024;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final String name;
+
+	private final Map<String, Integer> valueIndexes = new HashMap<>();
+	private final List<String> keys = new ArrayList<>();
+	private final List<String> labels = new ArrayList<>();
+	private final List<Postings> books = new ArrayList<>();
+	private int[] counts = new int[16];
+
+	private int[][] of = new int[1024][];   // by book ordinal; null = no values
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public FacetIndex(String name) {
+		this.name = name;
+	}
+
+	// -----------------------------------------------
+	// Updating
+	// -----------------------------------------------
+
+	/**
+	 * @return index of the value with this key, added if new.  The label is
+	 *         (re)set, so renaming e.g. a publisher just calls this again.
+	 */
+	public int value(String key, String label) {
+		Integer index = valueIndexes.get(key);
+		if (index != null) {
+			labels.set(index, label);
+			return index;
+		}
+		int added = keys.size();
+		valueIndexes.put(key, added);
+		keys.add(key);
+		labels.add(label);
+		books.add(new Postings());
+		if (added == counts.length) {
+			counts = Arrays.copyOf(counts, added * 2);
+		}
+		return added;
+	}
+
+	/**
+	 * Gives book ordinal "book" exactly the given values (replacing the old ones).
+	 */
+	public void set(int book, int[] values) {
+		clear(book);
+		if (book >= of.length) {
+			of = Arrays.copyOf(of, Math.max(book + 1, of.length * 2));
+		}
+		of[book] = (values.length == 0) ? null : values;
+		for (int value : values) {
+			books.get(value).add(book);
+			counts[value]++;
+		}
+	}
+
+	/**
+	 * Removes book ordinal "book" from every value.
+	 */
+	public void clear(int book) {
+		int[] old = valuesOf(book);
+		for (int value : old) {
+			books.get(value).remove(book);
+			counts[value]--;
+		}
+		if (old.length > 0) {
+			of[book] = null;
+		}
+	}
+
+	// -----------------------------------------------
+	// Reading
+	// -----------------------------------------------
+
+	public String getName() {
+		return name;
+	}
+
+	public int valueCount() {
+		return keys.size();
+	}
+
+	/**
+	 * @return value index of the key, or -1 if no book ever had it.
+	 */
+	public int indexOf(String key) {
+		Integer index = valueIndexes.get(key);
+		return (index == null) ? -1 : index;
+	}
+
+	/**
+	 * @return value indexes of the keys that are known (unknown ones are skipped).
+	 */
+	public int[] indexesOf(List<String> keys) {
+		return keys.stream().mapToInt(this::indexOf).filter(index -> index >= 0).toArray();
+	}
+
+	public String key(int value) {
+		return keys.get(value);
+	}
+
+	public String label(int value) {
+		return labels.get(value);
+	}
+
+	/**
+	 * @return number of (live) books having the value.
+	 */
+	public int count(int value) {
+		return counts[value];
+	}
+
+	/**
+	 * @return value indexes of book ordinal "book" - shared, do not modify.
+	 */
+	public int[] valuesOf(int book) {
+		int[] values = (book < of.length) ? of[book] : null;
+		return (values == null) ? NONE : values;
+	}
+
+	/**
+	 * @return books having any of the values, as a BitSet over book ordinals.
+	 */
+	public BitSet booksWithAny(int[] values) {
+		BitSet result = new BitSet();
+		for (int value : values) {
+			books.get(value).addTo(result);
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of the given books having each value, by value index.
+	 */
+	public int[] tally(BitSet bookOrdinals) {
+		int[] tally = new int[keys.size()];
+		for (int b = bookOrdinals.nextSetBit(0); b >= 0; b = bookOrdinals.nextSetBit(b + 1)) {
+			for (int value : valuesOf(b)) {
+				tally[value]++;
+			}
+		}
+		return tally;
+	}
+
+	/**
+	 * @return approximate heap used by the book sets and per-book values, in bytes.
+	 */
+	public long memoryBytes() {
+		long bytes = 4L * counts.length + 8L * of.length;
+		for (Postings postings : books) {
+			bytes += postings.memoryBytes();
+		}
+		for (int[] values : of) {
+			bytes += (values == null) ? 0 : 16 + 4L * values.length;
+		}
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return name + "{values=" + keys.size() + ", memoryBytes=" + memoryBytes() + "}";
+	}
+
+	// -----------------------------------------------
+	// Helper class - the books of one value.
+	// -----------------------------------------------
+
+	private static final class Postings {
+		private int[] sorted = NONE;   // used while bits == null
+		private int size;
+		private BitSet bits;
+
+		void add(int book) {
+			if (bits != null) {
+				bits.set(book);
+				return;
+			}
+			int at = Arrays.binarySearch(sorted, 0, size, book);
+			if (at >= 0) {
+				return;
+			}
+			if (size == DENSE_AT) {
+				bits = new BitSet();
+				for (int i = 0; i < size; i++) {
+					bits.set(sorted[i]);
+				}
+				bits.set(book);
+				sorted = NONE;
+				return;
+			}
+			at = -at - 1;
+			if (size == sorted.length) {
+				sorted = Arrays.copyOf(sorted, Math.max(4, size * 2));
+			}
+			System.arraycopy(sorted, at, sorted, at + 1, size - at);
+			sorted[at] = book;
+			size++;
+		}
+
+		void remove(int book) {
+			if (bits != null) {
+				bits.clear(book);
+				return;
+			}
+			int at = Arrays.binarySearch(sorted, 0, size, book);
+			if (at >= 0) {
+				System.arraycopy(sorted, at + 1, sorted, at, size - at - 1);
+				size--;
+			}
+		}
+
+		void addTo(BitSet target) {
+			if (bits != null) {
+				target.or(bits);
+				return;
+			}
+			for (int i = 0; i < size; i++) {
+				target.set(sorted[i]);
+			}
+		}
+
+		long memoryBytes() {
+			return (bits != null) ? bits.size() / 8 : 4L * sorted.length;
+		}
+	}
+
+}  // end class FacetIndex
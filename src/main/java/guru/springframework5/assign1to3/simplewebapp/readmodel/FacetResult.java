@@ -0,0 +1,109 @@
+// ***************************************************************************
+// Class:  FacetResult
+//
+// Answer to one CatalogFacets.query(): the ids of the books matching the
+// selection, and for every facet its values with the number of books each
+// would match (see CatalogFacets for how the counts are taken).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.List;
+
+public final class FacetResult {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final long[] bookIds;   // ascending
+	private final List<Facet> facets;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	FacetResult(long[] bookIds, List<Facet> facets) {
+		this.bookIds = bookIds;
+		this.facets = facets;
+	}
+
+	// -----------------------------------------------
+	// Getters
+	// -----------------------------------------------
+
+	public long[] getBookIds() {
+		return bookIds;
+	}
+
+	public int getBookCount() {
+		return bookIds.length;
+	}
+
+	public List<Facet> getFacets() {
+		return facets;
+	}
+
+	// -----------------------------------------------
+	// Helper classes
+	// -----------------------------------------------
+
+	/**
+	 * One facet and its most common values (plus every selected one).
+	 */
+	public static final class Facet {
+		private final String name;    // request parameter name
+		private final String title;   // heading shown on the page
+		private final List<Value> values;
+
+		Facet(String name, String title, List<Value> values) {
+			this.name = name;
+			this.title = title;
+			this.values = values;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public List<Value> getValues() {
+			return values;
+		}
+	}
+
+	/**
+	 * One facet value and the number of books it would match.
+	 */
+	public static final class Value {
+		private final String key;
+		private final String label;
+		private final int count;
+		private final boolean selected;
+
+		Value(String key, String label, int count, boolean selected) {
+			this.key = key;
+			this.label = label;
+			this.count = count;
+			this.selected = selected;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public boolean isSelected() {
+			return selected;
+		}
+	}
+
+}  // end class FacetResult
@@ -0,0 +1,82 @@
+// ***************************************************************************
+// Class:  FacetSelection
+//
+// Facet values picked on the book list, taken from the request parameters:
+//
+//    /books?state=CA&state=NY&author=12
+//
+// Several values of one facet are OR-ed (CA or NY), different facets are
+// AND-ed (and written by author 12).  Parameters that are not facet names
+// are ignored.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.MultiValueMap;
+
+public final class FacetSelection {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	// facet name -> selected keys, in CatalogFacets.FACETS order; only facets
+	// with at least one key.
+	private final Map<String, List<String>> selected;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	private FacetSelection(Map<String, List<String>> selected) {
+		this.selected = selected;
+	}
+
+	/**
+	 * @param params request parameters (blank values are ignored).
+	 */
+	public static FacetSelection from(MultiValueMap<String, String> params) {
+		Map<String, List<String>> selected = new LinkedHashMap<>();
+		for (String facet : CatalogFacets.FACETS) {
+			List<String> keys = new ArrayList<>();
+			for (String key : params.getOrDefault(facet, Collections.emptyList())) {
+				if (key != null && !key.trim().isEmpty() && !keys.contains(key.trim())) {
+					keys.add(key.trim());
+				}
+			}
+			if (!keys.isEmpty()) {
+				selected.put(facet, keys);
+			}
+		}
+		return new FacetSelection(selected);
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	public boolean isEmpty() {
+		return selected.isEmpty();
+	}
+
+	/**
+	 * @return keys selected for the facet (empty = not filtered on it).
+	 */
+	public List<String> get(String facet) {
+		return selected.getOrDefault(facet, Collections.emptyList());
+	}
+
+	public boolean isSelected(String facet, String key) {
+		return get(facet).contains(key);
+	}
+
+	@Override
+	public String toString() {
+		return "FacetSelection" + selected;
+	}
+
+}  // end class FacetSelection
@@ -0,0 +1,141 @@
+// ***************************************************************************
+// Class:  LongAdjacency
+//
+// Immutable one-way adjacency list between long ids (e.g. author id -> book
+// ids), stored in three primitive arrays instead of Sets of entities:
+//
+//    sources[]  - sorted, distinct source ids
+//    offsets[]  - targets of sources[i] are targets[offsets[i] .. offsets[i+1]-1]
+//    targets[]  - target ids, sorted within each source
+//
+// Lookup is a binary search on sources[] - no hashing, no boxing, and about
+// 12 bytes per source plus 8 bytes per edge.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.Arrays;
+
+public final class LongAdjacency {
+
+	private static final long[] NONE = new long[0];
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final long[] sources;
+	private final int[] offsets;
+	private final long[] targets;
+
+	// -----------------------------------------------
+	// Constructor - use Builder
+	// -----------------------------------------------
+	private LongAdjacency(long[] sources, int[] offsets, long[] targets) {
+		this.sources = sources;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * @return sorted target ids of the source (empty if unknown).  The array
+	 *         is a copy, so the caller may keep or modify it.
+	 */
+	public long[] targetsOf(long source) {
+		int i = Arrays.binarySearch(sources, source);
+		return (i < 0) ? NONE : Arrays.copyOfRange(targets, offsets[i], offsets[i + 1]);
+	}
+
+	/**
+	 * @return number of targets of the source (0 if unknown).
+	 */
+	public int countOf(long source) {
+		int i = Arrays.binarySearch(sources, source);
+		return (i < 0) ? 0 : offsets[i + 1] - offsets[i];
+	}
+
+	/**
+	 * @return true if the edge source -> target exists.
+	 */
+	public boolean contains(long source, long target) {
+		int i = Arrays.binarySearch(sources, source);
+		return (i >= 0) && Arrays.binarySearch(targets, offsets[i], offsets[i + 1], target) >= 0;
+	}
+
+	public int sourceCount() {
+		return sources.length;
+	}
+
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * @return approximate heap used by the three arrays, in bytes
+	 *         (16 byte array header + element data each).
+	 */
+	public long memoryBytes() {
+		return (16L + 8L * sources.length) + (16L + 4L * offsets.length) + (16L + 8L * targets.length);
+	}
+
+	// -----------------------------------------------
+	// Builder - collects edges, then sorts them into the arrays.
+	// -----------------------------------------------
+
+	public static final class Builder {
+
+		private long[] edgeSources = new long[64];
+		private long[] edgeTargets = new long[64];
+		private int size;
+
+		public Builder add(long source, long target) {
+			if (size == edgeSources.length) {
+				edgeSources = Arrays.copyOf(edgeSources, size * 2);
+				edgeTargets = Arrays.copyOf(edgeTargets, size * 2);
+			}
+			edgeSources[size] = source;
+			edgeTargets[size] = target;
+			size++;
+			return this;
+		}
+
+		public LongAdjacency build() {
+			// Distinct, sorted source ids.
+			long[] sorted = Arrays.copyOf(edgeSources, size);
+			Arrays.sort(sorted);
+			int distinct = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				if (i == 0 || sorted[i] != sorted[i - 1]) {
+					sorted[distinct++] = sorted[i];
+				}
+			}
+			long[] sources = Arrays.copyOf(sorted, distinct);
+
+			// Count edges per source, then turn counts into offsets.
+			int[] offsets = new int[distinct + 1];
+			for (int e = 0; e < size; e++) {
+				offsets[Arrays.binarySearch(sources, edgeSources[e]) + 1]++;
+			}
+			for (int i = 0; i < distinct; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+
+			// Drop each target into its source's slot, then sort each slice.
+			long[] targets = new long[size];
+			int[] fill = Arrays.copyOf(offsets, distinct);
+			for (int e = 0; e < size; e++) {
+				targets[fill[Arrays.binarySearch(sources, edgeSources[e])]++] = edgeTargets[e];
+			}
+			for (int i = 0; i < distinct; i++) {
+				Arrays.sort(targets, offsets[i], offsets[i + 1]);
+			}
+
+			return new LongAdjacency(sources, offsets, targets);
+		}  // end build()
+
+	}  // end class Builder
+
+}  // end class LongAdjacency
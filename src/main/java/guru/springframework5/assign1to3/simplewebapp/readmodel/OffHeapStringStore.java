@@ -0,0 +1,125 @@
+// ***************************************************************************
+// Class:  OffHeapStringStore
+//
+// StringDictionary whose strings live outside the Java heap, as UTF-8 bytes
+// in one direct ByteBuffer:
+//
+//    [int length][length bytes of UTF-8] [int length][bytes] ...
+//
+// A string's code is the byte offset of its length prefix.  The garbage
+// collector only sees one small ByteBuffer object, not millions of Strings,
+// so titles and names no longer fill the old generation.
+//
+// The price is a short-lived String created each time get() is called
+// (young generation garbage, cheap to collect).
+//
+// NOTE: A direct buffer is limited to 2 GB, and its memory is released when
+//       the buffer object itself is garbage collected (after a rebuild).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public final class OffHeapStringStore implements StringDictionary {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final ByteBuffer buffer;   // Read with absolute gets only, so safe to share between threads.
+	private final int size;
+
+	// -----------------------------------------------
+	// Constructor - use Writer (or CatalogSnapshot, which maps the bytes from a file)
+	// -----------------------------------------------
+	OffHeapStringStore(ByteBuffer buffer, int size) {
+		this.buffer = buffer;
+		this.size = size;
+	}
+
+	// -----------------------------------------------
+	// Implementation of StringDictionary
+	// -----------------------------------------------
+
+	@Override
+	public String get(int code) {
+		if (code == NULL_CODE) {
+			return null;
+		}
+		int length = buffer.getInt(code);
+		byte[] utf8 = new byte[length];
+		// Bulk copy through a private view (the shared buffer's position is never moved).
+		ByteBuffer view = buffer.duplicate();
+		view.position(code + 4);
+		view.get(utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long offHeapBytes() {
+		return buffer.capacity();
+	}
+
+	// Read-only view of the raw bytes (for CatalogSnapshot).
+	ByteBuffer bytes() {
+		return buffer.asReadOnlyBuffer();
+	}
+
+	// -----------------------------------------------
+	// Writer - appends strings, then hands back the finished store.
+	// -----------------------------------------------
+
+	public static final class Writer {
+
+		private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+		private int size;
+
+		/**
+		 * @return offset (code) of the appended string.
+		 */
+		public int append(String value) {
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			ensureRoom(4 + utf8.length);
+			int offset = buffer.position();
+			buffer.putInt(utf8.length);
+			buffer.put(utf8);
+			size++;
+			return offset;
+		}
+
+		/**
+		 * @return the store, copied into a buffer of exactly the size used.
+		 */
+		public OffHeapStringStore build() {
+			buffer.flip();
+			ByteBuffer exact = ByteBuffer.allocateDirect(buffer.limit());
+			exact.put(buffer);
+			exact.flip();
+			return new OffHeapStringStore(exact, size);
+		}
+
+		// Doubles the buffer (up to the 2 GB limit of a ByteBuffer) when full.
+		private void ensureRoom(int bytes) {
+			if (buffer.remaining() >= bytes) {
+				return;
+			}
+			long needed = (long) buffer.position() + bytes;
+			if (needed > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Off-heap string store is full (2 GB)");
+			}
+			int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(needed, 2L * buffer.capacity()));
+			ByteBuffer bigger = ByteBuffer.allocateDirect(capacity);
+			buffer.flip();
+			bigger.put(buffer);
+			buffer = bigger;
+		}
+
+	}  // end class Writer
+
+}  // end class OffHeapStringStore
@@ -0,0 +1,109 @@
+// ***************************************************************************
+// Class:  PatchedStringDictionary
+//
+// StringDictionary of a patched CatalogColumns: the dictionary the columns
+// were built with, plus the strings added by patches since.
+//
+// The base dictionary is shared, never copied, so the unchanged rows keep
+// their codes.  Added strings get codes below NULL_CODE (-2, -3, ...),
+// which no base dictionary uses, and are kept on heap - they are few.
+// Strings of changed rows stay in the dictionary until the next full
+// rebuild (see CatalogReadModel).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class PatchedStringDictionary implements StringDictionary {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final StringDictionary base;
+	private final String[] added;   // Code -2 - i
+
+	// -----------------------------------------------
+	// Constructor - use Builder
+	// -----------------------------------------------
+	private PatchedStringDictionary(StringDictionary base, String[] added) {
+		this.base = base;
+		this.added = added;
+	}
+
+	// -----------------------------------------------
+	// Implementation of StringDictionary
+	// -----------------------------------------------
+
+	@Override
+	public String get(int code) {
+		return (code < NULL_CODE) ? added[NULL_CODE - 1 - code] : base.get(code);
+	}
+
+	@Override
+	public int size() {
+		return base.size() + added.length;
+	}
+
+	@Override
+	public long offHeapBytes() {
+		return base.offHeapBytes();
+	}
+
+	/**
+	 * @return strings added by patches since the base was built.
+	 */
+	public int addedCount() {
+		return added.length;
+	}
+
+	// -----------------------------------------------
+	// Builder - extends a dictionary with the strings of one patch.
+	// -----------------------------------------------
+
+	public static final class Builder {
+
+		private final StringDictionary base;
+		private final List<String> added;
+		private final Map<String, Integer> codes = new HashMap<>();   // of "added" only
+
+		public Builder(StringDictionary dictionary) {
+			if (dictionary instanceof PatchedStringDictionary) {
+				PatchedStringDictionary patched = (PatchedStringDictionary) dictionary;
+				this.base = patched.base;
+				this.added = new ArrayList<>(patched.added.length + 16);
+				for (String value : patched.added) {
+					encode(value);
+				}
+			} else {
+				this.base = dictionary;
+				this.added = new ArrayList<>();
+			}
+		}
+
+		/**
+		 * @return code for the string; a new code unless a patch added it before.
+		 */
+		public int encode(String value) {
+			if (value == null) {
+				return NULL_CODE;
+			}
+			Integer code = codes.get(value);
+			if (code == null) {
+				code = NULL_CODE - 1 - added.size();
+				added.add(value);
+				codes.put(value, code);
+			}
+			return code;
+		}
+
+		public PatchedStringDictionary build() {
+			return new PatchedStringDictionary(base, added.toArray(new String[0]));
+		}
+
+	}  // end class Builder
+
+}  // end class PatchedStringDictionary
@@ -0,0 +1,44 @@
+// ***************************************************************************
+// Class:  PublisherView
+//
+// Flyweight over one publisher row of CatalogColumns.  The same instance is
+// moved from row to row, so rendering allocates no Publisher objects.
+// Exposes the same getters the templates use on the Publisher entity.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+public final class PublisherView {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final CatalogColumns columns;
+	private int current;   // ordinal of the row currently shown
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	PublisherView(CatalogColumns columns) {
+		this.columns = columns;
+	}
+
+	// Position on the given publisher ordinal.
+	PublisherView moveTo(int ordinal) {
+		this.current = ordinal;
+		return this;
+	}
+
+	// -----------------------------------------------
+	// Getters (same names as the Publisher entity)
+	// -----------------------------------------------
+
+	public long getId() {
+		return columns.publisherId(current);
+	}
+
+	public String getName() {
+		return columns.publisherName(current);
+	}
+
+}  // end class PublisherView
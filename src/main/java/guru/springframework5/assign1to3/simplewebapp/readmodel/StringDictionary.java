@@ -0,0 +1,105 @@
+// ***************************************************************************
+// Interface:  StringDictionary
+//
+// Dictionary encoding for the string columns of the read model.
+//
+// Every distinct string is stored once and given an int "code".  Columns
+// then hold int codes instead of String references, so a publisher name
+// shared by a million books is one String, not a million references to
+// (possibly duplicated) Strings.  Code -1 means null.
+//
+// Two implementations, picked by the Builder:
+//    on heap  - a String[] indexed by code
+//    off heap - OffHeapStringStore; the code is the byte offset of the
+//               UTF-8 bytes in a direct ByteBuffer (no String kept on heap)
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public interface StringDictionary {
+
+	// Code used for a null string.
+	int NULL_CODE = -1;
+
+	/**
+	 * @return the string for the code, or null for NULL_CODE.
+	 */
+	String get(int code);
+
+	/**
+	 * @return number of distinct (non-null) strings.
+	 */
+	int size();
+
+	/**
+	 * @return bytes held outside the Java heap (0 for the on-heap version).
+	 */
+	long offHeapBytes();
+
+	// -----------------------------------------------
+	// Builder - collects strings while the read model is being built.
+	// -----------------------------------------------
+
+	final class Builder {
+
+		// Only used while building; garbage once build() returns.
+		private final Map<String, Integer> codes = new HashMap<>();
+
+		private final List<String> values;                  // on heap
+		private final OffHeapStringStore.Writer offHeap;    // off heap
+
+		public Builder(boolean useOffHeap) {
+			this.values = useOffHeap ? null : new ArrayList<>();
+			this.offHeap = useOffHeap ? new OffHeapStringStore.Writer() : null;
+		}
+
+		/**
+		 * @return the code for the string, adding it to the dictionary if new.
+		 */
+		public int encode(String value) {
+			if (value == null) {
+				return NULL_CODE;
+			}
+			Integer code = codes.get(value);
+			if (code == null) {
+				if (offHeap != null) {
+					code = offHeap.append(value);
+				} else {
+					code = values.size();
+					values.add(value);
+				}
+				codes.put(value, code);
+			}
+			return code;
+		}
+
+		public StringDictionary build() {
+			if (offHeap != null) {
+				return offHeap.build();
+			}
+			String[] array = values.toArray(new String[0]);
+			return new StringDictionary() {
+				@Override
+				public String get(int code) {
+					return (code == NULL_CODE) ? null : array[code];
+				}
+
+				@Override
+				public int size() {
+					return array.length;
+				}
+
+				@Override
+				public long offHeapBytes() {
+					return 0;
+				}
+			};
+		}  // end build()
+
+	}  // end class Builder
+
+}  // end interface StringDictionary
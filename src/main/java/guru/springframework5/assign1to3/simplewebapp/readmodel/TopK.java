@@ -0,0 +1,99 @@
+// ***************************************************************************
+// Class:  TopK
+//
+// Picks the first k rows of a sort order without sorting all of them.
+//
+// Keeps a bounded max-heap of the k smallest rows seen so far: each further
+// row is compared with the heap's largest and only enters (O(log k)) if it is
+// smaller.  For n rows that is O(n log k) instead of O(n log n), and since
+// most rows lose against the root after one comparison, usually about n
+// comparisons in total - which matters when a comparison decodes strings.
+//
+// Rows are identified by their ordinal (int), compared with an OrdinalOrder.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+public final class TopK {
+
+	/**
+	 * Order of rows given by ordinal, like a Comparator but without boxing.
+	 */
+	@FunctionalInterface
+	public interface OrdinalOrder {
+		int compare(int a, int b);
+	}
+
+	private TopK() {
+		// Static helpers only.
+	}
+
+	/**
+	 * @param candidates ordinals to choose from (null = 0 .. count-1)
+	 * @param count      number of candidates to use
+	 * @param k          number of rows wanted
+	 * @param order      sort order - should be total (e.g. ends with the id)
+	 * @return the min(k, count) first candidates in order.
+	 */
+	public static int[] first(int[] candidates, int count, int k, OrdinalOrder order) {
+		int size = 0;
+		int[] heap = new int[Math.max(0, Math.min(k, count))];
+		for (int i = 0; i < count; i++) {
+			int row = (candidates == null) ? i : candidates[i];
+			if (size < heap.length) {
+				heap[size] = row;
+				siftUp(heap, size++, order);
+			} else if (size > 0 && order.compare(row, heap[0]) < 0) {
+				heap[0] = row;
+				siftDown(heap, size, order);
+			}
+		}
+
+		// Take the largest off the heap repeatedly, filling from the back.
+		int[] sorted = new int[size];
+		for (int last = size - 1; last >= 0; last--) {
+			sorted[last] = heap[0];
+			heap[0] = heap[last];
+			siftDown(heap, last, order);
+		}
+		return sorted;
+	}  // end first()
+
+	// -----------------------------------------------
+	// Helper methods - max-heap on "order"
+	// -----------------------------------------------
+
+	private static void siftUp(int[] heap, int at, OrdinalOrder order) {
+		int row = heap[at];
+		while (at > 0) {
+			int parent = (at - 1) >>> 1;
+			if (order.compare(row, heap[parent]) <= 0) {
+				break;
+			}
+			heap[at] = heap[parent];
+			at = parent;
+		}
+		heap[at] = row;
+	}
+
+	private static void siftDown(int[] heap, int size, OrdinalOrder order) {
+		if (size == 0) {
+			return;
+		}
+		int row = heap[0];
+		int at = 0;
+		int half = size >>> 1;
+		while (at < half) {
+			int child = 2 * at + 1;
+			if (child + 1 < size && order.compare(heap[child + 1], heap[child]) > 0) {
+				child++;
+			}
+			if (order.compare(row, heap[child]) >= 0) {
+				break;
+			}
+			heap[at] = heap[child];
+			at = child;
+		}
+		heap[at] = row;
+	}
+
+}  // end class TopK
@@ -0,0 +1,222 @@
+/**
+ * CatalogUpsertRepository - Inserts or updates Publishers, Authors and Books by
+ *                           natural key, a whole batch at a time.
+ *
+ *     Publisher - name + zip     (looked up by name)
+ *     Author    - name_key       (see Author.nameKey())
+ *     Book      - isbn_key       (see Book.isbnKey())
+ *
+ * The key columns have unique indexes (V4 migration), so two imports racing
+ * to insert the same key fail instead of storing it twice.
+ *
+ * CrudRepository.save() only knows the generated id, so applying a feed with
+ * it means one SELECT per record plus one INSERT/UPDATE per record through the
+ * persistence context.  This class uses plain JDBC instead: a few chunked
+ * IN (...) lookups and JDBC batches per table (see NaturalKeyTable).
+ *
+ * Authors and books can take a BloomFilter of the keys already in the table
+ * (see imports.KnownKeys) so definitely-new keys are not looked up.
+ *
+ * Must run inside the caller's transaction.  Hibernate is bypassed, so no
+ * CatalogChangeEvents are published - the caller publishes a
+ * CatalogBulkChangeEvent instead.
+ */
+package guru.springframework5.assign1to3.simplewebapp.repositories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import guru.springframework5.assign1to3.simplewebapp.imports.AuthorRecord;
+import guru.springframework5.assign1to3.simplewebapp.imports.BloomFilter;
+import guru.springframework5.assign1to3.simplewebapp.imports.BookRecord;
+import guru.springframework5.assign1to3.simplewebapp.imports.PublisherRecord;
+import guru.springframework5.assign1to3.simplewebapp.imports.UpsertResult.Outcome;
+
+@Repository
+public class CatalogUpsertRepository {
+
+	private static final NaturalKeyTable PUBLISHERS = new NaturalKeyTable("publisher",
+			Arrays.asList("name", "zip", "address_line1", "city", "state"),
+			values -> PublisherRecord.key((String) values[0], (String) values[1]));
+
+	private static final NaturalKeyTable AUTHORS = new NaturalKeyTable("author",
+			Arrays.asList("name_key", "first_name", "last_name"),
+			values -> (String) values[0]);
+
+	private static final NaturalKeyTable BOOKS = new NaturalKeyTable("book",
+			Arrays.asList("isbn_key", "isbn", "title", "publisher_id"),
+			values -> (String) values[0]);
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final JdbcTemplate jdbcTemplate;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogUpsertRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	// -----------------------------------------------
+	// Upserts - each takes natural key -> record and returns natural key -> Row
+	// -----------------------------------------------
+
+	public Map<String, Row> upsertPublishers(Map<String, PublisherRecord> publishers) {
+		Map<String, Object[]> rows = new LinkedHashMap<>(publishers.size() * 2);
+		publishers.forEach((key, publisher) -> rows.put(key, new Object[] {
+				publisher.getName().trim(), trim(publisher.getZip()),
+				publisher.getAddressLine1(), publisher.getCity(), publisher.getState() }));
+		return PUBLISHERS.upsert(jdbcTemplate, rows, null);
+	}
+
+	/**
+	 * @param knownNameKeys name keys already in the table, or null
+	 */
+	public Map<String, Row> upsertAuthors(Map<String, AuthorRecord> authors, BloomFilter knownNameKeys) {
+		Map<String, Object[]> rows = new LinkedHashMap<>(authors.size() * 2);
+		authors.forEach((key, author) -> rows.put(key, new Object[] {
+				key, trim(author.getFirstName()), trim(author.getLastName()) }));
+		return AUTHORS.upsert(jdbcTemplate, rows, knownNameKeys);
+	}
+
+	/**
+	 * @param publisherIds publisher natural key -> id, for every publisher the
+	 *                     books reference
+	 * @param knownIsbns   ISBNs already in the table, or null
+	 */
+	public Map<String, Row> upsertBooks(Map<String, BookRecord> books, Map<String, Long> publisherIds,
+			BloomFilter knownIsbns) {
+		Map<String, Object[]> rows = new LinkedHashMap<>(books.size() * 2);
+		books.forEach((isbnKey, book) -> {
+			String publisherKey = PublisherRecord.key(book.getPublisherName(), book.getPublisherZip());
+			rows.put(isbnKey, new Object[] {
+					isbnKey, trim(book.getIsbn()), book.getTitle(),
+					(publisherKey == null) ? null : publisherIds.get(publisherKey) });
+		});
+		return BOOKS.upsert(jdbcTemplate, rows, knownIsbns);
+	}
+
+	// -----------------------------------------------
+	// Lookups of existing rows by natural key
+	// -----------------------------------------------
+
+	/**
+	 * @param publishers name + zip of each publisher to find
+	 * @return natural key -> id of those that exist
+	 */
+	public Map<String, Long> findPublisherIds(Collection<PublisherRecord> publishers) {
+		Set<String> names = new HashSet<>();
+		for (PublisherRecord publisher : publishers) {
+			names.add(publisher.getName().trim());
+		}
+		return PUBLISHERS.findIds(jdbcTemplate, names);
+	}
+
+	/**
+	 * @param nameKeys      Author.nameKey() of each author to find
+	 * @param knownNameKeys name keys already in the table, or null
+	 * @return name key -> id of those that exist
+	 */
+	public Map<String, Long> findAuthorIds(Collection<String> nameKeys, BloomFilter knownNameKeys) {
+		return AUTHORS.findIds(jdbcTemplate, nameKeys, knownNameKeys);
+	}
+
+	// -----------------------------------------------
+	// author_book
+	// -----------------------------------------------
+
+	/**
+	 * Makes each book's author_book rows match the given author ids.  Books
+	 * whose rows already match are left alone; the others get a new version
+	 * (as Hibernate does when the owning Book.authors collection changes).
+	 *
+	 * @param authorIdsByBook book id -> the ids of all its authors
+	 * @return ids of the books whose authors changed
+	 */
+	public Set<Long> replaceBookAuthors(Map<Long, Set<Long>> authorIdsByBook) {
+		Map<Long, Set<Long>> current = new HashMap<>(authorIdsByBook.size() * 2);
+		List<Long> bookIds = new ArrayList<>(authorIdsByBook.keySet());
+		for (int from = 0; from < bookIds.size(); from += NaturalKeyTable.CHUNK_SIZE) {
+			List<Long> chunk = bookIds.subList(from, Math.min(from + NaturalKeyTable.CHUNK_SIZE, bookIds.size()));
+			jdbcTemplate.query("SELECT book_id, author_id FROM author_book WHERE book_id IN ("
+					+ String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")",
+					resultSet -> {
+						current.computeIfAbsent(resultSet.getLong(1), id -> new HashSet<>()).add(resultSet.getLong(2));
+					}, chunk.toArray());
+		}
+
+		Set<Long> changed = new HashSet<>();
+		List<Object[]> deletes = new ArrayList<>();
+		List<Object[]> inserts = new ArrayList<>();
+		authorIdsByBook.forEach((bookId, authorIds) -> {
+			Set<Long> existing = current.getOrDefault(bookId, Collections.emptySet());
+			if (existing.equals(authorIds)) {
+				return;
+			}
+			changed.add(bookId);
+			if (!existing.isEmpty()) {
+				deletes.add(new Object[] { bookId });
+			}
+			for (Long authorId : authorIds) {
+				inserts.add(new Object[] { bookId, authorId });
+			}
+		});
+		jdbcTemplate.batchUpdate("DELETE FROM author_book WHERE book_id = ?", deletes);
+		jdbcTemplate.batchUpdate("INSERT INTO author_book (book_id, author_id) VALUES (?, ?)", inserts);
+
+		List<Object[]> versions = new ArrayList<>(changed.size());
+		for (Long bookId : changed) {
+			versions.add(new Object[] { bookId });
+		}
+		jdbcTemplate.batchUpdate("UPDATE book SET version = version + 1 WHERE id = ?", versions);
+		return changed;
+	}  // end replaceBookAuthors()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static String trim(String value) {
+		return (value == null) ? null : value.trim();
+	}
+
+	// -----------------------------------------------
+	// Helper classes
+	// -----------------------------------------------
+
+	/**
+	 * Id and outcome of one upserted row.
+	 */
+	public static final class Row {
+		private final long id;
+		private final Outcome outcome;
+
+		Row(long id, Outcome outcome) {
+			this.id = id;
+			this.outcome = outcome;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public Outcome getOutcome() {
+			return outcome;
+		}
+	}
+
+}  // end class CatalogUpsertRepository
@@ -1,6 +1,6 @@
 package guru.springframework5.assign1to3.simplewebapp.repositories;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
 import guru.springframework5.assign1to3.simplewebapp.domain.Author;
 
 /**
@@ -13,9 +13,10 @@ import guru.springframework5.assign1to3.simplewebapp.domain.Author;
  * At runtime, Spring provides implementations for these methods (we don't have to). 
  * This is the redundant JDBC / SQL source we can skip. 
  */
-public interface IAuthorRepository extends CrudRepository <Author, Long>{
+public interface IAuthorRepository extends PagingAndSortingRepository <Author, Long>{
 
-	// No methods to declare.  Just use default methods provided by CRUDRepoistory.
+	// No methods to declare.  Just use default methods provided by CRUDRepoistory
+	// (plus sorted / paged findAll from PagingAndSortingRepository).
 	// Spring provides implementation at runtime.  You do NOT need IMPL class. 
 
 }  // end interface IAuthorRepository
@@ -5,17 +5,31 @@
  * CrudRepository interface provides:  save, saveAll, findById, existsById, 
  *                                     findAll, findById, count, deleteById, delete, etc.
  *                                     
+ * PagingAndSortingRepository (a CrudRepository) adds findAll(Sort) and findAll(Pageable).
+ *                                     
  * At runtime, Spring provides implementations for these methods (we don't have to). 
  * This is the redundant JDBC / SQL source we can skip. 
  */
 package guru.springframework5.assign1to3.simplewebapp.repositories;
 
-import org.springframework.data.repository.CrudRepository;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.PagingAndSortingRepository;
 import guru.springframework5.assign1to3.simplewebapp.domain.Book;
 
-public interface IBookRepository extends CrudRepository <Book, Long> {
+public interface IBookRepository extends PagingAndSortingRepository <Book, Long> {
 
-	// No methods to declare.  Just use default methods provided by CRUDRepoistory.
+	// Default methods provided by CRUDRepoistory (plus sorted / paged findAll),
+	// and the finders below.
 	// Spring provides implementation at runtime.  You do NOT need IMPL class. 
-	
+
+	// Books with the given ids (e.g. those matching the facets), sorted / paged.
+	List<Book> findByIdIn(Collection<Long> ids, Sort sort);
+
+	Page<Book> findByIdIn(Collection<Long> ids, Pageable pageable);
+
 }  // end interface IBookRepository
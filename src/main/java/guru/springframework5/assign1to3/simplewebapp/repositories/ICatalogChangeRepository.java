@@ -0,0 +1,31 @@
+package guru.springframework5.assign1to3.simplewebapp.repositories;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChange;
+
+/**
+ * ICatalogChangeRepository - Interface implements CrudRepository to read the
+ *                            catalog_change outbox table. <CatalogChange, Long>
+ *
+ * Rows are written by CatalogOutboxWriter; consumers read them in sequence
+ * order starting after the last sequence number they have seen.
+ */
+public interface ICatalogChangeRepository extends CrudRepository<CatalogChange, Long> {
+
+	// Spring derives the query from the method name:
+	//    SELECT ... WHERE id > :after ORDER BY id ASC  (limited by the Pageable)
+	List<CatalogChange> findByIdGreaterThanOrderByIdAsc(Long after, Pageable page);
+
+	// Highest sequence number written, null if there are no rows.
+	@Query("SELECT MAX(c.id) FROM CatalogChange c")
+	Long findLatestId();
+
+	// Lowest sequence number still kept, null if there are no rows.
+	@Query("SELECT MIN(c.id) FROM CatalogChange c")
+	Long findOldestId();
+
+}  // end interface ICatalogChangeRepository
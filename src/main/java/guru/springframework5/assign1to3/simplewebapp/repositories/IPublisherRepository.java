@@ -1,7 +1,11 @@
 package guru.springframework5.assign1to3.simplewebapp.repositories;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import guru.springframework5.assign1to3.simplewebapp.domain.Publisher;
+import guru.springframework5.assign1to3.simplewebapp.domain.PublisherSummary;
 
 /**
  * IPublisherRepository - Interface implements CrudRepository to provide CRUD options  
@@ -16,7 +20,22 @@ import guru.springframework5.assign1to3.simplewebapp.domain.Publisher;
  */
 public interface IPublisherRepository extends CrudRepository<Publisher, Long> {
 
-	// No methods to declare.  Just use default methods provided by CRUDRepoistory.
+	// Default methods provided by CRUDRepoistory, plus the queries below.
 	// Spring provides implementation at runtime.  You do NOT need IMPL class. 
-	
+
+	// One page of publishers (by name) with their book and author counts.
+	// The counts are computed by the database (GROUP BY over the book and
+	// author_book joins), so no Publisher.books collection is loaded.
+	@Query(value = "SELECT new guru.springframework5.assign1to3.simplewebapp.domain.PublisherSummary("
+	             + "p.id, p.name, p.city, p.state, p.zip, COUNT(DISTINCT b.id), COUNT(DISTINCT a.id)) "
+	             + "FROM Publisher p LEFT JOIN p.books b LEFT JOIN b.authors a "
+	             + "GROUP BY p.id, p.name, p.city, p.state, p.zip "
+	             + "ORDER BY p.name, p.id",
+	       countQuery = "SELECT COUNT(p) FROM Publisher p")
+	Page<PublisherSummary> findSummaries(Pageable pageable);
+
+	// Whether a publisher with this natural key exists.  A declared query method
+	// is not read-only (unlike count()), so it reads the primary, not the replica.
+	boolean existsByNameAndZip(String name, String zip);
+
 }  // end interface IPublisherRepository
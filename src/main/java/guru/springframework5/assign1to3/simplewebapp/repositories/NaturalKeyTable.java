@@ -0,0 +1,235 @@
+// ***************************************************************************
+// Class:  NaturalKeyTable
+//
+// Set-based "insert or update by natural key" for one table, used by
+// CatalogUpsertRepository.
+//
+// For a batch of rows (natural key -> column values) it:
+//    1. reads the existing rows with a few "lookupColumn IN (...)" queries
+//       (CHUNK_SIZE keys each) instead of one query per row,
+//    2. compares column values to decide INSERTED / UPDATED / UNCHANGED,
+//    3. runs all UPDATEs as one JDBC batch,
+//    4. takes ids for the new rows from hibernate_sequence in one query and
+//       runs all INSERTs as one JDBC batch.
+//
+// lookupColumn is indexed; keyOf() turns a row's column values into its
+// natural key, so a key may span more than the lookup column (publisher is
+// looked up by name and matched on name + zip).
+//
+// A null column value means the record left the field out: updates keep the
+// stored value (SET col = COALESCE(?, col)) and it is not compared.  So an
+// import cannot clear a column, but a partial record never blanks one.
+//
+// The tables are @Version'ed entities: inserts start at version 0 and
+// updates increment it, so a JPA editor holding the old version gets an
+// optimistic locking failure instead of overwriting the import.
+//
+// An optional BloomFilter of the keys already in the table lets step 1 skip
+// the keys that are definitely new; inserted keys are added to it.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.repositories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.imports.BloomFilter;
+import guru.springframework5.assign1to3.simplewebapp.imports.UpsertResult.Outcome;
+import guru.springframework5.assign1to3.simplewebapp.repositories.CatalogUpsertRepository.Row;
+
+final class NaturalKeyTable {
+
+	static final int CHUNK_SIZE = 1000;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final String table;
+	private final List<String> columns;       // Updatable columns; columns[0] is the lookup column
+	private final Function<Object[], String> keyOf;
+
+	private final String updateSql;
+	private final String insertSql;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	NaturalKeyTable(String table, List<String> columns, Function<Object[], String> keyOf) {
+		this.table = table;
+		this.columns = columns;
+		this.keyOf = keyOf;
+		StringBuilder update = new StringBuilder("UPDATE ").append(table).append(" SET ");
+		for (String column : columns) {
+			update.append(column).append(" = COALESCE(?, ").append(column).append("), ");
+		}
+		this.updateSql = update.append("version = version + 1 WHERE id = ?").toString();
+		this.insertSql = "INSERT INTO " + table + " (id, version, " + String.join(", ", columns) + ") VALUES (?, 0"
+				+ String.join("", Collections.nCopies(columns.size(), ", ?")) + ")";
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * @param rows      natural key -> column values (in "columns" order)
+	 * @param knownKeys keys already in the table, or null to look up every row
+	 * @return natural key -> id and outcome, for every row
+	 */
+	Map<String, Row> upsert(JdbcTemplate jdbcTemplate, Map<String, Object[]> rows, BloomFilter knownKeys) {
+		Map<String, Existing> existing = find(jdbcTemplate, lookupValues(rows, knownKeys));
+
+		Map<String, Row> result = new HashMap<>(rows.size() * 2);
+		List<Object[]> updates = new ArrayList<>();
+		List<String> insertKeys = new ArrayList<>();
+		for (Map.Entry<String, Object[]> entry : rows.entrySet()) {
+			Existing current = existing.get(entry.getKey());
+			if (current == null) {
+				insertKeys.add(entry.getKey());
+			} else if (sameAsStored(current.values, entry.getValue())) {
+				result.put(entry.getKey(), new Row(current.id, Outcome.UNCHANGED));
+			} else {
+				Object[] args = Arrays.copyOf(entry.getValue(), columns.size() + 1);
+				args[columns.size()] = current.id;
+				updates.add(args);
+				result.put(entry.getKey(), new Row(current.id, Outcome.UPDATED));
+			}
+		}
+		jdbcTemplate.batchUpdate(updateSql, updates);
+
+		List<Long> ids = nextIds(jdbcTemplate, insertKeys.size());
+		List<Object[]> inserts = new ArrayList<>(insertKeys.size());
+		for (int i = 0; i < insertKeys.size(); i++) {
+			Object[] values = rows.get(insertKeys.get(i));
+			Object[] args = new Object[columns.size() + 1];
+			args[0] = ids.get(i);
+			System.arraycopy(values, 0, args, 1, values.length);
+			inserts.add(args);
+			result.put(insertKeys.get(i), new Row(ids.get(i), Outcome.INSERTED));
+		}
+		jdbcTemplate.batchUpdate(insertSql, inserts);
+		if (knownKeys != null) {
+			insertKeys.forEach(knownKeys::put);
+		}
+		return result;
+	}  // end upsert()
+
+	/**
+	 * @param lookupValues values of the lookup column to search for
+	 * @return natural key -> id of the existing rows with those lookup values
+	 */
+	Map<String, Long> findIds(JdbcTemplate jdbcTemplate, Collection<?> lookupValues) {
+		Map<String, Long> ids = new HashMap<>();
+		find(jdbcTemplate, lookupValues).forEach((key, row) -> ids.put(key, row.id));
+		return ids;
+	}
+
+	/**
+	 * Like findIds() for a table whose lookup column is the natural key,
+	 * skipping the keys the filter says are not in the table.
+	 */
+	Map<String, Long> findIds(JdbcTemplate jdbcTemplate, Collection<String> keys, BloomFilter knownKeys) {
+		if (knownKeys == null) {
+			return findIds(jdbcTemplate, keys);
+		}
+		List<String> candidates = new ArrayList<>();
+		for (String key : keys) {
+			if (knownKeys.mightContain(key)) {
+				candidates.add(key);
+			}
+		}
+		return findIds(jdbcTemplate, candidates);
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Whether updating the stored values with the new ones changes nothing
+	// (null = keep the stored value).
+	private static boolean sameAsStored(Object[] stored, Object[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null && !Objects.equals(stored[i], values[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Lookup values of the rows that may already exist.
+	private static Set<Object> lookupValues(Map<String, Object[]> rows, BloomFilter knownKeys) {
+		Set<Object> values = new LinkedHashSet<>();
+		rows.forEach((key, row) -> {
+			if (knownKeys == null || knownKeys.mightContain(key)) {
+				values.add(row[0]);
+			}
+		});
+		return values;
+	}
+
+	// Existing rows by natural key.  If the table already holds duplicates of
+	// a key, the oldest (lowest id) one is used.
+	private Map<String, Existing> find(JdbcTemplate jdbcTemplate, Collection<?> lookupValues) {
+		Map<String, Existing> existing = new HashMap<>(lookupValues.size() * 2);
+		List<Object> chunk = new ArrayList<>(CHUNK_SIZE);
+		for (Object value : lookupValues) {
+			chunk.add(value);
+			if (chunk.size() == CHUNK_SIZE) {
+				findChunk(jdbcTemplate, chunk, existing);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			findChunk(jdbcTemplate, chunk, existing);
+		}
+		return existing;
+	}
+
+	private void findChunk(JdbcTemplate jdbcTemplate, List<Object> lookupValues, Map<String, Existing> existing) {
+		String sql = "SELECT id, " + String.join(", ", columns) + " FROM " + table
+				+ " WHERE " + columns.get(0) + " IN (" + String.join(", ", Collections.nCopies(lookupValues.size(), "?"))
+				+ ") ORDER BY id";
+		jdbcTemplate.query(sql, resultSet -> {
+			Object[] values = new Object[columns.size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = resultSet.getObject(i + 2);
+			}
+			existing.putIfAbsent(keyOf.apply(values), new Existing(resultSet.getLong(1), values));
+		}, lookupValues.toArray());
+	}
+
+	// Ids for new rows, from the sequence Hibernate uses for @GeneratedValue.
+	private static List<Long> nextIds(JdbcTemplate jdbcTemplate, int count) {
+		if (count == 0) {
+			return Collections.emptyList();
+		}
+		return jdbcTemplate.queryForList("SELECT NEXT VALUE FOR hibernate_sequence FROM SYSTEM_RANGE(1, ?)",
+				Long.class, count);
+	}
+
+	// -----------------------------------------------
+	// Helper classes
+	// -----------------------------------------------
+
+	private static final class Existing {
+		final long id;
+		final Object[] values;
+
+		Existing(long id, Object[] values) {
+			this.id = id;
+			this.values = values;
+		}
+	}
+
+}  // end class NaturalKeyTable
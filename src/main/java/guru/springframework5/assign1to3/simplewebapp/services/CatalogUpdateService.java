@@ -0,0 +1,205 @@
+// ***************************************************************************
+// Class:  CatalogUpdateService
+//
+// Read-modify-write updates of a single Book, Author or Publisher that
+// survive concurrent editors.
+//
+// The entities are @Version'ed, so when two transactions change the same row
+// the one that commits second fails (Hibernate's "UPDATE ... WHERE version =
+// ?" matches no row) instead of silently overwriting the first.  This
+// service then runs the whole read-modify-write again in a new transaction,
+// on the fresh row, after a short random back-off so the editors that
+// collided do not collide again straight away:
+//
+//    delay = random(0, min(maxDelay, initialDelay * 2^(attempt - 1)))
+//
+// Any ConcurrencyFailureException (optimistic conflict or a row lock that
+// timed out) is retried, up to maxAttempts; then the last one is thrown.
+//
+// Reads and changes take no locks.  Only the commit - Hibernate's flush and
+// the COMMIT - of updates to the same row is serialized, by a striped lock
+// taken after the change function ran.  This works around H2 1.4.200
+// (MVStore), where an UPDATE that waits for another transaction's
+// uncommitted UPDATE of the same row can corrupt a secondary index on a
+// changed column (e.g. idx_book_title: "Row not found when trying to delete
+// from index"), after which every update of that row times out.  With the
+// lock, the second UPDATE runs once the first has committed and fails its
+// version check straight away.  Editors that do not come through this
+// service (e.g. the forms) are not covered; drop the lock with an H2 release
+// that fixes the bug.
+//
+// The change function may run several times, so it must only modify the
+// entity it is given.  Must not be called inside a transaction - retrying
+// within one would reuse the stale persistence context.
+//
+// Settings (application.properties):
+//    app.update.max-attempts, app.update.backoff.initial-ms,
+//    app.update.backoff.max-ms
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityNotFoundException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.Author;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.domain.Publisher;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IAuthorRepository;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IBookRepository;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IPublisherRepository;
+
+@Service
+public class CatalogUpdateService {
+
+	private static final int COMMIT_LOCK_STRIPES = 64;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final IBookRepository bookRepository;
+	private final IAuthorRepository authorRepository;
+	private final IPublisherRepository publisherRepository;
+	private final TransactionTemplate transaction;
+
+	private final int maxAttempts;
+	private final long initialDelayMillis;
+	private final long maxDelayMillis;
+
+	// Statistics
+	private final LongAdder updates = new LongAdder();     // Successful updates
+	private final LongAdder conflicts = new LongAdder();   // Attempts that hit a conflict
+	private final LongAdder failures = new LongAdder();    // Updates that gave up
+
+	// Serializes the commits of updates to one row (see the header), by type and id.
+	private final ReentrantLock[] commitLocks = new ReentrantLock[COMMIT_LOCK_STRIPES];
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public CatalogUpdateService(IBookRepository bookRepository, IAuthorRepository authorRepository,
+	                            IPublisherRepository publisherRepository, PlatformTransactionManager transactionManager,
+	                            @Value("${app.update.max-attempts:10}") int maxAttempts,
+	                            @Value("${app.update.backoff.initial-ms:5}") long initialDelayMillis,
+	                            @Value("${app.update.backoff.max-ms:200}") long maxDelayMillis) {
+		this.bookRepository = bookRepository;
+		this.authorRepository = authorRepository;
+		this.publisherRepository = publisherRepository;
+		this.transaction = new TransactionTemplate(transactionManager);
+		this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.initialDelayMillis = Math.max(1, initialDelayMillis);
+		this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+		for (int i = 0; i < commitLocks.length; i++) {
+			commitLocks[i] = new ReentrantLock();
+		}
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * Loads the book, applies change and commits, retrying on conflicts.
+	 *
+	 * @return the book as committed
+	 * @throws EntityNotFoundException     if there is no such book
+	 * @throws ConcurrencyFailureException if every attempt conflicted
+	 */
+	public Book updateBook(Long bookId, Consumer<Book> change) {
+		return update(bookRepository, Book.class, bookId, change);
+	}
+
+	public Author updateAuthor(Long authorId, Consumer<Author> change) {
+		return update(authorRepository, Author.class, authorId, change);
+	}
+
+	public Publisher updatePublisher(Long publisherId, Consumer<Publisher> change) {
+		return update(publisherRepository, Publisher.class, publisherId, change);
+	}
+
+	public long getUpdates() {
+		return updates.sum();
+	}
+
+	public long getConflicts() {
+		return conflicts.sum();
+	}
+
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private <T> T update(CrudRepository<T, Long> repository, Class<T> type, Long id, Consumer<T> change) {
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new IllegalStateException("CatalogUpdateService must not be called inside a transaction");
+		}
+
+		ReentrantLock commitLock = commitLocks[Math.floorMod(31 * type.hashCode() + id.hashCode(), commitLocks.length)];
+		for (int attempt = 1; ; attempt++) {
+			try {
+				T updated;
+				try {
+					updated = transaction.execute(status -> {
+						T entity = repository.findById(id).orElseThrow(() ->
+								new EntityNotFoundException("No " + type.getSimpleName() + " with id " + id));
+						change.accept(entity);
+						commitLock.lock();   // Held through the flush and commit
+						return entity;
+					});
+				} finally {
+					if (commitLock.isHeldByCurrentThread()) {
+						commitLock.unlock();
+					}
+				}
+				updates.increment();
+				return updated;
+			} catch (ConcurrencyFailureException e) {
+				conflicts.increment();
+				if (attempt >= maxAttempts) {
+					failures.increment();
+					throw e;
+				}
+				backOff(attempt);
+			}
+		}
+	}  // end update()
+
+	private void backOff(int attempt) {
+		long ceiling = Math.min(maxDelayMillis, initialDelayMillis << Math.min(attempt - 1, 20));
+		try {
+			TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to retry", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogUpdateService{" +
+			   "updates=" + updates.sum() +
+			   ", conflicts=" + conflicts.sum() +
+			   ", failures=" + failures.sum() +
+			   "}";
+	}  // end toString()
+
+}  // end class CatalogUpdateService
@@ -0,0 +1,150 @@
+// ***************************************************************************
+// Class:  RenderMetrics
+//
+// Time spent rendering each view template, per template name.
+//
+// A HandlerInterceptor (registered in config.WebMvcConfig): postHandle runs
+// after the controller returned its view name and before the view renders,
+// afterCompletion after rendering, so the time between the two is the render
+// time of that template.  The controller's own work (queries) is not included.
+//
+// Counters are LongAdders, so concurrent requests do not contend on them.
+// Shown by GET /admin/render-metrics.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.views;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.view.UrlBasedViewResolver;
+
+@Component
+public class RenderMetrics implements HandlerInterceptor {
+
+	// Request attributes carrying the view name and start time from postHandle to afterCompletion.
+	private static final String TEMPLATE = RenderMetrics.class.getName() + ".template";
+	private static final String START = RenderMetrics.class.getName() + ".start";
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final ConcurrentMap<String, TemplateStats> templates = new ConcurrentHashMap<>();
+
+	// -----------------------------------------------
+	// HandlerInterceptor
+	// -----------------------------------------------
+
+	@Override
+	public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+	                       ModelAndView modelAndView) {
+		String template = (modelAndView == null) ? null : modelAndView.getViewName();
+		if (template == null || template.startsWith(UrlBasedViewResolver.REDIRECT_URL_PREFIX)
+				|| template.startsWith(UrlBasedViewResolver.FORWARD_URL_PREFIX)) {
+			return;   // Nothing rendered (REST response, redirect, forward)
+		}
+		request.setAttribute(TEMPLATE, template);
+		request.setAttribute(START, System.nanoTime());
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+	                            Exception ex) {
+		Object template = request.getAttribute(TEMPLATE);
+		if (template != null) {
+			long nanos = System.nanoTime() - (Long) request.getAttribute(START);
+			templates.computeIfAbsent((String) template, TemplateStats::new).record(nanos, ex == null);
+		}
+	}
+
+	// -----------------------------------------------
+	// Reading
+	// -----------------------------------------------
+
+	/**
+	 * @return statistics of every template rendered so far, by name.
+	 */
+	public List<TemplateStats> getTemplates() {
+		List<TemplateStats> result = new ArrayList<>(templates.values());
+		result.sort(Comparator.comparing(TemplateStats::getTemplate));
+		return result;
+	}
+
+	public boolean hasRendered(String template) {
+		return templates.containsKey(template);
+	}
+
+	// -----------------------------------------------
+	// Helper class
+	// -----------------------------------------------
+
+	/**
+	 * Render statistics of one template.  The first render is kept apart: it
+	 * is the one that parses the template (and is paid by the warmup).
+	 */
+	public static final class TemplateStats {
+		private final String template;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		private final AtomicLong firstNanos = new AtomicLong(-1);
+
+		TemplateStats(String template) {
+			this.template = template;
+		}
+
+		void record(long nanos, boolean ok) {
+			firstNanos.compareAndSet(-1, nanos);
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+			if (!ok) {
+				errors.increment();
+			}
+		}
+
+		public String getTemplate() {
+			return template;
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getErrors() {
+			return errors.sum();
+		}
+
+		public double getFirstMillis() {
+			return firstNanos.get() / 1e6;
+		}
+
+		public double getMeanMillis() {
+			long renders = count.sum();
+			return (renders == 0) ? 0 : totalNanos.sum() / 1e6 / renders;
+		}
+
+		public double getMaxMillis() {
+			return maxNanos.get() / 1e6;
+		}
+
+		@Override
+		public String toString() {
+			return template + ": " + getCount() + " renders, mean " + getMeanMillis() + " ms, first " + getFirstMillis() + " ms";
+		}
+	}
+
+}  // end class RenderMetrics
@@ -0,0 +1,140 @@
+// ***************************************************************************
+// Class:  TemplateWarmup
+//
+// Renders every page once at startup, so the first real visitor does not pay
+// for parsing the Thymeleaf templates (they are cached after the first use,
+// spring.thymeleaf.cache=true) or for the first pass through MVC, SpEL and the
+// list queries.
+//
+// Runs on ApplicationReadyEvent: the web server is up, and Spring Boot only
+// reports the application as ready (ReadinessState.ACCEPTING_TRAFFIC) after
+// the ApplicationReadyEvent listeners have returned.  Each page in
+// app.views.warmup.pages is requested once over HTTP with a small page size,
+// so it renders quickly whatever the catalog size.  Templates under
+// templates/ that no warmup page rendered are logged, so a new view does not
+// silently miss the warmup.
+//
+// Skipped when there is no web server (e.g. MockMvc tests) or with
+// app.views.warmup.enabled=false.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.views;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TemplateWarmup {
+
+	private static final Logger log = LoggerFactory.getLogger(TemplateWarmup.class);
+
+	private static final String TEMPLATES = "/templates/";
+	private static final String SUFFIX = ".html";
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final RenderMetrics renderMetrics;
+	private final ResourcePatternResolver resources;
+	private final boolean enabled;
+	private final String[] pages;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public TemplateWarmup(RenderMetrics renderMetrics, ResourcePatternResolver resources,
+	                      @Value("${app.views.warmup.enabled:true}") boolean enabled,
+	                      @Value("${app.views.warmup.pages:/books?size=1,/authors?size=1,/publishers?size=1}") String[] pages) {
+		this.renderMetrics = renderMetrics;
+		this.resources = resources;
+		this.enabled = enabled;
+		this.pages = pages;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady(ApplicationReadyEvent event) {
+		String port = event.getApplicationContext().getEnvironment().getProperty("local.server.port");
+		if (!enabled || port == null) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		for (String page : pages) {
+			try {
+				int status = get("http://localhost:" + port + page);
+				if (status != 200) {
+					log.warn("Template warmup: {} answered {}", page, status);
+				}
+			} catch (IOException e) {
+				log.warn("Template warmup: {} failed: {}", page, e.toString());
+			}
+		}
+		log.info("Template warmup: {} pages in {} ms - {}", pages.length, (System.nanoTime() - start) / 1_000_000,
+				renderMetrics.getTemplates());
+
+		List<String> missed = new ArrayList<>();
+		for (String template : templateNames()) {
+			if (!renderMetrics.hasRendered(template)) {
+				missed.add(template);
+			}
+		}
+		if (!missed.isEmpty()) {
+			log.warn("Template warmup: not rendered by any page in app.views.warmup.pages: {}", missed);
+		}
+	}  // end onApplicationReady()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static int get(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		try {
+			int status = connection.getResponseCode();
+			if (status == 200) {
+				try (InputStream body = connection.getInputStream()) {
+					body.transferTo(OutputStream.nullOutputStream());
+				}
+			}
+			return status;
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	// View names of the templates on the classpath, e.g. "books/list".
+	private List<String> templateNames() {
+		List<String> names = new ArrayList<>();
+		try {
+			for (Resource resource : resources.getResources("classpath*:templates/**/*" + SUFFIX)) {
+				String url = resource.getURL().toString();
+				int at = url.lastIndexOf(TEMPLATES);
+				if (at >= 0) {
+					names.add(url.substring(at + TEMPLATES.length(), url.length() - SUFFIX.length()));
+				}
+			}
+		} catch (IOException e) {
+			log.warn("Template warmup: could not list templates: {}", e.toString());
+		}
+		return names;
+	}
+
+}  // end class TemplateWarmup
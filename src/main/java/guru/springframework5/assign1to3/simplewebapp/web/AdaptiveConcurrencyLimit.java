@@ -0,0 +1,141 @@
+// ***************************************************************************
+// Class:  AdaptiveConcurrencyLimit
+//
+// How many requests of one endpoint may run at once, adjusted continuously
+// from their latency (gradient algorithm, as in Netflix's concurrency-limits
+// "Gradient2"):
+//
+//    shortRtt   average latency of the last ~10 requests
+//    longRtt    average latency of the last ~100 requests - the baseline
+//    gradient   longRtt * TOLERANCE / shortRtt, between 0.5 and 1
+//    limit      moves (SMOOTHING) toward  limit * gradient + sqrt(limit)
+//
+// While latency stays near the baseline the gradient is 1 and the limit
+// grows by about sqrt(limit) per adjustment; once requests queue up and
+// latency rises above TOLERANCE times the baseline it shrinks, down to
+// half per adjustment.  The limit only grows while it is actually used
+// (more than half in flight), so a quiet period does not inflate it.  When
+// the baseline has drifted far above current latency (after an overload) it
+// is pulled back down.
+//
+// Thread safe: admission is a CAS on the in-flight count, adjustment is
+// synchronized (once per completed request).
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class AdaptiveConcurrencyLimit {
+
+	// Latency may rise this much above the baseline before the limit shrinks.
+	static final double TOLERANCE = 1.5;
+
+	// Weight of the new value when adjusting the limit.
+	static final double SMOOTHING = 0.2;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final int minLimit;
+	private final int maxLimit;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	// Guarded by "this"; limit is volatile for lock-free reads in tryAcquire.
+	private volatile double limit;
+	private double shortRttNanos;
+	private double longRttNanos;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * @return true if the request may run (call release() when it is done),
+	 *         false if the limit is reached and it should be turned away.
+	 */
+	public boolean tryAcquire() {
+		int current;
+		do {
+			current = inFlight.get();
+			if (current >= (int) limit) {
+				rejected.increment();
+				return false;
+			}
+		} while (!inFlight.compareAndSet(current, current + 1));
+		accepted.increment();
+		return true;
+	}
+
+	/**
+	 * Ends a request admitted by tryAcquire() and adjusts the limit from its latency.
+	 */
+	public void release(long latencyNanos) {
+		int before = inFlight.getAndDecrement();
+		adjust(latencyNanos, before);
+	}
+
+	/**
+	 * @return suggested seconds before retrying a rejected request (at least 1).
+	 */
+	public synchronized int retryAfterSeconds() {
+		return (int) Math.max(1, Math.ceil(shortRttNanos / 1e9));
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("limit", (int) limit);
+		metrics.put("inFlight", inFlight.get());
+		metrics.put("accepted", accepted.sum());
+		metrics.put("rejected", rejected.sum());
+		synchronized (this) {
+			metrics.put("shortRttMillis", shortRttNanos / 1e6);
+			metrics.put("longRttMillis", longRttNanos / 1e6);
+		}
+		return metrics;
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private synchronized void adjust(long latencyNanos, int inFlightBefore) {
+		if (longRttNanos == 0) {
+			shortRttNanos = latencyNanos;
+			longRttNanos = latencyNanos;
+			return;
+		}
+		shortRttNanos = shortRttNanos * 0.9 + latencyNanos * 0.1;
+		longRttNanos = longRttNanos * 0.99 + latencyNanos * 0.01;
+
+		// Baseline far above current latency: an overload has passed.
+		if (longRttNanos > 2 * shortRttNanos) {
+			longRttNanos *= 0.95;
+		}
+
+		// Hardly used - latency says nothing about the limit.
+		if (inFlightBefore < limit / 2) {
+			return;
+		}
+
+		double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+		double target = limit * gradient + Math.sqrt(limit);
+		limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+	}
+
+}  // end class AdaptiveConcurrencyLimit
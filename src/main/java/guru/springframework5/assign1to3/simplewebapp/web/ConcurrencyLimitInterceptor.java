@@ -0,0 +1,120 @@
+// ***************************************************************************
+// Class:  ConcurrencyLimitInterceptor
+//
+// Load shedding for the expensive pages (app.concurrency-limit.paths): each
+// path gets its own AdaptiveConcurrencyLimit, acquired before the controller
+// method runs and released after the view has rendered.  A request over the
+// limit is answered at once with 503 and Retry-After - a short plain-text
+// body, no error page - instead of queueing for a thread, a connection and
+// heap until the server falls over.  So a slow /authors sheds /authors
+// requests without starving /books.
+//
+// Runs after web.RequestCoalescingFilter, so requests waiting for an
+// identical in-flight request do not take a place.
+//
+// Registered in config.WebMvcConfig.  Limits: GET /admin/concurrency-limits.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.web;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+@Component
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+	// Request attributes: the limit acquired and when.
+	private static final String LIMIT = ConcurrencyLimitInterceptor.class.getName() + ".limit";
+	private static final String START = ConcurrencyLimitInterceptor.class.getName() + ".start";
+
+	private static final byte[] OVERLOADED = "Overloaded - please retry later\n".getBytes(StandardCharsets.UTF_8);
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final String[] paths;
+	private final int initialLimit;
+	private final int minLimit;
+	private final int maxLimit;
+
+	private final ConcurrentMap<String, AdaptiveConcurrencyLimit> limits = new ConcurrentHashMap<>();
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public ConcurrencyLimitInterceptor(@Value("${app.concurrency-limit.paths:/books,/authors,/publishers}") String[] paths,
+	                                   @Value("${app.concurrency-limit.initial:20}") int initialLimit,
+	                                   @Value("${app.concurrency-limit.min:2}") int minLimit,
+	                                   @Value("${app.concurrency-limit.max:200}") int maxLimit) {
+		this.paths = paths;
+		this.initialLimit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+	}
+
+	/**
+	 * @return paths to register this interceptor for.
+	 */
+	public String[] getPaths() {
+		return paths;
+	}
+
+	// -----------------------------------------------
+	// HandlerInterceptor
+	// -----------------------------------------------
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws IOException {
+		AdaptiveConcurrencyLimit limit = limits.computeIfAbsent(request.getRequestURI(),
+				path -> new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit));
+		if (!limit.tryAcquire()) {
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			response.setHeader(HttpHeaders.RETRY_AFTER, Integer.toString(limit.retryAfterSeconds()));
+			response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+			response.setContentLength(OVERLOADED.length);
+			response.getOutputStream().write(OVERLOADED);
+			return false;
+		}
+		request.setAttribute(LIMIT, limit);
+		request.setAttribute(START, System.nanoTime());
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+	                            Exception ex) {
+		AdaptiveConcurrencyLimit limit = (AdaptiveConcurrencyLimit) request.getAttribute(LIMIT);
+		if (limit != null) {
+			request.removeAttribute(LIMIT);
+			limit.release(System.nanoTime() - (Long) request.getAttribute(START));
+		}
+	}
+
+	// -----------------------------------------------
+	// Metrics
+	// -----------------------------------------------
+
+	/**
+	 * @return current limit, in-flight, accepted, rejected and latencies, by path.
+	 */
+	public Map<String, Map<String, Object>> getMetrics() {
+		Map<String, Map<String, Object>> metrics = new TreeMap<>();
+		limits.forEach((path, limit) -> metrics.put(path, limit.getMetrics()));
+		return metrics;
+	}
+
+}  // end class ConcurrencyLimitInterceptor
@@ -0,0 +1,97 @@
+// ***************************************************************************
+// Class:  LoopbackOnlyInterceptor
+//
+// Keeps the operational and import endpoints (app.loopback-only.paths:
+// /admin/** - snapshots, file imports, Flight Recorder - and
+// /api/catalog/** - the upsert feed) to clients on this machine.  They
+// change state, start recordings or read files on the server, and have no
+// authentication of their own, so a request whose remote address is not a
+// loopback address (127.0.0.0/8, ::1) is answered with 403 before the
+// controller runs.
+//
+// The check is on request.getRemoteAddr().  Behind a reverse proxy on the
+// same host that is the proxy's address, so the proxy must not forward these
+// paths (or server.forward-headers-strategy must be set so Tomcat reports
+// the client's address instead).
+//
+// Registered in config.WebMvcConfig.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.web;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+@Component
+public class LoopbackOnlyInterceptor implements HandlerInterceptor {
+
+	private static final Logger log = LoggerFactory.getLogger(LoopbackOnlyInterceptor.class);
+
+	private static final byte[] FORBIDDEN = "Only available from the server itself\n".getBytes(StandardCharsets.UTF_8);
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final String[] paths;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public LoopbackOnlyInterceptor(@Value("${app.loopback-only.paths:/admin/**,/api/catalog/**}") String[] paths) {
+		this.paths = paths;
+	}
+
+	/**
+	 * @return paths to register this interceptor for.
+	 */
+	public String[] getPaths() {
+		return paths;
+	}
+
+	// -----------------------------------------------
+	// HandlerInterceptor
+	// -----------------------------------------------
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws IOException {
+		if (isLoopback(request.getRemoteAddr())) {
+			return true;
+		}
+		log.warn("Refused {} {} from {}", request.getMethod(), request.getRequestURI(), request.getRemoteAddr());
+		response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+		response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+		response.setContentLength(FORBIDDEN.length);
+		response.getOutputStream().write(FORBIDDEN);
+		return false;
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// The servlet container gives an IP literal, so no name lookup happens here.
+	private static boolean isLoopback(String remoteAddr) {
+		if (remoteAddr == null || remoteAddr.isEmpty()) {
+			return false;
+		}
+		try {
+			return InetAddress.getByName(remoteAddr).isLoopbackAddress();
+		} catch (UnknownHostException e) {
+			return false;
+		}
+	}
+
+}  // end class LoopbackOnlyInterceptor
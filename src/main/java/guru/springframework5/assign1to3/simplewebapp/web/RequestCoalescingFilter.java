@@ -0,0 +1,320 @@
+// ***************************************************************************
+// Class:  RequestCoalescingFilter
+//
+// Single-flight for the list pages (/books, /authors - app.coalescing.paths):
+// concurrent GETs for the same URL (path and query string) share one run of
+// the controller and the template.  The first request runs normally while
+// its response is captured; requests for the same URL that arrive while it
+// runs wait for it and are sent a copy of its page.
+//
+// With app.coalescing.cache-ttl-ms > 0 the page is also kept that long, and
+// later GETs of the URL are sent it without running anything - at the cost
+// of showing changes that much later (off by default: a save that redirects
+// to the list would not show up in it).  At most MAX_CACHED_PAGES URLs are
+// kept; past that, pages are only cached once expired ones have been dropped.
+//
+// The page is handed to the waiting requests before it is written to the
+// first request's connection, so a slow client of the first request does
+// not hold up the others.  A waiting request gives up after
+// app.coalescing.max-wait-ms and runs on its own ("timedOut").
+//
+// Only a complete 200 page is shared.  If the first request's answer is
+// anything else (bad sort parameter, error page, ...), the waiting requests
+// run on their own ("fallbacks"); if it fails with an exception, they fail
+// with the same exception.  Only the content type and language of the
+// page are copied to the waiting requests - never cookies or other headers
+// of the first request.
+//
+// Compression: the first request's response is compressed by the server
+// (server.compression) like any other.  For the waiting requests and cache
+// hits the page is gzipped once, on first need, and those bytes are kept
+// with it and go to every one that accepts gzip - Tomcat leaves a response
+// that already has a Content-Encoding alone - so N requests for a page cost
+// one compression, not N.  Same rules as server.compression: its MIME types
+// and minimum size, and only while it is enabled.
+//
+// Registered in config.WebMvcConfig.  Counters: GET /admin/coalescing.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.web.server.Compression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+public class RequestCoalescingFilter extends OncePerRequestFilter {
+
+	static final int MAX_CACHED_PAGES = 256;
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final SingleFlight<String, Page> pages;
+	private final LongAdder fallbacks = new LongAdder();
+	private final LongAdder gzipped = new LongAdder();
+
+	// Recent pages by URL (empty when cacheTtlNanos is 0).
+	private final long cacheTtlNanos;
+	private final ConcurrentMap<String, Page> cache = new ConcurrentHashMap<>();
+	private final LongAdder cacheHits = new LongAdder();
+
+	// server.compression
+	private final Compression compression;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public RequestCoalescingFilter(Compression compression, long maxWaitMillis, long cacheTtlMillis) {
+		this.compression = compression;
+		this.pages = new SingleFlight<>(maxWaitMillis, TimeUnit.MILLISECONDS);
+		this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, cacheTtlMillis));
+	}
+
+	// -----------------------------------------------
+	// Filter
+	// -----------------------------------------------
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		if (!"GET".equals(request.getMethod())) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		String url = request.getRequestURI() + ((request.getQueryString() == null) ? "" : "?" + request.getQueryString());
+		Page cached = cachedPage(url);
+		if (cached != null) {
+			cacheHits.increment();
+			send(cached, request, response);
+			return;
+		}
+
+		ContentCachingResponseWrapper[] ranHere = { null };
+		Page page;
+		try {
+			page = pages.run(url, () -> {
+				ranHere[0] = new ContentCachingResponseWrapper(response);
+				return runAndCapture(request, ranHere[0], chain);
+			});
+		} catch (IOException | ServletException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ServletException(e);
+		}
+
+		if (ranHere[0] != null) {
+			if (page != null) {
+				cache(url, page);
+			}
+			ranHere[0].copyBodyToResponse();   // Only now, the waiting requests have their page
+			return;
+		}
+		if (page == null) {
+			fallbacks.increment();
+			chain.doFilter(request, response);
+			return;
+		}
+		send(page, request, response);
+	}  // end doFilterInternal()
+
+	// -----------------------------------------------
+	// Metrics
+	// -----------------------------------------------
+
+	/**
+	 * @return executed: requests that ran the controller (including
+	 *         fallbacks); coalesced: requests sent another request's page;
+	 *         fallbacks: requests that waited but had to run on their own;
+	 *         timedOut: requests that gave up waiting and ran on their own;
+	 *         cacheHits: requests sent a cached page without running;
+	 *         gzipped: coalesced requests and cache hits sent the
+	 *         precompressed page;
+	 *         inFlight: URLs being computed right now;
+	 *         cachedPages: URLs with a page in the cache (fresh or not).
+	 */
+	public Map<String, Long> getMetrics() {
+		Map<String, Long> metrics = new LinkedHashMap<>();
+		long fallbackCount = fallbacks.sum();
+		metrics.put("executed", pages.getExecuted() + fallbackCount);
+		metrics.put("coalesced", pages.getShared() - fallbackCount);
+		metrics.put("fallbacks", fallbackCount);
+		metrics.put("timedOut", pages.getTimedOut());
+		metrics.put("cacheHits", cacheHits.sum());
+		metrics.put("gzipped", gzipped.sum());
+		metrics.put("inFlight", (long) pages.getInFlight());
+		metrics.put("cachedPages", (long) cache.size());
+		return metrics;
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private void send(Page page, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (page.isCompressible() && acceptsGzip(request)) {
+			gzipped.increment();
+			page.writeGzippedTo(response);
+		} else {
+			page.writeTo(response);
+		}
+	}
+
+	// The cached page of the URL, if it is still fresh.
+	private Page cachedPage(String url) {
+		if (cacheTtlNanos == 0) {
+			return null;
+		}
+		Page page = cache.get(url);
+		return (page != null && System.nanoTime() - page.capturedAt < cacheTtlNanos) ? page : null;
+	}
+
+	private void cache(String url, Page page) {
+		if (cacheTtlNanos == 0) {
+			return;
+		}
+		if (cache.size() >= MAX_CACHED_PAGES && !cache.containsKey(url)) {
+			long now = System.nanoTime();
+			cache.values().removeIf(cached -> now - cached.capturedAt >= cacheTtlNanos);
+			if (cache.size() >= MAX_CACHED_PAGES) {
+				return;
+			}
+		}
+		cache.put(url, page);
+	}
+
+	// Runs the request into "capture" and returns a copy of the page if it is
+	// one worth sharing (null otherwise).  The caller copies the captured body
+	// to the response.
+	private Page runAndCapture(HttpServletRequest request, ContentCachingResponseWrapper capture, FilterChain chain)
+			throws IOException, ServletException {
+		chain.doFilter(request, capture);
+		Page page = null;
+		if (capture.getStatus() == HttpServletResponse.SC_OK && !request.isAsyncStarted()) {
+			byte[] body = capture.getContentAsByteArray();
+			boolean compressible = compression.getEnabled() && body.length >= compression.getMinResponseSize().toBytes()
+					&& isCompressibleType(capture.getContentType());
+			page = new Page(capture.getContentType(), capture.getHeader(HttpHeaders.CONTENT_LANGUAGE), body,
+			                compressible);
+		}
+		return page;
+	}
+
+	private boolean isCompressibleType(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		MimeType type = MimeTypeUtils.parseMimeType(contentType);
+		for (String compressibleType : compression.getMimeTypes()) {
+			if (MimeTypeUtils.parseMimeType(compressibleType).isCompatibleWith(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Accept-Encoding lists gzip (or *) without q=0.
+	private static boolean acceptsGzip(HttpServletRequest request) {
+		for (String header : Collections.list(request.getHeaders(HttpHeaders.ACCEPT_ENCODING))) {
+			for (String coding : header.split(",")) {
+				String[] parts = coding.trim().split(";");
+				String name = parts[0].trim();
+				if (("gzip".equalsIgnoreCase(name) || "*".equals(name))
+						&& Arrays.stream(parts).skip(1).map(String::trim).noneMatch(p -> p.matches("q=0(\\.0*)?"))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// -----------------------------------------------
+	// Helper class - a rendered page.
+	// -----------------------------------------------
+
+	private static final class Page {
+		private final String contentType;
+		private final String contentLanguage;
+		private final byte[] body;
+		private final boolean compressible;
+		private final long capturedAt = System.nanoTime();
+		private volatile byte[] gzippedBody;   // Made by the first request that wants it
+
+		Page(String contentType, String contentLanguage, byte[] body, boolean compressible) {
+			this.contentType = contentType;
+			this.contentLanguage = contentLanguage;
+			this.body = body;
+			this.compressible = compressible;
+		}
+
+		boolean isCompressible() {
+			return compressible;
+		}
+
+		void writeTo(HttpServletResponse response) throws IOException {
+			writeHeaders(response);
+			if (compressible) {
+				response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			}
+			response.setContentLength(body.length);
+			response.getOutputStream().write(body);
+		}
+
+		void writeGzippedTo(HttpServletResponse response) throws IOException {
+			byte[] gzipped = gzipped();
+			writeHeaders(response);
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			response.setContentLength(gzipped.length);
+			response.getOutputStream().write(gzipped);
+		}
+
+		private void writeHeaders(HttpServletResponse response) {
+			response.setStatus(HttpServletResponse.SC_OK);
+			if (contentType != null) {
+				response.setContentType(contentType);
+			}
+			if (contentLanguage != null) {
+				response.setHeader(HttpHeaders.CONTENT_LANGUAGE, contentLanguage);
+			}
+		}
+
+		private byte[] gzipped() throws IOException {
+			byte[] gzipped = gzippedBody;
+			if (gzipped == null) {
+				synchronized (this) {
+					gzipped = gzippedBody;
+					if (gzipped == null) {
+						ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+						try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+							gzip.write(body);
+						}
+						gzippedBody = gzipped = out.toByteArray();
+					}
+				}
+			}
+			return gzipped;
+		}
+	}
+
+}  // end class RequestCoalescingFilter
@@ -0,0 +1,113 @@
+// ***************************************************************************
+// Class:  SingleFlight
+//
+// Runs at most one call per key at a time: a caller that asks for a key
+// while another caller's call for it is still running does not start its
+// own, it waits for that call and gets the same result (or exception).
+// Nothing is cached - once the call has returned, the next caller starts a
+// new one.
+//
+// A caller waits at most maxWait for another caller's call; then it stops
+// waiting and runs the call itself (not shared), so one stuck call does not
+// hold every caller of its key.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.web;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class SingleFlight<K, V> {
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder executed = new LongAdder();
+	private final LongAdder shared = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+
+	private final long maxWaitNanos;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public SingleFlight(long maxWait, TimeUnit unit) {
+		this.maxWaitNanos = unit.toNanos(maxWait);
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * @return result of "call" - run by this thread, or by the thread already
+	 *         running it for the same key (unless that takes over maxWait).
+	 */
+	public V run(K key, Callable<V> call) throws Exception {
+		CompletableFuture<V> mine = new CompletableFuture<>();
+		CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+		if (running != null) {
+			try {
+				V result = running.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+				shared.increment();
+				return result;
+			} catch (ExecutionException e) {
+				shared.increment();
+				throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+			} catch (TimeoutException e) {
+				timedOut.increment();
+				executed.increment();
+				return call.call();
+			}
+		}
+
+		executed.increment();
+		try {
+			V result = call.call();
+			mine.complete(result);
+			return result;
+		} catch (Exception | Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, mine);
+		}
+	}  // end run()
+
+	/**
+	 * @return calls actually run.
+	 */
+	public long getExecuted() {
+		return executed.sum();
+	}
+
+	/**
+	 * @return callers that got the result of another caller's call.
+	 */
+	public long getShared() {
+		return shared.sum();
+	}
+
+	/**
+	 * @return callers that gave up waiting and ran the call themselves
+	 *         (included in getExecuted()).
+	 */
+	public long getTimedOut() {
+		return timedOut.sum();
+	}
+
+	/**
+	 * @return keys with a call running now.
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+}  // end class SingleFlight
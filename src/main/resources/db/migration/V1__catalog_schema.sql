@@ -0,0 +1,62 @@
+-- ***************************************************************************
+-- V1 - Catalog schema as Hibernate auto-DDL created it before migrations were
+-- introduced: publisher, book, author, the author_book association, the
+-- catalog_change outbox and their id sequences, with the natural-key indexes
+-- used by imports.
+-- ***************************************************************************
+
+create sequence hibernate_sequence start with 1 increment by 1;
+create sequence catalog_change_seq start with 1 increment by 1;
+
+create table publisher (
+	id            bigint not null,
+	version       bigint,
+	name          varchar(255),
+	address_line1 varchar(255),
+	city          varchar(255),
+	state         varchar(255),
+	zip           varchar(255),
+	primary key (id)
+);
+
+create table book (
+	id           bigint not null,
+	version      bigint,
+	isbn         varchar(255),
+	title        varchar(255),
+	publisher_id bigint,
+	primary key (id)
+);
+
+create table author (
+	id         bigint not null,
+	version    bigint,
+	first_name varchar(255),
+	last_name  varchar(255),
+	name_key   varchar(255),
+	primary key (id)
+);
+
+create table author_book (
+	book_id   bigint not null,
+	author_id bigint not null,
+	primary key (book_id, author_id)
+);
+
+create table catalog_change (
+	id          bigint not null,
+	entity_type varchar(255),
+	entity_id   bigint,
+	change_type varchar(255),
+	changed_at  timestamp,
+	primary key (id)
+);
+
+alter table book add constraint fk_book_publisher foreign key (publisher_id) references publisher;
+alter table author_book add constraint fk_author_book_book foreign key (book_id) references book;
+alter table author_book add constraint fk_author_book_author foreign key (author_id) references author;
+
+-- Natural keys (imports.CatalogUpsertService)
+create index idx_publisher_name_zip on publisher (name, zip);
+create index idx_book_isbn on book (isbn);
+create index idx_author_name_key on author (name_key);
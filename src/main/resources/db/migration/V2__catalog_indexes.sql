@@ -0,0 +1,14 @@
+-- ***************************************************************************
+-- V2 - Indexes for the list pages and lookups, declared here rather than left
+-- to whatever the database does for foreign keys:
+--    book.publisher_id              books of a publisher, publisher counts
+--    author (last_name, first_name) authors sorted by name
+--    author_book (author_id, ...)   books of an author - the primary key
+--                                   (book_id, author_id) only serves book -> authors
+--    book.title                     books sorted by title
+-- ***************************************************************************
+
+create index idx_book_publisher on book (publisher_id);
+create index idx_author_last_first on author (last_name, first_name);
+create index idx_author_book_author on author_book (author_id, book_id);
+create index idx_book_title on book (title);
@@ -0,0 +1,11 @@
+-- ***************************************************************************
+-- V3 - View counts per book (popularity.BookViewCounter).  Counted in memory
+-- and added here in periodic batches; no foreign key, so a batch does not
+-- fail over a book deleted in the meantime.
+-- ***************************************************************************
+
+create table book_view (
+	book_id bigint not null,
+	views   bigint not null,
+	primary key (book_id)
+);
@@ -0,0 +1,21 @@
+-- ***************************************************************************
+-- V4 - Natural keys of the import feed (imports.CatalogUpsertService) become
+-- unique, so a key can no longer be stored twice:
+--    book.isbn_key          ISBN with only its digits and check character X,
+--                           upper case (domain.Book.isbnKey()); book.isbn
+--                           keeps the hyphens it was entered with
+--    author.name_key        (domain.Author.nameKey())
+--    publisher (name, zip)
+-- Fails on a database that already holds duplicates of a key; those rows
+-- must be merged before migrating.
+-- ***************************************************************************
+
+alter table book add column isbn_key varchar(255);
+update book set isbn_key = nullif(upper(regexp_replace(isbn, '[^0-9Xx]', '')), '');
+create unique index idx_book_isbn_key on book (isbn_key);
+
+drop index idx_author_name_key;
+create unique index idx_author_name_key on author (name_key);
+
+drop index idx_publisher_name_zip;
+create unique index idx_publisher_name_zip on publisher (name, zip);
@@ -0,0 +1,21 @@
+-- ***************************************************************************
+-- V5 - catalog_change rows are numbered in commit order instead of by a
+-- sequence (see changefeed.CatalogOutboxWriter).
+--
+-- catalog_change_counter has one row, holding the last number handed out.  A
+-- transaction takes the next numbers with SELECT ... FOR UPDATE and keeps the
+-- row locked until it commits or rolls back.  A transaction that commits
+-- later therefore always gets higher numbers, and numbers from a rollback
+-- are handed out again, so the feed has no gaps to wait for.
+-- ***************************************************************************
+
+create table catalog_change_counter (
+	id      int    not null,
+	last_id bigint not null,
+	primary key (id)
+);
+
+insert into catalog_change_counter (id, last_id)
+	select 1, coalesce(max(id), 0) from catalog_change;
+
+drop sequence catalog_change_seq;
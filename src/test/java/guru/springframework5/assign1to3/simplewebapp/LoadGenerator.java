@@ -0,0 +1,164 @@
+// ***************************************************************************
+// Class:  LoadGenerator
+//
+// Open-model HTTP load generator: requests are sent at a fixed arrival rate
+// whether or not earlier ones have been answered - like independent users,
+// unlike a fixed number of threads that each wait for their response (a
+// closed model, which slows down with the server and hides its queueing).
+//
+// Request i is due at start + i / rate.  One thread sends each request when
+// it is due (asynchronously, java.net.http.HttpClient) and its latency is
+// measured from when it was DUE, not when it was sent, so a stall of the
+// generator or the server shows up in the percentiles instead of being
+// silently skipped ("coordinated omission").  Latencies of 2xx responses
+// go into an HdrHistogram (microseconds, 3 significant digits); anything
+// else counts as an error.  Requests due during the warmup are sent but
+// not recorded.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+public final class LoadGenerator {
+
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+	// -----------------------------------------------
+	// Attributes
+	// -----------------------------------------------
+
+	private final HttpClient client = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(REQUEST_TIMEOUT)
+			.build();
+	private final double ratePerSecond;
+
+	// -----------------------------------------------
+	// Constructor
+	// -----------------------------------------------
+	public LoadGenerator(double ratePerSecond) {
+		this.ratePerSecond = ratePerSecond;
+	}
+
+	// -----------------------------------------------
+	// Methods
+	// -----------------------------------------------
+
+	/**
+	 * Sends requests at the arrival rate for warmup + duration, then waits
+	 * for the outstanding responses.
+	 *
+	 * @param uris URI of request number i
+	 * @return latencies and counts of the requests due after the warmup.
+	 */
+	public Result run(LongFunction<URI> uris, Duration warmup, Duration duration) {
+		Histogram latencies = new ConcurrentHistogram(3);   // Resizes as needed
+		LongAdder errors = new LongAdder();
+		LongAccumulator lastAnswer = new LongAccumulator(Math::max, Long.MIN_VALUE);
+		List<CompletableFuture<?>> outstanding = new ArrayList<>();
+
+		double intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+		long requests = (long) ((warmup.getSeconds() + duration.getSeconds()) * ratePerSecond);
+		long warmupRequests = (long) (warmup.getSeconds() * ratePerSecond);
+		long start = System.nanoTime();
+
+		for (long i = 0; i < requests; i++) {
+			long due = start + (long) (i * intervalNanos);
+			long wait;
+			while ((wait = due - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+
+			boolean recorded = (i >= warmupRequests);
+			HttpRequest request = HttpRequest.newBuilder(uris.apply(i)).timeout(REQUEST_TIMEOUT).GET().build();
+			CompletableFuture<?> response = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+					.whenComplete((answer, failure) -> {
+						if (!recorded) {
+							return;
+						}
+						lastAnswer.accumulate(System.nanoTime());
+						if (failure == null && answer.statusCode() / 100 == 2) {
+							latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+						} else {
+							errors.increment();
+						}
+					});
+			outstanding.add(response);
+			if (outstanding.size() >= 1000) {
+				outstanding.removeIf(CompletableFuture::isDone);
+			}
+		}
+
+		for (CompletableFuture<?> response : outstanding) {
+			try {
+				response.join();
+			} catch (RuntimeException e) {
+				// Counted in whenComplete
+			}
+		}
+		// Measured from the first recorded request being due to the last answer.
+		long measureStart = start + (long) (warmupRequests * intervalNanos);
+		double seconds = Math.max(1, lastAnswer.get() - measureStart) / 1e9;
+		return new Result(latencies, errors.sum(), seconds);
+	}  // end run()
+
+	// -----------------------------------------------
+	// Helper class - outcome of one run.
+	// -----------------------------------------------
+
+	public static final class Result {
+		private final Histogram latencies;
+		private final long errors;
+		private final double seconds;
+
+		Result(Histogram latencies, long errors, double seconds) {
+			this.latencies = latencies;
+			this.errors = errors;
+			this.seconds = seconds;
+		}
+
+		public long getOk() {
+			return latencies.getTotalCount();
+		}
+
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return 2xx responses per second, from the first recorded request
+		 *         being due to the last answer - below the arrival rate when
+		 *         the server could not keep up.
+		 */
+		public double getThroughput() {
+			return getOk() / seconds;
+		}
+
+		/**
+		 * @return latency percentile (e.g. 99.9) in milliseconds.
+		 */
+		public double percentileMillis(double percentile) {
+			return latencies.getValueAtPercentile(percentile) / 1000.0;
+		}
+
+		public double maxMillis() {
+			return latencies.getMaxValue() / 1000.0;
+		}
+	}
+
+}  // end class LoadGenerator
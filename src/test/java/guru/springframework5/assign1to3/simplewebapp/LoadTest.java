@@ -0,0 +1,158 @@
+package guru.springframework5.assign1to3.simplewebapp;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+
+/**
+ * Load test of the list pages (tag "load" - only run by "mvn test -Pload-test").
+ *
+ * Starts the application on a random port with app.bootstrap.books generated
+ * books, then sends each page's requests at a fixed arrival rate (see
+ * LoadGenerator) and reports throughput and p50 / p99 / p99.9 latency.  Each
+ * request asks for another 20-book page, so the runs measure the pages
+ * rather than request coalescing.
+ *
+ * Fails when a page could not keep up with the arrival rate (throughput
+ * under 95% of it), answered more than 1% of requests with an error, or got
+ * slower than the baseline (benchmarks/load-baseline.properties): p50 or p99
+ * above baseline * (1 + load.tolerance) + 2 ms.  p99.9 is reported but not
+ * checked - on a shared machine it is mostly noise.  The baseline is only
+ * compared when it was measured with the same catalog size and rate;
+ * -Dload.update-baseline=true writes this run's numbers to it instead.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+                properties = { "app.bootstrap.books=${load.books:5000}", "app.book-views.flush-interval-ms=600000" })
+class LoadTest {
+
+	private static final String BASELINE = "benchmarks/load-baseline.properties";
+	private static final String[] PAGES = { "/books", "/authors" };
+	private static final int PAGE_SIZE = 20;
+	private static final double SLACK_MILLIS = 2;
+
+	private final int books = Integer.getInteger("load.books", 5000);
+	private final double rate = Double.parseDouble(System.getProperty("load.rate", "50"));
+	private final Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 10));
+	private final Duration duration = Duration.ofSeconds(Long.getLong("load.seconds", 30));
+	private final double tolerance = Double.parseDouble(System.getProperty("load.tolerance", "0.5"));
+
+	@LocalServerPort
+	private int port;
+
+	@Test
+	void listPagesHoldTheirLatencyAtTheArrivalRate() throws IOException {
+		Properties baseline = loadBaseline();
+		boolean comparable = String.valueOf(books).equals(baseline.getProperty("catalog.books"))
+				&& String.valueOf(rate).equals(baseline.getProperty("arrival.rate"));
+
+		Map<String, String> measured = new LinkedHashMap<>();
+		List<String> failures = new ArrayList<>();
+		System.out.printf("%nLoad test: %d books, %.0f requests/s, %ds (after %ds warmup)%n",
+				books, rate, duration.getSeconds(), warmup.getSeconds());
+		System.out.printf("%-10s %10s %8s %8s %8s %8s %8s %8s%n",
+				"page", "req/s", "ok", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+
+		for (String page : PAGES) {
+			LoadGenerator.Result result = new LoadGenerator(rate).run(
+					i -> URI.create("http://localhost:" + port + page + "?size=" + PAGE_SIZE + "&page=" + (i % 50)),
+					warmup, duration);
+			System.out.printf("%-10s %10.1f %8d %8d %8.2f %8.2f %8.2f %8.2f%n", page, result.getThroughput(),
+					result.getOk(), result.getErrors(), result.percentileMillis(50), result.percentileMillis(99),
+					result.percentileMillis(99.9), result.maxMillis());
+
+			String key = page.substring(1);
+			measured.put(key + ".throughput", format(result.getThroughput()));
+			measured.put(key + ".p50-ms", format(result.percentileMillis(50)));
+			measured.put(key + ".p99-ms", format(result.percentileMillis(99)));
+			measured.put(key + ".p999-ms", format(result.percentileMillis(99.9)));
+
+			if (result.getThroughput() < rate * 0.95) {
+				failures.add(page + ": " + format(result.getThroughput()) + " requests/s, arrival rate " + rate);
+			}
+			if (result.getErrors() > (result.getOk() + result.getErrors()) / 100) {
+				failures.add(page + ": " + result.getErrors() + " errors");
+			}
+			if (comparable) {
+				checkLatency(page, "p50", result.percentileMillis(50), baseline.getProperty(key + ".p50-ms"), failures);
+				checkLatency(page, "p99", result.percentileMillis(99), baseline.getProperty(key + ".p99-ms"), failures);
+			}
+		}
+
+		if (Boolean.getBoolean("load.update-baseline")) {
+			writeBaseline(measured);
+		} else if (!comparable) {
+			System.out.println("Baseline not compared: it was measured with another catalog size or rate");
+		}
+		assertTrue(failures.isEmpty(), "Load test regressions: " + failures);
+	}  // end listPagesHoldTheirLatencyAtTheArrivalRate()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private void checkLatency(String page, String percentile, double millis, String baselineMillis,
+	                          List<String> failures) {
+		if (baselineMillis == null) {
+			return;
+		}
+		double limit = Double.parseDouble(baselineMillis) * (1 + tolerance) + SLACK_MILLIS;
+		if (millis > limit) {
+			failures.add(page + ": " + percentile + " " + format(millis) + " ms, baseline " + baselineMillis
+					+ " ms (limit " + format(limit) + " ms)");
+		}
+	}
+
+	private static Properties loadBaseline() throws IOException {
+		Properties baseline = new Properties();
+		try (InputStream in = LoadTest.class.getClassLoader().getResourceAsStream(BASELINE)) {
+			if (in != null) {
+				baseline.load(in);
+			}
+		}
+		return baseline;
+	}
+
+	// Into the source tree (surefire sets "basedir"), to be committed.
+	private void writeBaseline(Map<String, String> measured) throws IOException {
+		Path file = Paths.get(System.getProperty("basedir", "."), "src/test/resources", BASELINE);
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write("# LoadTest baseline (mvn test -Pload-test -Dload.update-baseline=true).\n");
+			out.write("# Only compared with runs of the same catalog size and arrival rate.\n");
+			out.write("# Measured on " + Runtime.getRuntime().availableProcessors() + " CPU(s), JDK "
+					+ System.getProperty("java.specification.version")
+					+ ", " + duration.getSeconds() + "s after " + warmup.getSeconds() + "s warmup.\n");
+			out.write("catalog.books=" + books + "\n");
+			out.write("arrival.rate=" + rate + "\n");
+			for (Map.Entry<String, String> entry : measured.entrySet()) {
+				out.write(entry.getKey() + "=" + entry.getValue() + "\n");
+			}
+		}
+		System.out.println("Baseline written to " + file.toAbsolutePath());
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.2f", value);
+	}
+
+}  // end class LoadTest
@@ -0,0 +1,97 @@
+// ***************************************************************************
+// Class:  StartupBenchmark
+//
+// Manual benchmark (not run by "mvn test") of cold start: launches the given
+// java command line several times and measures, for each run, the time from
+// process start to the first 200 from /books.  Prints every run plus the
+// median and best; the numbers measured for each configuration are kept in
+// src/test/resources/benchmarks/startup-baseline.txt.
+//
+// The port is passed to the application as --server.port.  E.g.:
+//    mvn -q package -DskipTests
+//    java -cp target/test-classes guru.springframework5.assign1to3.simplewebapp.StartupBenchmark \
+//         5 -- java -jar target/simplewebapp-0.0.1-SNAPSHOT.jar
+// and with the fast-startup build (see pom.xml, profile fast-startup):
+//    mvn -q package -DskipTests -Pfast-startup
+//    java -cp target/test-classes guru.springframework5.assign1to3.simplewebapp.StartupBenchmark \
+//         5 -- java -XX:SharedArchiveFile=target/app-cds.jsa -jar target/simplewebapp-0.0.1-SNAPSHOT.jar
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class StartupBenchmark {
+
+	private static final int PORT = 18080;
+	private static final long GIVE_UP_MILLIS = 120_000;
+
+	public static void main(String[] args) throws Exception {
+		int separator = Arrays.asList(args).indexOf("--");
+		if (separator != 1) {
+			System.err.println("usage: StartupBenchmark <runs> -- <command to start the application>");
+			System.exit(2);
+		}
+		int runs = Integer.parseInt(args[0]);
+		List<String> command = new ArrayList<>(Arrays.asList(args).subList(separator + 1, args.length));
+		command.add("--server.port=" + PORT);
+
+		long[] millis = new long[runs];
+		for (int run = 0; run < runs; run++) {
+			millis[run] = timeToFirstPage(command);
+			System.out.println("run " + (run + 1) + ": " + millis[run] + " ms");
+		}
+		Arrays.sort(millis);
+		System.out.println("time to first /books: median " + millis[runs / 2] + " ms, best " + millis[0]
+				+ " ms (" + runs + " runs) - " + String.join(" ", command));
+	}  // end main()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Starts the application, polls /books until it answers 200, stops it.
+	private static long timeToFirstPage(List<String> command) throws Exception {
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command).redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+		try {
+			while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(GIVE_UP_MILLIS)) {
+				if (!process.isAlive()) {
+					throw new IllegalStateException("Application exited with " + process.exitValue());
+				}
+				if (booksStatus() == 200) {
+					return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				}
+				Thread.sleep(10);
+			}
+			throw new IllegalStateException("No /books page after " + GIVE_UP_MILLIS + " ms");
+		} finally {
+			process.destroy();
+			if (!process.waitFor(30, TimeUnit.SECONDS)) {
+				process.destroyForcibly().waitFor();
+			}
+		}
+	}
+
+	private static int booksStatus() {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/books").openConnection();
+			connection.setConnectTimeout(1000);
+			connection.setReadTimeout(30_000);
+			try {
+				return connection.getResponseCode();
+			} finally {
+				connection.disconnect();
+			}
+		} catch (IOException notUpYet) {
+			return -1;
+		}
+	}
+
+}  // end class StartupBenchmark
@@ -0,0 +1,111 @@
+package guru.springframework5.assign1to3.simplewebapp.changefeed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.config.ReplicaSynchronizer;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChange;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent.ChangeType;
+
+/**
+ * A writer that stays open for seconds while a later writer commits: a
+ * consumer reading the feed all the while must get both changes, the slow
+ * one first.
+ */
+@SpringBootTest
+class CatalogChangeFeedTest {
+
+	private static final long SLOW_BOOK = 900_001;
+	private static final long FAST_BOOK = 900_002;
+	private static final long HOLD_MILLIS = 3000;
+
+	@Autowired
+	private CatalogChangeFeed changeFeed;
+
+	@Autowired
+	private CatalogOutboxWriter outboxWriter;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private ReplicaSynchronizer replicaSynchronizer;
+
+	@Test
+	void slowWriterIsNotSkipped() throws Exception {
+		long position = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM catalog_change", Long.class);
+		ExecutorService writers = Executors.newFixedThreadPool(2);
+		CountDownLatch slowWritten = new CountDownLatch(1);
+		try {
+			Future<?> slow = writers.submit(() -> write(SLOW_BOOK, () -> {
+				slowWritten.countDown();
+				sleep(HOLD_MILLIS);
+			}));
+			assertTrue(slowWritten.await(10, TimeUnit.SECONDS));
+			Future<?> fast = writers.submit(() -> write(FAST_BOOK, () -> { }));
+
+			// Read the feed the whole time, as a consumer would.
+			List<Long> seen = new ArrayList<>();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+			while (!(slow.isDone() && fast.isDone()) || !seen.contains(FAST_BOOK)) {
+				assertTrue(System.nanoTime() < deadline, "feed still lacks changes, saw " + seen);
+				replicaSynchronizer.copy();
+				for (CatalogChange change : changeFeed.changesAfter(position, CatalogChangeFeed.MAX_BATCH)) {
+					if (change.getEntityId() == SLOW_BOOK || change.getEntityId() == FAST_BOOK) {
+						seen.add(change.getEntityId());
+					}
+					position = change.getId();
+				}
+				TimeUnit.MILLISECONDS.sleep(100);
+			}
+			slow.get();
+			fast.get();
+
+			assertEquals(Arrays.asList(SLOW_BOOK, FAST_BOOK), seen);
+		} finally {
+			writers.shutdownNow();
+		}
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Writes a change for the book, then runs "beforeCommit" in the same transaction.
+	private void write(long bookId, Runnable beforeCommit) {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			outboxWriter.onCatalogChange(new CatalogChangeEvent(Book.class, bookId, ChangeType.UPDATED));
+			beforeCommit.run();
+		});
+	}
+
+	private static void sleep(long millis) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package guru.springframework5.assign1to3.simplewebapp.changefeed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.config.ReplicaSynchronizer;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChange;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent;
+import guru.springframework5.assign1to3.simplewebapp.domain.CatalogChangeEvent.ChangeType;
+
+/**
+ * Prunes the outbox up to a cutoff, then reads the feed from before and
+ * after the pruned range.
+ */
+@SpringBootTest
+class CatalogOutboxPrunerTest {
+
+	@Autowired
+	private CatalogOutboxPruner pruner;
+
+	@Autowired
+	private CatalogOutboxWriter outboxWriter;
+
+	@Autowired
+	private CatalogChangeFeed changeFeed;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private ReplicaSynchronizer replicaSynchronizer;
+
+	@Test
+	void consumerBehindThePrunedRowsMustResync() throws Exception {
+		long old = insertChange();
+		TimeUnit.MILLISECONDS.sleep(50);
+		Instant cutoff = Instant.now();
+		TimeUnit.MILLISECONDS.sleep(50);
+		long kept = insertChange();
+
+		assertTrue(pruner.prune(cutoff) > 0);
+		assertEquals(old, changeFeed.getPrunedThrough());
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM catalog_change WHERE id <= ?", Integer.class, old));
+		replicaSynchronizer.copy();
+
+		// Caught up to the pruned rows: the feed goes on.
+		List<CatalogChange> changes = changeFeed.changesAfter(old, 10);
+		assertEquals(kept, changes.get(0).getId().longValue());
+
+		// Behind them: 410, and where to continue after reloading.
+		ChangesPrunedException gone = assertThrows(ChangesPrunedException.class, () -> changeFeed.changesAfter(old - 1, 10));
+		assertEquals(HttpStatus.GONE, gone.getStatus());
+		assertTrue(gone.getResyncAfter() >= kept);
+		assertEquals(Long.toString(gone.getResyncAfter()),
+				gone.getResponseHeaders().getFirst(ChangesPrunedException.RESYNC_AFTER_HEADER));
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private long insertChange() {
+		return new TransactionTemplate(transactionManager).execute(status -> {
+			outboxWriter.onCatalogChange(new CatalogChangeEvent(Book.class, 1L, ChangeType.UPDATED));
+			return jdbcTemplate.queryForObject("SELECT MAX(id) FROM catalog_change", Long.class);
+		});
+	}
+
+}
@@ -0,0 +1,90 @@
+package guru.springframework5.assign1to3.simplewebapp.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Copies between two private H2 in-memory databases - no Spring context.
+ */
+class ReplicaSynchronizerTest {
+
+	private SingleConnectionDataSource primary;
+	private SingleConnectionDataSource replica;
+	private SingleConnectionDataSource copySource;
+	private ReplicaSynchronizer synchronizer;
+
+	@BeforeEach
+	void createDatabases() {
+		String name = "replica-test-" + System.nanoTime();
+		// Each database lives as long as its connection.
+		primary = new SingleConnectionDataSource("jdbc:h2:mem:" + name, "sa", "", true);
+		copySource = new SingleConnectionDataSource("jdbc:h2:mem:" + name, "sa", "", true);
+		replica = new SingleConnectionDataSource("jdbc:h2:mem:" + name + "-replica", "sa", "", true);
+		synchronizer = new ReplicaSynchronizer(primary, replica, copySource);
+
+		new JdbcTemplate(primary).execute("CREATE TABLE book (id BIGINT PRIMARY KEY, title VARCHAR(100))");
+		new JdbcTemplate(primary).execute("CREATE TABLE book_view (book_id BIGINT PRIMARY KEY, views BIGINT)");
+		new JdbcTemplate(primary).update("INSERT INTO book VALUES (1, 'Domain Driven Design')");
+		synchronizer.copy();
+	}
+
+	@AfterEach
+	void closeDatabases() throws Exception {
+		synchronizer.close();
+		copySource.destroy();
+		primary.destroy();
+		replica.destroy();
+	}
+
+	@Test
+	void firstCopyCreatesSchemaAndRows() {
+		assertEquals("Domain Driven Design",
+				new JdbcTemplate(replica).queryForObject("SELECT title FROM book WHERE id = 1", String.class));
+	}
+
+	@Test
+	void onlyChangedTablesAreCopied() {
+		// A row only the replica has: it survives as long as "book" is not copied again.
+		new JdbcTemplate(replica).update("INSERT INTO book VALUES (99, 'Replica only')");
+
+		new JdbcTemplate(primary).update("INSERT INTO book_view VALUES (1, 5)");
+		synchronizer.copy();
+
+		JdbcTemplate read = new JdbcTemplate(replica);
+		assertEquals(5L, read.queryForObject("SELECT views FROM book_view WHERE book_id = 1", Long.class));
+		assertEquals(2, read.queryForObject("SELECT COUNT(*) FROM book", Integer.class));
+
+		new JdbcTemplate(primary).update("UPDATE book SET title = 'J2EE Development without EJB' WHERE id = 1");
+		synchronizer.copy();
+
+		assertEquals(1, read.queryForObject("SELECT COUNT(*) FROM book", Integer.class));
+		assertEquals("J2EE Development without EJB",
+				read.queryForObject("SELECT title FROM book WHERE id = 1", String.class));
+	}
+
+	@Test
+	void schemaChangeRecreatesReplica() {
+		new JdbcTemplate(primary).execute("CREATE TABLE publisher (id BIGINT PRIMARY KEY, name VARCHAR(100))");
+		new JdbcTemplate(primary).update("INSERT INTO publisher VALUES (1, 'SFG Publishing')");
+		synchronizer.copy();
+
+		assertEquals("SFG Publishing",
+				new JdbcTemplate(replica).queryForObject("SELECT name FROM publisher", String.class));
+	}
+
+	@Test
+	void whenReplicatedRunsAtOnceWithNothingPending() {
+		AtomicBoolean ran = new AtomicBoolean();
+		synchronizer.whenReplicated(() -> ran.set(true));
+		assertTrue(ran.get());
+	}
+
+}
@@ -0,0 +1,38 @@
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Without the read model the book list offers only the sorts the database
+ * can serve from an index - not "author".
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BookSortTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void authorSortNeedsTheReadModel() throws Exception {
+		mockMvc.perform(get("/books").param("sort", "author")).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void authorSortIsNotOffered() throws Exception {
+		mockMvc.perform(get("/books").param("sort", "title").param("size", "5"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(not(containsString("Sort by author"))));
+	}
+
+}
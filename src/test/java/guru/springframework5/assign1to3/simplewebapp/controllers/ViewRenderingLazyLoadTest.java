@@ -0,0 +1,109 @@
+package guru.springframework5.assign1to3.simplewebapp.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEventListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Fails if rendering a page makes Hibernate load anything.
+ *
+ * Open-in-view is off, so the controllers must load everything a template
+ * shows inside their own transaction (see ViewTransactions).  Between
+ * postHandle and afterCompletion - i.e. while the view renders - every entity
+ * load or collection initialization is recorded; a page passes only if it
+ * renders (200) with none.  The read model is off so the pages come from the
+ * database path.
+ */
+@SpringBootTest(properties = "app.read-model.enabled=false")
+@AutoConfigureMockMvc
+class ViewRenderingLazyLoadTest {
+
+	private static final ThreadLocal<String> rendering = new ThreadLocal<>();
+	private static final List<String> loadsWhileRendering = new CopyOnWriteArrayList<>();
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void clearLoads() {
+		loadsWhileRendering.clear();
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"/books", "/books?sort=publisher&size=5", "/authors", "/authors?sort=lastName&size=1",
+							"/publishers", "/books/popular"})
+	void pageRendersWithoutLazyLoading(String url) throws Exception {
+		MvcResult result = mockMvc.perform(get(url)).andReturn();
+
+		assertEquals(200, result.getResponse().getStatus(), url);
+		assertTrue(loadsWhileRendering.isEmpty(), () -> url + " loaded while rendering: " + loadsWhileRendering);
+	}
+
+	// -----------------------------------------------
+	// Helper class - marks rendering and records Hibernate loads during it.
+	// -----------------------------------------------
+
+	@TestConfiguration
+	static class RenderingGuard implements WebMvcConfigurer {
+
+		RenderingGuard(EntityManagerFactory entityManagerFactory) {
+			EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+					.getServiceRegistry().getService(EventListenerRegistry.class);
+			listeners.appendListeners(EventType.INIT_COLLECTION, (InitializeCollectionEventListener) event ->
+					record("collection " + event.getCollection().getRole()));
+			listeners.appendListeners(EventType.LOAD, (LoadEventListener) (event, type) ->
+					record("entity " + event.getEntityClassName() + "#" + event.getEntityId()));
+		}
+
+		@Override
+		public void addInterceptors(InterceptorRegistry registry) {
+			registry.addInterceptor(new HandlerInterceptor() {
+				@Override
+				public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+									   ModelAndView modelAndView) {
+					rendering.set(request.getRequestURI());
+				}
+
+				@Override
+				public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+											Exception ex) {
+					rendering.remove();
+				}
+			});
+		}
+
+		private static void record(String load) {
+			String page = rendering.get();
+			if (page != null) {
+				loadsWhileRendering.add(page + ": " + load);
+			}
+		}
+	}
+
+}  // end class ViewRenderingLazyLoadTest
@@ -0,0 +1,106 @@
+// ***************************************************************************
+// Class:  FlushBenchmark
+//
+// Manual benchmark (not run by "mvn test") of Hibernate's flush cost with a
+// large persistence context: N books are loaded into one EntityManager, then
+// flush() is timed with nothing changed and with 1% of the titles changed.
+//
+// Without bytecode enhancement every flush compares each loaded book with its
+// load-time snapshot; with it (pom.xml, profile hibernate-enhance) the setters
+// record what changed and a flush only visits the dirty books.  Build and run
+// once each way, e.g.:
+//    mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+//    java -Xmx2g -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+//         guru.springframework5.assign1to3.simplewebapp.domain.FlushBenchmark 200000
+//    mvn -q clean test-compile -Dhibernate.enhance.skip
+//    (same java command again)
+// The first line of output says whether the classes were enhanced.
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.SimplewebappApplication;
+
+public class FlushBenchmark {
+
+	private static final int FLUSHES = 20;
+
+	public static void main(String[] args) {
+		int books = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+		System.out.println("enhanced=" + SelfDirtinessTracker.class.isAssignableFrom(Book.class) + " books=" + books);
+
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SimplewebappApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("app.read-model.enabled=false", "logging.level.root=WARN")
+				.run()) {
+			insertBooks(context.getBean(JdbcTemplate.class), books);
+
+			EntityManager entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+			try {
+				entityManager.getTransaction().begin();
+				long start = System.nanoTime();
+				List<Book> loaded = entityManager.createQuery("select b from Book b", Book.class).getResultList();
+				report("load", loaded.size(), System.nanoTime() - start);
+
+				// Nothing changed - pure dirty-checking cost.
+				start = System.nanoTime();
+				for (int i = 0; i < FLUSHES; i++) {
+					entityManager.flush();
+				}
+				report("flush, 0 changed", FLUSHES, System.nanoTime() - start);
+
+				// 1% of the books changed before each flush.
+				int changed = Math.max(1, loaded.size() / 100);
+				int step = Math.max(1, loaded.size() / changed);
+				long nanos = 0;
+				for (int i = 0; i < FLUSHES; i++) {
+					for (int b = i % step; b < loaded.size(); b += step) {
+						Book book = loaded.get(b);
+						book.setTitle(book.getTitle() + "'");
+					}
+					start = System.nanoTime();
+					entityManager.flush();
+					nanos += System.nanoTime() - start;
+				}
+				report("flush, " + changed + " changed", FLUSHES, nanos);
+			} finally {
+				entityManager.getTransaction().rollback();
+				entityManager.close();
+			}
+		}
+	}  // end main()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Straight JDBC, so the setup goes around Hibernate (and its event listeners).
+	private static void insertBooks(JdbcTemplate jdbcTemplate, int books) {
+		List<Object[]> rows = new ArrayList<>();
+		for (int b = 0; b < books; b++) {
+			rows.add(new Object[] {"Flush Benchmark " + b, String.format("flush-%010d", b)});
+			if (rows.size() == 10_000 || b == books - 1) {
+				jdbcTemplate.batchUpdate("INSERT INTO book (id, version, title, isbn) "
+						+ "VALUES (NEXT VALUE FOR hibernate_sequence, 0, ?, ?)", rows);
+				rows.clear();
+			}
+		}
+	}
+
+	private static void report(String what, int count, long nanos) {
+		System.out.println(what + ": " + count + " in " + nanos / 1_000_000 + " ms ("
+				+ nanos / 1_000 / Math.max(1, count) + " us each)");
+	}
+
+}  // end class FlushBenchmark
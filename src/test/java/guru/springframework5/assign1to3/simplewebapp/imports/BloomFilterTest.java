@@ -0,0 +1,54 @@
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * No false negatives, and false positives at about the rate the filter was
+ * sized for.
+ */
+class BloomFilterTest {
+
+	private static final int ENTRIES = 100_000;
+	private static final int OTHERS = 200_000;
+
+	@Test
+	void falsePositiveRateAsSized() {
+		for (double rate : new double[] { 0.01, 0.001 }) {
+			BloomFilter filter = BloomFilter.create(ENTRIES, rate);
+			for (int i = 0; i < ENTRIES; i++) {
+				filter.put(isbn(i));
+			}
+
+			for (int i = 0; i < ENTRIES; i++) {
+				assertTrue(filter.mightContain(isbn(i)), isbn(i) + " was put");
+			}
+			int falsePositives = 0;
+			for (int i = ENTRIES; i < ENTRIES + OTHERS; i++) {
+				if (filter.mightContain(isbn(i))) {
+					falsePositives++;
+				}
+			}
+			double measured = (double) falsePositives / OTHERS;
+			assertTrue(measured < 1.5 * rate, "false-positive rate " + measured + " for " + rate + ": " + filter);
+		}
+	}
+
+	@Test
+	void rateMustBeBetweenZeroAndOne() {
+		assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(10, 0));
+		assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(10, 1));
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Keys that look like the natural keys imports check: consecutive ISBN-13s.
+	private static String isbn(int i) {
+		return String.format("978%010d", i);
+	}
+
+}
@@ -0,0 +1,76 @@
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.imports.UpsertResult.Outcome;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IBookRepository;
+
+/**
+ * A book saved through JPA with a hyphenated ISBN is found again by imports
+ * that send the same ISBN written differently.
+ */
+@SpringBootTest
+class CatalogUpsertServiceTest {
+
+	private static final String HYPHENATED = "0-321-12521-5";
+
+	@Autowired
+	private CatalogUpsertService upsertService;
+
+	@Autowired
+	private IBookRepository bookRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final List<Long> bookIds = new ArrayList<>();
+
+	@AfterEach
+	void deleteBooks() {
+		bookIds.forEach(bookRepository::deleteById);
+	}
+
+	@Test
+	void hyphenatedIsbnIsTheSameBook() {
+		Book saved = bookRepository.save(new Book("Domain Driven Design", HYPHENATED));
+		bookIds.add(saved.getId());
+		assertEquals("0321125215", saved.getIsbnKey());
+
+		// Same ISBN, same title: nothing to do.
+		UpsertResult same = upsertBook(HYPHENATED, "Domain Driven Design", KnownKeys.NONE);
+		assertEquals(Outcome.UNCHANGED, same.getOutcome());
+		assertEquals(saved.getId(), same.getId());
+
+		// Written without hyphens, and found through the Bloom filter imports use.
+		BloomFilter isbns = BloomFilter.create(10, 0.01);
+		isbns.put(BookRecord.normalizeIsbn(HYPHENATED));
+		UpsertResult plain = upsertBook(" 0321125215", "Domain-Driven Design", new KnownKeys(isbns, null));
+		assertEquals(Outcome.UPDATED, plain.getOutcome());
+		assertEquals(saved.getId(), plain.getId());
+
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book WHERE isbn_key = '0321125215'", Integer.class));
+		assertEquals("0321125215", jdbcTemplate.queryForObject("SELECT isbn FROM book WHERE id = ?", String.class, saved.getId()));
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private UpsertResult upsertBook(String isbn, String title, KnownKeys knownKeys) {
+		CatalogUpsertRequest request = new CatalogUpsertRequest();
+		request.setBooks(Arrays.asList(new BookRecord(isbn, title, null, null, null)));
+		return upsertService.upsert(request, knownKeys).getBooks().get(0);
+	}
+
+}
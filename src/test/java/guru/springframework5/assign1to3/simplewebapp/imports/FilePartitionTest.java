@@ -0,0 +1,99 @@
+package guru.springframework5.assign1to3.simplewebapp.imports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Every line must be read exactly once, by the partition its first byte is
+ * in, wherever the partition boundaries fall.
+ */
+class FilePartitionTest {
+
+	// Lines of different lengths, a blank line, multi-byte UTF-8, and no
+	// newline after the last one.
+	private static final String CONTENT = "{\"isbn\":\"1\"}\n"
+			+ "x\n"
+			+ "\n"
+			+ "{\"title\":\"Müller – Straße\"}\n"
+			+ "{\"isbn\":\"0-321-12521-5\",\"title\":\"Domain Driven Design\"}\n"
+			+ "last";
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void everyLineOnceForAnyPartitionCount() throws IOException {
+		Path file = write(CONTENT);
+		Map<Long, String> expected = lines(file, FilePartition.split(Files.size(file), 1));
+		assertEquals(Arrays.asList("{\"isbn\":\"1\"}", "x", "{\"title\":\"Müller – Straße\"}",
+				"{\"isbn\":\"0-321-12521-5\",\"title\":\"Domain Driven Design\"}", "last"),
+				new ArrayList<>(expected.values()));
+
+		// Up to one partition per byte, so boundaries fall on every position:
+		// inside lines, on newlines and right after them, inside a multi-byte character.
+		for (int count = 2; count <= Files.size(file); count++) {
+			assertEquals(expected, lines(file, FilePartition.split(Files.size(file), count)), count + " partitions");
+		}
+	}
+
+	@Test
+	void lineStartingAtBoundaryBelongsToLaterPartition() throws IOException {
+		Path file = write("aaaa\nbbbb\ncccc\n");
+		List<String> first = new ArrayList<>();
+		List<String> second = new ArrayList<>();
+
+		new FilePartition(0, 5).forEachLine(file, (offset, line) -> first.add(line));
+		new FilePartition(5, 15).forEachLine(file, (offset, line) -> second.add(line));
+
+		assertEquals(Arrays.asList("aaaa"), first);
+		assertEquals(Arrays.asList("bbbb", "cccc"), second);
+	}
+
+	@Test
+	void lineCrossingTheEndIsFinishedByItsPartition() throws IOException {
+		Path file = write("aaaa\nbbbb\ncccc\n");
+		List<Long> offsets = new ArrayList<>();
+		List<String> lines = new ArrayList<>();
+
+		new FilePartition(3, 7).forEachLine(file, (offset, line) -> {
+			offsets.add(offset);
+			lines.add(line);
+		});
+
+		assertEquals(Arrays.asList("bbbb"), lines);
+		assertEquals(Arrays.asList(5L), offsets);
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private Path write(String content) throws IOException {
+		return Files.write(directory.resolve("catalog.jsonl"), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// All lines read by the partitions, by offset; fails on a line read twice.
+	private static Map<Long, String> lines(Path file, List<FilePartition> partitions) throws IOException {
+		Map<Long, String> lines = new TreeMap<>();
+		for (FilePartition partition : partitions) {
+			partition.forEachLine(file, (offset, line) -> {
+				String old = lines.put(offset, line);
+				assertEquals(null, old, "line at " + offset + " read twice, last by " + partition);
+			});
+		}
+		return lines;
+	}
+
+}
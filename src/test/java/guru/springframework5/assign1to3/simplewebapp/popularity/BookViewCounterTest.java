@@ -0,0 +1,124 @@
+package guru.springframework5.assign1to3.simplewebapp.popularity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Counts views against a private H2 in-memory database - no Spring context.
+ * Ranks every few milliseconds; flushes only when shut down.
+ */
+class BookViewCounterTest {
+
+	private static final int TOP_SIZE = 3;
+
+	private SingleConnectionDataSource keepAlive;
+	private DriverManagerDataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void createDatabase() {
+		String url = "jdbc:h2:mem:views-test-" + System.nanoTime();
+		// The database lives as long as this connection; the counter opens its own.
+		keepAlive = new SingleConnectionDataSource(url, "sa", "", true);
+		dataSource = new DriverManagerDataSource(url, "sa", "");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		new JdbcTemplate(keepAlive).execute("CREATE TABLE book_view (book_id BIGINT NOT NULL, views BIGINT NOT NULL, PRIMARY KEY (book_id))");
+	}
+
+	@AfterEach
+	void dropDatabase() {
+		keepAlive.destroy();
+	}
+
+	@Test
+	void rankingFollowsTheViews() throws InterruptedException {
+		BookViewCounter counter = start();
+		record(counter, 1, 5);
+		record(counter, 2, 3);
+		record(counter, 3, 3);
+		record(counter, 4, 1);
+		awaitTop(counter, "1=5, 2=3, 3=3");   // Ties by book id
+
+		// Book 4 overtakes; book 1 stays ranked without new views.
+		record(counter, 4, 10);
+		awaitTop(counter, "4=11, 1=5, 2=3");
+		counter.shutdown();
+	}
+
+	@Test
+	void flushAddsOnlyTheNewViews() throws InterruptedException {
+		jdbcTemplate.update("INSERT INTO book_view VALUES (1, 100)");
+
+		BookViewCounter counter = start();
+		await(() -> counter.views(1) == 100);   // Loaded
+		record(counter, 1, 2);
+		record(counter, 2, 7);
+		assertEquals(9L, counter.getMetrics().get("unflushed"));
+		counter.shutdown();
+
+		assertEquals(102L, storedViews(1));
+		assertEquals(7L, storedViews(2));
+
+		// Loaded again and flushed again: each view is counted once.
+		BookViewCounter restarted = start();
+		await(() -> restarted.views(1) == 102);
+		record(restarted, 2, 1);
+		assertEquals(1L, restarted.getMetrics().get("unflushed"));
+		restarted.shutdown();
+
+		assertEquals(102L, storedViews(1));
+		assertEquals(8L, storedViews(2));
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private BookViewCounter start() {
+		BookViewCounter counter = new BookViewCounter(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+				TimeUnit.HOURS.toMillis(1), 5, TOP_SIZE);
+		counter.start();
+		return counter;
+	}
+
+	private static void record(BookViewCounter counter, long bookId, int views) {
+		for (int i = 0; i < views; i++) {
+			counter.record(bookId);
+		}
+	}
+
+	private long storedViews(long bookId) {
+		return jdbcTemplate.queryForObject("SELECT views FROM book_view WHERE book_id = ?", Long.class, bookId);
+	}
+
+	private static void awaitTop(BookViewCounter counter, String expected) throws InterruptedException {
+		await(() -> describe(counter.getTop()).equals(expected));
+		assertEquals(expected, describe(counter.getTop()));
+	}
+
+	private static String describe(List<BookViews> top) {
+		return top.stream().map(views -> views.getBookId() + "=" + views.getViews()).collect(Collectors.joining(", "));
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean(), "timed out");
+	}
+
+}
@@ -0,0 +1,170 @@
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.Author;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.domain.Publisher;
+
+/**
+ * CatalogColumns.patch() must give the same rows as building the patched
+ * catalog from scratch.
+ */
+class CatalogColumnsTest {
+
+	@Test
+	void patchEqualsRebuild() {
+		Catalog catalog = new Catalog();
+		CatalogColumns columns = catalog.build(false);
+
+		// Change a title, add a book (with an existing and a new author),
+		// delete a book, rename an author and move a book to another publisher.
+		catalog.book(2).setTitle("Domain Driven Design, 2nd Edition");
+		Author rod = catalog.author(20);
+		Author kent = catalog.addAuthor(25, "Kent", "Beck");
+		Book added = catalog.addBook(5, "Extreme Programming Explained", "0201616416", catalog.publisher(100));
+		link(rod, added);
+		link(kent, added);
+		Book deleted = catalog.book(3);
+		catalog.books.remove(deleted);
+		deleted.getAuthors().forEach(author -> author.getBooks().remove(deleted));
+		catalog.author(10).setLastName("Evans-Smith");
+		catalog.book(1).setPublisher(catalog.publisher(200));
+
+		CatalogPatch patch = new CatalogPatch();
+		patch.putBook(2, "Domain Driven Design, 2nd Edition", "123123", 100L);
+		patch.putBook(5, "Extreme Programming Explained", "0201616416", 100L);
+		patch.putBook(1, "J2EE Development without EJB", "3939459459", 200L);
+		patch.removeBook(3);
+		patch.putAuthor(25, "Kent", "Beck");
+		patch.putAuthor(10, "Eric", "Evans-Smith");
+		patch.replaceLinks(setOf(5L, 3L), setOf(25L));
+		patch.addLink(20, 5);
+		patch.addLink(25, 5);
+
+		CatalogColumns patched = columns.patch(patch);
+		assertEquals(describe(catalog.build(false)), describe(patched));
+		assertEquals(describe(catalog.build(true)), describe(catalog.build(true).patch(new CatalogPatch())));
+	}
+
+	@Test
+	void unchangedRowsKeepTheirStringCodes() {
+		CatalogColumns columns = new Catalog().build(false);
+		CatalogPatch patch = new CatalogPatch();
+		patch.putBook(4, "Refactoring", "0201485672", null);
+
+		CatalogColumns patched = columns.patch(patch);
+		assertSame(columns.bookTitles()[0], patched.bookTitles()[0]);
+		assertEquals("Refactoring", patched.bookTitle(patched.bookOrdinal(4)));
+		assertEquals(CatalogColumns.NO_PUBLISHER, patched.bookPublisher(patched.bookOrdinal(4)));
+		assertEquals(2, ((PatchedStringDictionary) patched.strings()).addedCount());   // Title and ISBN
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static Set<Long> setOf(Long... ids) {
+		return new HashSet<>(Arrays.asList(ids));
+	}
+
+	private static void link(Author author, Book book) {
+		author.getBooks().add(book);
+		book.getAuthors().add(author);
+	}
+
+	// Every row with its values, by id.
+	static String describe(CatalogColumns columns) {
+		StringBuilder out = new StringBuilder();
+		for (int p = 0; p < columns.publisherCount(); p++) {
+			out.append("publisher ").append(columns.publisherId(p)).append(' ').append(columns.publisherName(p)).append('\n');
+		}
+		for (int b = 0; b < columns.bookCount(); b++) {
+			int p = columns.bookPublisher(b);
+			out.append("book ").append(columns.bookId(b)).append(' ').append(columns.bookTitle(b))
+					.append(' ').append(columns.bookIsbn(b))
+					.append(" publisher ").append((p == CatalogColumns.NO_PUBLISHER) ? "-" : columns.publisherId(p)).append('\n');
+		}
+		for (int a = 0; a < columns.authorCount(); a++) {
+			List<Long> books = new ArrayList<>();
+			for (int i = columns.authorBooksFrom(a); i < columns.authorBooksTo(a); i++) {
+				books.add(columns.bookId(columns.authorBookTargets()[i]));
+			}
+			out.append("author ").append(columns.authorId(a)).append(' ').append(columns.authorFirstName(a))
+					.append(' ').append(columns.authorLastName(a)).append(" books ").append(books).append('\n');
+		}
+		return out.toString();
+	}
+
+	// -----------------------------------------------
+	// Helper class - a small catalog of entities with ids.
+	// -----------------------------------------------
+
+	static final class Catalog {
+		final List<Publisher> publishers = new ArrayList<>();
+		final List<Book> books = new ArrayList<>();
+		final List<Author> authors = new ArrayList<>();
+
+		Catalog() {
+			Publisher sfg = addPublisher(100, "SFG Publishing");
+			Publisher wrox = addPublisher(200, "Wrox");
+			Author eric = addAuthor(10, "Eric", "Evans");
+			Author rod = addAuthor(20, "Rod", "Johnson");
+			Book noEjb = addBook(1, "J2EE Development without EJB", "3939459459", wrox);
+			Book ddd = addBook(2, "Domain Driven Design", "123123", sfg);
+			Book spring = addBook(3, "Spring in Practice", "555", sfg);
+			link(rod, noEjb);
+			link(eric, ddd);
+			link(rod, spring);
+			link(eric, spring);
+		}
+
+		Publisher addPublisher(long id, String name) {
+			Publisher publisher = new Publisher(name, "1 Main Street", "St Petersburg", "FL", "33701");
+			publisher.setId(id);
+			publishers.add(publisher);
+			return publisher;
+		}
+
+		Author addAuthor(long id, String firstName, String lastName) {
+			Author author = new Author(firstName, lastName);
+			author.setId(id);
+			authors.add(author);
+			return author;
+		}
+
+		Book addBook(long id, String title, String isbn, Publisher publisher) {
+			Book book = new Book(title, isbn);
+			book.setId(id);
+			book.setPublisher(publisher);
+			books.add(book);
+			return book;
+		}
+
+		Publisher publisher(long id) {
+			return publishers.stream().filter(p -> p.getId() == id).findFirst().get();
+		}
+
+		Book book(long id) {
+			return books.stream().filter(b -> b.getId() == id).findFirst().get();
+		}
+
+		Author author(long id) {
+			return authors.stream().filter(a -> a.getId() == id).findFirst().get();
+		}
+
+		CatalogColumns build(boolean offHeapStrings) {
+			return CatalogColumns.build(publishers, books, authors, offHeapStrings);
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import guru.springframework5.assign1to3.simplewebapp.readmodel.CatalogColumnsTest.Catalog;
+
+/**
+ * A snapshot must load back to the same rows it was written from, and a
+ * file in another format or of another database state must be ignored
+ * rather than misread.
+ */
+class CatalogSnapshotTest {
+
+	private static final long LAST_CHANGE = 42;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void roundTrip() throws IOException {
+		Catalog catalog = new Catalog();
+		catalog.addBook(4, "Refactoring", null, null);   // No ISBN, no publisher
+		catalog.addAuthor(30, "Jürgen", "Höller");       // No books, multi-byte names
+
+		for (boolean offHeapStrings : new boolean[] { false, true }) {
+			CatalogColumns columns = catalog.build(offHeapStrings);
+			Path file = directory.resolve("catalog-" + offHeapStrings + ".snapshot");
+			CatalogSnapshot.write(columns, LAST_CHANGE, file);
+
+			assertEquals(CatalogColumnsTest.describe(columns), CatalogColumnsTest.describe(CatalogSnapshot.read(file, LAST_CHANGE)));
+		}
+	}
+
+	@Test
+	void fileStartsWithTheHeader() throws IOException {
+		Catalog catalog = new Catalog();
+		Path file = directory.resolve("catalog.snapshot");
+		long before = System.currentTimeMillis();
+		CatalogSnapshot.write(catalog.build(false), LAST_CHANGE, file);
+
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+			assertEquals(CatalogSnapshot.MAGIC, in.readInt());
+			assertEquals(CatalogSnapshot.FORMAT_VERSION, in.readInt());
+			long writtenAt = in.readLong();
+			assertTrue(writtenAt >= before && writtenAt <= System.currentTimeMillis());
+			assertEquals(LAST_CHANGE, in.readLong());
+			assertEquals(catalog.publishers.size(), in.readInt());
+			assertEquals(100L, in.readLong());   // Publisher ids, in id order
+			assertEquals(200L, in.readLong());
+		}
+	}
+
+	@Test
+	void otherFormatsAreIgnored() throws IOException {
+		Path file = directory.resolve("catalog.snapshot");
+		assertNull(CatalogSnapshot.read(file, LAST_CHANGE));   // Missing
+
+		CatalogSnapshot.write(new Catalog().build(false), LAST_CHANGE, file);
+		assertNull(CatalogSnapshot.read(file, LAST_CHANGE + 1));   // Changes made since
+		byte[] bytes = Files.readAllBytes(file);
+
+		bytes[7]++;   // Last byte of FORMAT_VERSION
+		Files.write(file, bytes);
+		assertNull(CatalogSnapshot.read(file, LAST_CHANGE));
+
+		bytes[7]--;
+		bytes[0] = 'X';   // MAGIC
+		Files.write(file, bytes);
+		assertNull(CatalogSnapshot.read(file, LAST_CHANGE));
+
+		Files.write(file, new byte[8]);   // Shorter than the header
+		assertNull(CatalogSnapshot.read(file, LAST_CHANGE));
+	}
+
+}
@@ -0,0 +1,36 @@
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A run that fails is retried on its own, without another request.
+ */
+class CoalescingRebuilderTest {
+
+	@Test
+	void failedRunIsRetried() throws InterruptedException {
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch succeeded = new CountDownLatch(1);
+		CoalescingRebuilder rebuilder = new CoalescingRebuilder("test-rebuilder", () -> {
+			if (runs.incrementAndGet() < 3) {
+				throw new IllegalStateException("Database unavailable");
+			}
+			succeeded.countDown();
+		}, 10);
+		try {
+			rebuilder.request();
+			assertTrue(succeeded.await(5, TimeUnit.SECONDS), "failed run was not retried");
+			assertEquals(3, runs.get());
+		} finally {
+			rebuilder.shutdown();
+		}
+	}
+
+}
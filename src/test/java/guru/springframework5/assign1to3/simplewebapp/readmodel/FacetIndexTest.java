@@ -0,0 +1,86 @@
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A value's books switch from a sorted int[] to a BitSet at DENSE_AT; the
+ * answers must not change, only the memory used.
+ */
+class FacetIndexTest {
+
+	@Test
+	void postingListTurnsIntoBitSetAndKeepsItsBooks() {
+		FacetIndex state = new FacetIndex("state");
+		int ca = state.value("CA", "CA");
+
+		// Every other ordinal, in random order - the array has to stay sorted.
+		List<Integer> ordinals = new ArrayList<>();
+		for (int i = 0; i <= FacetIndex.DENSE_AT; i++) {
+			ordinals.add(2 * i);
+		}
+		Collections.shuffle(ordinals, new Random(42));
+		int last = ordinals.remove(ordinals.size() - 1);
+
+		BitSet expected = new BitSet();
+		for (int book : ordinals) {
+			state.set(book, new int[] { ca });
+			expected.set(book);
+		}
+		assertEquals(FacetIndex.DENSE_AT, state.count(ca));
+		assertEquals(expected, state.booksWithAny(new int[] { ca }));
+		long sortedBytes = state.memoryBytes();
+
+		// One more book: the 4 KB int[] becomes a BitSet of about 2048 bits.
+		state.set(last, new int[] { ca });
+		expected.set(last);
+		assertEquals(FacetIndex.DENSE_AT + 1, state.count(ca));
+		assertEquals(expected, state.booksWithAny(new int[] { ca }));
+		assertTrue(state.memoryBytes() < sortedBytes - 3000,
+				"BitSet " + state.memoryBytes() + " bytes vs. int[] " + sortedBytes);
+
+		// Changes still apply after the switch.
+		int ny = state.value("NY", "NY");
+		state.set(0, new int[] { ny });
+		state.clear(2);
+		expected.clear(0);
+		expected.clear(2);
+		assertEquals(expected, state.booksWithAny(new int[] { ca }));
+		assertEquals(FacetIndex.DENSE_AT - 1, state.count(ca));
+		BitSet both = (BitSet) expected.clone();
+		both.set(0);
+		assertEquals(both, state.booksWithAny(new int[] { ca, ny }));
+	}
+
+	@Test
+	void sparseValuesStaySortedArrays() {
+		FacetIndex author = new FacetIndex("author");
+		int fowler = author.value("1", "Martin Fowler");
+		int evans = author.value("2", "Eric Evans");
+		author.set(7, new int[] { fowler, evans });
+		author.set(3, new int[] { fowler });
+		author.set(5, new int[] { evans });
+		author.set(3, new int[] { fowler });   // Same values again - no duplicate
+
+		assertEquals(2, author.count(fowler));
+		assertEquals(BitSet.valueOf(new long[] { (1L << 3) | (1L << 7) }), author.booksWithAny(new int[] { fowler }));
+
+		author.clear(7);
+		assertEquals(1, author.count(fowler));
+		assertEquals(1, author.count(evans));
+		BitSet all = new BitSet();
+		all.set(3, 8);
+		int[] tally = author.tally(all);
+		assertEquals(1, tally[fowler]);
+		assertEquals(1, tally[evans]);
+	}
+
+}
@@ -0,0 +1,91 @@
+// ***************************************************************************
+// Class:  StringStoreBenchmark
+//
+// Manual benchmark (not run by "mvn test") comparing the on-heap and off-heap
+// StringDictionary for a large synthetic catalog: heap retained after the
+// dictionary is built, and GC activity while "rendering" every title.
+//
+// Run each mode in its own JVM so the numbers do not mix, e.g.:
+//    mvn -q test-compile
+//    java -Xmx4g -cp target/classes:target/test-classes \
+//         guru.springframework5.assign1to3.simplewebapp.readmodel.StringStoreBenchmark heap 3000000
+//    java -Xmx4g -cp target/classes:target/test-classes \
+//         guru.springframework5.assign1to3.simplewebapp.readmodel.StringStoreBenchmark offheap 3000000
+// ***************************************************************************
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+public class StringStoreBenchmark {
+
+	public static void main(String[] args) {
+		boolean offHeap = args.length > 0 && args[0].equals("offheap");
+		int books = (args.length > 1) ? Integer.parseInt(args[1]) : 3_000_000;
+
+		long heapBefore = usedHeapAfterGc();
+
+		// One title and one ISBN per book, 5,000 shared publisher names.
+		StringDictionary.Builder builder = new StringDictionary.Builder(offHeap);
+		int[] titles = new int[books];
+		for (int b = 0; b < books; b++) {
+			titles[b] = builder.encode("The Collected Works, Volume " + b + " - Annotated Edition");
+			builder.encode(String.format("978-%010d", b));
+			builder.encode("Publisher " + (b % 5_000));
+		}
+		StringDictionary dictionary = builder.build();
+		builder = null;   // Let the build-time HashMap go.
+
+		long heapRetained = usedHeapAfterGc() - heapBefore;
+
+		// "Render" every title 5 times and watch the collector.
+		long gcCountBefore = gcCount();
+		long gcTimeBefore = gcTimeMillis();
+		long start = System.nanoTime();
+		long chars = 0;
+		for (int pass = 0; pass < 5; pass++) {
+			for (int b = 0; b < books; b++) {
+				chars += dictionary.get(titles[b]).length();
+			}
+		}
+		long renderMillis = (System.nanoTime() - start) / 1_000_000;
+
+		System.out.println("mode=" + (offHeap ? "offheap" : "heap") +
+				" books=" + books +
+				" distinctStrings=" + dictionary.size() +
+				" heapRetainedMB=" + heapRetained / (1024 * 1024) +
+				" offHeapMB=" + dictionary.offHeapBytes() / (1024 * 1024) +
+				" renderMs=" + renderMillis +
+				" gcCount=" + (gcCount() - gcCountBefore) +
+				" gcMs=" + (gcTimeMillis() - gcTimeBefore) +
+				" chars=" + chars);
+	}  // end main()
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static long usedHeapAfterGc() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += gc.getCollectionCount();
+		}
+		return count;
+	}
+
+	private static long gcTimeMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += gc.getCollectionTime();
+		}
+		return millis;
+	}
+
+}  // end class StringStoreBenchmark
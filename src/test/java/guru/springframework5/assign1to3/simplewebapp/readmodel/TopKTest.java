@@ -0,0 +1,59 @@
+package guru.springframework5.assign1to3.simplewebapp.readmodel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * TopK.first() must give the same rows as sorting all of them and taking
+ * the first k.
+ */
+class TopKTest {
+
+	@Test
+	void sameAsFullSort() {
+		Random random = new Random(42);
+		for (int count : new int[] { 0, 1, 2, 7, 100, 1000 }) {
+			// Few distinct values, so most comparisons are decided by the id.
+			int[] values = random.ints(count, 0, 10).toArray();
+			TopK.OrdinalOrder order = (a, b) -> (values[a] != values[b])
+					? Integer.compare(values[a], values[b])
+					: Integer.compare(a, b);
+
+			for (int k : new int[] { 0, 1, 5, count - 1, count, count + 3 }) {
+				assertArrayEquals(fullSort(null, count, k, order), TopK.first(null, count, k, order),
+						"k=" + k + " of " + count);
+			}
+		}
+	}
+
+	@Test
+	void onlyTheGivenCandidates() {
+		int[] values = { 5, 3, 8, 1, 9, 2, 7 };
+		TopK.OrdinalOrder descending = (a, b) -> Integer.compare(values[b], values[a]);
+		int[] candidates = { 0, 2, 4, 6, 3 };
+
+		assertArrayEquals(new int[] { 4, 2, 6 }, TopK.first(candidates, candidates.length, 3, descending));
+		assertArrayEquals(new int[] { 2, 0 }, TopK.first(candidates, 2, 3, descending));   // Only the first 2 count
+		assertArrayEquals(fullSort(candidates, 5, 4, descending), TopK.first(candidates, 5, 4, descending));
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static int[] fullSort(int[] candidates, int count, int k, TopK.OrdinalOrder order) {
+		return IntStream.range(0, count)
+				.map(i -> (candidates == null) ? i : candidates[i])
+				.boxed()
+				.sorted(order::compare)
+				.limit(Math.max(0, k))
+				.mapToInt(Integer::intValue)
+				.toArray();
+	}
+
+}
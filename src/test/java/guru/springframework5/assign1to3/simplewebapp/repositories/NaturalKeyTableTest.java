@@ -0,0 +1,144 @@
+package guru.springframework5.assign1to3.simplewebapp.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import guru.springframework5.assign1to3.simplewebapp.imports.BloomFilter;
+import guru.springframework5.assign1to3.simplewebapp.imports.UpsertResult.Outcome;
+import guru.springframework5.assign1to3.simplewebapp.repositories.CatalogUpsertRepository.Row;
+
+/**
+ * Upserts into a private H2 in-memory database - no Spring context.
+ */
+class NaturalKeyTableTest {
+
+	private static final NaturalKeyTable BOOKS = new NaturalKeyTable("book",
+			Arrays.asList("isbn_key", "title"), values -> (String) values[0]);
+
+	// With the ISBN as entered, which records may leave out.
+	private static final NaturalKeyTable BOOKS_WITH_ISBN = new NaturalKeyTable("book",
+			Arrays.asList("isbn_key", "isbn", "title"), values -> (String) values[0]);
+
+	// Looked up by name, matched on name + zip.
+	private static final NaturalKeyTable PUBLISHERS = new NaturalKeyTable("publisher",
+			Arrays.asList("name", "zip"), values -> values[0] + "|" + values[1]);
+
+	private SingleConnectionDataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void createDatabase() {
+		dataSource = new SingleConnectionDataSource("jdbc:h2:mem:natural-key-test-" + System.nanoTime(), "sa", "", true);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE SEQUENCE hibernate_sequence START WITH 1 INCREMENT BY 1");
+		jdbcTemplate.execute("CREATE TABLE book (id BIGINT PRIMARY KEY, version BIGINT, isbn_key VARCHAR(255), isbn VARCHAR(255), title VARCHAR(255))");
+		jdbcTemplate.execute("CREATE TABLE publisher (id BIGINT PRIMARY KEY, version BIGINT, name VARCHAR(255), zip VARCHAR(255))");
+	}
+
+	@AfterEach
+	void closeDatabase() {
+		dataSource.destroy();
+	}
+
+	@Test
+	void insertedUpdatedUnchanged() {
+		Map<String, Row> first = BOOKS.upsert(jdbcTemplate, rows("0321125215", "Domain Driven Design",
+				"0201485672", "Refactoring"), null);
+		assertEquals(Outcome.INSERTED, first.get("0321125215").getOutcome());
+		assertEquals(Outcome.INSERTED, first.get("0201485672").getOutcome());
+		assertNotEquals(first.get("0321125215").getId(), first.get("0201485672").getId());
+		assertEquals(0L, version(first.get("0321125215").getId()));
+
+		Map<String, Row> second = BOOKS.upsert(jdbcTemplate, rows("0321125215", "Domain Driven Design",
+				"0201485672", "Refactoring, 2nd Edition", "0201633612", "Design Patterns"), null);
+		assertEquals(Outcome.UNCHANGED, second.get("0321125215").getOutcome());
+		assertEquals(Outcome.UPDATED, second.get("0201485672").getOutcome());
+		assertEquals(Outcome.INSERTED, second.get("0201633612").getOutcome());
+		assertEquals(first.get("0321125215").getId(), second.get("0321125215").getId());
+		assertEquals(first.get("0201485672").getId(), second.get("0201485672").getId());
+
+		assertEquals(0L, version(first.get("0321125215").getId()));
+		assertEquals(1L, version(first.get("0201485672").getId()));
+		assertEquals("Refactoring, 2nd Edition", jdbcTemplate.queryForObject("SELECT title FROM book WHERE id = ?",
+				String.class, first.get("0201485672").getId()));
+		assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book", Integer.class));
+	}
+
+	@Test
+	void omittedFieldsKeepTheirValues() {
+		Map<String, Object[]> rows = new LinkedHashMap<>();
+		rows.put("0321125215", new Object[] { "0321125215", "0-321-12521-5", "Domain Driven Design" });
+		long id = BOOKS_WITH_ISBN.upsert(jdbcTemplate, rows, null).get("0321125215").getId();
+
+		// No ISBN as entered: the title changes, the stored ISBN stays.
+		rows.put("0321125215", new Object[] { "0321125215", null, "Domain-Driven Design" });
+		assertEquals(Outcome.UPDATED, BOOKS_WITH_ISBN.upsert(jdbcTemplate, rows, null).get("0321125215").getOutcome());
+		assertEquals("0-321-12521-5", jdbcTemplate.queryForObject("SELECT isbn FROM book WHERE id = ?", String.class, id));
+		assertEquals("Domain-Driven Design", jdbcTemplate.queryForObject("SELECT title FROM book WHERE id = ?", String.class, id));
+
+		// Nothing but the key: nothing to change.
+		rows.put("0321125215", new Object[] { "0321125215", null, null });
+		assertEquals(Outcome.UNCHANGED, BOOKS_WITH_ISBN.upsert(jdbcTemplate, rows, null).get("0321125215").getOutcome());
+		assertEquals(1L, version(id));
+	}
+
+	@Test
+	void keyMayExtendTheLookupColumn() {
+		Map<String, Object[]> rows = new LinkedHashMap<>();
+		rows.put("Wrox|60601", new Object[] { "Wrox", "60601" });
+		PUBLISHERS.upsert(jdbcTemplate, rows, null);
+
+		// Same name, other zip: another publisher.
+		rows.put("Wrox|46256", new Object[] { "Wrox", "46256" });
+		Map<String, Row> result = PUBLISHERS.upsert(jdbcTemplate, rows, null);
+		assertEquals(Outcome.UNCHANGED, result.get("Wrox|60601").getOutcome());
+		assertEquals(Outcome.INSERTED, result.get("Wrox|46256").getOutcome());
+
+		assertEquals(2, PUBLISHERS.findIds(jdbcTemplate, Collections.singleton("Wrox")).size());
+	}
+
+	@Test
+	void knownKeysSkipTheLookupOfNewKeys() {
+		BloomFilter knownKeys = BloomFilter.create(100, 0.01);
+		BOOKS.upsert(jdbcTemplate, rows("0321125215", "Domain Driven Design"), knownKeys);
+		assertTrue(knownKeys.mightContain("0321125215"));   // Inserted keys are added
+
+		Map<String, Row> result = BOOKS.upsert(jdbcTemplate, rows("0321125215", "Domain-Driven Design"), knownKeys);
+		assertEquals(Outcome.UPDATED, result.get("0321125215").getOutcome());
+
+		assertFalse(knownKeys.mightContain("0201485672"));
+		assertTrue(BOOKS.findIds(jdbcTemplate, Collections.singleton("0201485672"), knownKeys).isEmpty());
+		assertEquals(1, BOOKS.findIds(jdbcTemplate, Collections.singleton("0321125215"), knownKeys).size());
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Key, title, key, title, ...
+	private static Map<String, Object[]> rows(String... keysAndTitles) {
+		Map<String, Object[]> rows = new LinkedHashMap<>();
+		for (int i = 0; i < keysAndTitles.length; i += 2) {
+			rows.put(keysAndTitles[i], new Object[] { keysAndTitles[i], keysAndTitles[i + 1] });
+		}
+		return rows;
+	}
+
+	private long version(long id) {
+		return jdbcTemplate.queryForObject("SELECT version FROM book WHERE id = ?", Long.class, id);
+	}
+
+}
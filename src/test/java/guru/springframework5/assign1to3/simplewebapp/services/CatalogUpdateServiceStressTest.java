@@ -0,0 +1,107 @@
+package guru.springframework5.assign1to3.simplewebapp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import guru.springframework5.assign1to3.simplewebapp.config.ReplicaSynchronizer;
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IBookRepository;
+
+/**
+ * Many threads updating a few books at once through CatalogUpdateService.
+ *
+ * Each update is a read-modify-write of a counter kept in the title, so a
+ * lost update would show up as a counter lower than the number of updates
+ * made.  Prints write throughput and how many attempts conflicted.  With
+ * four threads on each book an update can lose more than the default ten
+ * attempts, so the limit is raised: the test is about lost updates, not about
+ * the limit (CatalogUpdateServiceTest covers that).
+ */
+@SpringBootTest(properties = "app.update.max-attempts=100")
+class CatalogUpdateServiceStressTest {
+
+	private static final int THREADS = 16;
+	private static final int UPDATES_PER_THREAD = 40;
+	private static final int BOOKS = 4;   // Few books, so threads overlap a lot
+
+	@Autowired
+	private CatalogUpdateService updateService;
+
+	@Autowired
+	private IBookRepository bookRepository;
+
+	@Autowired
+	private ReplicaSynchronizer replicaSynchronizer;
+
+	private final List<Long> bookIds = new ArrayList<>();
+
+	@AfterEach
+	void deleteBooks() {
+		bookIds.forEach(bookRepository::deleteById);
+	}
+
+	@Test
+	void concurrentUpdatesAreNeitherLostNorFailed() throws Exception {
+		for (int i = 0; i < BOOKS; i++) {
+			bookIds.add(bookRepository.save(new Book("Stress 0", "stress-" + i)).getId());
+		}
+		AtomicIntegerArray updatesPerBook = new AtomicIntegerArray(BOOKS);
+		long conflictsBefore = updateService.getConflicts();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> workers = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			workers.add(executor.submit(() -> {
+				start.await();
+				for (int u = 0; u < UPDATES_PER_THREAD; u++) {
+					int book = ThreadLocalRandom.current().nextInt(BOOKS);
+					updateService.updateBook(bookIds.get(book), b -> b.setTitle("Stress " + (counter(b) + 1)));
+					updatesPerBook.incrementAndGet(book);
+				}
+				return null;
+			}));
+		}
+
+		long started = System.nanoTime();
+		start.countDown();
+		for (Future<?> worker : workers) {
+			worker.get(5, TimeUnit.MINUTES);
+		}
+		long nanos = System.nanoTime() - started;
+		executor.shutdown();
+
+		int total = THREADS * UPDATES_PER_THREAD;
+		long conflicts = updateService.getConflicts() - conflictsBefore;
+		System.out.printf("%d updates of %d books by %d threads in %d ms: %.0f updates/s, %d conflicts retried%n",
+				total, BOOKS, THREADS, TimeUnit.NANOSECONDS.toMillis(nanos), total * 1e9 / nanos, conflicts);
+		assertTrue(conflicts > 0, "no update conflicted, so the retries went untested");
+
+		replicaSynchronizer.copy();   // findById reads the replica, which lags behind
+		for (int i = 0; i < BOOKS; i++) {
+			Book book = bookRepository.findById(bookIds.get(i)).get();
+			assertEquals(updatesPerBook.get(i), counter(book), "lost update on book " + i);
+			assertEquals(updatesPerBook.get(i), book.getVersion().intValue(), "version of book " + i);
+		}
+	}
+
+	private static int counter(Book book) {
+		return Integer.parseInt(book.getTitle().substring("Stress ".length()));
+	}
+
+}
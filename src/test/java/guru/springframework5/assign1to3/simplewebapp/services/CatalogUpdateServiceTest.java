@@ -0,0 +1,112 @@
+package guru.springframework5.assign1to3.simplewebapp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import guru.springframework5.assign1to3.simplewebapp.domain.Book;
+import guru.springframework5.assign1to3.simplewebapp.repositories.IBookRepository;
+
+/**
+ * The retry loop of CatalogUpdateService, with the competing edit made at a
+ * known point: between the read of an attempt and its commit.
+ */
+@SpringBootTest
+class CatalogUpdateServiceTest {
+
+	private static final int MAX_ATTEMPTS = 10;   // app.update.max-attempts default
+
+	@Autowired
+	private CatalogUpdateService updateService;
+
+	@Autowired
+	private IBookRepository bookRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final List<Long> bookIds = new ArrayList<>();
+
+	@AfterEach
+	void deleteBooks() {
+		bookIds.forEach(bookRepository::deleteById);
+	}
+
+	@Test
+	void conflictIsRetriedOnTheNewVersion() {
+		Long id = saveBook("Retry");
+		long conflictsBefore = updateService.getConflicts();
+		AtomicInteger attempts = new AtomicInteger();
+
+		Book updated = updateService.updateBook(id, book -> {
+			if (attempts.incrementAndGet() == 1) {
+				editElsewhere(id, "Edited elsewhere");
+			}
+			book.setTitle(book.getTitle() + ", retried");
+		});
+
+		assertEquals(2, attempts.get());
+		assertEquals(1, updateService.getConflicts() - conflictsBefore);
+		assertEquals("Edited elsewhere, retried", updated.getTitle());
+		assertEquals("Edited elsewhere, retried", titleOf(id));
+	}
+
+	@Test
+	void givesUpAfterMaxAttempts() {
+		Long id = saveBook("Contended");
+		long conflictsBefore = updateService.getConflicts();
+		long failuresBefore = updateService.getFailures();
+		AtomicInteger attempts = new AtomicInteger();
+
+		assertThrows(ConcurrencyFailureException.class, () -> updateService.updateBook(id, book -> {
+			editElsewhere(id, "Edit " + attempts.incrementAndGet());
+			book.setTitle("Never stored");
+		}));
+
+		assertEquals(MAX_ATTEMPTS, attempts.get());
+		assertEquals(MAX_ATTEMPTS, updateService.getConflicts() - conflictsBefore);
+		assertEquals(1, updateService.getFailures() - failuresBefore);
+		assertEquals("Edit " + MAX_ATTEMPTS, titleOf(id));
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private Long saveBook(String title) {
+		Long id = bookRepository.save(new Book(title, "retry-" + (9000 + bookIds.size()))).getId();
+		bookIds.add(id);
+		return id;
+	}
+
+	/**
+	 * Commits an edit of the book from another thread, as another editor
+	 * would, while the calling thread's attempt is still open.
+	 */
+	private void editElsewhere(Long id, String title) {
+		Thread editor = new Thread(() -> jdbcTemplate.update(
+				"UPDATE book SET title = ?, version = version + 1 WHERE id = ?", title, id));
+		editor.start();
+		try {
+			editor.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String titleOf(Long id) {
+		return jdbcTemplate.queryForObject("SELECT title FROM book WHERE id = ?", String.class, id);
+	}
+
+}
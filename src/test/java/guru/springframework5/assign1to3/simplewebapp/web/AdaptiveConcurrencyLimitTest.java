@@ -0,0 +1,89 @@
+package guru.springframework5.assign1to3.simplewebapp.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The limit grows while latency stays at its baseline and the limit is in
+ * use, and shrinks when latency rises above it.
+ */
+class AdaptiveConcurrencyLimitTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+	@Test
+	void admitsUpToTheLimit() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(3, 1, 100);
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+
+		limit.release(FAST);
+		assertTrue(limit.tryAcquire());
+		assertEquals(1L, limit.getMetrics().get("rejected"));
+	}
+
+	@Test
+	void growsAtSteadyLatencyAndShrinksWhenItRises() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100);
+
+		int before = limit(limit);
+		for (int round = 0; round < 5; round++) {
+			saturate(limit, FAST);
+		}
+		int grown = limit(limit);
+		assertTrue(grown > before, before + " -> " + grown);
+
+		for (int round = 0; round < 50; round++) {
+			saturate(limit, FAST);
+		}
+		assertEquals(100, limit(limit));   // Capped at maxLimit
+
+		saturate(limit, SLOW);
+		int shrunk = limit(limit);
+		assertTrue(shrunk < 50, "100 -> " + shrunk);
+
+		// The baseline follows the new latency, and the limit grows again.
+		for (int round = 0; round < 10; round++) {
+			saturate(limit, SLOW);
+		}
+		assertEquals(100, limit(limit));
+	}
+
+	@Test
+	void doesNotGrowWhileHardlyUsed() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 100);
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(limit.tryAcquire());
+			limit.release(FAST);
+		}
+		assertEquals(20, limit(limit));
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	// Admits as many requests as the limit allows, then ends them all.
+	private static void saturate(AdaptiveConcurrencyLimit limit, long latencyNanos) {
+		int admitted = 0;
+		while (limit.tryAcquire()) {
+			admitted++;
+		}
+		for (int i = 0; i < admitted; i++) {
+			limit.release(latencyNanos);
+		}
+	}
+
+	private static int limit(AdaptiveConcurrencyLimit limit) {
+		return (Integer) limit.getMetrics().get("limit");
+	}
+
+}
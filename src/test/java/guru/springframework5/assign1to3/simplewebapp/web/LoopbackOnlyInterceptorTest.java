@@ -0,0 +1,66 @@
+package guru.springframework5.assign1to3.simplewebapp.web;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+/**
+ * The operational and import endpoints refuse other machines before their
+ * controller runs, and still answer this one.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class LoopbackOnlyInterceptorTest {
+
+	private static final String REMOTE = "192.0.2.10";   // TEST-NET-1
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@ParameterizedTest
+	@ValueSource(strings = {"/admin/jfr/start", "/admin/jfr/dump", "/admin/jfr/stop", "/admin/catalog-import?file=x.jsonl",
+							"/admin/catalog-snapshot"})
+	void adminPostsFromAnotherMachineAreRefused(String path) throws Exception {
+		mockMvc.perform(post(path).with(from(REMOTE))).andExpect(status().isForbidden());
+	}
+
+	@Test
+	void upsertFromAnotherMachineIsRefused() throws Exception {
+		mockMvc.perform(post("/api/catalog/upsert").with(from(REMOTE))
+				.contentType(MediaType.APPLICATION_JSON).content("{\"books\": [{\"isbn\": \"999\", \"title\": \"Injected\"}]}"))
+				.andExpect(status().isForbidden());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"127.0.0.1", "127.1.2.3", "0:0:0:0:0:0:0:1"})
+	void loopbackAddressesAreServed(String address) throws Exception {
+		mockMvc.perform(get("/admin/jfr").with(from(address))).andExpect(status().isOk());
+	}
+
+	@Test
+	void pagesAreServedToEveryone() throws Exception {
+		mockMvc.perform(get("/publishers").with(from(REMOTE))).andExpect(status().isOk());
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static RequestPostProcessor from(String remoteAddr) {
+		return request -> {
+			request.setRemoteAddr(remoteAddr);
+			return request;
+		};
+	}
+
+}
@@ -0,0 +1,115 @@
+package guru.springframework5.assign1to3.simplewebapp.web;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * With a cache TTL, a page is rendered once and later GETs of the URL are
+ * sent it - gzipped when they accept it - until the TTL has passed.
+ */
+class RequestCoalescingFilterTest {
+
+	private static final String PAGE = "<html><body>" + "<p>Book</p>".repeat(500) + "</body></html>";
+
+	private final AtomicInteger renders = new AtomicInteger();
+
+	private final FilterChain chain = (request, response) -> {
+		renders.incrementAndGet();
+		response.setContentType("text/html;charset=UTF-8");
+		response.getOutputStream().write(PAGE.getBytes(StandardCharsets.UTF_8));
+	};
+
+	@Test
+	void cachedPageIsSentWithoutRendering() throws Exception {
+		RequestCoalescingFilter filter = new RequestCoalescingFilter(compression(), 5000, 60_000);
+
+		assertEquals(PAGE, get(filter, "/books", false).getContentAsString());
+		MockHttpServletResponse plain = get(filter, "/books", false);
+		MockHttpServletResponse gzipped1 = get(filter, "/books", true);
+		MockHttpServletResponse gzipped2 = get(filter, "/books", true);
+
+		assertEquals(1, renders.get());
+		assertEquals(PAGE, plain.getContentAsString());
+		assertNull(plain.getHeader(HttpHeaders.CONTENT_ENCODING));
+		assertEquals("gzip", gzipped1.getHeader(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(PAGE, gunzip(gzipped1.getContentAsByteArray()));
+		assertArrayEquals(gzipped1.getContentAsByteArray(), gzipped2.getContentAsByteArray());
+		assertEquals(3L, filter.getMetrics().get("cacheHits"));
+		assertEquals(2L, filter.getMetrics().get("gzipped"));
+
+		get(filter, "/books?page=2", false);   // Another URL
+		assertEquals(2, renders.get());
+	}
+
+	@Test
+	void pageIsRenderedAgainAfterTheTtl() throws Exception {
+		RequestCoalescingFilter filter = new RequestCoalescingFilter(compression(), 5000, 200);
+
+		get(filter, "/books", false);
+		get(filter, "/books", false);
+		assertEquals(1, renders.get());
+
+		TimeUnit.MILLISECONDS.sleep(300);
+		get(filter, "/books", false);
+		assertEquals(2, renders.get());
+	}
+
+	@Test
+	void nothingIsCachedByDefault() throws Exception {
+		RequestCoalescingFilter filter = new RequestCoalescingFilter(compression(), 5000, 0);
+
+		get(filter, "/books", false);
+		get(filter, "/books", false);
+		assertEquals(2, renders.get());
+		assertEquals(0L, filter.getMetrics().get("cacheHits"));
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static Compression compression() {
+		Compression compression = new Compression();
+		compression.setEnabled(true);
+		return compression;
+	}
+
+	private MockHttpServletResponse get(RequestCoalescingFilter filter, String url, boolean acceptGzip)
+			throws ServletException, IOException {
+		String[] pathAndQuery = url.split("\\?", 2);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", pathAndQuery[0]);
+		if (pathAndQuery.length > 1) {
+			request.setQueryString(pathAndQuery[1]);
+		}
+		if (acceptGzip) {
+			request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		return response;
+	}
+
+	private static String gunzip(byte[] gzipped) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package guru.springframework5.assign1to3.simplewebapp.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A leader call blocked on a latch while other callers of the same key
+ * arrive - they must wait for it, not run the call again.
+ */
+class SingleFlightTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	void stopThreads() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void waitersShareTheLeadersResult() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<>(1, TimeUnit.MINUTES);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+
+		Future<String> leader = executor.submit(() -> flight.run("/books", () -> {
+			calls.incrementAndGet();
+			release.await();
+			return "page";
+		}));
+		awaitInFlight(flight, 1);
+		Future<String> waiter1 = executor.submit(() -> flight.run("/books", () -> "waiter 1 ran"));
+		Future<String> waiter2 = executor.submit(() -> flight.run("/books", () -> "waiter 2 ran"));
+		TimeUnit.MILLISECONDS.sleep(100);   // Both are waiting by now
+		release.countDown();
+
+		assertEquals("page", leader.get(10, TimeUnit.SECONDS));
+		assertEquals("page", waiter1.get(10, TimeUnit.SECONDS));
+		assertEquals("page", waiter2.get(10, TimeUnit.SECONDS));
+		assertEquals(1, calls.get());
+		assertEquals(1, flight.getExecuted());
+		assertEquals(2, flight.getShared());
+	}
+
+	@Test
+	void waitersGetTheLeadersException() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<>(1, TimeUnit.MINUTES);
+		CountDownLatch release = new CountDownLatch(1);
+		IOException failure = new IOException("broken pipe");
+
+		Future<String> leader = executor.submit(() -> flight.run("/books", () -> {
+			release.await();
+			throw failure;
+		}));
+		awaitInFlight(flight, 1);
+		Future<String> waiter = executor.submit(() -> flight.run("/books", () -> "waiter ran"));
+		TimeUnit.MILLISECONDS.sleep(100);
+		release.countDown();
+
+		assertSame(failure, assertThrows(ExecutionException.class, () -> leader.get(10, TimeUnit.SECONDS)).getCause());
+		assertSame(failure, assertThrows(ExecutionException.class, () -> waiter.get(10, TimeUnit.SECONDS)).getCause());
+		assertEquals(1, flight.getExecuted());
+	}
+
+	@Test
+	void keyIsRemovedOnceTheCallCompletes() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<>(1, TimeUnit.MINUTES);
+
+		assertEquals("first", flight.run("/books", () -> "first"));
+		assertEquals(0, flight.getInFlight());
+		assertThrows(IllegalStateException.class, () -> flight.run("/books", () -> {
+			throw new IllegalStateException();
+		}));
+		assertEquals(0, flight.getInFlight());
+
+		// Not cached: the next caller runs the call again.
+		assertEquals("second", flight.run("/books", () -> "second"));
+		assertEquals(3, flight.getExecuted());
+		assertEquals(0, flight.getShared());
+	}
+
+	@Test
+	void waiterRunsItselfAfterMaxWait() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<>(50, TimeUnit.MILLISECONDS);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<String> leader = executor.submit(() -> flight.run("/books", () -> {
+			release.await();
+			return "leader's page";
+		}));
+		awaitInFlight(flight, 1);
+
+		assertEquals("own page", flight.run("/books", () -> "own page"));
+		assertEquals(1, flight.getTimedOut());
+		assertEquals(2, flight.getExecuted());
+
+		release.countDown();
+		assertEquals("leader's page", leader.get(10, TimeUnit.SECONDS));
+	}
+
+	// -----------------------------------------------
+	// Helper methods
+	// -----------------------------------------------
+
+	private static void awaitInFlight(SingleFlight<?, ?> flight, int keys) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (flight.getInFlight() < keys && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		assertEquals(keys, flight.getInFlight());
+	}
+
+}